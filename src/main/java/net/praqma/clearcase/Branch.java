@@ -1,6 +1,7 @@
 package net.praqma.clearcase;
 
 import edu.umd.cs.findbugs.annotations.*;
+import net.praqma.clearcase.util.Interner;
 
 /**
  * @author cwolfgang
@@ -8,6 +9,13 @@ import edu.umd.cs.findbugs.annotations.*;
 @SuppressFBWarnings("")
 public class Branch extends Type {
 
+    private static final Interner<Branch> pool = new Interner<Branch>( new Interner.Factory<Branch>() {
+        @Override
+        public Branch create( String name ) {
+            return new Branch( name );
+        }
+    } );
+
     private String branchPath;
 
     public Branch() {
@@ -17,6 +25,15 @@ public class Branch extends Type {
         super( name );
     }
 
+    /**
+     * Get the shared {@link Branch} of a name, without a branch path.
+     * @param name The name of the branch
+     * @return The canonical {@link Branch}
+     */
+    public static Branch intern( String name ) {
+        return pool.intern( name );
+    }
+
     public static Branch getBranchFromPath( String branchPath ) {
         String name = getBranchName( branchPath );
         Branch branch = new Branch( name );
@@ -9,6 +9,8 @@ import java.util.regex.Pattern;
 
 import edu.umd.cs.findbugs.annotations.*;
 import net.praqma.clearcase.cleartool.Cleartool;
+import net.praqma.clearcase.cleartool.Span;
+import net.praqma.clearcase.cleartool.Tracer;
 import net.praqma.clearcase.exceptions.*;
 import net.praqma.clearcase.exceptions.DeliverException.Type;
 import net.praqma.clearcase.ucm.entities.Activity;
@@ -81,6 +83,21 @@ public class Deliver {
     @Deprecated
 	public boolean deliver( boolean force, boolean complete, boolean abort, boolean resume ) throws DeliverException, CleartoolException {
 		logger.log(Level.FINE, "Delivering {0} from {1} to {2} in {3} with tag {4}", new Object[]{baseline, stream, target, context, viewtag});
+		Span span = Tracer.start( "Deliver", stream );
+		try {
+			return deliverOrResume( force, complete, abort, resume );
+		} catch( DeliverException e ) {
+			span.failed( e );
+			throw e;
+		} catch( CleartoolException e ) {
+			span.failed( e );
+			throw e;
+		} finally {
+			span.end();
+		}
+	}
+
+	private boolean deliverOrResume( boolean force, boolean complete, boolean abort, boolean resume ) throws DeliverException, CleartoolException {
 		try {
 			return _deliver( force, complete, abort, resume );
 		} catch( DeliverException e ) {
@@ -110,11 +127,15 @@ public class Deliver {
 		cmd += ( viewtag != null ? " -to " + viewtag : "" );
 		cmd += " -f";
 		
+		Span span = Tracer.start( "Deliver.complete", stream );
 		try {
 			Cleartool.run( cmd, context );
 			return this;
 		} catch( Exception e ) {
+			span.failed( e );
 			throw new DeliverException( this, Type.UNABLE_TO_COMPLETE, e );
+		} finally {
+			span.end();
 		}
 	}
 	
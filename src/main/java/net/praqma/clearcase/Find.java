@@ -2,6 +2,7 @@ package net.praqma.clearcase;
 
 import edu.umd.cs.findbugs.annotations.*;
 import net.praqma.clearcase.cleartool.Cleartool;
+import net.praqma.clearcase.cleartool.LineHandler;
 import net.praqma.clearcase.exceptions.CleartoolException;
 import net.praqma.clearcase.exceptions.UnableToInitializeEntityException;
 import net.praqma.clearcase.ucm.entities.Version;
@@ -158,27 +159,47 @@ public class Find {
 
     public List<Version> find() throws CleartoolException, UnableToInitializeEntityException {
         logger.fine( "Finding objects in ClearCase" );
-        String cmd = getCommandLine();
-
-        List<String> lines;
 
-        try {
-            lines = Cleartool.run( cmd, viewRoot, false, acceptErrors ).stdoutList;
-        } catch( AbnormalProcessTerminationException e ) {
-            throw new CleartoolException( "Error while finding", e );
-        }
-
-        List<Version> versions = new ArrayList<Version>( lines.size() );
+        final List<Version> versions = new ArrayList<Version>();
+        final UnableToInitializeEntityException[] error = new UnableToInitializeEntityException[1];
+
+        find( new LineHandler() {
+            @Override
+            public boolean handle( String line ) {
+                logger.finest( "LINE: " + line );
+                try {
+                    versions.add( Version.getVersion( line ) );
+                    return true;
+                } catch( UnableToInitializeEntityException e ) {
+                    error[0] = e;
+                    return false;
+                }
+            }
+        } );
 
-        for( String line : lines ) {
-            logger.finest( "LINE: " + line );
-            versions.add( Version.getVersion( line ) );
+        if( error[0] != null ) {
+            throw error[0];
         }
 
         logger.fine( "Done finding...." );
         return versions;
     }
 
+    /**
+     * Find, giving each found path name to the handler as it is produced, without holding the whole output
+     * @param handler Receives the path names
+     * @throws CleartoolException Thrown on ClearCase error
+     */
+    public void find( LineHandler handler ) throws CleartoolException {
+        String cmd = getCommandLine();
+
+        try {
+            Cleartool.stream( cmd, viewRoot, false, acceptErrors, handler );
+        } catch( AbnormalProcessTerminationException e ) {
+            throw new CleartoolException( "Error while finding", e );
+        }
+    }
+
     public String getCommandLine() {
         StringBuilder sb = new StringBuilder();
         sb.append( "find" );
@@ -5,6 +5,7 @@ import net.praqma.clearcase.api.ListVersionTree;
 import net.praqma.clearcase.exceptions.CleartoolException;
 import net.praqma.clearcase.exceptions.UnableToInitializeEntityException;
 import net.praqma.clearcase.ucm.entities.Version;
+import net.praqma.clearcase.util.Interner;
 
 import java.io.File;
 import java.util.ArrayList;
@@ -23,10 +24,25 @@ public class Label extends Type {
 
     public static final Pattern rx = Pattern.compile( "^(.*)\\b\\s*\\((.*?)\\)$" );
 
+    private static final Interner<Label> pool = new Interner<Label>( new Interner.Factory<Label>() {
+        @Override
+        public Label create( String name ) {
+            return new Label( name );
+        }
+    } );
+
     public Label( String name ) {
         super( name );
     }
 
+    /**
+     * @param name The name of the label
+     * @return The canonical {@link Label}
+     */
+    public static Label intern( String name ) {
+        return pool.intern( name );
+    }
+
     public static List<Label> getLabels( File pathname, Branch branch ) throws CleartoolException, UnableToInitializeEntityException {
         logger.fine( "Get labels from " + pathname );
 
@@ -41,7 +57,7 @@ public class Label extends Type {
                 Version v = Version.get( m.group( 1 ) );
 
                 if( branch == null || branch.equals( v.getUltimateBranch() ) ) {
-                    labels.add( new Label( m.group( 2 ) ) );
+                    labels.add( Label.intern( m.group( 2 ) ) );
                 }
             }
         }
@@ -64,7 +80,7 @@ public class Label extends Type {
         List<Label> labels = new ArrayList<Label>( ls.length );
 
         for( String l : ls ) {
-            labels.add( new Label( l.trim() ) );
+            labels.add( Label.intern( l.trim() ) );
         }
 
         return labels;
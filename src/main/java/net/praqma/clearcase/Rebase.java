@@ -9,6 +9,8 @@ import java.util.logging.Logger;
 
 import edu.umd.cs.findbugs.annotations.*;
 import net.praqma.clearcase.cleartool.Cleartool;
+import net.praqma.clearcase.cleartool.Span;
+import net.praqma.clearcase.cleartool.Tracer;
 import net.praqma.clearcase.exceptions.CleartoolException;
 import net.praqma.clearcase.exceptions.RebaseException;
 import net.praqma.clearcase.ucm.entities.Baseline;
@@ -111,6 +113,15 @@ public class Rebase {
      * @throws RebaseException Thrown when ClearCase reports errors with the rebase 
      */
     public boolean rebase( boolean complete, boolean cancelAndTryResume) throws RebaseException {
+        Span span = Tracer.start( "Rebase", stream );
+        try {
+            return _rebase( complete, cancelAndTryResume );
+        } finally {
+            span.end();
+        }
+    }
+
+    private boolean _rebase( boolean complete, boolean cancelAndTryResume) throws RebaseException {
         logger.fine( "Rebasing" );
         try {
             if(cancelAndTryResume && isInProgress(this.stream)) {
@@ -2,7 +2,13 @@ package net.praqma.clearcase;
 
 import java.io.File;
 import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.regex.Matcher;
@@ -10,6 +16,7 @@ import java.util.regex.Pattern;
 
 import edu.umd.cs.findbugs.annotations.*;
 import net.praqma.clearcase.cleartool.Cleartool;
+import net.praqma.clearcase.cleartool.ExistenceCache;
 import net.praqma.clearcase.command.ListVobs;
 import net.praqma.clearcase.command.RemoveVob;
 import net.praqma.clearcase.command.UnmountVob;
@@ -32,6 +39,7 @@ import net.praqma.util.execute.CommandLineInterface.OperatingSystem;
 public class Vob extends ClearCase implements Serializable {
 
 	public static final Pattern rx_vob_get_path = Pattern.compile( "^\\s*VOB storage global pathname\\s*\"(.*?)\"\\s*$" );
+	private static final Pattern rx_vob_not_found = Pattern.compile( "Error: (No matching entries found for VOB tag|Tag not found)" );
 
 	private static final transient Logger logger = Logger.getLogger( Vob.class.getName() );
 
@@ -172,6 +180,8 @@ public class Vob extends ClearCase implements Serializable {
 			} else {
 				throw new CleartoolException( "Unable to create vob " + name, e );
 			}
+		} finally {
+			ExistenceCache.changed( ExistenceCache.Kind.VOB, name );
 		}
 
 		Vob vob = new Vob( name );
@@ -181,14 +191,18 @@ public class Vob extends ClearCase implements Serializable {
 	}
 
 	public void remove() throws CleartoolException {
-		new RemoveVob( this ).execute();
+		remove( false );
 	}
 
     public void remove( boolean unmount ) throws CleartoolException {
         if( unmount ) {
             unmount();
         }
-        new RemoveVob( this ).execute();
+        try {
+            new RemoveVob( this ).execute();
+        } finally {
+            ExistenceCache.changed( ExistenceCache.Kind.VOB, name );
+        }
     }
 
 	public static Vob get( String vobname ) {
@@ -202,15 +216,82 @@ public class Vob extends ClearCase implements Serializable {
 	}
 
 	public static boolean isVob( File context ) {
-		String cmd = "lsvob " + Cool.filesep + context.getName();
+		final String tag = Cool.filesep + context.getName();
+		return ExistenceCache.exists( ExistenceCache.Kind.VOB, tag, new ExistenceCache.Probe() {
+			@Override
+			public boolean exists() {
+				try {
+					Cleartool.run( "lsvob " + tag );
+					return true;
+				} catch( AbnormalProcessTerminationException e ) {
+					logger.log( Level.FINE, "Error in isVob", e );
+					if( rx_vob_not_found.matcher( e.getMessage() ).find() ) {
+						return false;
+					}
+					throw e;
+				}
+			}
+		} );
+	}
+
+	/**
+	 * Tell which of the directories are VOBs, as {@link #isVob(File)} does for each of them, with one <code>lsvob</code> for those not cached.
+	 *
+	 * @param contexts The directories, e.g. the root directories of a view
+	 * @return The directories mapped to whether they are VOBs, in the order given
+	 */
+	public static Map<File, Boolean> isVob( Collection<File> contexts ) {
+		Map<File, Boolean> vobs = new LinkedHashMap<File, Boolean>();
+		List<File> unknown = new ArrayList<File>();
+		ExistenceCache cache = ExistenceCache.getInstance();
+		for( File context : contexts ) {
+			Boolean cached = cache != null ? cache.get( ExistenceCache.Kind.VOB, Cool.filesep + context.getName() ) : null;
+			vobs.put( context, cached );
+			if( cached == null ) {
+				unknown.add( context );
+			}
+		}
+
+		if( unknown.isEmpty() ) {
+			return vobs;
+		}
+
+		if( unknown.size() == 1 ) {
+			vobs.put( unknown.get( 0 ), isVob( unknown.get( 0 ) ) );
+			return vobs;
+		}
+
+		long generation = cache != null ? cache.getGeneration() : 0;
+		Set<String> tags = new HashSet<String>();
 		try {
-			Cleartool.run( cmd );
+			for( String line : Cleartool.run( "lsvob -s" ).stdoutList ) {
+				tags.add( tagKey( line.trim() ) );
+			}
 		} catch( Exception e ) {
-			logger.log(Level.FINE, "Error in isVob", e);
-			return false;
+			logger.log( Level.FINE, "Unable to list the vobs, asking for each of them", e );
+			for( File context : unknown ) {
+				vobs.put( context, isVob( context ) );
+			}
+			return vobs;
 		}
 
-		return true;
+		for( File context : unknown ) {
+			String tag = Cool.filesep + context.getName();
+			boolean exists = tags.contains( tagKey( tag ) );
+			vobs.put( context, exists );
+			if( cache != null ) {
+				cache.put( ExistenceCache.Kind.VOB, tag, exists, generation );
+			}
+		}
+
+		return vobs;
+	}
+
+	/**
+	 * Tags are not case sensitive on Windows
+	 */
+	private static String tagKey( String tag ) {
+		return Cool.getOS().equals( OperatingSystem.WINDOWS ) ? tag.toLowerCase() : tag;
 	}
 	
 	@Override
@@ -2,11 +2,18 @@ package net.praqma.clearcase.api;
 
 import edu.umd.cs.findbugs.annotations.*;
 import net.praqma.clearcase.cleartool.Cleartool;
+import net.praqma.clearcase.cleartool.CleartoolAsync;
+import net.praqma.clearcase.cleartool.LineHandler;
 import net.praqma.clearcase.exceptions.CleartoolException;
 import net.praqma.util.execute.AbnormalProcessTerminationException;
 import net.praqma.util.execute.CmdResult;
 
 import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -30,8 +37,58 @@ public abstract class Command<RT extends Object> {
         }
     }
 
+    /**
+     * Run the command, giving each line of output to the handler as it is produced
+     */
+    protected void streamCommand( LineHandler handler ) throws CleartoolException {
+        String cmd = getCommandLine();
+
+        try {
+            Cleartool.stream( cmd, root, handler );
+        } catch( AbnormalProcessTerminationException e ) {
+            throw new CleartoolException( "Unable to run " + getCommand(), e );
+        }
+    }
+
+    /**
+     * Stream the output into a list, so it is only held once
+     */
+    protected List<String> streamToList() throws CleartoolException {
+        final List<String> lines = new ArrayList<String>();
+        streamCommand( new LineHandler() {
+            @Override
+            public boolean handle( String line ) {
+                lines.add( line );
+                return true;
+            }
+        } );
+        return lines;
+    }
+
     public abstract RT execute() throws CleartoolException;
 
+    /**
+     * Execute the command asynchronously, without a deadline
+     * @see #executeAsync(long, TimeUnit)
+     */
+    public CompletableFuture<RT> executeAsync() {
+        return executeAsync( 0, TimeUnit.MILLISECONDS );
+    }
+
+    /**
+     * Execute the command asynchronously. If the deadline passes or the future is cancelled, the cleartool process is killed.
+     * @param timeout The max time, counted from now. Zero or less means no deadline.
+     * @return The future result of {@link #execute()}, failing with the {@link CleartoolException} if the command fails
+     */
+    public CompletableFuture<RT> executeAsync( long timeout, TimeUnit unit ) {
+        return CleartoolAsync.submit( new Callable<RT>() {
+            @Override
+            public RT call() throws CleartoolException {
+                return execute();
+            }
+        }, timeout, unit );
+    }
+
     public abstract String getCommandLine();
 
     public abstract String getCommand();
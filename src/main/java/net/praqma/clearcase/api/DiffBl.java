@@ -3,7 +3,7 @@ package net.praqma.clearcase.api;
 import edu.umd.cs.findbugs.annotations.*;
 import net.praqma.clearcase.exceptions.CleartoolException;
 import net.praqma.clearcase.interfaces.Diffable;
-import net.praqma.util.execute.CmdResult;
+import net.praqma.clearcase.cleartool.LineHandler;
 
 import java.io.File;
 import java.util.List;
@@ -60,9 +60,16 @@ public class DiffBl extends Command<List<String>> {
 
     @Override
     public List<String> execute() throws CleartoolException {
-        CmdResult result = runCommand();
+        return streamToList();
+    }
 
-        return result.stdoutList;
+    /**
+     * Diff, giving each line to the handler as it is produced
+     * @param handler Receives the lines
+     * @throws CleartoolException Thrown on ClearCase errors
+     */
+    public void execute( LineHandler handler ) throws CleartoolException {
+        streamCommand( handler );
     }
 
     @Override
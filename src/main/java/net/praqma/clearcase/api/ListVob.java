@@ -2,7 +2,7 @@ package net.praqma.clearcase.api;
 
 import edu.umd.cs.findbugs.annotations.*;
 import net.praqma.clearcase.exceptions.CleartoolException;
-import net.praqma.util.execute.CmdResult;
+import net.praqma.clearcase.cleartool.LineHandler;
 
 import java.io.File;
 import java.util.ArrayList;
@@ -126,9 +126,16 @@ public class ListVob extends Command<List<String>> {
 
     @Override
     public List<String> execute() throws CleartoolException {
-        CmdResult result = runCommand();
-        return result.stdoutList;
+        return streamToList();
+    }
 
+    /**
+     * List, giving each line to the handler as it is produced. A recursive listing of a large VOB is not held in memory.
+     * @param handler Receives the lines
+     * @throws CleartoolException Thrown on ClearCase errors
+     */
+    public void execute( LineHandler handler ) throws CleartoolException {
+        streamCommand( handler );
     }
 
     @Override
@@ -1,6 +1,7 @@
 package net.praqma.clearcase.api;
 
 import edu.umd.cs.findbugs.annotations.*;
+import net.praqma.clearcase.cleartool.ExistenceCache;
 import net.praqma.clearcase.exceptions.CleartoolException;
 import net.praqma.util.execute.CmdResult;
 
@@ -68,7 +69,11 @@ public class RemoveView extends Command<Boolean> {
 
     @Override
     public Boolean execute() throws CleartoolException {
-        runCommand();
+        try {
+            runCommand();
+        } finally {
+            ExistenceCache.changed( ExistenceCache.Kind.VIEW, tag != null && !tag.isEmpty() ? tag : null );
+        }
         return true;
     }
 
@@ -1,6 +1,10 @@
 package net.praqma.clearcase.changeset;
 
+import java.io.Externalizable;
 import java.io.File;
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
@@ -15,12 +19,13 @@ import net.praqma.clearcase.Cool;
 import net.praqma.clearcase.cleartool.Cleartool;
 import net.praqma.clearcase.exceptions.CleartoolException;
 import net.praqma.clearcase.exceptions.UnableToLoadEntityException;
+import net.praqma.clearcase.ucm.entities.EntityCodec;
 import net.praqma.clearcase.ucm.entities.Version;
 import net.praqma.clearcase.ucm.entities.Version.Status;
 import net.praqma.util.execute.AbnormalProcessTerminationException;
 
 @SuppressFBWarnings("")
-public class ChangeSet2 extends Cool {
+public class ChangeSet2 extends Cool implements Externalizable {
 	
 	private static final Pattern rx_diffAction = Pattern.compile( "^-{5}\\[\\s*(.+)\\s*\\]-{5}$" );
 	private static final Pattern rx_diffFileName = Pattern.compile( "^..(.*)\\s+--\\d+.*$" );
@@ -178,6 +183,54 @@ public class ChangeSet2 extends Cool {
 		}
 	}
 
+	/**
+	 * Write the change set in the format of {@link EntityCodec}
+	 */
+	@Override
+	public void writeExternal( ObjectOutput out ) throws IOException {
+		EntityCodec.Output codec = new EntityCodec.Output( out );
+		codec.writeFile( viewContext );
+		codec.writeEntities( changeset2 );
+
+		codec.writeVarInt( changesetVersions.size() );
+		for( Map.Entry<File, List<Version>> entry : changesetVersions.entrySet() ) {
+			codec.writeFile( entry.getKey() );
+			codec.writeEntities( entry.getValue() );
+		}
+
+		codec.writeVarInt( elements.size() );
+		for( ChangeSetElement2 element : elements.values() ) {
+			codec.writeFile( element.getFile() );
+			codec.writeFile( element.getOldFile() );
+			codec.writeEnum( element.getStatus() );
+			codec.writeEntity( element.getOrigin() );
+		}
+	}
+
+	@Override
+	public void readExternal( ObjectInput in ) throws IOException {
+		EntityCodec.Input codec = new EntityCodec.Input( in );
+		viewContext = codec.readFile();
+		codec.readEntities( Version.class, changeset2 );
+
+		int size = codec.readVarInt();
+		for( int i = 0 ; i < size ; i++ ) {
+			File file = codec.readFile();
+			List<Version> versions = new ArrayList<Version>();
+			codec.readEntities( Version.class, versions );
+			changesetVersions.put( file, versions );
+		}
+
+		size = codec.readVarInt();
+		for( int i = 0 ; i < size ; i++ ) {
+			ChangeSetElement2 element = new ChangeSetElement2( codec.readFile(), null );
+			element.setOldFile( codec.readFile() );
+			element.setStatus( codec.readEnum( Status.class ) );
+			element.setOrigin( codec.readEntity( Version.class ) );
+			elements.put( element.getFile(), element );
+		}
+	}
+
 	public String getPreviousVersion( String version, File viewContext ) throws CleartoolException {
 		String cmd = "describe -fmt %PVn " + version;
 
@@ -29,6 +29,10 @@ public class ChangeSetElement2 {
 		return origin;
 	}
 
+	public void setOrigin( Version origin ) {
+		this.origin = origin;
+	}
+
 	public File getFile() {
 		return file;
 	}
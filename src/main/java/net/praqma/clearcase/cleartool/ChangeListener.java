@@ -0,0 +1,17 @@
+package net.praqma.clearcase.cleartool;
+
+import java.util.List;
+
+/**
+ * Told about cleartool commands changing ClearCase, so state derived from earlier commands can be dropped.<br>
+ * Which commands change what is decided by {@link CleartoolCache#getChanges(String)}.
+ */
+public interface ChangeListener {
+
+    /**
+     * Called after a changing command has run, whether it failed or not
+     * @param cmd The command, or null if the executor was replaced
+     * @param selectors The fully qualified names of the changed entities, or null if anything may have changed
+     */
+    public void changed( String cmd, List<String> selectors );
+}
@@ -0,0 +1,152 @@
+package net.praqma.clearcase.cleartool;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import edu.umd.cs.findbugs.annotations.*;
+
+/**
+ * Writes ended spans as Chrome trace events, which can be opened in chrome://tracing or Perfetto.<br>
+ * Each span is a complete event (<code>"ph":"X"</code>) on the thread that ran it, with timestamps in microseconds since the epoch.
+ * The events are written as they end, so children come before their parents. The viewer nests them by time.
+ */
+@SuppressFBWarnings("")
+public class ChromeTraceWriter implements Tracer.Listener, Closeable {
+
+    private static final Logger logger = Logger.getLogger( ChromeTraceWriter.class.getName() );
+
+    /**
+     * Microseconds since the epoch at {@link System#nanoTime()} zero
+     */
+    private static final long origin = System.currentTimeMillis() * 1000 - System.nanoTime() / 1000;
+
+    private final Writer out;
+    private final long pid;
+    private final Set<Long> threads = new HashSet<Long>();
+    private boolean first = true;
+    private boolean closed = false;
+
+    public ChromeTraceWriter( File file ) throws IOException {
+        this( new BufferedWriter( new OutputStreamWriter( new FileOutputStream( file ), Charset.forName( "UTF-8" ) ) ) );
+    }
+
+    public ChromeTraceWriter( Writer out ) throws IOException {
+        this.out = out;
+        this.pid = 1;
+        out.write( "[" );
+    }
+
+    @Override
+    public synchronized void spanEnded( Span span ) {
+        if( closed ) {
+            return;
+        }
+
+        try {
+            if( threads.add( span.getThreadId() ) ) {
+                event( "{\"name\":\"thread_name\",\"ph\":\"M\",\"pid\":" + pid + ",\"tid\":" + span.getThreadId() + ",\"args\":{\"name\":" + quote( span.getThreadName() ) + "}}" );
+            }
+
+            StringBuilder sb = new StringBuilder();
+            sb.append( "{\"name\":" ).append( quote( span.getName() ) );
+            sb.append( ",\"cat\":" ).append( quote( span.getCategory() ) );
+            sb.append( ",\"ph\":\"X\"" );
+            sb.append( ",\"ts\":" ).append( origin + span.getStart() / 1000 );
+            sb.append( ",\"dur\":" ).append( Math.max( 0, span.getDuration() / 1000 ) );
+            sb.append( ",\"pid\":" ).append( pid );
+            sb.append( ",\"tid\":" ).append( span.getThreadId() );
+            sb.append( ",\"args\":{\"id\":" ).append( span.getId() );
+            if( span.getParent() != null ) {
+                sb.append( ",\"parent\":" ).append( span.getParent().getId() );
+            }
+            if( span.getDetail() != null ) {
+                sb.append( ",\"detail\":" ).append( quote( span.getDetail() ) );
+            }
+            if( span.getError() != null ) {
+                sb.append( ",\"error\":" ).append( quote( span.getError() ) );
+            }
+            sb.append( "}}" );
+
+            event( sb.toString() );
+        } catch( IOException e ) {
+            logger.log( Level.WARNING, "Unable to write trace event, tracing stopped", e );
+            closed = true;
+        }
+    }
+
+    private void event( String json ) throws IOException {
+        if( !first ) {
+            out.write( "," );
+        }
+        out.write( "\n" );
+        out.write( json );
+        first = false;
+    }
+
+    static String quote( String s ) {
+        StringBuilder sb = new StringBuilder( s.length() + 2 );
+        sb.append( '"' );
+        for( int i = 0 ; i < s.length() ; i++ ) {
+            char c = s.charAt( i );
+            switch( c ) {
+                case '"':
+                    sb.append( "\\\"" );
+                    break;
+                case '\\':
+                    sb.append( "\\\\" );
+                    break;
+                case '\n':
+                    sb.append( "\\n" );
+                    break;
+                case '\r':
+                    sb.append( "\\r" );
+                    break;
+                case '\t':
+                    sb.append( "\\t" );
+                    break;
+                default:
+                    if( c < 0x20 ) {
+                        sb.append( String.format( "\\u%04x", (int) c ) );
+                    } else {
+                        sb.append( c );
+                    }
+            }
+        }
+        sb.append( '"' );
+        return sb.toString();
+    }
+
+    public synchronized void flush() throws IOException {
+        if( !closed ) {
+            out.flush();
+        }
+    }
+
+    /**
+     * End the event array and close the output
+     */
+    @Override
+    public synchronized void close() {
+        if( closed ) {
+            return;
+        }
+
+        closed = true;
+        try {
+            out.write( "\n]\n" );
+            out.close();
+        } catch( IOException e ) {
+            logger.log( Level.WARNING, "Unable to close the trace", e );
+        }
+    }
+}
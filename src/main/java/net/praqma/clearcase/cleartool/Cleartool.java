@@ -1,6 +1,15 @@
 package net.praqma.clearcase.cleartool;
 
+import java.io.Closeable;
 import java.io.File;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.ServiceLoader;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -11,9 +20,7 @@ import net.praqma.clearcase.exceptions.NoLicenseServerException;
 import net.praqma.clearcase.exceptions.NoLicensesException;
 import net.praqma.util.execute.AbnormalProcessTerminationException;
 import net.praqma.util.execute.CmdResult;
-import net.praqma.util.execute.CommandLine;
 import net.praqma.util.execute.CommandLineException;
-import net.praqma.util.execute.CommandLineInterface;
 
 /**
  * The Cleartool proxy class All calls to cleartool, should be done through
@@ -28,12 +35,312 @@ import net.praqma.util.execute.CommandLineInterface;
 public abstract class Cleartool extends Cool {
 
     
-	private static CommandLineInterface cli = null;
     private static final Logger log = Logger.getLogger(Cleartool.class.getName());
     private static String prefix = "["+Cleartool.class.getSimpleName()+"]"; 
 
+	/**
+	 * The cleartool executable, can be set with the system property <code>cool.cleartool.executable</code>
+	 */
+	private static String executable = System.getProperty( "cool.cleartool.executable", "cleartool" );
+
+	/**
+	 * Run the commands in long lived cleartool processes, enabled with the system property <code>cool.cleartool.session</code>
+	 */
+	private static boolean sessionMode = Boolean.getBoolean( "cool.cleartool.session" );
+
+	/**
+	 * The max number of concurrent cleartool commands in session mode, can be set with the system property <code>cool.cleartool.session.poolsize</code>
+	 */
+	private static int poolSize = Integer.getInteger( "cool.cleartool.session.poolsize", 4 );
+
+	private static final CleartoolMetrics metrics = new CleartoolMetrics();
+
+	/**
+	 * Cache idempotent queries, enabled with the system property <code>cool.cleartool.cache</code>.
+	 * The size and time to live can be set with <code>cool.cleartool.cache.size</code> and <code>cool.cleartool.cache.ttl</code>, in milliseconds.
+	 */
+	private static volatile CleartoolCache cache = Boolean.getBoolean( "cool.cleartool.cache" ) ?
+			new CleartoolCache( Integer.getInteger( "cool.cleartool.cache.size", 1000 ), Long.getLong( "cool.cleartool.cache.ttl", CleartoolCache.defaultTtl ), metrics ) : null;
+
+	/**
+	 * Coalesce identical read-only commands running at the same time, disabled with the system property <code>cool.cleartool.coalesce=false</code>
+	 */
+	private static volatile CleartoolCoalescer coalescer = Boolean.parseBoolean( System.getProperty( "cool.cleartool.coalesce", "true" ) ) ? new CleartoolCoalescer( metrics ) : null;
+
+	/**
+	 * Cap the concurrent commands at a license budget and retry license errors, enabled with the system property <code>cool.cleartool.licenses</code>
+	 * giving the budget. The number of retries can be set with <code>cool.cleartool.licenses.retries</code>.
+	 */
+	private static volatile LicenseGovernor licenseGovernor = Integer.getInteger( "cool.cleartool.licenses", 0 ) > 0 ?
+			new LicenseGovernor( Integer.getInteger( "cool.cleartool.licenses" ), Integer.getInteger( "cool.cleartool.licenses.retries", LicenseGovernor.defaultRetries ),
+					LicenseGovernor.defaultBaseDelay, LicenseGovernor.defaultMaxDelay, metrics ) : null;
+
+	/**
+	 * Per sub command statistics, published through JMX unless the system property <code>cool.cleartool.jmx</code> is false
+	 */
+	private static final CleartoolStatistics statistics = new CleartoolStatistics( metrics );
+
+	private static final List<ChangeListener> changeListeners = new CopyOnWriteArrayList<ChangeListener>();
+
+	private static volatile CommandExecutor executor = null;
+
+	/**
+	 * True if the executor is not one of the built-in
+	 */
+	private static boolean customExecutor = false;
+	private static boolean shutdownHook = false;
+	private static final Object executorLock = new Object();
+
 	static {
-		cli = CommandLine.getInstance();
+		if( Boolean.parseBoolean( System.getProperty( "cool.cleartool.jmx", "true" ) ) ) {
+			statistics.register();
+		}
+
+		CommandExecutor e = findExecutor();
+		if( e != null ) {
+			log.config( prefix + " Using the cleartool executor " + e.getClass().getName() );
+			setExecutor( e );
+		} else {
+			rebuild();
+		}
+	}
+
+	private static CommandExecutor findExecutor() {
+		String name = System.getProperty( "cool.cleartool.executor" );
+		if( name != null && name.length() > 0 ) {
+			try {
+				return (CommandExecutor) Class.forName( name ).newInstance();
+			} catch( Exception e ) {
+				log.log( Level.SEVERE, prefix + " Unable to create the cleartool executor " + name + ", using the default", e );
+				return null;
+			}
+		}
+
+		Iterator<CommandExecutor> it = ServiceLoader.load( CommandExecutor.class ).iterator();
+		if( it.hasNext() ) {
+			return it.next();
+		}
+
+		return null;
+	}
+
+	/**
+	 * Replace the built-in executor after a configuration change
+	 */
+	private static void rebuild() {
+		synchronized( executorLock ) {
+			if( customExecutor && executor != null ) {
+				return;
+			}
+
+			CommandExecutor e = sessionMode ? new SessionCommandExecutor( executable, poolSize, metrics ) : new ForkingCommandExecutor( executable, metrics );
+			replace( e );
+			customExecutor = false;
+		}
+	}
+
+	private static void replace( CommandExecutor e ) {
+		CommandExecutor old = executor;
+		executor = e;
+		close( old );
+
+		if( e instanceof Closeable && !shutdownHook ) {
+			Runtime.getRuntime().addShutdownHook( new Thread() {
+				@Override
+				public void run() {
+					close( executor );
+				}
+			} );
+			shutdownHook = true;
+		}
+	}
+
+	private static void close( CommandExecutor e ) {
+		if( e instanceof Closeable ) {
+			try {
+				( (Closeable) e ).close();
+			} catch( IOException ex ) {
+				log.log( Level.WARNING, prefix + " Unable to close the cleartool executor", ex );
+			}
+		}
+	}
+
+	/**
+	 * Use a specific executor for all cleartool commands. Setting null reverts to the built-in executor.
+	 */
+	public static void setExecutor( CommandExecutor executor ) {
+		synchronized( executorLock ) {
+			if( executor == null ) {
+				customExecutor = false;
+				rebuild();
+			} else {
+				replace( executor );
+				customExecutor = true;
+			}
+		}
+
+		/* Whatever was learned from the previous executor may not hold */
+		fireChanged( null, null );
+	}
+
+	public static CommandExecutor getExecutor() {
+		return executor;
+	}
+
+	public static String getExecutable() {
+		return executable;
+	}
+
+	public static void setExecutable( String executable ) {
+		synchronized( executorLock ) {
+			Cleartool.executable = executable;
+			rebuild();
+		}
+	}
+
+	public static boolean isSessionMode() {
+		return sessionMode;
+	}
+
+	/**
+	 * Enable or disable the session mode. The current sessions are closed.
+	 */
+	public static void setSessionMode( boolean sessionMode ) {
+		synchronized( executorLock ) {
+			Cleartool.sessionMode = sessionMode;
+			rebuild();
+		}
+	}
+
+	public static int getSessionPoolSize() {
+		return poolSize;
+	}
+
+	/**
+	 * Set the max number of concurrent cleartool commands in session mode. The current sessions are closed.
+	 */
+	public static void setSessionPoolSize( int poolSize ) {
+		if( poolSize < 1 ) {
+			throw new IllegalArgumentException( "The pool size must be positive" );
+		}
+
+		synchronized( executorLock ) {
+			Cleartool.poolSize = poolSize;
+			rebuild();
+		}
+	}
+
+	/**
+	 * Close the pooled cleartool sessions, if any. New sessions are opened when needed.
+	 */
+	public static void closeSession() {
+		CommandExecutor e = executor;
+		if( e instanceof SessionCommandExecutor ) {
+			synchronized( executorLock ) {
+				if( executor == e ) {
+					rebuild();
+				}
+			}
+		}
+	}
+
+	/**
+	 * Be told about commands changing ClearCase
+	 */
+	public static void addChangeListener( ChangeListener listener ) {
+		changeListeners.add( listener );
+	}
+
+	public static void removeChangeListener( ChangeListener listener ) {
+		changeListeners.remove( listener );
+	}
+
+	private static void changed( String cmd ) {
+		if( changeListeners.isEmpty() ) {
+			return;
+		}
+
+		List<String> selectors = CleartoolCache.getChanges( cmd );
+		if( selectors == null || !selectors.isEmpty() ) {
+			fireChanged( cmd, selectors );
+		}
+	}
+
+	private static void fireChanged( String cmd, List<String> selectors ) {
+		for( ChangeListener listener : changeListeners ) {
+			try {
+				listener.changed( cmd, selectors );
+			} catch( RuntimeException e ) {
+				log.log( Level.WARNING, prefix + " Change listener failed", e );
+			}
+		}
+	}
+
+	/**
+	 * @return The result cache, null if caching is disabled
+	 */
+	public static CleartoolCache getCache() {
+		return cache;
+	}
+
+	/**
+	 * Use a result cache, null disables caching
+	 */
+	public static void setCache( CleartoolCache cache ) {
+		Cleartool.cache = cache;
+	}
+
+	/**
+	 * Enable caching with the default rules and the given size, or disable it
+	 */
+	public static void setCacheEnabled( boolean enabled ) {
+		setCache( enabled ? new CleartoolCache( Integer.getInteger( "cool.cleartool.cache.size", 1000 ), Long.getLong( "cool.cleartool.cache.ttl", CleartoolCache.defaultTtl ), metrics ) : null );
+	}
+
+	public static boolean isCoalescing() {
+		return coalescer != null;
+	}
+
+	/**
+	 * Enable or disable coalescing of identical read-only commands running at the same time
+	 */
+	public static void setCoalescing( boolean coalescing ) {
+		coalescer = coalescing ? new CleartoolCoalescer( metrics ) : null;
+	}
+
+	public static LicenseGovernor getLicenseGovernor() {
+		return licenseGovernor;
+	}
+
+	/**
+	 * Use a license governor, null to run the commands ungoverned
+	 */
+	public static void setLicenseGovernor( LicenseGovernor governor ) {
+		licenseGovernor = governor;
+	}
+
+	/**
+	 * Use a license governor with the default retries
+	 * @param budget The max number of concurrent commands, zero or less to run the commands ungoverned
+	 */
+	public static void setLicenseBudget( int budget ) {
+		licenseGovernor = budget > 0 ? new LicenseGovernor( budget, metrics ) : null;
+	}
+
+	public static CleartoolStatistics getStatistics() {
+		return statistics;
+	}
+
+	public static CleartoolMetrics getMetrics() {
+		return metrics;
+	}
+
+	/**
+	 * @return The current session pool, null if not in session mode
+	 */
+	public static CleartoolSessionPool getSessionPool() {
+		CommandExecutor e = executor;
+		return e instanceof SessionCommandExecutor ? ( (SessionCommandExecutor) e ).getPool() : null;
 	}
 
 	public static CmdResult run( String cmd ) throws CommandLineException, AbnormalProcessTerminationException {
@@ -52,25 +359,202 @@ public abstract class Cleartool extends Cool {
 		return _run( cmd, dir, merge, ignore );
 	}
 	
-	private static CmdResult _run( String cmd, File dir, boolean merge, boolean ignore ) throws CommandLineException, AbnormalProcessTerminationException {
+	private static CmdResult _run( final String cmd, final File dir, final boolean merge, final boolean ignore ) throws CommandLineException, AbnormalProcessTerminationException {
+		CleartoolCache c = cache;
+		long generation = 0;
+
+		/* A failed command is not told apart from a successful one when ignoring errors, so those are not cached */
+		if( c != null && !ignore ) {
+			CmdResult cached = c.get( cmd, dir, merge );
+			if( cached != null ) {
+				return cached;
+			}
+			generation = c.getGeneration();
+		}
+
+		Span span = Tracer.start( CleartoolStatistics.getSubcommand( cmd ), Tracer.categoryCleartool, cmd );
+		long start = System.nanoTime();
+		CmdResult result = null;
 		try {
-			return cli.run( "cleartool " + cmd, dir, merge, ignore );
-		} catch( AbnormalProcessTerminationException e ) {			
-			/* Validate exit errors */
-			if( e.getMessage().contains( "cleartool: command not found" ) ) {
-				throw new CleartoolNotInstalledException( "Cleartool not installed", e );
-			} else if( e.getMessage().contains( "FLEXnet Licensing error:-15,570" )) {
-				throw new NoLicenseServerException( "No license server available", e );
-			} else if( e.getMessage().contains( "FLEXnet Licensing error:-18,147" )) {
-				throw new NoLicensesException( "No licenses available", e );
-			} else if( e.getMessage().contains( "There are no valid licenses in the NT registry for ClearCase" )) {
-				throw new NoLicensesException( "No licenses available", e );
-			} else {
-                log.log(Level.SEVERE, "Unspecified cleartool error", e);
-				throw e;
+			result = govern( cmd, new Callable<CmdResult>() {
+				@Override
+				public CmdResult call() {
+					try {
+						return execute( cmd, dir, merge, ignore );
+					} catch( AbnormalProcessTerminationException e ) {
+						throw validate( e );
+					}
+				}
+			} );
+			if( c != null && !ignore ) {
+				c.put( cmd, dir, merge, result, generation );
 			}
+			return result;
+		} catch( RuntimeException e ) {
+			span.failed( e );
+			throw e;
+		} finally {
+			statistics.record( cmd, System.nanoTime() - start, result != null ? result.stdoutBuffer.length() : 0, result == null );
+			span.end();
+
+			/* Also failed commands may have changed something */
+			if( c != null ) {
+				c.invalidate( cmd );
+			}
+			changed( cmd );
+		}
+	}
+
+	/**
+	 * Run a command asynchronously, merging standard error
+	 * @see #runAsync(String, File, boolean, boolean, long, TimeUnit)
+	 */
+	public static CompletableFuture<CmdResult> runAsync( String cmd, File dir, long timeout, TimeUnit unit ) {
+		return runAsync( cmd, dir, true, false, timeout, unit );
+	}
+
+	/**
+	 * Run a command asynchronously. The future fails with a {@link java.util.concurrent.TimeoutException} if the command
+	 * does not finish before the deadline, and the cleartool process is killed. Cancelling the future kills the process too.<br>
+	 * Asynchronous commands are cached, but not coalesced, so cancelling one never fails another.
+	 * @param timeout The max time, counted from now. Zero or less means no deadline.
+	 * @return The future result
+	 */
+	public static CompletableFuture<CmdResult> runAsync( final String cmd, final File dir, final boolean merge, final boolean ignore, long timeout, TimeUnit unit ) {
+		return CleartoolAsync.submit( new Callable<CmdResult>() {
+			@Override
+			public CmdResult call() {
+				return _run( cmd, dir, merge, ignore );
+			}
+		}, timeout, unit );
+	}
+
+	/**
+	 * Validate exit errors
+	 * @return The exception to throw
+	 */
+	private static AbnormalProcessTerminationException validate( AbnormalProcessTerminationException e ) {
+		if( e.getMessage().contains( "cleartool: command not found" ) ) {
+			return new CleartoolNotInstalledException( "Cleartool not installed", e );
+		} else if( e.getMessage().contains( "FLEXnet Licensing error:-15,570" )) {
+			return new NoLicenseServerException( "No license server available", e );
+		} else if( e.getMessage().contains( "FLEXnet Licensing error:-18,147" )) {
+			return new NoLicensesException( "No licenses available", e );
+		} else if( e.getMessage().contains( "There are no valid licenses in the NT registry for ClearCase" )) {
+			return new NoLicensesException( "No licenses available", e );
+		} else {
+            log.log(Level.SEVERE, "Unspecified cleartool error", e);
+			return e;
+		}
+	}
+
+	/**
+	 * Run a command, giving the lines of standard output to the handler as they are produced, without keeping the output in memory.
+	 * Standard error is not merged.
+	 * @see #stream(String, File, boolean, boolean, LineHandler)
+	 */
+	public static void stream( String cmd, File dir, LineHandler handler ) throws CommandLineException, AbnormalProcessTerminationException {
+		stream( cmd, dir, false, false, handler );
+	}
+
+	/**
+	 * Run a command, giving each line of output to the handler as it is produced, without keeping the output in memory.
+	 * The command is not read while the handler works, so a slow handler slows down cleartool.
+	 * Streamed commands are not cached or coalesced.
+	 * If the executor cannot stream, the command is run normally and the lines are handed over afterwards.
+	 * @param handler Receives the lines, and may stop the reading by returning false
+	 */
+	public static void stream( final String cmd, final File dir, final boolean merge, final boolean ignore, LineHandler handler ) throws CommandLineException, AbnormalProcessTerminationException {
+		final CountingHandler counting = new CountingHandler( handler );
+		Span span = Tracer.start( CleartoolStatistics.getSubcommand( cmd ), Tracer.categoryCleartool, cmd );
+		long start = System.nanoTime();
+		boolean ok = false;
+		try {
+			govern( cmd, new Callable<Void>() {
+				@Override
+				public Void call() {
+					CommandExecutor e = executor;
+					try {
+						if( e instanceof StreamingCommandExecutor ) {
+							( (StreamingCommandExecutor) e ).stream( cmd, dir, merge, ignore, counting );
+						} else {
+							for( String line : e.run( cmd, dir, merge, ignore ).stdoutList ) {
+								if( !counting.handle( line ) ) {
+									break;
+								}
+							}
+						}
+					} catch( AbnormalProcessTerminationException ex ) {
+						throw validate( ex );
+					}
+					return null;
+				}
+			} );
+			ok = true;
+		} catch( RuntimeException e ) {
+			span.failed( e );
+			throw e;
+		} finally {
+			statistics.record( cmd, System.nanoTime() - start, counting.chars, !ok );
+			span.end();
+			CleartoolCache c = cache;
+			if( c != null ) {
+				c.invalidate( cmd );
+			}
+			changed( cmd );
 		}
 	}
+
+	/**
+	 * Counts the characters handed over
+	 */
+	private static class CountingHandler implements LineHandler {
+		private final LineHandler handler;
+		private long chars = 0;
+
+		CountingHandler( LineHandler handler ) {
+			this.handler = handler;
+		}
+
+		@Override
+		public boolean handle( String line ) {
+			chars += line.length() + 1;
+			return handler.handle( line );
+		}
+	}
+
+	/**
+	 * Run the command within the license budget, if any
+	 */
+	private static <T> T govern( String cmd, Callable<T> command ) throws CommandLineException, AbnormalProcessTerminationException {
+		LicenseGovernor g = licenseGovernor;
+		if( g != null ) {
+			return g.run( cmd, command );
+		}
+
+		try {
+			return command.call();
+		} catch( RuntimeException e ) {
+			throw e;
+		} catch( Exception e ) {
+			throw new CommandLineException( "Unable to run " + cmd, e );
+		}
+	}
+
+	private static CmdResult execute( final String cmd, final File dir, final boolean merge, final boolean ignore ) {
+		CleartoolCoalescer co = coalescer;
+		/* A cancellable command must not share its process with others */
+		if( co == null || CommandCancellation.current() != null ) {
+			return executor.run( cmd, dir, merge, ignore );
+		}
+
+		return co.run( cmd, dir, merge, ignore, new Callable<CmdResult>() {
+			@Override
+			public CmdResult call() {
+				return executor.run( cmd, dir, merge, ignore );
+			}
+		} );
+	}
 }
 
 /*
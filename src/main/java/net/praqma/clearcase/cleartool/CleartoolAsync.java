@@ -0,0 +1,157 @@
+package net.praqma.clearcase.cleartool;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+import java.util.logging.Logger;
+
+import edu.umd.cs.findbugs.annotations.*;
+
+/**
+ * Runs cleartool work on a pool of daemon threads, optionally with a deadline.<br>
+ * When the deadline passes or the future is cancelled, the future fails at once and the cleartool process serving the work is killed,
+ * see {@link CommandCancellation}. The deadline is counted from the submission, so time spent waiting for a thread counts.<br>
+ * The number of threads can be set with the system property <code>cool.cleartool.async.threads</code>, the default is 8.
+ */
+@SuppressFBWarnings("")
+public class CleartoolAsync {
+
+    private static final Logger logger = Logger.getLogger( CleartoolAsync.class.getName() );
+
+    private static final int threads = Integer.getInteger( "cool.cleartool.async.threads", 8 );
+
+    private static final ThreadPoolExecutor workers = new ThreadPoolExecutor( threads, threads, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), new DaemonFactory( "cleartool-async" ) );
+    private static final ScheduledThreadPoolExecutor deadlines = new ScheduledThreadPoolExecutor( 1, new DaemonFactory( "cleartool-deadline" ) );
+
+    static {
+        workers.allowCoreThreadTimeOut( true );
+        deadlines.setRemoveOnCancelPolicy( true );
+    }
+
+    /**
+     * Set in the threads running submitted work
+     */
+    private static final ThreadLocal<Boolean> inWorker = new ThreadLocal<Boolean>();
+
+    private CleartoolAsync() {
+    }
+
+    /**
+     * Work submitted from a worker must not be waited for by that worker, as it may wait for a thread held by itself
+     * @return True if the current thread runs submitted work
+     */
+    public static boolean isWorker() {
+        return inWorker.get() != null;
+    }
+
+    /**
+     * Run the work asynchronously
+     * @param task The work, typically running one or more cleartool commands
+     * @param timeout The max time before the future fails with a {@link TimeoutException}. Zero or less means no deadline.
+     * @param unit The unit of the timeout
+     * @return The future result
+     */
+    public static <T> CompletableFuture<T> submit( final Callable<T> task, final long timeout, final TimeUnit unit ) {
+        final CompletableFuture<T> future = new CompletableFuture<T>();
+        final CommandCancellation cancellation = new CommandCancellation();
+        final Span parent = Tracer.current();
+
+        workers.execute( new Runnable() {
+            @Override
+            public void run() {
+                /* Timed out or cancelled while queued */
+                if( future.isDone() ) {
+                    return;
+                }
+
+                T result = null;
+                Throwable failure = null;
+                cancellation.bind();
+                inWorker.set( Boolean.TRUE );
+                /* Traced under the span submitting the work */
+                Span previous = Tracer.resume( parent );
+                try {
+                    result = task.call();
+                } catch( Throwable e ) {
+                    failure = e;
+                } finally {
+                    Tracer.resume( previous );
+                    inWorker.remove();
+                    /* Unbound before completing, so completing cannot cancel this thread */
+                    cancellation.unbind();
+                }
+
+                if( failure != null ) {
+                    future.completeExceptionally( failure );
+                } else {
+                    future.complete( result );
+                }
+            }
+        } );
+
+        final ScheduledFuture<?> deadline;
+        if( timeout > 0 ) {
+            deadline = deadlines.schedule( new Runnable() {
+                @Override
+                public void run() {
+                    future.completeExceptionally( new TimeoutException( "Timed out after " + unit.toMillis( timeout ) + "ms" ) );
+                }
+            }, timeout, unit );
+        } else {
+            deadline = null;
+        }
+
+        future.whenComplete( new BiConsumer<T, Throwable>() {
+            @Override
+            public void accept( T result, Throwable failure ) {
+                if( deadline != null ) {
+                    deadline.cancel( false );
+                }
+
+                if( failure instanceof TimeoutException || failure instanceof CancellationException ) {
+                    logger.fine( "Aborting cleartool work: " + failure.getMessage() );
+                    if( failure instanceof TimeoutException ) {
+                        Cleartool.getMetrics().timedOut();
+                    } else {
+                        Cleartool.getMetrics().cancelled();
+                    }
+                    cancellation.cancel();
+                }
+            }
+        } );
+
+        return future;
+    }
+
+    /**
+     * @return The number of submitted tasks not yet started
+     */
+    public static int getQueueLength() {
+        return workers.getQueue().size();
+    }
+
+    private static class DaemonFactory implements ThreadFactory {
+        private final String name;
+        private final AtomicInteger count = new AtomicInteger();
+
+        DaemonFactory( String name ) {
+            this.name = name;
+        }
+
+        @Override
+        public Thread newThread( Runnable r ) {
+            Thread t = new Thread( r, name + "-" + count.incrementAndGet() );
+            t.setDaemon( true );
+            return t;
+        }
+    }
+}
@@ -0,0 +1,275 @@
+package net.praqma.clearcase.cleartool;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import edu.umd.cs.findbugs.annotations.*;
+import net.praqma.util.execute.CmdResult;
+
+/**
+ * A read-through cache for idempotent cleartool queries.<br>
+ * Only commands matching a rule are cached, each rule having its own time to live.
+ * Entries are keyed on the command, the working directory and whether standard error was merged.
+ * The cache holds at most <code>maxSize</code> entries, evicting the least recently used.<br>
+ * Mutating commands invalidate the entries mentioning the entities they change.
+ * If the changed entities cannot be told from the command line, everything is invalidated.
+ */
+@SuppressFBWarnings("")
+public class CleartoolCache {
+
+    private static final Logger logger = Logger.getLogger( CleartoolCache.class.getName() );
+
+    /**
+     * An entity selector, e.g. stream:int@\pvob
+     */
+    private static final Pattern rx_selector = Pattern.compile( "[\\w.-]+:[^\\s\"]+@[\\\\/][^\\s\"]+" );
+
+    /**
+     * Mutating commands naming the entities they change
+     */
+    private static final Pattern rx_mutatesNamed = Pattern.compile( "^(chstream|chbl|chproject|chactivity|chfolder|mkhlink|rmhlink|mkattr|rmattr|lock|unlock)\\s" );
+
+    /**
+     * Mutating commands with side effects on entities not on the command line, e.g. the latest baselines of a stream
+     */
+    private static final Pattern rx_mutatesAll = Pattern.compile( "^(mkbl|rmbl|deliver|rebase|mkstream|rmstream|mkproject|rmproject|mkcomp|rmcomp|mkfolder)(\\s|$)" );
+    private static final Pattern rx_statusQuery = Pattern.compile( "^(deliver|rebase)\\s.*-status(\\s|$)" );
+
+    public static final long defaultTtl = TimeUnit.SECONDS.toMillis( 30 );
+    public static final long immutableTtl = TimeUnit.MINUTES.toMillis( 10 );
+
+    private static class Rule {
+        private final Pattern pattern;
+        private final long ttl;
+
+        private Rule( Pattern pattern, long ttl ) {
+            this.pattern = pattern;
+            this.ttl = ttl;
+        }
+    }
+
+    private static class Entry {
+        private final CmdResult result;
+        private final long expires;
+
+        private Entry( CmdResult result, long expires ) {
+            this.result = result;
+            this.expires = expires;
+        }
+    }
+
+    private final List<Rule> rules = new ArrayList<Rule>();
+    private final int maxSize;
+    private final CleartoolMetrics metrics;
+    private final LinkedHashMap<String, Entry> entries;
+
+    /**
+     * Incremented on every invalidation, so a query racing with a change is not cached
+     */
+    private long generation = 0;
+
+    public CleartoolCache( int maxSize, CleartoolMetrics metrics ) {
+        this( maxSize, defaultTtl, metrics );
+    }
+
+    /**
+     * Create a cache with the default rules
+     * @param maxSize The max number of entries
+     * @param ttl The time to live in milliseconds of results that may change
+     * @param metrics Hits, misses and invalidations are counted here
+     */
+    public CleartoolCache( final int maxSize, long ttl, CleartoolMetrics metrics ) {
+        this.maxSize = maxSize;
+        this.metrics = metrics;
+        this.entries = new LinkedHashMap<String, Entry>( 16, 0.75f, true ) {
+            @Override
+            protected boolean removeEldestEntry( Map.Entry<String, Entry> eldest ) {
+                return size() > CleartoolCache.this.maxSize;
+            }
+        };
+
+        addRule( "^desc(ribe)? -fmt %\\[rec_bls\\]p ", ttl );
+        addRule( "^desc(ribe)? -fmt %\\[dstreams\\]CXp ", ttl );
+        addRule( "^desc(ribe)? -fmt %\\[latest_bls\\]Xp ", ttl );
+        addRule( "^desc(ribe)? -fmt %\\[(mod_comps|non_mod_comps)\\]p ", ttl );
+        addRule( "^lsproject -s -invob ", ttl );
+        addRule( "^lsstream -s -in ", ttl );
+
+        /* Components do not change name or root */
+        addRule( "^desc(ribe)? -fmt %\\[(name|root_dir)\\]p component:", immutableTtl );
+    }
+
+    /**
+     * Cache the results of commands matching the regular expression
+     * @param regex Matched against the command, without the leading "cleartool"
+     * @param ttl Time to live in milliseconds
+     */
+    public synchronized CleartoolCache addRule( String regex, long ttl ) {
+        rules.add( new Rule( Pattern.compile( regex ), ttl ) );
+        return this;
+    }
+
+    public synchronized void clearRules() {
+        rules.clear();
+    }
+
+    /**
+     * @return The time to live for the command, or -1 if it is not cacheable
+     */
+    public synchronized long getTtl( String cmd ) {
+        for( Rule rule : rules ) {
+            if( rule.pattern.matcher( cmd ).find() ) {
+                return rule.ttl;
+            }
+        }
+        return -1;
+    }
+
+    public boolean isCacheable( String cmd ) {
+        return getTtl( cmd ) >= 0;
+    }
+
+    private static String key( String cmd, File dir, boolean merge ) {
+        return cmd + "\n" + ( dir != null ? dir.getAbsolutePath() : "" ) + "\n" + merge;
+    }
+
+    /**
+     * @return A copy of the cached result, or null if not cached
+     */
+    public CmdResult get( String cmd, File dir, boolean merge ) {
+        if( !isCacheable( cmd ) ) {
+            return null;
+        }
+
+        synchronized( this ) {
+            String key = key( cmd, dir, merge );
+            Entry e = entries.get( key );
+            if( e != null && e.expires - System.nanoTime() > 0 ) {
+                metrics.cacheHit();
+                return copy( e.result );
+            }
+
+            if( e != null ) {
+                entries.remove( key );
+            }
+        }
+
+        metrics.cacheMiss();
+        return null;
+    }
+
+    /**
+     * @return The current generation, to be given to {@link #put(String, File, boolean, CmdResult, long)}
+     */
+    public synchronized long getGeneration() {
+        return generation;
+    }
+
+    /**
+     * Cache the result of a command, if it is cacheable and nothing was invalidated since the command was started
+     * @param generation The generation when the command was started
+     */
+    public void put( String cmd, File dir, boolean merge, CmdResult result, long generation ) {
+        long ttl = getTtl( cmd );
+        if( ttl < 0 ) {
+            return;
+        }
+
+        synchronized( this ) {
+            if( generation != this.generation ) {
+                return;
+            }
+
+            entries.put( key( cmd, dir, merge ), new Entry( copy( result ), System.nanoTime() + TimeUnit.MILLISECONDS.toNanos( ttl ) ) );
+        }
+    }
+
+    /**
+     * Invalidate the entries affected by a command. Non-mutating commands do nothing.
+     */
+    public void invalidate( String cmd ) {
+        List<String> selectors = getChanges( cmd );
+        if( selectors == null ) {
+            logger.fine( "Invalidating all, because of " + cmd );
+            invalidateAll();
+        } else if( !selectors.isEmpty() ) {
+            invalidateSelectors( selectors );
+        }
+    }
+
+    /**
+     * Tell the entities a command may change
+     * @return The fully qualified names of the changed entities, an empty list if the command does not change anything,
+     * or null if anything may have changed
+     */
+    public static List<String> getChanges( String cmd ) {
+        if( rx_statusQuery.matcher( cmd ).find() ) {
+            return Collections.emptyList();
+        }
+
+        if( rx_mutatesAll.matcher( cmd ).find() ) {
+            return null;
+        }
+
+        if( rx_mutatesNamed.matcher( cmd ).find() ) {
+            List<String> selectors = new ArrayList<String>();
+            Matcher m = rx_selector.matcher( cmd );
+            while( m.find() ) {
+                selectors.add( m.group() );
+            }
+
+            return selectors.isEmpty() ? null : selectors;
+        }
+
+        return Collections.emptyList();
+    }
+
+    /**
+     * Invalidate the entries mentioning any of the entities
+     * @param selectors Fully qualified entity names, e.g. stream:int@\pvob
+     */
+    public synchronized void invalidateSelectors( List<String> selectors ) {
+        generation++;
+        Iterator<String> it = entries.keySet().iterator();
+        while( it.hasNext() ) {
+            String key = it.next();
+            for( String selector : selectors ) {
+                if( key.contains( selector ) ) {
+                    it.remove();
+                    metrics.cacheInvalidation( 1 );
+                    break;
+                }
+            }
+        }
+    }
+
+    public synchronized void invalidateAll() {
+        generation++;
+        metrics.cacheInvalidation( entries.size() );
+        entries.clear();
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    static CmdResult copy( CmdResult result ) {
+        CmdResult copy = new CmdResult();
+        copy.stdoutBuffer.append( result.stdoutBuffer );
+        copy.stdoutList.addAll( result.stdoutList );
+        return copy;
+    }
+}
@@ -0,0 +1,90 @@
+package net.praqma.clearcase.cleartool;
+
+import java.io.File;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.regex.Pattern;
+
+import edu.umd.cs.findbugs.annotations.*;
+import net.praqma.util.execute.CmdResult;
+import net.praqma.util.execute.CommandLineException;
+
+/**
+ * Coalesces identical read-only commands running at the same time.<br>
+ * The first caller runs the command, callers arriving while it runs wait for its result instead of starting another cleartool.
+ * Every caller gets its own copy of the result, and failures are thrown to all of them.
+ */
+@SuppressFBWarnings("")
+public class CleartoolCoalescer {
+
+    /**
+     * Commands without side effects
+     */
+    private static final Pattern rx_readOnly = Pattern.compile( "^(desc|describe|ls\\w+|diffbl|catcs|pwv)\\s" );
+
+    private final ConcurrentHashMap<String, FutureTask<CmdResult>> inflight = new ConcurrentHashMap<String, FutureTask<CmdResult>>();
+    private final CleartoolMetrics metrics;
+
+    public CleartoolCoalescer( CleartoolMetrics metrics ) {
+        this.metrics = metrics;
+    }
+
+    public static boolean isReadOnly( String cmd ) {
+        return rx_readOnly.matcher( cmd ).find() && !cmd.contains( " -status" );
+    }
+
+    /**
+     * Run the command, or wait for an identical command already running
+     * @param runner Runs the command, if needed
+     */
+    public CmdResult run( String cmd, File dir, boolean merge, boolean ignore, Callable<CmdResult> runner ) {
+        if( !isReadOnly( cmd ) ) {
+            try {
+                return runner.call();
+            } catch( RuntimeException e ) {
+                throw e;
+            } catch( Exception e ) {
+                throw new CommandLineException( "Unable to run " + cmd, e );
+            }
+        }
+
+        String key = cmd + "\n" + ( dir != null ? dir.getAbsolutePath() : "" ) + "\n" + merge + "\n" + ignore;
+        FutureTask<CmdResult> task = new FutureTask<CmdResult>( runner );
+        FutureTask<CmdResult> running = inflight.putIfAbsent( key, task );
+
+        if( running == null ) {
+            try {
+                task.run();
+            } finally {
+                inflight.remove( key, task );
+            }
+            running = task;
+        } else {
+            metrics.coalesced();
+        }
+
+        try {
+            return CleartoolCache.copy( running.get() );
+        } catch( InterruptedException e ) {
+            Thread.currentThread().interrupt();
+            throw new CommandLineException( "Interrupted while waiting for " + cmd );
+        } catch( ExecutionException e ) {
+            Throwable cause = e.getCause();
+            if( cause instanceof RuntimeException ) {
+                throw (RuntimeException) cause;
+            } else if( cause instanceof Error ) {
+                throw (Error) cause;
+            }
+            throw new CommandLineException( "Unable to run " + cmd, cause );
+        }
+    }
+
+    /**
+     * @return The number of distinct commands running
+     */
+    public int getInflight() {
+        return inflight.size();
+    }
+}
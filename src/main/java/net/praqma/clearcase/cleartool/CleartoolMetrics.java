@@ -0,0 +1,250 @@
+package net.praqma.clearcase.cleartool;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import edu.umd.cs.findbugs.annotations.*;
+
+/**
+ * Counters for the cleartool layer. All counters are cumulative since the last {@link #reset()}.
+ */
+@SuppressFBWarnings("")
+public class CleartoolMetrics {
+
+    private final AtomicLong forked = new AtomicLong();
+    private final AtomicLong sessionCommands = new AtomicLong();
+    private final AtomicLong sessionsOpened = new AtomicLong();
+    private final AtomicLong sessionFailures = new AtomicLong();
+    private final AtomicLong affinityHits = new AtomicLong();
+
+    private final AtomicLong cacheHits = new AtomicLong();
+    private final AtomicLong cacheMisses = new AtomicLong();
+    private final AtomicLong cacheInvalidations = new AtomicLong();
+    private final AtomicLong coalesced = new AtomicLong();
+
+    private final AtomicLong timedOut = new AtomicLong();
+    private final AtomicLong cancelled = new AtomicLong();
+
+    private final AtomicLong licenseRetries = new AtomicLong();
+    private final AtomicLong licensed = new AtomicLong();
+    private final AtomicLong licenseWaitNanos = new AtomicLong();
+    private final AtomicLong maxLicenseWaitNanos = new AtomicLong();
+
+    private final AtomicLong queued = new AtomicLong();
+    private final AtomicLong queueWaitNanos = new AtomicLong();
+    private final AtomicLong maxQueueWaitNanos = new AtomicLong();
+
+    void forked() {
+        forked.incrementAndGet();
+    }
+
+    void sessionCommand() {
+        sessionCommands.incrementAndGet();
+    }
+
+    void sessionOpened() {
+        sessionsOpened.incrementAndGet();
+    }
+
+    void sessionFailed() {
+        sessionFailures.incrementAndGet();
+    }
+
+    void affinityHit() {
+        affinityHits.incrementAndGet();
+    }
+
+    void cacheHit() {
+        cacheHits.incrementAndGet();
+    }
+
+    void cacheMiss() {
+        cacheMisses.incrementAndGet();
+    }
+
+    void cacheInvalidation( long entries ) {
+        cacheInvalidations.addAndGet( entries );
+    }
+
+    void coalesced() {
+        coalesced.incrementAndGet();
+    }
+
+    void timedOut() {
+        timedOut.incrementAndGet();
+    }
+
+    void cancelled() {
+        cancelled.incrementAndGet();
+    }
+
+    void licenseRetry() {
+        licenseRetries.incrementAndGet();
+    }
+
+    void licenseWait( long nanos ) {
+        licensed.incrementAndGet();
+        licenseWaitNanos.addAndGet( nanos );
+        max( maxLicenseWaitNanos, nanos );
+    }
+
+    void queueWait( long nanos ) {
+        queued.incrementAndGet();
+        queueWaitNanos.addAndGet( nanos );
+        max( maxQueueWaitNanos, nanos );
+    }
+
+    private static void max( AtomicLong max, long value ) {
+        long current;
+        do {
+            current = max.get();
+        } while( value > current && !max.compareAndSet( current, value ) );
+    }
+
+    /**
+     * @return The number of commands run in a forked cleartool
+     */
+    public long getForked() {
+        return forked.get();
+    }
+
+    /**
+     * @return The number of commands run in a cleartool session
+     */
+    public long getSessionCommands() {
+        return sessionCommands.get();
+    }
+
+    public long getSessionsOpened() {
+        return sessionsOpened.get();
+    }
+
+    public long getSessionFailures() {
+        return sessionFailures.get();
+    }
+
+    /**
+     * @return The number of times a session already in the requested working directory was reused
+     */
+    public long getAffinityHits() {
+        return affinityHits.get();
+    }
+
+    public long getCacheHits() {
+        return cacheHits.get();
+    }
+
+    /**
+     * @return The number of cacheable commands not found in the cache
+     */
+    public long getCacheMisses() {
+        return cacheMisses.get();
+    }
+
+    /**
+     * @return The number of cache entries removed because of mutating commands
+     */
+    public long getCacheInvalidations() {
+        return cacheInvalidations.get();
+    }
+
+    /**
+     * @return The number of commands that waited for an identical command instead of running cleartool
+     */
+    public long getCoalesced() {
+        return coalesced.get();
+    }
+
+    /**
+     * @return The number of asynchronous commands aborted because their deadline passed
+     */
+    public long getTimedOut() {
+        return timedOut.get();
+    }
+
+    /**
+     * @return The number of asynchronous commands cancelled by the caller
+     */
+    public long getCancelled() {
+        return cancelled.get();
+    }
+
+    /**
+     * @return The number of commands retried because of license errors
+     */
+    public long getLicenseRetries() {
+        return licenseRetries.get();
+    }
+
+    /**
+     * @return The number of commands that acquired a license permit
+     */
+    public long getLicensed() {
+        return licensed.get();
+    }
+
+    public long getLicenseWaitMillis() {
+        return licenseWaitNanos.get() / 1000000;
+    }
+
+    public long getMaxLicenseWaitMillis() {
+        return maxLicenseWaitNanos.get() / 1000000;
+    }
+
+    public double getAverageLicenseWaitMillis() {
+        long l = licensed.get();
+        return l == 0 ? 0.0 : (double) licenseWaitNanos.get() / l / 1000000.0;
+    }
+
+    /**
+     * @return The number of commands that acquired a slot in the session pool
+     */
+    public long getQueued() {
+        return queued.get();
+    }
+
+    public long getQueueWaitMillis() {
+        return queueWaitNanos.get() / 1000000;
+    }
+
+    public long getMaxQueueWaitMillis() {
+        return maxQueueWaitNanos.get() / 1000000;
+    }
+
+    public double getAverageQueueWaitMillis() {
+        long q = queued.get();
+        return q == 0 ? 0.0 : (double) queueWaitNanos.get() / q / 1000000.0;
+    }
+
+    public void reset() {
+        forked.set( 0 );
+        sessionCommands.set( 0 );
+        sessionsOpened.set( 0 );
+        sessionFailures.set( 0 );
+        affinityHits.set( 0 );
+        cacheHits.set( 0 );
+        cacheMisses.set( 0 );
+        cacheInvalidations.set( 0 );
+        coalesced.set( 0 );
+        timedOut.set( 0 );
+        cancelled.set( 0 );
+        licenseRetries.set( 0 );
+        licensed.set( 0 );
+        licenseWaitNanos.set( 0 );
+        maxLicenseWaitNanos.set( 0 );
+        queued.set( 0 );
+        queueWaitNanos.set( 0 );
+        maxQueueWaitNanos.set( 0 );
+    }
+
+    @Override
+    public String toString() {
+        return "Forked: " + getForked() + ", session commands: " + getSessionCommands() + ", sessions opened: " + getSessionsOpened() +
+                ", session failures: " + getSessionFailures() + ", affinity hits: " + getAffinityHits() +
+                ", cache hits: " + getCacheHits() + ", cache misses: " + getCacheMisses() + ", cache invalidations: " + getCacheInvalidations() +
+                ", coalesced: " + getCoalesced() + ", timed out: " + getTimedOut() + ", cancelled: " + getCancelled() +
+                ", license retries: " + getLicenseRetries() + ", avg license wait: " + String.format( "%.3f", getAverageLicenseWaitMillis() ) + "ms" +
+                ", max license wait: " + getMaxLicenseWaitMillis() + "ms" +
+                ", queued: " + getQueued() + ", avg queue wait: " + String.format( "%.3f", getAverageQueueWaitMillis() ) + "ms" +
+                ", max queue wait: " + getMaxQueueWaitMillis() + "ms";
+    }
+}
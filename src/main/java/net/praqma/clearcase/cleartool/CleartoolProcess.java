@@ -0,0 +1,223 @@
+package net.praqma.clearcase.cleartool;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import edu.umd.cs.findbugs.annotations.*;
+import net.praqma.clearcase.Cool;
+import net.praqma.util.execute.AbnormalProcessTerminationException;
+import net.praqma.util.execute.CmdResult;
+import net.praqma.util.execute.CommandLineException;
+import net.praqma.util.execute.CommandLineInterface.OperatingSystem;
+
+/**
+ * Runs a command line in a shell, handing over the output line by line.<br>
+ * Standard output is read on the calling thread, which gives back-pressure: cleartool blocks when the handler is slow.
+ * Standard error is drained by a separate thread, keeping only the last part for the error message.
+ */
+@SuppressFBWarnings("")
+public class CleartoolProcess {
+
+    private static final Logger logger = Logger.getLogger( CleartoolProcess.class.getName() );
+
+    /**
+     * The number of output lines kept for the error message when merging
+     */
+    private static final int tailLines = 50;
+    private static final int maxErrorLength = 64 * 1024;
+
+    private CleartoolProcess() {
+    }
+
+    /**
+     * @return The command line wrapped in the shell of the platform
+     */
+    public static List<String> shell( String commandLine ) {
+        List<String> command = new ArrayList<String>();
+        if( Cool.getOS().equals( OperatingSystem.WINDOWS ) ) {
+            command.add( "cmd.exe" );
+            command.add( "/C" );
+            command.add( commandLine );
+        } else {
+            command.add( "sh" );
+            command.add( "-c" );
+            /* The shell is replaced by cleartool, so destroying the process kills cleartool and closes its output */
+            command.add( "exec " + commandLine );
+        }
+        return command;
+    }
+
+    /**
+     * Start the command line in a shell
+     */
+    public static Process start( String commandLine, File dir, boolean merge ) {
+        ProcessBuilder pb = new ProcessBuilder( shell( commandLine ) );
+        if( dir != null ) {
+            pb.directory( dir );
+        }
+        pb.redirectErrorStream( merge );
+
+        try {
+            return pb.start();
+        } catch( IOException e ) {
+            throw new CommandLineException( "Unable to start " + commandLine, e );
+        }
+    }
+
+    /**
+     * Run the command line, giving each line of output to the handler
+     * @param cmd The command, used in error messages
+     */
+    public static void run( String commandLine, String cmd, File dir, boolean merge, boolean ignore, LineHandler handler ) {
+        CommandCancellation cancellation = CommandCancellation.current();
+        Process process = start( commandLine, dir, merge );
+        if( cancellation != null && !cancellation.attach( process ) ) {
+            CommandCancellation.check( cmd, null );
+        }
+
+        try {
+            drain( process, cmd, merge, ignore, handler );
+        } catch( RuntimeException e ) {
+            /* A destroyed process looks like a failing command */
+            CommandCancellation.check( cmd, e );
+            throw e;
+        } finally {
+            if( cancellation != null ) {
+                cancellation.detach( process );
+            }
+        }
+
+        CommandCancellation.check( cmd, null );
+    }
+
+    /**
+     * Run the command line, collecting the output
+     */
+    public static CmdResult run( String commandLine, String cmd, File dir, boolean merge, boolean ignore ) {
+        final CmdResult result = new CmdResult();
+        run( commandLine, cmd, dir, merge, ignore, new LineHandler() {
+            @Override
+            public boolean handle( String line ) {
+                if( result.stdoutList.size() > 0 ) {
+                    result.stdoutBuffer.append( Cool.linesep );
+                }
+                result.stdoutBuffer.append( line );
+                result.stdoutList.add( line );
+                return true;
+            }
+        } );
+        return result;
+    }
+
+    /**
+     * Read the output of a started process. The process is destroyed if the reading is stopped or fails.
+     */
+    public static void drain( Process process, String cmd, boolean merge, boolean ignore, LineHandler handler ) {
+        ErrorReader errors = null;
+        if( !merge ) {
+            errors = new ErrorReader( process.getErrorStream() );
+            errors.start();
+        }
+
+        boolean done = false;
+        try {
+            process.getOutputStream().close();
+
+            LinkedList<String> tail = new LinkedList<String>();
+            BufferedReader reader = new BufferedReader( new InputStreamReader( process.getInputStream(), Charset.defaultCharset() ) );
+            String line;
+            while( ( line = reader.readLine() ) != null ) {
+                if( merge ) {
+                    tail.add( line );
+                    if( tail.size() > tailLines ) {
+                        tail.removeFirst();
+                    }
+                }
+
+                if( !handler.handle( line ) ) {
+                    logger.finer( "The handler stopped reading " + cmd );
+                    return;
+                }
+            }
+
+            int exitValue = process.waitFor();
+            if( errors != null ) {
+                errors.join();
+            }
+
+            if( exitValue != 0 && !ignore ) {
+                String message = errors != null ? errors.getText() : join( tail );
+                throw new AbnormalProcessTerminationException( message.length() > 0 ? message : "Exit code " + exitValue, cmd );
+            }
+
+            done = true;
+        } catch( IOException e ) {
+            throw new CommandLineException( "Unable to read the output of " + cmd, e );
+        } catch( InterruptedException e ) {
+            Thread.currentThread().interrupt();
+            throw new CommandLineException( "Interrupted while running " + cmd, e );
+        } finally {
+            if( !done ) {
+                process.destroy();
+            }
+        }
+    }
+
+    private static String join( List<String> lines ) {
+        StringBuilder sb = new StringBuilder();
+        for( String line : lines ) {
+            if( sb.length() > 0 ) {
+                sb.append( Cool.linesep );
+            }
+            sb.append( line );
+        }
+        return sb.toString();
+    }
+
+    private static class ErrorReader extends Thread {
+        private final InputStream stream;
+        private final StringBuilder text = new StringBuilder();
+
+        ErrorReader( InputStream stream ) {
+            this.stream = stream;
+            setName( "cleartool-stderr" );
+            setDaemon( true );
+        }
+
+        @Override
+        public void run() {
+            try {
+                BufferedReader reader = new BufferedReader( new InputStreamReader( stream, Charset.defaultCharset() ) );
+                String line;
+                while( ( line = reader.readLine() ) != null ) {
+                    synchronized( text ) {
+                        if( text.length() > 0 ) {
+                            text.append( Cool.linesep );
+                        }
+                        text.append( line );
+                        if( text.length() > maxErrorLength ) {
+                            text.delete( 0, text.length() - maxErrorLength );
+                        }
+                    }
+                }
+            } catch( IOException e ) {
+                logger.log( Level.FINE, "Error stream closed", e );
+            }
+        }
+
+        String getText() {
+            synchronized( text ) {
+                return text.toString();
+            }
+        }
+    }
+}
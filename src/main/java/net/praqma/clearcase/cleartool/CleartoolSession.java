@@ -0,0 +1,529 @@
+package net.praqma.clearcase.cleartool;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import edu.umd.cs.findbugs.annotations.*;
+import net.praqma.clearcase.Cool;
+import net.praqma.util.execute.AbnormalProcessTerminationException;
+import net.praqma.util.execute.CmdResult;
+import net.praqma.util.execute.CommandLineInterface.OperatingSystem;
+
+/**
+ * A long lived, interactive cleartool process.<br>
+ * The process is started with <code>-status</code>, which makes cleartool print
+ * <code>Command N returned status S</code> after each command.
+ * As the output of a command may contain that line too, e.g. in a comment, each command is followed by
+ * <code>shell echo</code> of a nonce, and a reply ends at the nonce. The last status line before it is the status of the command.
+ * Standard error is collected by a separate thread, so a chatty command cannot block the process.
+ */
+@SuppressFBWarnings("")
+public class CleartoolSession {
+
+    private static final Logger logger = Logger.getLogger( CleartoolSession.class.getName() );
+
+    private static final Pattern rx_status = Pattern.compile( "^(.*?)Command \\d+ returned status (\\d+)\\s*$" );
+    private static final String prompt = "cleartool> ";
+
+    /**
+     * Characters the shell would interpret on the fork path. Commands containing them are not sent to a session,
+     * because the interactive cleartool parser would see them verbatim.
+     */
+    private static final String unixShellCharacters = "\\$`'|&;<>()*?~";
+    private static final String windowsShellCharacters = "^&|<>";
+
+    /**
+     * Max time to wait for standard error to settle after the status line has been read
+     */
+    private static final long errorSettleTime = 50;
+    private static final long errorPollInterval = 100000;
+
+    /**
+     * The number of streamed output lines kept for the error message
+     */
+    private static final int tailLines = 50;
+
+    private final Process process;
+    private final BufferedWriter stdin;
+    private final BufferedReader stdout;
+    private final ErrorGobbler stderr;
+
+    private File currentDirectory;
+    private boolean broken = false;
+    private int commands = 0;
+
+    private CleartoolSession( Process process ) {
+        this.process = process;
+        Charset charset = Charset.defaultCharset();
+        this.stdin = new BufferedWriter( new OutputStreamWriter( process.getOutputStream(), charset ) );
+        this.stdout = new BufferedReader( new InputStreamReader( process.getInputStream(), charset ) );
+        this.stderr = new ErrorGobbler( new InputStreamReader( process.getErrorStream(), charset ) );
+        this.stderr.start();
+    }
+
+    /**
+     * Start a new interactive cleartool process.
+     * @param executable The cleartool executable, possibly with leading arguments
+     * @return A new {@link CleartoolSession}
+     * @throws IOException Thrown when the process cannot be started
+     */
+    public static CleartoolSession open( String executable ) throws IOException {
+        List<String> command = new ArrayList<String>( Arrays.asList( executable.trim().split( "\\s+" ) ) );
+        command.add( "-status" );
+
+        logger.fine( "Starting cleartool session: " + command );
+        ProcessBuilder pb = new ProcessBuilder( command );
+        return new CleartoolSession( pb.start() );
+    }
+
+    /**
+     * Determine whether a command can be sent to an interactive session verbatim.
+     * @param cmd The cleartool command, without the leading "cleartool"
+     * @return True if the shell would not alter the command on the fork path
+     */
+    public static boolean isSessionSafe( String cmd ) {
+        if( cmd.indexOf( '\n' ) >= 0 || cmd.indexOf( '\r' ) >= 0 ) {
+            return false;
+        }
+
+        String illegal = Cool.getOS().equals( OperatingSystem.WINDOWS ) ? windowsShellCharacters : unixShellCharacters;
+        for( int i = 0 ; i < cmd.length() ; i++ ) {
+            if( illegal.indexOf( cmd.charAt( i ) ) >= 0 ) {
+                return false;
+            }
+        }
+
+        /* Only balanced double quotes */
+        int quotes = 0;
+        for( int i = 0 ; i < cmd.length() ; i++ ) {
+            if( cmd.charAt( i ) == '"' ) {
+                quotes++;
+            }
+        }
+
+        return quotes % 2 == 0;
+    }
+
+    /**
+     * Run a command in this session. The semantics of merge and ignore are the same as for the forked cleartool.
+     * When merging, standard error is appended after standard output.
+     *
+     * @param cmd The cleartool command, without the leading "cleartool"
+     * @param dir The working directory, null for the current
+     * @param merge Merge standard error into the result
+     * @param ignore Do not throw on a non zero status
+     * @return The {@link CmdResult}
+     * @throws IOException Thrown when the session is broken. The session cannot be used afterwards.
+     * A {@link CommandSentException} tells that the command may have run, a {@link ChangeDirectoryException} that the session is still usable.
+     * @throws AbnormalProcessTerminationException Thrown when the command returns a non zero status
+     */
+    public synchronized CmdResult run( String cmd, File dir, boolean merge, boolean ignore ) throws IOException {
+        if( broken ) {
+            throw new IOException( "The cleartool session is broken" );
+        }
+
+        /* Cancelling the command kills the session, which is then discarded by the pool */
+        CommandCancellation.check( cmd, null );
+        CommandCancellation cancellation = CommandCancellation.current();
+        if( cancellation != null ) {
+            cancellation.attach( process );
+        }
+
+        boolean sent = false;
+        try {
+            changeDirectory( dir );
+
+            /* From here on, the command may reach cleartool */
+            sent = true;
+            Reply reply = send( cmd, null );
+            /* Standard error is only of interest when merging or failing */
+            if( merge || ( reply.status != 0 && !ignore ) ) {
+                reply.errors = stderr.collect( errorSettleTime );
+            }
+
+            CmdResult result = new CmdResult();
+            for( String line : reply.output ) {
+                add( result, line );
+            }
+
+            if( merge ) {
+                for( String line : reply.errors ) {
+                    add( result, line );
+                }
+            }
+
+            if( reply.status != 0 && !ignore ) {
+                String message = reply.errors.isEmpty() ? result.stdoutBuffer.toString() : join( reply.errors );
+                throw new AbnormalProcessTerminationException( message, cmd );
+            }
+
+            return result;
+        } catch( ChangeDirectoryException e ) {
+            throw e;
+        } catch( IOException e ) {
+            broken = true;
+            throw sent ? new CommandSentException( cmd, e ) : e;
+        } catch( RuntimeException e ) {
+            if( e instanceof AbnormalProcessTerminationException ) {
+                throw e;
+            }
+            broken = true;
+            if( sent ) {
+                throw new CommandSentException( cmd, e );
+            }
+            throw e;
+        } finally {
+            if( cancellation != null ) {
+                cancellation.detach( process );
+            }
+        }
+    }
+
+    /**
+     * Run a command in this session, giving each line of output to the handler as it is read.
+     * When merging, standard error is given after standard output.
+     * If the handler stops the reading, the rest of the output is skipped and the status is not checked.
+     *
+     * @throws IOException Thrown when the session is broken. The session cannot be used afterwards.
+     * A {@link CommandSentException} tells that the command may have run, a {@link ChangeDirectoryException} that the session is still usable.
+     * @throws AbnormalProcessTerminationException Thrown when the command returns a non zero status
+     */
+    public synchronized void stream( String cmd, File dir, boolean merge, boolean ignore, LineHandler handler ) throws IOException {
+        if( broken ) {
+            throw new IOException( "The cleartool session is broken" );
+        }
+
+        /* Cancelling the command kills the session, which is then discarded by the pool */
+        CommandCancellation.check( cmd, null );
+        CommandCancellation cancellation = CommandCancellation.current();
+        if( cancellation != null ) {
+            cancellation.attach( process );
+        }
+
+        boolean sent = false;
+        try {
+            changeDirectory( dir );
+
+            /* From here on, the command may reach cleartool */
+            sent = true;
+            Reply reply = send( cmd, handler );
+            if( reply.stopped ) {
+                return;
+            }
+
+            if( merge || ( reply.status != 0 && !ignore ) ) {
+                reply.errors = stderr.collect( errorSettleTime );
+            }
+
+            if( merge ) {
+                for( String line : reply.errors ) {
+                    if( !handler.handle( line ) ) {
+                        return;
+                    }
+                }
+            }
+
+            if( reply.status != 0 && !ignore ) {
+                String message = reply.errors.isEmpty() ? join( reply.output ) : join( reply.errors );
+                throw new AbnormalProcessTerminationException( message, cmd );
+            }
+        } catch( ChangeDirectoryException e ) {
+            throw e;
+        } catch( IOException e ) {
+            broken = true;
+            throw sent ? new CommandSentException( cmd, e ) : e;
+        } catch( RuntimeException e ) {
+            /* A failing handler leaves the reply unread */
+            if( !( e instanceof AbnormalProcessTerminationException ) ) {
+                broken = true;
+            }
+            throw e;
+        } finally {
+            if( cancellation != null ) {
+                cancellation.detach( process );
+            }
+        }
+    }
+
+    /**
+     * @return The working directory used for a command run in dir
+     */
+    public static File getWorkingDirectory( File dir ) {
+        return dir != null ? dir.getAbsoluteFile() : new File( System.getProperty( "user.dir" ) );
+    }
+
+    /**
+     * @return The current working directory of the session, null if no command has been run yet
+     */
+    public synchronized File getCurrentDirectory() {
+        return currentDirectory;
+    }
+
+    private void changeDirectory( File dir ) throws IOException {
+        File target = getWorkingDirectory( dir );
+        if( target.equals( currentDirectory ) ) {
+            return;
+        }
+
+        Reply reply = send( "cd \"" + target.getPath() + "\"", null );
+        if( reply.status != 0 ) {
+            reply.errors = stderr.collect( errorSettleTime );
+            throw new ChangeDirectoryException( "Unable to change directory to " + target + ": " + join( reply.errors ) );
+        }
+
+        currentDirectory = target;
+    }
+
+    /**
+     * Send a command and read the reply up to its nonce
+     * @param handler If given, the output is handed over instead of collected, keeping only the last lines for error messages
+     */
+    private Reply send( String cmd, LineHandler handler ) throws IOException {
+        stderr.reset();
+
+        String nonce = "cool-" + UUID.randomUUID();
+        stdin.write( cmd );
+        stdin.newLine();
+        stdin.write( "shell echo " + nonce );
+        stdin.newLine();
+        stdin.flush();
+        commands++;
+
+        Reply reply = new Reply();
+        /* A status line is only known to end the output when the nonce follows it, until then it is held back */
+        String held = null;
+        int heldStatus = -1;
+        String line;
+        while( ( line = stdout.readLine() ) != null ) {
+            line = stripPrompt( line );
+            if( line.equals( nonce ) ) {
+                if( held == null ) {
+                    throw new IOException( "No status of " + cmd + " before the end of its reply" );
+                }
+                reply.status = heldStatus;
+                /* The status of the echo */
+                return readStatus( reply );
+            }
+
+            if( held != null ) {
+                output( reply, held, handler );
+                held = null;
+            }
+
+            Matcher m = rx_status.matcher( line );
+            if( m.find() ) {
+                /* Output not ending with a new line is printed in front of the status */
+                if( m.group( 1 ).length() > 0 ) {
+                    output( reply, m.group( 1 ), handler );
+                }
+                held = line.substring( m.group( 1 ).length() );
+                heldStatus = Integer.parseInt( m.group( 2 ) );
+            } else {
+                output( reply, line, handler );
+            }
+        }
+
+        throw new IOException( "The cleartool session ended unexpectedly" );
+    }
+
+    private Reply readStatus( Reply reply ) throws IOException {
+        String line;
+        while( ( line = stdout.readLine() ) != null ) {
+            if( rx_status.matcher( stripPrompt( line ) ).find() ) {
+                return reply;
+            }
+        }
+        throw new IOException( "The cleartool session ended unexpectedly" );
+    }
+
+    private static void output( Reply reply, String line, LineHandler handler ) {
+        if( handler == null ) {
+            reply.output.add( line );
+        } else if( !reply.stopped ) {
+            reply.output.add( line );
+            if( reply.output.size() > tailLines ) {
+                reply.output.remove( 0 );
+            }
+            /* The rest of the reply must still be read to keep the session in sync */
+            reply.stopped = !handler.handle( line );
+        }
+    }
+
+    private static String stripPrompt( String line ) {
+        while( line.startsWith( prompt ) ) {
+            line = line.substring( prompt.length() );
+        }
+        return line;
+    }
+
+    private static void add( CmdResult result, String line ) {
+        if( result.stdoutList.size() > 0 ) {
+            result.stdoutBuffer.append( Cool.linesep );
+        }
+        result.stdoutBuffer.append( line );
+        result.stdoutList.add( line );
+    }
+
+    private static String join( List<String> lines ) {
+        StringBuilder sb = new StringBuilder();
+        for( String line : lines ) {
+            if( sb.length() > 0 ) {
+                sb.append( Cool.linesep );
+            }
+            sb.append( line );
+        }
+        return sb.toString();
+    }
+
+    public synchronized boolean isAlive() {
+        if( broken ) {
+            return false;
+        }
+
+        try {
+            process.exitValue();
+            return false;
+        } catch( IllegalThreadStateException e ) {
+            return true;
+        }
+    }
+
+    /**
+     * @return The number of commands sent to this session, including directory changes
+     */
+    public synchronized int getCommandCount() {
+        return commands;
+    }
+
+    /**
+     * Quit the session. The process is destroyed if it does not exit by itself.
+     */
+    public synchronized void close() {
+        try {
+            stdin.write( "quit" );
+            stdin.newLine();
+            stdin.flush();
+        } catch( IOException e ) {
+            logger.log( Level.FINE, "Unable to quit cleartool session", e );
+        } finally {
+            broken = true;
+            process.destroy();
+        }
+    }
+
+    /**
+     * The session failed after the command was written to it, so the command may have run
+     */
+    public static class CommandSentException extends IOException {
+        public CommandSentException( String cmd, Throwable cause ) {
+            super( "The cleartool session failed after " + cmd + " was sent", cause );
+        }
+    }
+
+    /**
+     * The session could not change to the working directory of a command. The command was not sent, and the session is still usable.
+     */
+    public static class ChangeDirectoryException extends IOException {
+        public ChangeDirectoryException( String message ) {
+            super( message );
+        }
+    }
+
+    private static class Reply {
+        private int status = -1;
+        private boolean stopped = false;
+        private List<String> output = new ArrayList<String>();
+        private List<String> errors = new ArrayList<String>();
+    }
+
+    /**
+     * Reads standard error continuously, so the process never blocks on a full pipe.
+     */
+    private static class ErrorGobbler extends Thread {
+        private final Reader reader;
+        private final StringBuilder buffer = new StringBuilder();
+        private volatile boolean idle = true;
+
+        ErrorGobbler( Reader reader ) {
+            this.reader = reader;
+            setName( "cleartool-session-stderr" );
+            setDaemon( true );
+        }
+
+        @Override
+        public void run() {
+            char[] chunk = new char[4096];
+            try {
+                while( true ) {
+                    idle = true;
+                    int n = reader.read( chunk );
+                    idle = false;
+                    if( n < 0 ) {
+                        break;
+                    }
+                    synchronized( buffer ) {
+                        buffer.append( chunk, 0, n );
+                    }
+                }
+            } catch( IOException e ) {
+                logger.log( Level.FINE, "Cleartool session error stream closed", e );
+            } finally {
+                idle = true;
+            }
+        }
+
+        void reset() {
+            synchronized( buffer ) {
+                buffer.setLength( 0 );
+            }
+        }
+
+        /**
+         * Collect the error lines written so far. cleartool writes standard error before the status line,
+         * so we only have to wait for this thread to catch up, which is when it is idle and the buffer stops growing.
+         */
+        List<String> collect( long settle ) {
+            long deadline = System.currentTimeMillis() + settle;
+            int length = -1;
+            while( System.currentTimeMillis() < deadline ) {
+                int current;
+                synchronized( buffer ) {
+                    current = buffer.length();
+                }
+                if( idle && current == length ) {
+                    break;
+                }
+                length = current;
+                LockSupport.parkNanos( errorPollInterval );
+            }
+
+            List<String> lines = new ArrayList<String>();
+            synchronized( buffer ) {
+                for( String line : buffer.toString().split( "\\r?\\n" ) ) {
+                    line = stripPrompt( line );
+                    if( line.length() > 0 ) {
+                        lines.add( line );
+                    }
+                }
+                buffer.setLength( 0 );
+            }
+
+            return lines;
+        }
+    }
+}
@@ -0,0 +1,227 @@
+package net.praqma.clearcase.cleartool;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.concurrent.Semaphore;
+import java.util.logging.Logger;
+
+import edu.umd.cs.findbugs.annotations.*;
+import net.praqma.util.execute.CmdResult;
+import net.praqma.util.execute.CommandLineException;
+
+/**
+ * A bounded pool of {@link CleartoolSession}s.<br>
+ * At most <code>maxSize</code> commands run at the same time, callers beyond that are queued in arrival order.
+ * An idle session already in the requested working directory is preferred, because <code>run( cmd, dir )</code> depends on the view context.<br>
+ * The slots are reentrant. A thread already holding a slot, e.g. running a command from the {@link LineHandler} of a streamed command,
+ * does not wait for another one, see {@link #isHeldByCurrentThread()}.
+ */
+@SuppressFBWarnings("")
+public class CleartoolSessionPool {
+
+    private static final Logger logger = Logger.getLogger( CleartoolSessionPool.class.getName() );
+
+    private final String executable;
+    private final int maxSize;
+    private final Semaphore slots;
+    private final CleartoolMetrics metrics;
+
+    /**
+     * Idle sessions, least recently used first
+     */
+    private final LinkedList<CleartoolSession> idle = new LinkedList<CleartoolSession>();
+    private int size = 0;
+    private boolean closed = false;
+
+    /**
+     * The number of slots acquired by the thread, only the first takes one from the pool
+     */
+    private final ThreadLocal<int[]> held = new ThreadLocal<int[]>() {
+        @Override
+        protected int[] initialValue() {
+            return new int[1];
+        }
+    };
+
+    public CleartoolSessionPool( String executable, int maxSize, CleartoolMetrics metrics ) {
+        if( maxSize < 1 ) {
+            throw new IllegalArgumentException( "The pool size must be positive" );
+        }
+
+        this.executable = executable;
+        this.maxSize = maxSize;
+        this.slots = new Semaphore( maxSize, true );
+        this.metrics = metrics;
+    }
+
+    /**
+     * Wait for a slot in the pool. Every acquire must be followed by a {@link #release()}.
+     * @throws CommandLineException Thrown if interrupted while waiting
+     */
+    public void acquire() throws CommandLineException {
+        int[] count = held.get();
+        if( count[0] > 0 ) {
+            count[0]++;
+            return;
+        }
+
+        long start = System.nanoTime();
+        try {
+            slots.acquire();
+        } catch( InterruptedException e ) {
+            Thread.currentThread().interrupt();
+            throw new CommandLineException( "Interrupted while waiting for a cleartool session" );
+        }
+        metrics.queueWait( System.nanoTime() - start );
+        count[0]++;
+    }
+
+    public void release() {
+        int[] count = held.get();
+        if( --count[0] == 0 ) {
+            slots.release();
+        }
+    }
+
+    /**
+     * @return True if the thread holds a slot, so a session of the pool may be busy with a command of the thread
+     */
+    public boolean isHeldByCurrentThread() {
+        return held.get()[0] > 0;
+    }
+
+    /**
+     * Run a command in a pooled session. The caller must hold a slot, see {@link #acquire()}.
+     * @throws IOException Thrown if the session failed. The session is discarded, and the command may be retried elsewhere.
+     */
+    public CmdResult run( String cmd, File dir, boolean merge, boolean ignore ) throws IOException {
+        CleartoolSession session = borrow( CleartoolSession.getWorkingDirectory( dir ) );
+        boolean ok = false;
+        try {
+            CmdResult result = session.run( cmd, dir, merge, ignore );
+            metrics.sessionCommand();
+            ok = true;
+            return result;
+        } finally {
+            /* A failed command does not break the session, only IO errors do */
+            giveBack( session, ok || session.isAlive() );
+        }
+    }
+
+    /**
+     * Stream a command in a pooled session. The caller must hold a slot, see {@link #acquire()}.
+     * @throws IOException Thrown if the session failed. The session is discarded.
+     */
+    public void stream( String cmd, File dir, boolean merge, boolean ignore, LineHandler handler ) throws IOException {
+        CleartoolSession session = borrow( CleartoolSession.getWorkingDirectory( dir ) );
+        boolean ok = false;
+        try {
+            session.stream( cmd, dir, merge, ignore, handler );
+            metrics.sessionCommand();
+            ok = true;
+        } finally {
+            giveBack( session, ok || session.isAlive() );
+        }
+    }
+
+    private CleartoolSession borrow( File dir ) throws IOException {
+        synchronized( this ) {
+            if( closed ) {
+                throw new IOException( "The cleartool session pool is closed" );
+            }
+
+            /* Drop dead sessions */
+            Iterator<CleartoolSession> it = idle.iterator();
+            while( it.hasNext() ) {
+                CleartoolSession s = it.next();
+                if( !s.isAlive() ) {
+                    it.remove();
+                    size--;
+                }
+            }
+
+            /* Affinity, most recently used first */
+            Iterator<CleartoolSession> dit = idle.descendingIterator();
+            while( dit.hasNext() ) {
+                CleartoolSession s = dit.next();
+                if( dir.equals( s.getCurrentDirectory() ) ) {
+                    dit.remove();
+                    metrics.affinityHit();
+                    return s;
+                }
+            }
+
+            /* Reuse the least recently used, unless the pool can grow */
+            if( size >= maxSize && !idle.isEmpty() ) {
+                return idle.removeFirst();
+            }
+
+            size++;
+        }
+
+        try {
+            CleartoolSession session = CleartoolSession.open( executable );
+            metrics.sessionOpened();
+            logger.fine( "Opened cleartool session for " + dir );
+            return session;
+        } catch( IOException e ) {
+            synchronized( this ) {
+                size--;
+            }
+            throw e;
+        }
+    }
+
+    private void giveBack( CleartoolSession session, boolean healthy ) {
+        synchronized( this ) {
+            if( healthy && !closed ) {
+                idle.addLast( session );
+                return;
+            }
+            size--;
+        }
+
+        session.close();
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * @return The number of open sessions, idle or in use
+     */
+    public synchronized int getSize() {
+        return size;
+    }
+
+    public synchronized int getIdle() {
+        return idle.size();
+    }
+
+    /**
+     * @return An estimate of the number of callers waiting for a slot
+     */
+    public int getQueueLength() {
+        return slots.getQueueLength();
+    }
+
+    /**
+     * Close all idle sessions. Sessions in use are closed when given back.
+     */
+    public void close() {
+        LinkedList<CleartoolSession> sessions;
+        synchronized( this ) {
+            closed = true;
+            sessions = new LinkedList<CleartoolSession>( idle );
+            size -= idle.size();
+            idle.clear();
+        }
+
+        for( CleartoolSession session : sessions ) {
+            session.close();
+        }
+    }
+}
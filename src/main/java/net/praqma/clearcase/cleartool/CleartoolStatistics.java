@@ -0,0 +1,163 @@
+package net.praqma.clearcase.cleartool;
+
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import edu.umd.cs.findbugs.annotations.*;
+
+/**
+ * Count, errors, output and latency of the cleartool commands, per sub command.<br>
+ * The sub command is the first word of the command, <code>desc</code> is counted as <code>describe</code>.
+ */
+@SuppressFBWarnings("")
+public class CleartoolStatistics implements CleartoolStatisticsMXBean {
+
+    private static final Logger logger = Logger.getLogger( CleartoolStatistics.class.getName() );
+
+    public static final String objectName = "net.praqma.clearcase:type=Cleartool,name=Statistics";
+
+    private final ConcurrentHashMap<String, CommandStatistics> commands = new ConcurrentHashMap<String, CommandStatistics>();
+    private final CleartoolMetrics metrics;
+
+    public CleartoolStatistics( CleartoolMetrics metrics ) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * Record a cleartool command
+     * @param cmd The command, without the leading "cleartool"
+     * @param nanos The time spent
+     * @param output The number of characters of output
+     * @param error True if the command failed
+     */
+    public void record( String cmd, long nanos, long output, boolean error ) {
+        get( getSubcommand( cmd ) ).record( nanos, output, error );
+    }
+
+    public CommandStatistics get( String subcommand ) {
+        CommandStatistics s = commands.get( subcommand );
+        if( s == null ) {
+            CommandStatistics created = new CommandStatistics( subcommand );
+            s = commands.putIfAbsent( subcommand, created );
+            if( s == null ) {
+                s = created;
+            }
+        }
+        return s;
+    }
+
+    static String getSubcommand( String cmd ) {
+        String c = cmd.trim();
+        int i = 0;
+        while( i < c.length() && !Character.isWhitespace( c.charAt( i ) ) ) {
+            i++;
+        }
+
+        String sub = c.substring( 0, i );
+        return sub.equals( "desc" ) ? "describe" : sub;
+    }
+
+    /**
+     * @return A snapshot per sub command, the most time consuming first
+     */
+    public List<CommandStatistics.Snapshot> snapshot() {
+        List<CommandStatistics.Snapshot> list = new ArrayList<CommandStatistics.Snapshot>();
+        for( CommandStatistics s : commands.values() ) {
+            list.add( s.snapshot() );
+        }
+
+        Collections.sort( list, new Comparator<CommandStatistics.Snapshot>() {
+            @Override
+            public int compare( CommandStatistics.Snapshot s1, CommandStatistics.Snapshot s2 ) {
+                return Double.compare( s2.getTotalMillis(), s1.getTotalMillis() );
+            }
+        } );
+
+        return list;
+    }
+
+    @Override
+    public List<CommandStatistics.Snapshot> getCommands() {
+        return snapshot();
+    }
+
+    @Override
+    public long getTotalCount() {
+        long count = 0;
+        for( CommandStatistics s : commands.values() ) {
+            count += s.getLatency().getCount();
+        }
+        return count;
+    }
+
+    @Override
+    public long getTotalErrors() {
+        long errors = 0;
+        for( CommandStatistics s : commands.values() ) {
+            errors += s.getErrors();
+        }
+        return errors;
+    }
+
+    @Override
+    public String getMetrics() {
+        return metrics.toString();
+    }
+
+    @Override
+    public String getReport() {
+        StringBuilder sb = new StringBuilder();
+        sb.append( String.format( "%-16s %8s %6s %12s %12s %9s %9s %9s %9s", "command", "count", "errors", "output", "total ms", "p50 ms", "p95 ms", "p99 ms", "max ms" ) );
+        for( CommandStatistics.Snapshot s : snapshot() ) {
+            sb.append( System.getProperty( "line.separator" ) ).append( s );
+        }
+        return sb.toString();
+    }
+
+    @Override
+    public void reset() {
+        for( CommandStatistics s : commands.values() ) {
+            s.reset();
+        }
+    }
+
+    /**
+     * Register with the platform MBean server. Another copy of the library may have registered first, in which case nothing is done.
+     */
+    public void register() {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            server.registerMBean( this, new ObjectName( objectName ) );
+        } catch( InstanceAlreadyExistsException e ) {
+            logger.fine( "The cleartool statistics are already registered" );
+        } catch( Exception e ) {
+            logger.log( Level.WARNING, "Unable to register the cleartool statistics", e );
+        }
+    }
+
+    /**
+     * Print the statistics when the JVM exits
+     */
+    public void dumpOnExit( final PrintStream out ) {
+        Runtime.getRuntime().addShutdownHook( new Thread() {
+            @Override
+            public void run() {
+                if( getTotalCount() > 0 ) {
+                    out.println( getReport() );
+                    out.println( getMetrics() );
+                }
+            }
+        } );
+    }
+}
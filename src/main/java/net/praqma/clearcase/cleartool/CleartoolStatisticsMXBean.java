@@ -0,0 +1,30 @@
+package net.praqma.clearcase.cleartool;
+
+import java.util.List;
+
+/**
+ * The cleartool statistics as seen through JMX, registered as <code>net.praqma.clearcase:type=Cleartool,name=Statistics</code>
+ */
+public interface CleartoolStatisticsMXBean {
+
+    /**
+     * @return A snapshot per sub command, the most time consuming first
+     */
+    List<CommandStatistics.Snapshot> getCommands();
+
+    long getTotalCount();
+
+    long getTotalErrors();
+
+    /**
+     * @return The counters of the cleartool layer, e.g. sessions and cache hits
+     */
+    String getMetrics();
+
+    /**
+     * @return The statistics as a table
+     */
+    String getReport();
+
+    void reset();
+}
@@ -0,0 +1,100 @@
+package net.praqma.clearcase.cleartool;
+
+import edu.umd.cs.findbugs.annotations.*;
+import net.praqma.util.execute.CommandLineException;
+
+/**
+ * Lets an asynchronous command be cancelled while it runs.<br>
+ * The cancellation is bound to the thread running the command. The cleartool process serving the command is attached to it,
+ * and cancelling destroys that process and interrupts the thread.
+ */
+@SuppressFBWarnings("")
+public class CommandCancellation {
+
+    private static final ThreadLocal<CommandCancellation> current = new ThreadLocal<CommandCancellation>();
+
+    private Thread thread;
+    private Process process;
+    private boolean cancelled = false;
+
+    /**
+     * @return The cancellation bound to the current thread, or null if the command cannot be cancelled
+     */
+    public static CommandCancellation current() {
+        return current.get();
+    }
+
+    /**
+     * Bind this cancellation to the current thread
+     */
+    public synchronized void bind() {
+        thread = Thread.currentThread();
+        current.set( this );
+    }
+
+    public synchronized void unbind() {
+        current.remove();
+        thread = null;
+        /* A late cancel must not leak into the next task on this thread */
+        Thread.interrupted();
+    }
+
+    /**
+     * Attach the process serving the command
+     * @return False if already cancelled, in which case the process has been destroyed
+     */
+    public synchronized boolean attach( Process process ) {
+        if( cancelled ) {
+            process.destroy();
+            return false;
+        }
+
+        this.process = process;
+        return true;
+    }
+
+    public synchronized void detach( Process process ) {
+        if( this.process == process ) {
+            this.process = null;
+        }
+    }
+
+    /**
+     * Cancel the command, destroying the attached process
+     */
+    public synchronized void cancel() {
+        if( cancelled ) {
+            return;
+        }
+
+        cancelled = true;
+        if( process != null ) {
+            process.destroy();
+        }
+        if( thread != null ) {
+            thread.interrupt();
+        }
+    }
+
+    public synchronized boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * @return True if the command running in the current thread has been cancelled
+     */
+    public static boolean isCurrentCancelled() {
+        CommandCancellation c = current.get();
+        return c != null && c.isCancelled();
+    }
+
+    /**
+     * Throw if the command running in the current thread has been cancelled
+     * @param cause The failure caused by the cancellation, if any
+     */
+    public static void check( String cmd, Throwable cause ) throws CommandLineException {
+        if( isCurrentCancelled() ) {
+            throw new CommandLineException( "The command " + cmd + " was cancelled", cause );
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package net.praqma.clearcase.cleartool;
+
+import java.io.File;
+
+import net.praqma.util.execute.AbnormalProcessTerminationException;
+import net.praqma.util.execute.CmdResult;
+import net.praqma.util.execute.CommandLineException;
+
+/**
+ * Executes cleartool commands on behalf of {@link Cleartool}.<br>
+ * The executor is chosen when {@link Cleartool} is loaded:
+ * <ol>
+ *     <li>The class named by the system property <code>cool.cleartool.executor</code>, which must have a public no-arg constructor</li>
+ *     <li>The first implementation found by {@link java.util.ServiceLoader}</li>
+ *     <li>The built-in executor, see {@link ForkingCommandExecutor} and {@link SessionCommandExecutor}</li>
+ * </ol>
+ * Executors implementing {@link java.io.Closeable} are closed when replaced.
+ */
+public interface CommandExecutor {
+
+    /**
+     * Run a cleartool command.
+     * @param cmd The command, without the leading "cleartool"
+     * @param dir The working directory, null for the current
+     * @param merge Merge standard error into the result
+     * @param ignore Do not throw on a non zero exit code
+     * @return The {@link CmdResult}
+     * @throws AbnormalProcessTerminationException Thrown when the command fails, the message must contain the error output of cleartool
+     */
+    public CmdResult run( String cmd, File dir, boolean merge, boolean ignore ) throws CommandLineException, AbnormalProcessTerminationException;
+}
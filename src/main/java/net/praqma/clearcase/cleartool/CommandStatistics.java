@@ -0,0 +1,138 @@
+package net.praqma.clearcase.cleartool;
+
+import java.beans.ConstructorProperties;
+import java.util.concurrent.atomic.AtomicLong;
+
+import edu.umd.cs.findbugs.annotations.*;
+
+/**
+ * The statistics of one cleartool sub command, e.g. <code>describe</code>
+ */
+@SuppressFBWarnings("")
+public class CommandStatistics {
+
+    private final String subcommand;
+    private final AtomicLong errors = new AtomicLong();
+    private final AtomicLong output = new AtomicLong();
+    private final LatencyHistogram latency = new LatencyHistogram();
+
+    public CommandStatistics( String subcommand ) {
+        this.subcommand = subcommand;
+    }
+
+    /**
+     * @param nanos The time spent
+     * @param output The number of characters of output
+     * @param error True if the command failed
+     */
+    public void record( long nanos, long output, boolean error ) {
+        latency.record( nanos );
+        this.output.addAndGet( output );
+        if( error ) {
+            errors.incrementAndGet();
+        }
+    }
+
+    public String getSubcommand() {
+        return subcommand;
+    }
+
+    public long getErrors() {
+        return errors.get();
+    }
+
+    /**
+     * @return The number of characters of output
+     */
+    public long getOutput() {
+        return output.get();
+    }
+
+    public LatencyHistogram getLatency() {
+        return latency;
+    }
+
+    public Snapshot snapshot() {
+        return new Snapshot( subcommand, latency.getCount(), errors.get(), output.get(),
+                latency.getTotalMicros() / 1000.0, latency.getPercentileMicros( 50 ) / 1000.0, latency.getPercentileMicros( 95 ) / 1000.0,
+                latency.getPercentileMicros( 99 ) / 1000.0, latency.getMaxMicros() / 1000.0 );
+    }
+
+    public void reset() {
+        latency.reset();
+        errors.set( 0 );
+        output.set( 0 );
+    }
+
+    /**
+     * The statistics of a sub command at a point in time. Times are in milliseconds.
+     */
+    public static class Snapshot {
+        private final String subcommand;
+        private final long count;
+        private final long errors;
+        private final long outputChars;
+        private final double totalMillis;
+        private final double p50Millis;
+        private final double p95Millis;
+        private final double p99Millis;
+        private final double maxMillis;
+
+        @ConstructorProperties( { "subcommand", "count", "errors", "outputChars", "totalMillis", "p50Millis", "p95Millis", "p99Millis", "maxMillis" } )
+        public Snapshot( String subcommand, long count, long errors, long outputChars, double totalMillis, double p50Millis, double p95Millis, double p99Millis, double maxMillis ) {
+            this.subcommand = subcommand;
+            this.count = count;
+            this.errors = errors;
+            this.outputChars = outputChars;
+            this.totalMillis = totalMillis;
+            this.p50Millis = p50Millis;
+            this.p95Millis = p95Millis;
+            this.p99Millis = p99Millis;
+            this.maxMillis = maxMillis;
+        }
+
+        public String getSubcommand() {
+            return subcommand;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public long getErrors() {
+            return errors;
+        }
+
+        /**
+         * @return The number of characters of output
+         */
+        public long getOutputChars() {
+            return outputChars;
+        }
+
+        public double getTotalMillis() {
+            return totalMillis;
+        }
+
+        public double getP50Millis() {
+            return p50Millis;
+        }
+
+        public double getP95Millis() {
+            return p95Millis;
+        }
+
+        public double getP99Millis() {
+            return p99Millis;
+        }
+
+        public double getMaxMillis() {
+            return maxMillis;
+        }
+
+        @Override
+        public String toString() {
+            return String.format( "%-16s %8d %6d %12d %12.1f %9.1f %9.1f %9.1f %9.1f", subcommand, count, errors, outputChars, totalMillis, p50Millis, p95Millis, p99Millis, maxMillis );
+        }
+    }
+}
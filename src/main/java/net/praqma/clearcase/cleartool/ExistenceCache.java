@@ -0,0 +1,221 @@
+package net.praqma.clearcase.cleartool;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+import edu.umd.cs.findbugs.annotations.*;
+
+/**
+ * Remembers whether streams, views and VOBs exist, so repeated existence checks do not run cleartool each time.<br>
+ * An object found is remembered for the positive time to live, an object not found for the negative, usually shorter, time to live.
+ * Only answers from cleartool are remembered, a check failing for other reasons, e.g. a timeout or a missing license, is not.<br>
+ * Creating and removing streams, views and VOBs through this library invalidate the objects, changes made elsewhere are seen when the entries expire.
+ * The cache holds at most <code>maxSize</code> entries, evicting the least recently used.<br>
+ * It is off by default, and is turned on with the system property <code>cool.exists.cache=true</code> or {@link #setInstance(ExistenceCache)}.
+ * With the cache on, an existence check may answer from before a change made outside this library.
+ * The times to live can be set with <code>cool.exists.ttl.positive</code> and <code>cool.exists.ttl.negative</code>, in milliseconds.
+ */
+@SuppressFBWarnings("")
+public class ExistenceCache {
+
+    private static final Logger logger = Logger.getLogger( ExistenceCache.class.getName() );
+
+    public static final long defaultPositiveTtl = TimeUnit.MINUTES.toMillis( 5 );
+    public static final long defaultNegativeTtl = TimeUnit.SECONDS.toMillis( 10 );
+    public static final int defaultMaxSize = 10000;
+
+    private static volatile ExistenceCache instance = Boolean.parseBoolean( System.getProperty( "cool.exists.cache", "false" ) ) ?
+            new ExistenceCache( defaultMaxSize, Long.getLong( "cool.exists.ttl.positive", defaultPositiveTtl ), Long.getLong( "cool.exists.ttl.negative", defaultNegativeTtl ) ) : null;
+
+    public enum Kind {
+        STREAM, VIEW, VOB
+    }
+
+    /**
+     * Tells whether an object exists, by asking cleartool
+     */
+    public interface Probe {
+        /**
+         * @return True if the object exists, false only if cleartool tells it is not found
+         * @throws Exception Thrown when the answer is unknown, e.g. on other cleartool errors, it is not remembered
+         */
+        boolean exists() throws Exception;
+    }
+
+    private static class Entry {
+        private final boolean exists;
+        private final long expires;
+
+        private Entry( boolean exists, long expires ) {
+            this.exists = exists;
+            this.expires = expires;
+        }
+    }
+
+    private final long positiveTtl;
+    private final long negativeTtl;
+    private final LinkedHashMap<String, Entry> entries;
+
+    /**
+     * Incremented on every invalidation, so a check racing with a change is not remembered
+     */
+    private long generation = 0;
+
+    /**
+     * @param maxSize The max number of entries
+     * @param positiveTtl The time to live in milliseconds of objects found
+     * @param negativeTtl The time to live in milliseconds of objects not found
+     */
+    public ExistenceCache( final int maxSize, long positiveTtl, long negativeTtl ) {
+        this.positiveTtl = positiveTtl;
+        this.negativeTtl = negativeTtl;
+        this.entries = new LinkedHashMap<String, Entry>( 16, 0.75f, true ) {
+            @Override
+            protected boolean removeEldestEntry( Map.Entry<String, Entry> eldest ) {
+                return size() > maxSize;
+            }
+        };
+    }
+
+    /**
+     * @return The cache, null if disabled
+     */
+    public static ExistenceCache getInstance() {
+        return instance;
+    }
+
+    /**
+     * Use a cache, null disables it so every check runs cleartool
+     */
+    public static void setInstance( ExistenceCache cache ) {
+        instance = cache;
+    }
+
+    /**
+     * Check whether an object exists, with the cache if enabled
+     *
+     * @param kind The kind of object
+     * @param name The name of the object, e.g. a view tag
+     * @param probe Asks cleartool, if the answer is not cached
+     * @return True if the object exists, false if not or if the probe fails
+     */
+    public static boolean exists( Kind kind, String name, Probe probe ) {
+        ExistenceCache cache = instance;
+        if( cache == null ) {
+            try {
+                return probe.exists();
+            } catch( Exception e ) {
+                logger.fine( "Unable to tell whether the " + kind + " " + name + " exists: " + e.getMessage() );
+                return false;
+            }
+        }
+
+        return cache.check( kind, name, probe );
+    }
+
+    /**
+     * Forget an object after creating or removing it, if the cache is enabled
+     */
+    public static void changed( Kind kind, String name ) {
+        ExistenceCache cache = instance;
+        if( cache != null ) {
+            if( name != null ) {
+                cache.invalidate( kind, name );
+            } else {
+                cache.invalidate( kind );
+            }
+        }
+    }
+
+    private static String key( Kind kind, String name ) {
+        return kind + "\n" + name;
+    }
+
+    private boolean check( Kind kind, String name, Probe probe ) {
+        Boolean cached = get( kind, name );
+        if( cached != null ) {
+            return cached;
+        }
+
+        long generation = getGeneration();
+        boolean exists;
+        try {
+            exists = probe.exists();
+        } catch( Exception e ) {
+            logger.fine( "Unable to tell whether the " + kind + " " + name + " exists: " + e.getMessage() );
+            return false;
+        }
+
+        put( kind, name, exists, generation );
+        return exists;
+    }
+
+    /**
+     * @return True or false if the answer is cached, null if not
+     */
+    public synchronized Boolean get( Kind kind, String name ) {
+        String key = key( kind, name );
+        Entry e = entries.get( key );
+        if( e == null ) {
+            return null;
+        }
+        if( e.expires - System.nanoTime() <= 0 ) {
+            entries.remove( key );
+            return null;
+        }
+        return e.exists;
+    }
+
+    /**
+     * @return The current generation, to be given to {@link #put(Kind, String, boolean, long)}
+     */
+    public synchronized long getGeneration() {
+        return generation;
+    }
+
+    /**
+     * Remember whether an object exists, unless something was invalidated since the check was started
+     * @param generation The generation when the check was started
+     */
+    public synchronized void put( Kind kind, String name, boolean exists, long generation ) {
+        if( generation != this.generation ) {
+            return;
+        }
+
+        long ttl = exists ? positiveTtl : negativeTtl;
+        if( ttl > 0 ) {
+            entries.put( key( kind, name ), new Entry( exists, System.nanoTime() + TimeUnit.MILLISECONDS.toNanos( ttl ) ) );
+        }
+    }
+
+    public synchronized void invalidate( Kind kind, String name ) {
+        generation++;
+        entries.remove( key( kind, name ) );
+    }
+
+    /**
+     * Forget all objects of a kind
+     */
+    public synchronized void invalidate( Kind kind ) {
+        generation++;
+        String prefix = kind + "\n";
+        Iterator<String> it = entries.keySet().iterator();
+        while( it.hasNext() ) {
+            if( it.next().startsWith( prefix ) ) {
+                it.remove();
+            }
+        }
+    }
+
+    public synchronized void invalidateAll() {
+        generation++;
+        entries.clear();
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+}
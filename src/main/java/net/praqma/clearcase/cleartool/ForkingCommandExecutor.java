@@ -0,0 +1,57 @@
+package net.praqma.clearcase.cleartool;
+
+import java.io.File;
+
+import edu.umd.cs.findbugs.annotations.*;
+import net.praqma.util.execute.AbnormalProcessTerminationException;
+import net.praqma.util.execute.CmdResult;
+import net.praqma.util.execute.CommandLine;
+import net.praqma.util.execute.CommandLineException;
+import net.praqma.util.execute.CommandLineInterface;
+
+/**
+ * Starts a new cleartool process for each command.<br>
+ * Buffered commands are run by {@link CommandLineInterface}, streamed and cancellable commands by {@link CleartoolProcess}.
+ */
+@SuppressFBWarnings("")
+public class ForkingCommandExecutor implements StreamingCommandExecutor {
+
+    private final CommandLineInterface cli;
+    private final String executable;
+    private final CleartoolMetrics metrics;
+
+    public ForkingCommandExecutor( String executable, CleartoolMetrics metrics ) {
+        this( CommandLine.getInstance(), executable, metrics );
+    }
+
+    public ForkingCommandExecutor( CommandLineInterface cli, String executable, CleartoolMetrics metrics ) {
+        this.cli = cli;
+        this.executable = executable;
+        this.metrics = metrics;
+    }
+
+    @Override
+    public CmdResult run( String cmd, File dir, boolean merge, boolean ignore ) throws CommandLineException, AbnormalProcessTerminationException {
+        metrics.forked();
+
+        /* A cancellable command must own its process, so it can be killed */
+        if( CommandCancellation.current() != null ) {
+            return CleartoolProcess.run( executable + " " + cmd, cmd, dir, merge, ignore );
+        }
+
+        return cli.run( executable + " " + cmd, dir, merge, ignore );
+    }
+
+    /**
+     * Stream the output of the command. The process is started directly, not through {@link CommandLineInterface}.
+     */
+    @Override
+    public void stream( String cmd, File dir, boolean merge, boolean ignore, LineHandler handler ) throws CommandLineException, AbnormalProcessTerminationException {
+        metrics.forked();
+        CleartoolProcess.run( executable + " " + cmd, cmd, dir, merge, ignore, handler );
+    }
+
+    public String getExecutable() {
+        return executable;
+    }
+}
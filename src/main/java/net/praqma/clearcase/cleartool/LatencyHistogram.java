@@ -0,0 +1,110 @@
+package net.praqma.clearcase.cleartool;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import edu.umd.cs.findbugs.annotations.*;
+
+/**
+ * A lock-free histogram of latencies in microseconds.<br>
+ * Each power of two is split in four buckets, so a percentile is off by at most 25%.
+ * Recording is a few atomic increments, and reading never blocks the recording threads.
+ */
+@SuppressFBWarnings("")
+public class LatencyHistogram {
+
+    private static final int subBuckets = 4;
+    private static final int buckets = 64 * subBuckets;
+
+    private final AtomicLongArray counts = new AtomicLongArray( buckets );
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong totalMicros = new AtomicLong();
+    private final AtomicLong maxMicros = new AtomicLong();
+
+    public void record( long nanos ) {
+        long micros = Math.max( 0, nanos / 1000 );
+        counts.incrementAndGet( index( micros ) );
+        count.incrementAndGet();
+        totalMicros.addAndGet( micros );
+
+        long max;
+        do {
+            max = maxMicros.get();
+        } while( micros > max && !maxMicros.compareAndSet( max, micros ) );
+    }
+
+    /**
+     * @return The bucket of a value. Values below four have their own buckets.
+     */
+    static int index( long micros ) {
+        if( micros < subBuckets ) {
+            return (int) micros;
+        }
+
+        int exponent = 63 - Long.numberOfLeadingZeros( micros );
+        int sub = (int) ( ( micros >>> ( exponent - 2 ) ) & ( subBuckets - 1 ) );
+        return ( exponent - 1 ) * subBuckets + sub;
+    }
+
+    /**
+     * @return The largest value in the bucket
+     */
+    static long upperBound( int index ) {
+        if( index < subBuckets ) {
+            return index;
+        }
+
+        int exponent = index / subBuckets + 1;
+        long sub = index % subBuckets;
+        return ( ( subBuckets + sub + 1 ) << ( exponent - 2 ) ) - 1;
+    }
+
+    public long getCount() {
+        return count.get();
+    }
+
+    public long getTotalMicros() {
+        return totalMicros.get();
+    }
+
+    public long getMaxMicros() {
+        return maxMicros.get();
+    }
+
+    /**
+     * @param percentile Between 0 and 100
+     * @return The latency in microseconds below which the given percentage of the recordings fall
+     */
+    public long getPercentileMicros( double percentile ) {
+        long[] snapshot = new long[buckets];
+        long total = 0;
+        for( int i = 0 ; i < buckets ; i++ ) {
+            snapshot[i] = counts.get( i );
+            total += snapshot[i];
+        }
+
+        if( total == 0 ) {
+            return 0;
+        }
+
+        long target = Math.max( 1, (long) Math.ceil( total * percentile / 100.0 ) );
+        long seen = 0;
+        for( int i = 0 ; i < buckets ; i++ ) {
+            seen += snapshot[i];
+            if( seen >= target ) {
+                return Math.min( upperBound( i ), getMaxMicros() );
+            }
+        }
+
+        return getMaxMicros();
+    }
+
+    public void reset() {
+        for( int i = 0 ; i < buckets ; i++ ) {
+            counts.set( i, 0 );
+        }
+        count.set( 0 );
+        totalMicros.set( 0 );
+        maxMicros.set( 0 );
+    }
+}
@@ -0,0 +1,223 @@
+package net.praqma.clearcase.cleartool;
+
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+import edu.umd.cs.findbugs.annotations.*;
+import net.praqma.clearcase.exceptions.NoLicenseServerException;
+import net.praqma.clearcase.exceptions.NoLicensesException;
+import net.praqma.util.execute.AbnormalProcessTerminationException;
+import net.praqma.util.execute.CommandLineException;
+
+/**
+ * Caps the number of concurrent cleartool commands at a license budget, and retries commands failing for want of a license.<br>
+ * The permits start at the budget. When a command fails with {@link NoLicensesException} the permits are halved,
+ * and every <code>permits</code> successful commands in a row give back one permit, up to the budget.
+ * A failed command is retried after an exponential backoff with jitter, not holding a permit while waiting.
+ * {@link NoLicenseServerException} is retried too, but does not shrink the permits.<br>
+ * The permits are reentrant. A command run by a thread already holding a permit, e.g. from the {@link LineHandler} of a streamed command,
+ * runs under that permit instead of waiting for one it would never get. Commands handed to other threads take permits of their own.
+ */
+@SuppressFBWarnings("")
+public class LicenseGovernor {
+
+    private static final Logger logger = Logger.getLogger( LicenseGovernor.class.getName() );
+
+    public static final int defaultRetries = 5;
+    public static final long defaultBaseDelay = 500;
+    public static final long defaultMaxDelay = TimeUnit.SECONDS.toMillis( 30 );
+
+    private final int budget;
+    private final int retries;
+    private final long baseDelay;
+    private final long maxDelay;
+    private final CleartoolMetrics metrics;
+    private final Random random = new Random();
+
+    /**
+     * The number of commands of the thread running under its permit
+     */
+    private final ThreadLocal<int[]> held = new ThreadLocal<int[]>() {
+        @Override
+        protected int[] initialValue() {
+            return new int[1];
+        }
+    };
+
+    private int permits;
+    private int inUse = 0;
+    private int waiting = 0;
+    private int successes = 0;
+    private long lastDecrease = 0;
+
+    public LicenseGovernor( int budget, CleartoolMetrics metrics ) {
+        this( budget, defaultRetries, defaultBaseDelay, defaultMaxDelay, metrics );
+    }
+
+    /**
+     * @param budget The max number of concurrent commands
+     * @param retries The number of times a command is retried on license errors
+     * @param baseDelay The delay in milliseconds before the first retry. The delay doubles for each retry.
+     * @param maxDelay The max delay in milliseconds between retries
+     */
+    public LicenseGovernor( int budget, int retries, long baseDelay, long maxDelay, CleartoolMetrics metrics ) {
+        if( budget < 1 ) {
+            throw new IllegalArgumentException( "The license budget must be positive" );
+        }
+
+        this.budget = budget;
+        this.permits = budget;
+        this.retries = retries;
+        this.baseDelay = baseDelay;
+        this.maxDelay = maxDelay;
+        this.metrics = metrics;
+    }
+
+    /**
+     * Run a command within the budget, retrying license errors
+     * @param cmd The command, used for logging
+     * @param command Runs the command, throwing license errors as {@link NoLicensesException} or {@link NoLicenseServerException}
+     */
+    public <T> T run( String cmd, Callable<T> command ) throws CommandLineException, AbnormalProcessTerminationException {
+        for( int attempt = 0 ; ; attempt++ ) {
+            acquire();
+            try {
+                T result = command.call();
+                succeeded();
+                return result;
+            } catch( NoLicensesException e ) {
+                shrink();
+                if( attempt >= retries ) {
+                    throw e;
+                }
+            } catch( NoLicenseServerException e ) {
+                if( attempt >= retries ) {
+                    throw e;
+                }
+            } catch( RuntimeException e ) {
+                throw e;
+            } catch( Exception e ) {
+                throw new CommandLineException( "Unable to run " + cmd, e );
+            } finally {
+                release();
+            }
+
+            long delay = getDelay( attempt );
+            logger.fine( "No license for " + cmd + ", retrying in " + delay + "ms" );
+            metrics.licenseRetry();
+            try {
+                Thread.sleep( delay );
+            } catch( InterruptedException e ) {
+                Thread.currentThread().interrupt();
+                throw new CommandLineException( "Interrupted while waiting for a license" );
+            }
+        }
+    }
+
+    /**
+     * @return The delay before a retry, between half and all of the exponential delay
+     */
+    long getDelay( int attempt ) {
+        long delay = Math.min( maxDelay, baseDelay << Math.min( attempt, 30 ) );
+        long half = delay / 2;
+        synchronized( random ) {
+            return half + (long) ( random.nextDouble() * ( delay - half ) );
+        }
+    }
+
+    private void acquire() throws CommandLineException {
+        int[] count = held.get();
+        if( count[0] == 0 ) {
+            take();
+        }
+        count[0]++;
+    }
+
+    private void release() {
+        int[] count = held.get();
+        if( --count[0] == 0 ) {
+            give();
+        }
+    }
+
+    private synchronized void take() throws CommandLineException {
+        long start = System.nanoTime();
+        waiting++;
+        try {
+            while( inUse >= permits ) {
+                wait();
+            }
+        } catch( InterruptedException e ) {
+            Thread.currentThread().interrupt();
+            throw new CommandLineException( "Interrupted while waiting for a license permit" );
+        } finally {
+            waiting--;
+        }
+
+        inUse++;
+        metrics.licenseWait( System.nanoTime() - start );
+    }
+
+    private synchronized void give() {
+        inUse--;
+        notifyAll();
+    }
+
+    private synchronized void succeeded() {
+        if( permits < budget && ++successes >= permits ) {
+            permits++;
+            successes = 0;
+            logger.fine( "Increased the license permits to " + permits );
+            notifyAll();
+        }
+    }
+
+    private synchronized void shrink() {
+        successes = 0;
+
+        /* Concurrent failures are caused by the same shortage, only shrink once for them */
+        long now = System.nanoTime();
+        if( lastDecrease != 0 && now - lastDecrease < TimeUnit.MILLISECONDS.toNanos( baseDelay ) ) {
+            return;
+        }
+        lastDecrease = now;
+
+        if( permits > 1 ) {
+            permits = Math.max( 1, permits / 2 );
+            logger.info( "License shortage, decreased the cleartool license permits to " + permits );
+        }
+    }
+
+    public int getBudget() {
+        return budget;
+    }
+
+    /**
+     * @return The current max number of concurrent commands
+     */
+    public synchronized int getPermits() {
+        return permits;
+    }
+
+    public synchronized int getInUse() {
+        return inUse;
+    }
+
+    /**
+     * @return The number of commands waiting for a permit
+     */
+    public synchronized int getWaiting() {
+        return waiting;
+    }
+
+    public int getRetries() {
+        return retries;
+    }
+
+    @Override
+    public String toString() {
+        return "Licenses: " + getInUse() + " in use of " + getPermits() + " permits, budget " + budget + ", " + getWaiting() + " waiting";
+    }
+}
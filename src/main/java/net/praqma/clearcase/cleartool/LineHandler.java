@@ -0,0 +1,15 @@
+package net.praqma.clearcase.cleartool;
+
+/**
+ * Receives the output of a cleartool command one line at a time, as it is produced.<br>
+ * The command is not read further while a line is handled, so a slow handler slows down cleartool instead of filling up the heap.
+ */
+public interface LineHandler {
+
+    /**
+     * Handle a line of output
+     * @param line The line, without the line separator
+     * @return True to continue, false to stop reading. The rest of the output is discarded.
+     */
+    public boolean handle( String line );
+}
@@ -0,0 +1,180 @@
+package net.praqma.clearcase.cleartool;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import edu.umd.cs.findbugs.annotations.*;
+import net.praqma.util.execute.AbnormalProcessTerminationException;
+import net.praqma.util.execute.CmdResult;
+import net.praqma.util.execute.CommandLineException;
+
+/**
+ * Runs the commands in a {@link CleartoolSessionPool}.<br>
+ * All commands take a slot in the pool, also the ones that must be forked because they are not session safe.
+ * When a session fails before the command is sent, or the command only reads, the command is forked instead.
+ * A command that may have run in the failing session, e.g. <code>mkbl</code>, is not run again, a {@link CommandLineException} is thrown.
+ * After three failures in a row the sessions are given up, and all commands are forked.
+ * A session unable to change to the working directory of a command is not a failure, the command is forked.
+ * A command run while the thread holds a slot, e.g. from the {@link LineHandler} of a streamed command, is forked, not to grow the pool.
+ */
+@SuppressFBWarnings("")
+public class SessionCommandExecutor implements StreamingCommandExecutor, Closeable {
+
+    private static final Logger logger = Logger.getLogger( SessionCommandExecutor.class.getName() );
+
+    private static final int maxFailures = 3;
+
+    private final CleartoolSessionPool pool;
+    private final ForkingCommandExecutor fork;
+    private final CleartoolMetrics metrics;
+
+    private int failures = 0;
+    private volatile boolean disabled = false;
+
+    public SessionCommandExecutor( String executable, int poolSize, CleartoolMetrics metrics ) {
+        this.pool = new CleartoolSessionPool( executable, poolSize, metrics );
+        this.fork = new ForkingCommandExecutor( executable, metrics );
+        this.metrics = metrics;
+    }
+
+    @Override
+    public CmdResult run( String cmd, File dir, boolean merge, boolean ignore ) throws CommandLineException, AbnormalProcessTerminationException {
+        boolean nested = pool.isHeldByCurrentThread();
+        pool.acquire();
+        try {
+            CmdResult result = null;
+            if( !nested && !disabled && CleartoolSession.isSessionSafe( cmd ) ) {
+                result = runInSession( cmd, dir, merge, ignore );
+            }
+
+            if( result == null ) {
+                result = fork.run( cmd, dir, merge, ignore );
+            }
+
+            return result;
+        } finally {
+            pool.release();
+        }
+    }
+
+    @Override
+    public void stream( String cmd, File dir, boolean merge, boolean ignore, LineHandler handler ) throws CommandLineException, AbnormalProcessTerminationException {
+        boolean nested = pool.isHeldByCurrentThread();
+        pool.acquire();
+        try {
+            if( !nested && !disabled && CleartoolSession.isSessionSafe( cmd ) ) {
+                CountingHandler counting = new CountingHandler( handler );
+                try {
+                    pool.stream( cmd, dir, merge, ignore, counting );
+                    synchronized( this ) {
+                        failures = 0;
+                    }
+                    return;
+                } catch( CleartoolSession.ChangeDirectoryException e ) {
+                    logger.fine( e.getMessage() + ", forking " + cmd );
+                } catch( IOException e ) {
+                    CommandCancellation.check( cmd, e );
+                    failed( e );
+                    /* The handler has seen some of the output, the command cannot be repeated */
+                    if( counting.lines > 0 ) {
+                        throw new CommandLineException( "The cleartool session failed while running " + cmd, e );
+                    }
+                    checkRepeatable( cmd, e );
+                }
+            }
+
+            fork.stream( cmd, dir, merge, ignore, handler );
+        } finally {
+            pool.release();
+        }
+    }
+
+    private static class CountingHandler implements LineHandler {
+        private final LineHandler handler;
+        private int lines = 0;
+
+        CountingHandler( LineHandler handler ) {
+            this.handler = handler;
+        }
+
+        @Override
+        public boolean handle( String line ) {
+            lines++;
+            return handler.handle( line );
+        }
+    }
+
+    /**
+     * @return The result or null if the session failed, in which case the command must be forked.
+     * @throws CommandLineException Thrown if the session failed and the command may have run
+     */
+    private CmdResult runInSession( String cmd, File dir, boolean merge, boolean ignore ) {
+        try {
+            CmdResult result = pool.run( cmd, dir, merge, ignore );
+            synchronized( this ) {
+                failures = 0;
+            }
+            return result;
+        } catch( CleartoolSession.ChangeDirectoryException e ) {
+            logger.fine( e.getMessage() + ", forking " + cmd );
+            return null;
+        } catch( IOException e ) {
+            CommandCancellation.check( cmd, e );
+            failed( e );
+            checkRepeatable( cmd, e );
+            return null;
+        } catch( AbnormalProcessTerminationException e ) {
+            CommandCancellation.check( cmd, e );
+            throw e;
+        } catch( RuntimeException e ) {
+            /* Where the session failed is not known, the command may have been sent */
+            CommandCancellation.check( cmd, e );
+            failed( e );
+            if( !CleartoolCoalescer.isReadOnly( cmd ) ) {
+                throw new CommandLineException( "The cleartool session failed while running " + cmd + ", it is not run again", e );
+            }
+            return null;
+        }
+    }
+
+    /**
+     * A command that may have run in the failed session is only forked if it reads, running a changing command twice could e.g. make two baselines
+     */
+    private static void checkRepeatable( String cmd, IOException e ) {
+        if( e instanceof CleartoolSession.CommandSentException && !CleartoolCoalescer.isReadOnly( cmd ) ) {
+            throw new CommandLineException( "The cleartool session failed while running " + cmd + ", it is not run again", e );
+        }
+    }
+
+    private void failed( Exception e ) {
+        logger.log( Level.WARNING, "The cleartool session failed", e );
+        metrics.sessionFailed();
+
+        synchronized( this ) {
+            if( ++failures >= maxFailures && !disabled ) {
+                logger.warning( "The cleartool session failed " + failures + " times in a row, forking from now on" );
+                disabled = true;
+                pool.close();
+            }
+        }
+    }
+
+    /**
+     * @return True if the sessions have been given up because of repeated failures
+     */
+    public boolean isDisabled() {
+        return disabled;
+    }
+
+    public CleartoolSessionPool getPool() {
+        return pool;
+    }
+
+    @Override
+    public void close() {
+        pool.close();
+    }
+}
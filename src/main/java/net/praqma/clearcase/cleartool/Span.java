@@ -0,0 +1,138 @@
+package net.praqma.clearcase.cleartool;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import edu.umd.cs.findbugs.annotations.*;
+
+/**
+ * A timed operation, see {@link Tracer}. A span must be ended by the thread that started it, typically in a finally block.
+ */
+@SuppressFBWarnings("")
+public class Span {
+
+    private static final AtomicLong ids = new AtomicLong();
+
+    /**
+     * Returned when tracing is disabled
+     */
+    static final Span noop = new Span();
+
+    private final long id;
+    private final Span parent;
+    private final String name;
+    private final String category;
+    private final String detail;
+    private final long threadId;
+    private final String threadName;
+    private final long start;
+
+    private long duration = -1;
+    private String error;
+
+    private Span() {
+        this.id = 0;
+        this.parent = null;
+        this.name = "";
+        this.category = "";
+        this.detail = null;
+        this.threadId = 0;
+        this.threadName = "";
+        this.start = 0;
+    }
+
+    Span( Span parent, String name, String category, String detail ) {
+        this.id = ids.incrementAndGet();
+        this.parent = parent;
+        this.name = name;
+        this.category = category;
+        this.detail = detail;
+        this.threadId = Thread.currentThread().getId();
+        this.threadName = Thread.currentThread().getName();
+        this.start = System.nanoTime();
+    }
+
+    /**
+     * Mark the operation as failed
+     */
+    public Span failed( Throwable e ) {
+        if( this != noop ) {
+            error = e.getClass().getSimpleName() + ": " + e.getMessage();
+        }
+        return this;
+    }
+
+    /**
+     * End the span, making its parent current again
+     */
+    public void end() {
+        if( this == noop || duration >= 0 ) {
+            return;
+        }
+
+        duration = System.nanoTime() - start;
+        Tracer.ended( this );
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    /**
+     * @return The enclosing span, possibly started in another thread, or null
+     */
+    public Span getParent() {
+        return parent;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return "cleartool" for cleartool commands, "cool" for library operations
+     */
+    public String getCategory() {
+        return category;
+    }
+
+    /**
+     * @return E.g. the command line or the entity, may be null
+     */
+    public String getDetail() {
+        return detail;
+    }
+
+    public long getThreadId() {
+        return threadId;
+    }
+
+    public String getThreadName() {
+        return threadName;
+    }
+
+    /**
+     * @return The start in nanoseconds, as {@link System#nanoTime()}
+     */
+    public long getStart() {
+        return start;
+    }
+
+    /**
+     * @return The duration in nanoseconds, or -1 if not ended
+     */
+    public long getDuration() {
+        return duration;
+    }
+
+    /**
+     * @return The error if failed, otherwise null
+     */
+    public String getError() {
+        return error;
+    }
+
+    @Override
+    public String toString() {
+        return name + ( detail != null ? " " + detail : "" );
+    }
+}
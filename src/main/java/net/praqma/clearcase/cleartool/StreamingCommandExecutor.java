@@ -0,0 +1,26 @@
+package net.praqma.clearcase.cleartool;
+
+import java.io.File;
+
+import net.praqma.util.execute.AbnormalProcessTerminationException;
+import net.praqma.util.execute.CommandLineException;
+
+/**
+ * A {@link CommandExecutor} able to hand over the output of a command while it runs.<br>
+ * {@link Cleartool#stream(String, File, boolean, boolean, LineHandler)} falls back to {@link #run(String, File, boolean, boolean)}
+ * for executors not implementing this.
+ */
+public interface StreamingCommandExecutor extends CommandExecutor {
+
+    /**
+     * Run a cleartool command, giving each line of output to the handler.
+     * If the handler stops the reading, the exit code is not checked.
+     * @param cmd The command, without the leading "cleartool"
+     * @param dir The working directory, null for the current
+     * @param merge Merge standard error into the output
+     * @param ignore Do not throw on a non zero exit code
+     * @param handler Receives the lines
+     * @throws AbnormalProcessTerminationException Thrown when the command fails, the message must contain the error output of cleartool
+     */
+    public void stream( String cmd, File dir, boolean merge, boolean ignore, LineHandler handler ) throws CommandLineException, AbnormalProcessTerminationException;
+}
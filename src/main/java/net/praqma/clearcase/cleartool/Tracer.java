@@ -0,0 +1,139 @@
+package net.praqma.clearcase.cleartool;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import edu.umd.cs.findbugs.annotations.*;
+
+/**
+ * Hierarchical tracing of library operations and the cleartool commands they run.<br>
+ * A span started while another span is open in the same thread becomes its child. Ended spans are given to the {@link Listener}s.
+ * Tracing is off by default and then costs a volatile read per operation.<br>
+ * Setting the system property <code>cool.trace.file</code> enables tracing and writes a Chrome trace to that file on exit, see {@link ChromeTraceWriter}.
+ * <pre>
+ * Span span = Tracer.start( "Baseline.load", toString() );
+ * try {
+ *     ...
+ * } finally {
+ *     span.end();
+ * }
+ * </pre>
+ */
+@SuppressFBWarnings("")
+public class Tracer {
+
+    private static final Logger logger = Logger.getLogger( Tracer.class.getName() );
+
+    public static final String categoryCool = "cool";
+    public static final String categoryCleartool = "cleartool";
+
+    public interface Listener {
+        /**
+         * Called in the thread ending the span
+         */
+        void spanEnded( Span span );
+    }
+
+    private static volatile boolean enabled = false;
+    private static final ThreadLocal<Span> current = new ThreadLocal<Span>();
+    private static final List<Listener> listeners = new CopyOnWriteArrayList<Listener>();
+
+    static {
+        String file = System.getProperty( "cool.trace.file" );
+        if( file != null && file.length() > 0 ) {
+            try {
+                final ChromeTraceWriter writer = new ChromeTraceWriter( new File( file ) );
+                addListener( writer );
+                setEnabled( true );
+                Runtime.getRuntime().addShutdownHook( new Thread() {
+                    @Override
+                    public void run() {
+                        writer.close();
+                    }
+                } );
+            } catch( IOException e ) {
+                logger.log( Level.WARNING, "Unable to trace to " + file, e );
+            }
+        }
+    }
+
+    private Tracer() {
+    }
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    public static void setEnabled( boolean enabled ) {
+        Tracer.enabled = enabled;
+    }
+
+    public static void addListener( Listener listener ) {
+        listeners.add( listener );
+    }
+
+    public static void removeListener( Listener listener ) {
+        listeners.remove( listener );
+    }
+
+    /**
+     * Start a library operation
+     */
+    public static Span start( String name, Object detail ) {
+        return start( name, categoryCool, detail );
+    }
+
+    /**
+     * Start a span as a child of the current span
+     * @param detail E.g. the entity operated on, may be null
+     */
+    public static Span start( String name, String category, Object detail ) {
+        if( !enabled ) {
+            return Span.noop;
+        }
+
+        Span span = new Span( current.get(), name, category, detail != null ? detail.toString() : null );
+        current.set( span );
+        return span;
+    }
+
+    /**
+     * @return The open span of the current thread, or null
+     */
+    public static Span current() {
+        return enabled ? current.get() : null;
+    }
+
+    /**
+     * Make a span current in this thread, so work handed over to another thread is traced under the span that handed it over
+     * @return The span that was current, to be resumed afterwards
+     */
+    public static Span resume( Span span ) {
+        Span previous = current.get();
+        if( span != null ) {
+            current.set( span );
+        } else {
+            current.remove();
+        }
+        return previous;
+    }
+
+    static void ended( Span span ) {
+        /* Spans not ended in order leave the current span alone */
+        if( current.get() == span ) {
+            resume( span.getParent() );
+        }
+
+        for( Listener listener : listeners ) {
+            try {
+                listener.spanEnded( span );
+            } catch( RuntimeException e ) {
+                logger.log( Level.WARNING, "Trace listener failed", e );
+            }
+        }
+    }
+}
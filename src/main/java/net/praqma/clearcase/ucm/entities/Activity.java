@@ -1,6 +1,7 @@
 package net.praqma.clearcase.ucm.entities;
 
 import java.io.File;
+import java.io.IOException;
 import java.util.*;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -11,7 +12,10 @@ import edu.umd.cs.findbugs.annotations.*;
 import net.praqma.clearcase.PVob;
 import net.praqma.clearcase.api.Describe;
 import net.praqma.clearcase.api.DiffBl;
+import net.praqma.clearcase.cleartool.LineHandler;
 import net.praqma.clearcase.cleartool.Cleartool;
+import net.praqma.clearcase.cleartool.Span;
+import net.praqma.clearcase.cleartool.Tracer;
 import net.praqma.clearcase.exceptions.*;
 import net.praqma.util.execute.AbnormalProcessTerminationException;
 
@@ -23,6 +27,9 @@ public class Activity extends UCMEntity {
 	
 	private static final Logger logger = Logger.getLogger( Activity.class.getName() );
 
+	private static final String loadFormat = "%u{!}%[headline]p";
+	private static final Set<Field> loadFields = Collections.unmodifiableSet( EnumSet.of( Field.USER ) );
+
     /**
      * The change set of the activity
      */
@@ -56,27 +63,74 @@ public class Activity extends UCMEntity {
 	 */
     @Override
 	public Activity load() throws UnableToLoadEntityException {
-		String[] result = new String[2];
+		Span span = Tracer.start( "Activity.load", this );
+		try {
+			return _load();
+		} finally {
+			span.end();
+		}
+	}
 
+	private Activity _load() throws UnableToLoadEntityException {
 		/* The special case branch */
 		if( isSpecialCase() ) {
-			result[0] = "System";
-			result[1] = "";
+			loadFrom( "System{!}" );
 		} else {
-			String cmd = "describe -fmt %u{!}%[headline]p " + this;
+			String cmd = "describe -fmt " + loadFormat + " " + this;
 			try {
-				String line = Cleartool.run( cmd ).stdoutBuffer.toString();
-                result = line.split( "\\{!\\}" );
+				loadFrom( Cleartool.run( cmd ).stdoutBuffer.toString() );
 			} catch( AbnormalProcessTerminationException e ) {
 				throw new UnableToLoadEntityException( this, e );
 			}
 		}
 		
+		return this;
+	}
+
+	/**
+	 * The special case is not in ClearCase, and is loaded alone
+	 */
+	@Override
+	protected String getLoadFormat() {
+		return isSpecialCase() ? null : loadFormat;
+	}
+
+	@Override
+	protected Set<Field> getLoadFields() {
+		return loadFields;
+	}
+
+	@Override
+	protected void loadFrom( String line ) {
+		String[] result = line.split( "\\{!\\}", -1 );
 		setUser( result[0].trim() );
 		headline = result[1].trim();
         this.loaded = true;
-		
-		return this;
+	}
+
+	@Override
+	protected boolean isCompact() {
+		return true;
+	}
+
+	/**
+	 * The change set is written with the activity, its versions referring back to it
+	 */
+	@Override
+	protected void writeCompact( EntityCodec.Output out ) throws IOException {
+		super.writeCompact( out );
+		out.writeString( headline );
+		out.writeBoolean( specialCase );
+		out.writeEntities( changeset.versions );
+	}
+
+	@Override
+	protected void readCompact( EntityCodec.Input in ) throws IOException {
+		super.readCompact( in );
+		this.headline = in.readString();
+		this.specialCase = in.readBoolean();
+		this.changeset = new Changeset();
+		in.readEntities( Version.class, changeset.versions );
 	}
 	
 	/**
@@ -228,62 +282,93 @@ public class Activity extends UCMEntity {
         }
 
         public Parser parse() throws ClearCaseException {
-            Activity current = null;
-            boolean include = false;
-
-            List<String> lines = diffBl.execute();
+            Span span = Tracer.start( "Activity.parse", diffBl.getCommand() );
+            try {
+                return _parse();
+            } finally {
+                span.end();
+            }
+        }
 
-            for( String line : lines ) {
-                logger.finest( "Line: " + line );
+        private Parser _parse() throws ClearCaseException {
+            final List<Version> unloaded = new ArrayList<Version>();
+            final ClearCaseException[] error = new ClearCaseException[1];
+
+            /* The diff is parsed as it is produced. Versions are loaded afterwards, so no other cleartool command is run while streaming. */
+            diffBl.execute( new LineHandler() {
+                private Activity current = null;
+                private boolean include = false;
+
+                @Override
+                public boolean handle( String line ) {
+                    try {
+                        parseLine( line );
+                        return true;
+                    } catch( ClearCaseException e ) {
+                        error[0] = e;
+                        return false;
+                    }
+                }
 
-			    /* Get activity */
-                Matcher match = pattern_activity2.matcher( line );
+                private void parseLine( String line ) throws ClearCaseException {
+                    logger.finest( "Line: " + line );
+
+                    /* Get activity */
+                    Matcher match = pattern_activity2.matcher( line );
+
+                    /* This line is a new activity */
+                    if( match.find() ) {
+                        /* Test direction */
+                        String symbol = match.group( 1 );
+                        if( hasDirection( symbol ) ) {
+                            current = get( match.group( 2 ) );
+
+                            /* A special case? */
+                            if( current.getShortname().equals( "no_activity" ) ) {
+                                logger.fine( "Recorded a special activity case" );
+                                current.setSpecialCase( true );
+                            }
+                            activities.add( current );
+                            include = true;
+                        } else {
+                            include = false;
+                        }
 
-                /* This line is a new activity */
-                if( match.find() ) {
-                    /* Test direction */
-                    String symbol = match.group( 1 );
-                    if( hasDirection( symbol ) ) {
-                        current = get( match.group( 2 ) );
+                        return;
+                    }
 
-                        /* A special case? */
-                        if( current.getShortname().equals( "no_activity" ) ) {
-                            logger.fine( "Recorded a special activity case" );
-                            current.setSpecialCase( true );
+                    if( include ) {
+                        if( current == null ) {
+                            logger.fine( "Current is not an activity: " + line );
+                            return;
                         }
-                        activities.add( current );
-                        include = true;
-                    } else {
-                        include = false;
-                    }
 
-                    continue;
-                }
+                        /* If not an activity, it must be a version */
+                        String f = line.trim();
 
-                if( include ) {
-                    if( current == null ) {
-                        logger.fine( "Current is not an activity: " + line );
-                        continue;
-                    }
+                        Version v = (Version) UCMEntity.getEntity( Version.class, f );
+                        v.setSFile( v.getFile().getAbsolutePath().substring( length ) );
+                        v.setView( diffBl.getViewRoot() );
+                        v.setActivity( current );
 
-                    /* If not an activity, it must be a version */
-                    String f = line.trim();
-
-                    Version v = (Version) UCMEntity.getEntity( Version.class, f );                    
-                    v.setSFile( v.getFile().getAbsolutePath().substring( length ) );
-                    v.setView(diffBl.getViewRoot());
-                    v.setActivity(current);
-                    
-                    if( activityUserAsVersionUser ) {
-                        v.setUser( current.getUser() );
-                    } else {
-                        v.load();
-                    }                    
-                    
-                    current.changeset.versions.add( v );
+                        if( activityUserAsVersionUser ) {
+                            v.setUser( current.getUser() );
+                        } else {
+                            unloaded.add( v );
+                        }
+
+                        current.changeset.versions.add( v );
+                    }
                 }
+            } );
+
+            if( error[0] != null ) {
+                throw error[0];
             }
 
+            /* Described many at a time by a few concurrent commands */
+            UCMEntity.loadAll( unloaded, UCMEntity.defaultLoadThreads );
+
             return this;
         }
     }
@@ -313,13 +398,7 @@ public class Activity extends UCMEntity {
     }
 	
 	public String getHeadline() {
-		if( !loaded ) {
-			try {
-				load();
-			} catch( ClearCaseException e ) {
-				throw new EntityNotLoadedException( fqname, fqname + " could not be auto loaded", e );
-			}
-		}
+		autoLoad();
 		
 		return headline;
 	}
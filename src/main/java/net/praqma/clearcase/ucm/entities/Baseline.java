@@ -1,10 +1,16 @@
 package net.praqma.clearcase.ucm.entities;
 
 import java.io.File;
+import java.io.IOException;
 import java.text.ParseException;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.regex.Matcher;
@@ -15,6 +21,8 @@ import net.praqma.clearcase.Cool;
 import net.praqma.clearcase.PVob;
 import net.praqma.clearcase.api.Describe;
 import net.praqma.clearcase.cleartool.Cleartool;
+import net.praqma.clearcase.cleartool.Span;
+import net.praqma.clearcase.cleartool.Tracer;
 import net.praqma.clearcase.exceptions.*;
 import net.praqma.clearcase.interfaces.Diffable;
 import net.praqma.clearcase.ucm.entities.Project.PromotionLevel;
@@ -27,6 +35,9 @@ public class Baseline extends UCMEntity implements Diffable {
 
 	transient static final private Logger logger = Logger.getLogger( Baseline.class.getName()  );
 
+	private static final String loadFormat = "%n" + Cool.delim + "%X[component]p" + Cool.delim + "%X[bl_stream]p" + Cool.delim + "%[plevel]p" + Cool.delim + "%u" + Cool.delim + "%Nd" + Cool.delim + "%[label_status]p" + Cool.delim + "%[master]p";
+	private static final Set<Field> loadFields = Collections.unmodifiableSet( EnumSet.of( Field.USER, Field.DATE, Field.MASTERSHIP ) );
+
     /**
      * The {@link Component} of the {@link Baseline}
      */
@@ -80,6 +91,15 @@ public class Baseline extends UCMEntity implements Diffable {
 	}
     
     public Baseline load(boolean force) throws UnableToLoadEntityException, UnableToInitializeEntityException {
+        Span span = Tracer.start( "Baseline.load", this );
+        try {
+            return _load(force);
+        } finally {
+            span.end();
+        }
+    }
+
+    private Baseline _load(boolean force) throws UnableToLoadEntityException, UnableToInitializeEntityException {
         /**
          * [FB11107] Performance tweaks. Avoid unnecssary load of baseline if already loaded. If it is loaded then return immediately return
          */
@@ -89,13 +109,30 @@ public class Baseline extends UCMEntity implements Diffable {
         
 		String result = "";
 
-		String cmd = "desc -fmt %n" + Cool.delim + "%X[component]p" + Cool.delim + "%X[bl_stream]p" + Cool.delim + "%[plevel]p" + Cool.delim + "%u" + Cool.delim + "%Nd" + Cool.delim + "%[label_status]p" + Cool.delim + "%[master]p " + this;
+		String cmd = "desc -fmt " + loadFormat + " " + this;
 		try {
 			result = Cleartool.run( cmd ).stdoutBuffer.toString();
 		} catch( Exception e ) {
 			throw new UnableToLoadEntityException( this, e );
 		}
 
+		loadFrom( result );
+
+		return this;
+    }
+
+    @Override
+    protected String getLoadFormat() {
+        return loadFormat;
+    }
+
+    @Override
+    protected Set<Field> getLoadFields() {
+        return loadFields;
+    }
+
+    @Override
+    protected void loadFrom( String result ) throws UnableToLoadEntityException, UnableToInitializeEntityException {
 		String[] rs = result.split( UCMEntity.delim );
         logger.fine( "Result:" + result );
 
@@ -114,9 +151,7 @@ public class Baseline extends UCMEntity implements Diffable {
 		this.plevel = Project.getPlevelFromString( rs[3] );
 		this.user = rs[4];
 		try {
-            synchronized( dateFormatter ) {
-            	this.date = dateFormatter.parse( rs[5] );
-            }
+			this.date = Date.from( parseDate( rs[5] ) );
 		} catch( ParseException e ) {
 			logger.fine( "Unable to parse date: " + e.getMessage() );
 			this.date = null;
@@ -128,8 +163,78 @@ public class Baseline extends UCMEntity implements Diffable {
 		this.mastership = rs[7];
 
 		this.loaded = true;
+		storeFacts();
+    }
+
+    /**
+     * The component, stream, user and date never change. The promotion level, label status and mastership do, and are not stored.
+     */
+    @Override
+    protected Map<String, String> getFacts() {
+        if( component == null ) {
+            return null;
+        }
+
+        Map<String, String> facts = new LinkedHashMap<String, String>();
+        facts.put( "component", component.getFullyQualifiedName() );
+        facts.put( "stream", stream != null ? stream.getFullyQualifiedName() : "" );
+        facts.put( "user", user );
+        if( date != null ) {
+            facts.put( "date", Long.toString( date.getTime() ) );
+        }
+        return facts;
+    }
+
+    @Override
+    protected void setFacts( Map<String, String> facts ) throws UnableToInitializeEntityException {
+        String c = facts.get( "component" );
+        if( c != null ) {
+            String s = facts.get( "stream" );
+            this.stream = s != null && s.length() > 0 ? Stream.get( s ) : null;
+            this.component = Component.get( c );
+        }
+
+        String u = facts.get( "user" );
+        if( u != null ) {
+            this.user = u;
+            fetched( Field.USER );
+        }
+
+        String d = facts.get( "date" );
+        if( d != null ) {
+            this.date = new Date( Long.parseLong( d ) );
+            fetched( Field.DATE );
+        }
+    }
+
+    @Override
+    protected boolean isCompact() {
+        return true;
+    }
+
+    @Override
+    protected void writeCompact( EntityCodec.Output out ) throws IOException {
+        super.writeCompact( out );
+        out.writeEntity( component );
+        out.writeEntity( stream );
+        out.writeEnum( plevel );
+    }
+
+    @Override
+    protected void readCompact( EntityCodec.Input in ) throws IOException {
+        super.readCompact( in );
+        this.component = in.readEntity( Component.class );
+        this.stream = in.readEntity( Stream.class );
+        this.plevel = in.readEnum( Project.PromotionLevel.class );
+    }
 
-		return this;        
+    /**
+     * Load the baseline, unless its component and stream are stored in the {@link FactStore}
+     */
+    private void autoLoadCreation() {
+        if( !loaded && !( hasFacts() && component != null ) ) {
+            autoLoad();
+        }
     }
 
 	/**
@@ -325,13 +430,7 @@ public class Baseline extends UCMEntity implements Diffable {
      * @throws net.praqma.clearcase.exceptions.UnableToPromoteBaselineException Thrown when ClearCase reports errors 
 	 */
 	public Project.PromotionLevel reject() throws UnableToPromoteBaselineException {
-		if( !loaded ) {
-			try {
-				load();
-			} catch( ClearCaseException e ) {
-				throw new EntityNotLoadedException( fqname, fqname + " could not be auto loaded", e );
-			}
-		}
+		autoLoad();
 
 		setPromotionLevel( PromotionLevel.REJECTED );
         this.plevel = Project.PromotionLevel.REJECTED;
@@ -363,14 +462,25 @@ public class Baseline extends UCMEntity implements Diffable {
         this.plevel = plevel;
     }
 
+    /**
+     * Set the date and label status of this {@link Baseline} from a listing, e.g. <code>lsbl</code>, unless it is loaded.
+     * The instance may be shared through the {@link EntityIdentityMap}, so what a load found is not overwritten.
+     * @param date The date, <code>%Nd</code>
+     * @param labelStatus The label status, <code>%[label_status]p</code>
+     * @throws ParseException Thrown when the date cannot be parsed
+     */
+    public void setListed( String date, String labelStatus ) throws ParseException {
+        synchronized( this ) {
+            if( loaded ) {
+                return;
+            }
+            setDate( date );
+            setLabelStatusFromString( labelStatus );
+        }
+    }
+
 	public Component getComponent() {
-		if( !loaded ) {
-			try {
-				load();
-			} catch( ClearCaseException e ) {
-				throw new EntityNotLoadedException( fqname, fqname + " could not be auto loaded", e );
-			}
-		}
+		autoLoadCreation();
 		
 		return this.component;
 	}
@@ -382,8 +492,19 @@ public class Baseline extends UCMEntity implements Diffable {
      * @throws net.praqma.clearcase.exceptions.UnableToInitializeEntityException Thrown when ClearCase reports errors 
      */
     public List<Baseline> getDependent() throws CleartoolException, UnableToInitializeEntityException {
-        String[] ds = new net.praqma.clearcase.Describe( this ).dependentsOn().describe().get( "depends_on" );
-        
+        /* The members of a baseline never change */
+        String[] ds;
+        FactStore store = getFactStore();
+        Map<String, String> facts = store != null ? store.get( fqname ) : null;
+        if( facts != null && facts.containsKey( "depends_on" ) ) {
+            ds = facts.get( "depends_on" ).split( " " );
+        } else {
+            ds = new net.praqma.clearcase.Describe( this ).dependentsOn().describe().get( "depends_on" );
+            if( store != null ) {
+                store.put( fqname, Collections.singletonMap( "depends_on", String.join( " ", ds ).trim() ) );
+            }
+        }
+
         List<Baseline> baselines = new ArrayList<Baseline>( ds.length );
         for( String bl : ds ) {
             if(!StringUtils.isBlank(bl)) {
@@ -395,13 +516,7 @@ public class Baseline extends UCMEntity implements Diffable {
     }
 
 	public Stream getStream() {
-		if( !loaded ) {
-			try {
-				load();
-			} catch( ClearCaseException e ) {
-				throw new EntityNotLoadedException( fqname, fqname + " could not be auto loaded", e );
-			}
-		}
+		autoLoadCreation();
 		
 		return this.stream;
 	}
@@ -416,13 +531,7 @@ public class Baseline extends UCMEntity implements Diffable {
 
     @Override
 	public String stringify() {
-		if( !loaded ) {
-			try {
-				load();
-			} catch( ClearCaseException e ) {
-				throw new EntityNotLoadedException( fqname, fqname + " could not be auto loaded", e );
-			}
-		}
+		autoLoad();
 		
 		StringBuilder sb = new StringBuilder();
 
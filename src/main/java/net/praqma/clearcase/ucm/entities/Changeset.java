@@ -1,8 +1,25 @@
 package net.praqma.clearcase.ucm.entities;
 
-import java.io.Serializable;
+import java.io.Externalizable;
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
 import java.util.ArrayList;
 
-public class Changeset implements Serializable {
+/**
+ * The versions of an {@link Activity}, written in the format of {@link EntityCodec}
+ */
+public class Changeset implements Externalizable {
 	public ArrayList<Version> versions = new ArrayList<Version>();
+
+	@Override
+	public void writeExternal( ObjectOutput out ) throws IOException {
+		new EntityCodec.Output( out ).writeEntities( versions );
+	}
+
+	@Override
+	public void readExternal( ObjectInput in ) throws IOException {
+		versions = new ArrayList<Version>();
+		new EntityCodec.Input( in ).readEntities( Version.class, versions );
+	}
 }
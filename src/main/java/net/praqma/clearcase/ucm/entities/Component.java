@@ -6,6 +6,8 @@ import java.util.logging.Logger;
 import edu.umd.cs.findbugs.annotations.*;
 import net.praqma.clearcase.PVob;
 import net.praqma.clearcase.cleartool.Cleartool;
+import net.praqma.clearcase.cleartool.Span;
+import net.praqma.clearcase.cleartool.Tracer;
 import net.praqma.clearcase.exceptions.*;
 import net.praqma.util.execute.AbnormalProcessTerminationException;
 
@@ -25,6 +27,15 @@ public class Component extends UCMEntity {
 	}
 
 	public Component load() throws UCMEntityNotFoundException, UnableToLoadEntityException {
+		Span span = Tracer.start( "Component.load", this );
+		try {
+			return _load();
+		} finally {
+			span.end();
+		}
+	}
+
+	private Component _load() throws UCMEntityNotFoundException, UnableToLoadEntityException {
 		String cmd = "describe -fmt %[name]p " + this;
 		try {
 			Cleartool.run( cmd );
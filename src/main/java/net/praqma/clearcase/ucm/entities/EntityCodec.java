@@ -0,0 +1,336 @@
+package net.praqma.clearcase.ucm.entities;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.File;
+import java.io.IOException;
+import java.io.InvalidObjectException;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import edu.umd.cs.findbugs.annotations.*;
+import net.praqma.clearcase.exceptions.UnableToInitializeEntityException;
+
+/**
+ * A compact binary format of entities, for the lists of them shipped between JVMs, e.g. by Jenkins remoting.<br>
+ * Each string, e.g. the name or the {@link net.praqma.clearcase.PVob} of an entity, is written once, and referred to by number after that.
+ * Each entity is written once with its state, and referred to by number after that, so an entity reached twice is one instance when read.
+ * Dates are written as the difference to the date written before, in seconds if they are whole seconds, as variable length integers.<br>
+ * An entity refers to other entities by name only, e.g. a {@link Baseline} to its {@link Stream},
+ * so the graph behind them is not shipped, and is loaded from ClearCase when needed on the other side.
+ * An entity read is the canonical instance of the {@link EntityIdentityMap}, if it has one.
+ * The state shipped is only given to an instance not loaded and without fields described, the state of the others is kept.<br>
+ * A list writes its entities with an {@link Output} of its own in {@link java.io.Externalizable#writeExternal(java.io.ObjectOutput)}
+ * and reads them with an {@link Input} in {@link java.io.Externalizable#readExternal(java.io.ObjectInput)}.
+ *
+ * @see UCMEntity#writeCompact(Output)
+ */
+@SuppressFBWarnings("")
+public final class EntityCodec {
+
+    private static final int nullRef = 0;
+    private static final int newRef = 1;
+
+    private EntityCodec() {
+    }
+
+    /**
+     * Writes strings, dates and entities
+     */
+    public static class Output {
+        private final DataOutput out;
+        private final Map<String, Integer> strings = new HashMap<String, Integer>();
+        private final Map<UCMEntity, Integer> entities = new IdentityHashMap<UCMEntity, Integer>();
+        private long lastDate = 0;
+
+        public Output( DataOutput out ) {
+            this.out = out;
+        }
+
+        public void writeVarInt( int value ) throws IOException {
+            while( ( value & ~0x7F ) != 0 ) {
+                out.writeByte( ( value & 0x7F ) | 0x80 );
+                value >>>= 7;
+            }
+            out.writeByte( value );
+        }
+
+        public void writeVarLong( long value ) throws IOException {
+            while( ( value & ~0x7FL ) != 0 ) {
+                out.writeByte( (int) ( ( value & 0x7F ) | 0x80 ) );
+                value >>>= 7;
+            }
+            out.writeByte( (int) value );
+        }
+
+        public void writeBoolean( boolean value ) throws IOException {
+            out.writeBoolean( value );
+        }
+
+        public void writeString( String value ) throws IOException {
+            if( value == null ) {
+                writeVarInt( nullRef );
+                return;
+            }
+
+            Integer ref = strings.get( value );
+            if( ref != null ) {
+                writeVarInt( ref + 2 );
+                return;
+            }
+
+            strings.put( value, strings.size() );
+            byte[] bytes = value.getBytes( StandardCharsets.UTF_8 );
+            writeVarInt( newRef );
+            writeVarInt( bytes.length );
+            out.write( bytes );
+        }
+
+        public void writeFile( File file ) throws IOException {
+            writeString( file != null ? file.getPath() : null );
+        }
+
+        /**
+         * @param value The constant, or null
+         */
+        public void writeEnum( Enum<?> value ) throws IOException {
+            writeVarInt( value != null ? value.ordinal() + 1 : 0 );
+        }
+
+        public void writeDate( Instant date ) throws IOException {
+            if( date == null ) {
+                writeVarLong( 0 );
+                return;
+            }
+
+            long millis = date.toEpochMilli();
+            long delta = millis - lastDate;
+            lastDate = millis;
+            if( delta % 1000 == 0 ) {
+                writeVarLong( ( zigzag( delta / 1000 ) << 1 ) + 1 );
+            } else {
+                writeVarLong( ( zigzag( delta ) << 1 ) + 2 );
+            }
+        }
+
+        /**
+         * Write an entity, with its state the first time
+         *
+         * @param entity The entity, or null
+         */
+        public void writeEntity( UCMEntity entity ) throws IOException {
+            if( entity == null ) {
+                writeVarInt( nullRef );
+                return;
+            }
+
+            Integer ref = entities.get( entity );
+            if( ref != null ) {
+                writeVarInt( ref + 2 );
+                return;
+            }
+
+            entities.put( entity, entities.size() );
+            writeVarInt( newRef );
+            writeString( entity.getClass().getName() );
+
+            /* The name and PVob apart, so the PVob is written once */
+            String fqname = entity.getFullyQualifiedName();
+            int at = fqname.lastIndexOf( '@' );
+            writeString( at > 0 ? fqname.substring( 0, at ) : fqname );
+            writeString( at > 0 ? fqname.substring( at ) : null );
+
+            writeBoolean( entity.loaded && entity.isCompact() );
+            entity.writeCompact( this );
+        }
+
+        public void writeEntities( Collection<? extends UCMEntity> entities ) throws IOException {
+            writeVarInt( entities.size() );
+            for( UCMEntity entity : entities ) {
+                writeEntity( entity );
+            }
+        }
+
+        private static long zigzag( long value ) {
+            return ( value << 1 ) ^ ( value >> 63 );
+        }
+    }
+
+    /**
+     * Reads what {@link Output} writes
+     */
+    public static class Input {
+        private final DataInput in;
+        private final List<String> strings = new ArrayList<String>();
+        private final List<UCMEntity> entities = new ArrayList<UCMEntity>();
+        private long lastDate = 0;
+
+        public Input( DataInput in ) {
+            this.in = in;
+        }
+
+        public int readVarInt() throws IOException {
+            int value = 0;
+            for( int shift = 0 ; shift < 35 ; shift += 7 ) {
+                int b = in.readUnsignedByte();
+                value |= ( b & 0x7F ) << shift;
+                if( ( b & 0x80 ) == 0 ) {
+                    return value;
+                }
+            }
+            throw new InvalidObjectException( "Malformed variable length integer" );
+        }
+
+        public long readVarLong() throws IOException {
+            long value = 0;
+            for( int shift = 0 ; shift < 70 ; shift += 7 ) {
+                int b = in.readUnsignedByte();
+                value |= (long) ( b & 0x7F ) << shift;
+                if( ( b & 0x80 ) == 0 ) {
+                    return value;
+                }
+            }
+            throw new InvalidObjectException( "Malformed variable length integer" );
+        }
+
+        public boolean readBoolean() throws IOException {
+            return in.readBoolean();
+        }
+
+        public String readString() throws IOException {
+            int ref = readVarInt();
+            if( ref == nullRef ) {
+                return null;
+            }
+            if( ref != newRef ) {
+                return get( strings, ref - 2 );
+            }
+
+            byte[] bytes = new byte[readVarInt()];
+            in.readFully( bytes );
+            String value = new String( bytes, StandardCharsets.UTF_8 );
+            strings.add( value );
+            return value;
+        }
+
+        public File readFile() throws IOException {
+            String path = readString();
+            return path != null ? new File( path ) : null;
+        }
+
+        public <E extends Enum<E>> E readEnum( Class<E> clazz ) throws IOException {
+            int ordinal = readVarInt();
+            if( ordinal == 0 ) {
+                return null;
+            }
+            E[] constants = clazz.getEnumConstants();
+            if( ordinal > constants.length ) {
+                throw new InvalidObjectException( "No " + clazz.getSimpleName() + " number " + ( ordinal - 1 ) );
+            }
+            return constants[ordinal - 1];
+        }
+
+        public Instant readDate() throws IOException {
+            long value = readVarLong();
+            if( value == 0 ) {
+                return null;
+            }
+
+            long delta = unzigzag( ( value - 1 ) >>> 1 );
+            lastDate += ( ( value - 1 ) & 1 ) == 0 ? delta * 1000 : delta;
+            return Instant.ofEpochMilli( lastDate );
+        }
+
+        /**
+         * @param clazz The type expected
+         * @return The entity, or null
+         */
+        public <T extends UCMEntity> T readEntity( Class<T> clazz ) throws IOException {
+            int ref = readVarInt();
+            if( ref == nullRef ) {
+                return null;
+            }
+            if( ref != newRef ) {
+                return cast( clazz, get( entities, ref - 2 ) );
+            }
+
+            String type = readString();
+            Class<? extends UCMEntity> entityClass;
+            try {
+                Class<?> c = Class.forName( type, false, UCMEntity.class.getClassLoader() );
+                if( !UCMEntity.class.isAssignableFrom( c ) ) {
+                    throw new InvalidObjectException( type + " is not an entity" );
+                }
+                entityClass = c.asSubclass( UCMEntity.class );
+            } catch( ClassNotFoundException e ) {
+                throw new InvalidObjectException( "Unknown entity " + type );
+            }
+
+            String name = readString();
+            String pvob = readString();
+            UCMEntity entity;
+            try {
+                entity = UCMEntity.getEntity( entityClass, pvob != null ? name + pvob : name );
+            } catch( UnableToInitializeEntityException e ) {
+                throw new IOException( "Unable to read the entity " + name, e );
+            }
+            entities.add( entity );
+
+            boolean loaded = readBoolean();
+            synchronized( entity ) {
+                if( entity.isBlank() ) {
+                    entity.readCompact( this );
+                    if( loaded ) {
+                        entity.loaded = true;
+                    }
+                } else {
+                    /* What this JVM knows may be newer, the state shipped is read past */
+                    UCMEntity shipped;
+                    try {
+                        shipped = UCMEntity.newEntity( entityClass, entity.getFullyQualifiedName() );
+                    } catch( UnableToInitializeEntityException e ) {
+                        throw new IOException( "Unable to read the entity " + name, e );
+                    }
+                    synchronized( shipped ) {
+                        shipped.readCompact( this );
+                    }
+                }
+            }
+            return cast( clazz, entity );
+        }
+
+        /**
+         * Read entities into a collection
+         */
+        public <T extends UCMEntity> void readEntities( Class<T> clazz, Collection<T> entities ) throws IOException {
+            int size = readVarInt();
+            for( int i = 0 ; i < size ; i++ ) {
+                entities.add( readEntity( clazz ) );
+            }
+        }
+
+        private static <T> T get( List<T> list, int index ) throws InvalidObjectException {
+            if( index < 0 || index >= list.size() ) {
+                throw new InvalidObjectException( "No reference number " + index );
+            }
+            return list.get( index );
+        }
+
+        private static <T extends UCMEntity> T cast( Class<T> clazz, UCMEntity entity ) throws InvalidObjectException {
+            if( !clazz.isInstance( entity ) ) {
+                throw new InvalidObjectException( entity + " is not a " + clazz.getSimpleName() );
+            }
+            return clazz.cast( entity );
+        }
+
+        private static long unzigzag( long value ) {
+            return ( value >>> 1 ) ^ -( value & 1 );
+        }
+    }
+}
@@ -0,0 +1,209 @@
+package net.praqma.clearcase.ucm.entities;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.SoftReference;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+
+import edu.umd.cs.findbugs.annotations.*;
+import net.praqma.clearcase.cleartool.ChangeListener;
+
+/**
+ * Keeps one canonical instance per fully qualified name, so an entity reached through different paths is loaded once.<br>
+ * The entities are held by soft references, at most <code>maxSize</code> per PVob, evicting the least recently used.<br>
+ * Commands changing an entity mark its canonical instance as not loaded, so it is loaded again when needed,
+ * see {@link net.praqma.clearcase.cleartool.CleartoolCache#getChanges(String)}.
+ * Changes made outside this JVM are not seen until the entity is invalidated or loaded with force.<br>
+ * Activities are not kept, their change sets depend on the baselines compared.
+ */
+@SuppressFBWarnings("")
+public class EntityIdentityMap implements ChangeListener {
+
+    private static final Logger logger = Logger.getLogger( EntityIdentityMap.class.getName() );
+
+    public static final int defaultMaxSize = 10000;
+
+    private static final List<Class<? extends UCMEntity>> canonical = Arrays.<Class<? extends UCMEntity>>asList( Baseline.class, Stream.class, Component.class, Project.class, Folder.class );
+
+    private static class Ref extends SoftReference<UCMEntity> {
+        private final String pvob;
+        private final String fqname;
+
+        private Ref( UCMEntity entity, String pvob, ReferenceQueue<UCMEntity> queue ) {
+            super( entity, queue );
+            this.pvob = pvob;
+            this.fqname = entity.getFullyQualifiedName();
+        }
+    }
+
+    private final int maxSize;
+    private final Map<String, LinkedHashMap<String, Ref>> pvobs = new HashMap<String, LinkedHashMap<String, Ref>>();
+    private final ReferenceQueue<UCMEntity> queue = new ReferenceQueue<UCMEntity>();
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    public EntityIdentityMap() {
+        this( defaultMaxSize );
+    }
+
+    /**
+     * @param maxSize The max number of entities per PVob
+     */
+    public EntityIdentityMap( int maxSize ) {
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * @return True if entities of the class are kept
+     */
+    public static boolean isCanonical( Class<? extends UCMEntity> clazz ) {
+        return canonical.contains( clazz );
+    }
+
+    static String getPVob( String fqname ) {
+        int idx = fqname.lastIndexOf( '@' );
+        return idx < 0 ? "" : fqname.substring( idx + 1 );
+    }
+
+    /**
+     * @return The canonical instance, or null if there is none
+     */
+    public synchronized <T extends UCMEntity> T get( Class<T> clazz, String fqname ) {
+        purge();
+        Map<String, Ref> entities = pvobs.get( getPVob( fqname ) );
+        Ref ref = entities != null ? entities.get( fqname ) : null;
+        UCMEntity entity = ref != null ? ref.get() : null;
+        if( entity != null && clazz.isInstance( entity ) ) {
+            hits.incrementAndGet();
+            return clazz.cast( entity );
+        }
+
+        misses.incrementAndGet();
+        return null;
+    }
+
+    /**
+     * Make an entity canonical, unless another instance already is
+     * @return The canonical instance
+     */
+    public synchronized <T extends UCMEntity> T putIfAbsent( T entity ) {
+        String fqname = entity.getFullyQualifiedName();
+        String pvob = getPVob( fqname );
+
+        LinkedHashMap<String, Ref> entities = pvobs.get( pvob );
+        if( entities == null ) {
+            entities = new LinkedHashMap<String, Ref>( 16, 0.75f, true ) {
+                @Override
+                protected boolean removeEldestEntry( Map.Entry<String, Ref> eldest ) {
+                    return size() > maxSize;
+                }
+            };
+            pvobs.put( pvob, entities );
+        }
+
+        Ref ref = entities.get( fqname );
+        UCMEntity existing = ref != null ? ref.get() : null;
+        if( existing != null && existing.getClass().equals( entity.getClass() ) ) {
+            @SuppressWarnings( "unchecked" )
+            T t = (T) existing;
+            return t;
+        }
+
+        entities.put( fqname, new Ref( entity, pvob, queue ) );
+        return entity;
+    }
+
+    /**
+     * Drop the entries of collected entities
+     */
+    private void purge() {
+        Ref ref;
+        while( ( ref = (Ref) queue.poll() ) != null ) {
+            Map<String, Ref> entities = pvobs.get( ref.pvob );
+            if( entities != null && entities.get( ref.fqname ) == ref ) {
+                entities.remove( ref.fqname );
+                if( entities.isEmpty() ) {
+                    pvobs.remove( ref.pvob );
+                }
+            }
+        }
+    }
+
+    /**
+     * Mark the canonical instance as not loaded, so it is loaded again when needed
+     * @param fqname The fully qualified name, e.g. baseline:bl1@\pvob
+     */
+    public synchronized void invalidate( String fqname ) {
+        Map<String, Ref> entities = pvobs.get( getPVob( fqname ) );
+        Ref ref = entities != null ? entities.get( fqname ) : null;
+        UCMEntity entity = ref != null ? ref.get() : null;
+        if( entity != null ) {
+            entity.invalidate();
+        }
+    }
+
+    /**
+     * Mark all canonical instances as not loaded
+     */
+    public synchronized void invalidateAll() {
+        for( Map<String, Ref> entities : pvobs.values() ) {
+            for( Ref ref : entities.values() ) {
+                UCMEntity entity = ref.get();
+                if( entity != null ) {
+                    entity.invalidate();
+                }
+            }
+        }
+    }
+
+    /**
+     * Forget the canonical instances. Instances already handed out are no longer canonical.
+     */
+    public synchronized void clear() {
+        pvobs.clear();
+        while( queue.poll() != null ) {
+            /* Drain */
+        }
+    }
+
+    @Override
+    public void changed( String cmd, List<String> selectors ) {
+        if( selectors == null ) {
+            logger.fine( "Invalidating all entities, because of " + cmd );
+            invalidateAll();
+        } else {
+            for( String selector : selectors ) {
+                invalidate( selector );
+            }
+        }
+    }
+
+    /**
+     * @return The number of entities kept, including those collected but not yet purged
+     */
+    public synchronized int size() {
+        int size = 0;
+        for( Map<String, Ref> entities : pvobs.values() ) {
+            size += entities.size();
+        }
+        return size;
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+}
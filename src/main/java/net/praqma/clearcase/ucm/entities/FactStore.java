@@ -0,0 +1,289 @@
+package net.praqma.clearcase.ucm.entities;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+
+import edu.umd.cs.findbugs.annotations.*;
+
+/**
+ * A persistent store of facts about entities that never change once the entity is created,
+ * e.g. the component, stream, date and user of a {@link Baseline}, so a new JVM does not ask cleartool again.<br>
+ * The facts are appended to a log file, and the offset of the latest record of each entity is kept in an index, rebuilt when the file is opened.
+ * A record is a length, a checksum and the facts, a torn record at the end of the log, from a JVM that died while writing, is cut off.
+ * The strings of a record are written as their length and UTF-8 bytes, so a fact can be longer than {@link DataOutputStream#writeUTF(String)} allows.
+ * Facts of an entity longer than 1 MB in all are not stored.<br>
+ * Only immutable facts belong here, e.g. never a promotion level, a label status or a mastership.
+ * An entity removed and created again with the same name keeps the facts of the first one, delete the file to start over.<br>
+ * The store failing to read or write is logged, and the entity is loaded from ClearCase as without a store.
+ * The store is safe for concurrent use within one JVM, but not by several JVMs at once.
+ *
+ * @see UCMEntity#setFactStore(FactStore)
+ */
+@SuppressFBWarnings("")
+public class FactStore implements Closeable {
+
+    private static final Logger logger = Logger.getLogger( FactStore.class.getName() );
+
+    private static final byte[] magic = { 'C', 'O', 'O', 'L', 'F', 'A', 'C', 'T' };
+    private static final int version = 2;
+    private static final int headerLength = magic.length + 4;
+
+    /**
+     * The max length of a record, a longer one in the log is taken as garbage
+     */
+    private static final int maxRecordLength = 1024 * 1024;
+
+    private final File file;
+    private final RandomAccessFile raf;
+    private final FileChannel channel;
+    private final ConcurrentMap<String, Long> index = new ConcurrentHashMap<String, Long>();
+    private long end;
+
+    private FactStore( File file ) throws IOException {
+        this.file = file;
+        this.raf = new RandomAccessFile( file, "rw" );
+        this.channel = raf.getChannel();
+    }
+
+    /**
+     * Open the store, creating the file if it does not exist
+     *
+     * @param file The log file
+     * @return The store
+     * @throws IOException Thrown when the file cannot be read or written, or is not a fact store
+     */
+    public static FactStore open( File file ) throws IOException {
+        FactStore store = new FactStore( file );
+        try {
+            store.readIndex();
+        } catch( IOException e ) {
+            store.close();
+            throw e;
+        }
+        return store;
+    }
+
+    private void readIndex() throws IOException {
+        if( channel.size() < headerLength ) {
+            writeHeader();
+            return;
+        }
+
+        DataInputStream in = new DataInputStream( new BufferedInputStream( Channels.newInputStream( channel.position( 0 ) ), 65536 ) );
+        byte[] header = new byte[magic.length];
+        in.readFully( header );
+        if( !Arrays.equals( header, magic ) ) {
+            throw new IOException( file + " is not a fact store" );
+        }
+        if( in.readInt() != version ) {
+            logger.warning( "The fact store " + file + " is of another version, starting over" );
+            writeHeader();
+            return;
+        }
+
+        long offset = headerLength;
+        while( true ) {
+            byte[] payload;
+            try {
+                int length = in.readInt();
+                int checksum = in.readInt();
+                if( length < 0 || length > maxRecordLength ) {
+                    break;
+                }
+                payload = new byte[length];
+                in.readFully( payload );
+                if( checksum != checksum( payload ) ) {
+                    break;
+                }
+            } catch( EOFException e ) {
+                break;
+            }
+
+            index.put( readString( new DataInputStream( new ByteArrayInputStream( payload ) ) ), offset );
+            offset += 8 + payload.length;
+        }
+
+        if( offset < channel.size() ) {
+            logger.warning( "Cutting off " + ( channel.size() - offset ) + " bytes at the end of the fact store " + file );
+            channel.truncate( offset );
+        }
+        end = offset;
+        logger.fine( "Read " + index.size() + " entities from the fact store " + file );
+    }
+
+    private void writeHeader() throws IOException {
+        channel.truncate( 0 );
+        ByteBuffer header = ByteBuffer.allocate( headerLength );
+        header.put( magic ).putInt( version ).flip();
+        write( header, 0 );
+        end = headerLength;
+    }
+
+    /**
+     * @param key The fully qualified name of the entity
+     * @return The facts of the entity, or null if there are none or they cannot be read
+     */
+    public Map<String, String> get( String key ) {
+        Long offset = index.get( key );
+        if( offset == null ) {
+            return null;
+        }
+
+        try {
+            ByteBuffer head = ByteBuffer.allocate( 8 );
+            read( head, offset );
+            int length = head.getInt();
+            int checksum = head.getInt();
+            ByteBuffer payload = ByteBuffer.allocate( length );
+            read( payload, offset + 8 );
+            if( checksum != checksum( payload.array() ) ) {
+                throw new IOException( "Bad checksum at " + offset );
+            }
+
+            DataInputStream in = new DataInputStream( new ByteArrayInputStream( payload.array() ) );
+            readString( in );
+            int size = in.readUnsignedShort();
+            Map<String, String> facts = new LinkedHashMap<String, String>( size * 2 );
+            for( int i = 0 ; i < size ; i++ ) {
+                facts.put( readString( in ), readString( in ) );
+            }
+            return Collections.unmodifiableMap( facts );
+        } catch( IOException e ) {
+            logger.log( Level.WARNING, "Unable to read the facts of " + key + " from " + file, e );
+            return null;
+        }
+    }
+
+    /**
+     * Add facts of an entity to the facts already stored. Facts already stored with the same values are not written again.
+     *
+     * @param key The fully qualified name of the entity
+     * @param facts The facts to add
+     */
+    public synchronized void put( String key, Map<String, String> facts ) {
+        Map<String, String> stored = get( key );
+        Map<String, String> merged = new LinkedHashMap<String, String>();
+        if( stored != null ) {
+            merged.putAll( stored );
+        }
+        merged.putAll( facts );
+        if( merged.equals( stored ) ) {
+            return;
+        }
+
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream( 256 );
+            DataOutputStream out = new DataOutputStream( bytes );
+            writeString( out, key );
+            out.writeShort( merged.size() );
+            for( Map.Entry<String, String> fact : merged.entrySet() ) {
+                writeString( out, fact.getKey() );
+                writeString( out, fact.getValue() );
+            }
+            out.close();
+            byte[] payload = bytes.toByteArray();
+            if( payload.length > maxRecordLength ) {
+                logger.fine( "The facts of " + key + " are " + payload.length + " bytes, too long to store" );
+                return;
+            }
+
+            ByteBuffer record = ByteBuffer.allocate( 8 + payload.length );
+            record.putInt( payload.length ).putInt( checksum( payload ) ).put( payload ).flip();
+            write( record, end );
+            index.put( key, end );
+            end += record.limit();
+        } catch( IOException e ) {
+            logger.log( Level.WARNING, "Unable to store the facts of " + key + " in " + file, e );
+        }
+    }
+
+    /**
+     * @param key The fully qualified name of the entity
+     * @return True if facts of the entity are stored
+     */
+    public boolean contains( String key ) {
+        return index.containsKey( key );
+    }
+
+    /**
+     * @return The number of entities with facts
+     */
+    public int size() {
+        return index.size();
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if( channel.isOpen() ) {
+            channel.force( false );
+        }
+        raf.close();
+    }
+
+    private void read( ByteBuffer buffer, long position ) throws IOException {
+        while( buffer.hasRemaining() ) {
+            if( channel.read( buffer, position + buffer.position() ) < 0 ) {
+                throw new EOFException( "Unexpected end of " + file + " at " + position );
+            }
+        }
+        buffer.flip();
+    }
+
+    private void write( ByteBuffer buffer, long position ) throws IOException {
+        while( buffer.hasRemaining() ) {
+            channel.write( buffer, position + buffer.position() );
+        }
+    }
+
+    private static void writeString( DataOutputStream out, String string ) throws IOException {
+        byte[] bytes = string.getBytes( StandardCharsets.UTF_8 );
+        out.writeInt( bytes.length );
+        out.write( bytes );
+    }
+
+    private static String readString( DataInputStream in ) throws IOException {
+        int length = in.readInt();
+        if( length < 0 || length > maxRecordLength ) {
+            throw new IOException( "Bad string length " + length );
+        }
+        byte[] bytes = new byte[length];
+        in.readFully( bytes );
+        return new String( bytes, StandardCharsets.UTF_8 );
+    }
+
+    private static int checksum( byte[] bytes ) {
+        CRC32 crc = new CRC32();
+        crc.update( bytes, 0, bytes.length );
+        return (int) crc.getValue();
+    }
+
+    @Override
+    public String toString() {
+        return "FactStore " + file + ", " + index.size() + " entities";
+    }
+}
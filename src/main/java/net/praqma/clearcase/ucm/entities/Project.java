@@ -8,6 +8,8 @@ import java.util.logging.Logger;
 import edu.umd.cs.findbugs.annotations.*;
 import net.praqma.clearcase.PVob;
 import net.praqma.clearcase.cleartool.Cleartool;
+import net.praqma.clearcase.cleartool.Span;
+import net.praqma.clearcase.cleartool.Tracer;
 import net.praqma.clearcase.exceptions.*;
 import net.praqma.clearcase.interfaces.StreamContainable;
 import net.praqma.util.execute.AbnormalProcessTerminationException;
@@ -165,6 +167,15 @@ public class Project extends UCMEntity implements StreamContainable {
 
     @Override
 	public Project load() throws UnableToLoadEntityException, UnableToInitializeEntityException {
+		Span span = Tracer.start( "Project.load", this );
+		try {
+			return _load();
+		} finally {
+			span.end();
+		}
+	}
+
+	private Project _load() throws UnableToLoadEntityException, UnableToInitializeEntityException {
         
         if(loaded) {
             return this;
@@ -198,13 +209,7 @@ public class Project extends UCMEntity implements StreamContainable {
 	}
 
 	public Stream getIntegrationStream() {
-		if( !loaded ) {
-			try {
-				load();
-			} catch( ClearCaseException e ) {
-				throw new EntityNotLoadedException( fqname, fqname + " could not be auto loaded", e );
-			}
-		}
+		autoLoad();
 		
 		return stream;
 	}
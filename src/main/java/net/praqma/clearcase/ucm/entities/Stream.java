@@ -11,10 +11,14 @@ import edu.umd.cs.findbugs.annotations.*;
 import net.praqma.clearcase.Deliver;
 import net.praqma.clearcase.PVob;
 import net.praqma.clearcase.cleartool.Cleartool;
+import net.praqma.clearcase.cleartool.ExistenceCache;
+import net.praqma.clearcase.cleartool.Span;
+import net.praqma.clearcase.cleartool.Tracer;
 import net.praqma.clearcase.exceptions.*;
 import net.praqma.clearcase.interfaces.Diffable;
 import net.praqma.clearcase.interfaces.StreamContainable;
 import net.praqma.clearcase.ucm.entities.Project.PromotionLevel;
+import net.praqma.clearcase.ucm.utils.BaselineListingService;
 import net.praqma.clearcase.ucm.view.UCMView;
 import net.praqma.util.execute.AbnormalProcessTerminationException;
 import net.praqma.util.execute.CmdResult;
@@ -29,9 +33,13 @@ import net.praqma.util.execute.CmdResult;
 public class Stream extends UCMEntity implements Diffable, Serializable, StreamContainable {
 
 	private static final String rx_stream_load = "\\s*Error: stream not found\\s*";
+	private static final Pattern pattern_stream_not_found = Pattern.compile( "Error: (stream not found|Unable to determine VOB for pathname)", Pattern.CASE_INSENSITIVE );
 
 	private static final transient Logger logger = Logger.getLogger( Stream.class.getName() );
 
+	private static final String loadFormat = "%[name]p}{%[project]Xp}{%X[def_deliver_tgt]p}{%[read_only]p}{%[found_bls]Xp}{%[master]p";
+	private static final Set<Field> loadFields = Collections.unmodifiableSet( EnumSet.of( Field.MASTERSHIP ) );
+
     /**
      * The list of recommended {@link Baseline}s
      */
@@ -121,6 +129,8 @@ public class Stream extends UCMEntity implements Diffable, Serializable, StreamC
 			Cleartool.run( cmd );
 		} catch( Exception e ) {
 			throw new UnableToCreateEntityException( Stream.class, e );
+		} finally {
+			ExistenceCache.changed( ExistenceCache.Kind.STREAM, nstream );
 		}
 
 		Stream stream = Stream.get( nstream );
@@ -175,6 +185,8 @@ public class Stream extends UCMEntity implements Diffable, Serializable, StreamC
 			Cleartool.run( cmd );
 		} catch( Exception e ) {
 			throw new UnableToCreateEntityException( Stream.class, e );
+		} finally {
+			ExistenceCache.changed( ExistenceCache.Kind.STREAM, name );
 		}
 
 		return Stream.get( name );
@@ -182,11 +194,20 @@ public class Stream extends UCMEntity implements Diffable, Serializable, StreamC
 
     @Override
 	public Stream load() throws UCMEntityNotFoundException, UnableToLoadEntityException, UnableToInitializeEntityException {
+		Span span = Tracer.start( "Stream.load", this );
+		try {
+			return _load();
+		} finally {
+			span.end();
+		}
+	}
+
+	private Stream _load() throws UCMEntityNotFoundException, UnableToLoadEntityException, UnableToInitializeEntityException {
 		logger.fine( "loading stream" );
 
 		String rawdata = "";
 
-		String cmd = "describe -fmt %[name]p}{%[project]Xp}{%X[def_deliver_tgt]p}{%[read_only]p}{%[found_bls]Xp}{%[master]p " + this;
+		String cmd = "describe -fmt " + loadFormat + " " + this;
 		try {
 			rawdata = Cleartool.run( cmd ).stdoutBuffer.toString();
 		} catch( AbnormalProcessTerminationException e ) {
@@ -197,6 +218,23 @@ public class Stream extends UCMEntity implements Diffable, Serializable, StreamC
 			}
 		}
 
+		loadFrom( rawdata );
+
+		return this;
+	}
+
+	@Override
+	protected String getLoadFormat() {
+		return loadFormat;
+	}
+
+	@Override
+	protected Set<Field> getLoadFields() {
+		return loadFields;
+	}
+
+	@Override
+	protected void loadFrom( String rawdata ) throws UnableToLoadEntityException, UnableToInitializeEntityException {
 		String[] data = rawdata.split( "\\}\\{" );
 		logger.fine( "I got: " + Arrays.asList( data ) );
 
@@ -215,13 +253,15 @@ public class Stream extends UCMEntity implements Diffable, Serializable, StreamC
 			setReadOnly( false );
 		}
 
-		/* Set foundation baseline */
+		/* Set foundation baseline, replacing those of an earlier load */
         String[] blss = data[4].trim().split( "\\s+" );
+        List<Baseline> found = new ArrayList<Baseline>( blss.length );
         for( String bls : blss ) {
             if( bls != null && !bls.isEmpty() ) {
-                addFoundationBaseline( Baseline.get( bls ) );
+                found.add( Baseline.get( bls ) );
             }
         }
+        this.foundations = found;
 
 		/* Set mastership */
 		try {
@@ -233,19 +273,20 @@ public class Stream extends UCMEntity implements Diffable, Serializable, StreamC
 		}
 
 		this.loaded = true;
-
-		return this;
 	}
 
+	/**
+	 * The streams delivering to this {@link Stream}, loaded together.
+	 * To poll their baselines, use {@link #getChildStreamBaselines(List, PromotionLevel, boolean)} rather than a {@link net.praqma.clearcase.ucm.utils.BaselineList} per stream.
+	 * Children of another mastership are left out, and so are children with a posted delivery unless multisite polling.
+	 * @param multisitePolling If true, children with a posted delivery are included
+	 * @return The child streams
+	 * @throws UnableToInitializeEntityException Thrown when ClearCase reports errors
+	 * @throws CleartoolException Thrown when ClearCase reports errors
+	 */
 	public List<Stream> getChildStreams( boolean multisitePolling ) throws UnableToInitializeEntityException, CleartoolException {
 		/* We need to load this, because we need the mastership */
-		if( !loaded ) {
-			try {
-				load();
-			} catch( ClearCaseException e ) {
-				throw new EntityNotLoadedException( fqname, fqname + " could not be auto loaded", e );
-			}
-		}
+		autoLoad();
 
 		List<Stream> streams = new ArrayList<Stream>();
 		try {
@@ -269,7 +310,13 @@ public class Stream extends UCMEntity implements Diffable, Serializable, StreamC
 			logger.fine( "The Stream has no child streams" );
 		}
 		
-		/**/
+		/* Describe the children together, instead of one at a time when their mastership is needed */
+		try {
+			UCMEntity.loadAll( streams );
+		} catch( ClearCaseException e ) {
+			logger.fine( "Unable to load the child streams together: " + e.getMessage() );
+		}
+
 		Iterator<Stream> it = streams.iterator();
 		String mastership = this.getMastership();
 		while( it.hasNext() ) {
@@ -357,7 +404,8 @@ public class Stream extends UCMEntity implements Diffable, Serializable, StreamC
 	}
 
 	/**
-	 * For each project return their integration streams	 
+	 * For each project return their integration streams.
+	 * To poll their baselines, use {@link #getSiblingStreamBaselines(List, PromotionLevel)} rather than a {@link net.praqma.clearcase.ucm.utils.BaselineList} per stream.
 	 * @return A list of {@link Stream}s
      * @throws net.praqma.clearcase.exceptions.UnableToListProjectsException Thrown when ClearCase reports errors 
      * @throws net.praqma.clearcase.exceptions.UnableToInitializeEntityException Thrown when ClearCase reports errors 
@@ -369,12 +417,19 @@ public class Stream extends UCMEntity implements Diffable, Serializable, StreamC
 		List<Project> projects = Project.getProjects( this.getPVob() );
 		List<Stream> streams = new ArrayList<Stream>();
 
+		List<Stream> integrations = new ArrayList<Stream>();
 		for( Project p : projects ) {
             p.load();
-            p.getIntegrationStream().load();
-            Stream dts = p.getIntegrationStream().getDefaultTarget();
+            integrations.add( p.getIntegrationStream() );
+		}
+
+		/* Describe the integration streams together, instead of one at a time */
+		UCMEntity.loadAll( integrations, UCMEntity.defaultLoadThreads );
+
+		for( Stream integration : integrations ) {
+            Stream dts = integration.getDefaultTarget();
             if( dts != null && this.equals( dts ) ) {
-                streams.add( p.getIntegrationStream() );
+                streams.add( integration );
             }
 		}
 
@@ -382,6 +437,46 @@ public class Stream extends UCMEntity implements Diffable, Serializable, StreamC
 
 		return streams;
 	}
+
+	/**
+	 * List the baselines of the child streams, see {@link #getChildStreams(boolean)}, all streams and components concurrently
+	 * @param components The components
+	 * @param plevel The promotion level, null for all
+	 * @param multisitePolling If true, the posted baselines of a child with a posted delivery are returned
+	 * @return The baselines of every child stream and component
+	 * @throws UnableToInitializeEntityException Thrown when ClearCase reports errors
+	 * @throws CleartoolException Thrown when ClearCase reports errors
+	 * @see BaselineListingService
+	 */
+	public BaselineListingService.Listing getChildStreamBaselines( List<Component> components, PromotionLevel plevel, boolean multisitePolling ) throws UnableToInitializeEntityException, CleartoolException {
+		return listBaselines( getChildStreams( multisitePolling ), components, plevel, multisitePolling );
+	}
+
+	/**
+	 * List the baselines of the sibling streams, see {@link #getSiblingStreams()}, all streams and components concurrently
+	 * @param components The components
+	 * @param plevel The promotion level, null for all
+	 * @return The baselines of every sibling stream and component
+	 * @throws UnableToListProjectsException Thrown when ClearCase reports errors
+	 * @throws UnableToInitializeEntityException Thrown when ClearCase reports errors
+	 * @throws UnableToLoadEntityException Thrown when ClearCase reports errors
+	 * @throws UCMEntityNotFoundException Thrown when ClearCase reports errors
+	 * @see BaselineListingService
+	 */
+	public BaselineListingService.Listing getSiblingStreamBaselines( List<Component> components, PromotionLevel plevel ) throws UnableToListProjectsException, UnableToInitializeEntityException, UnableToLoadEntityException, UCMEntityNotFoundException {
+		return listBaselines( getSiblingStreams(), components, plevel, false );
+	}
+
+	private static BaselineListingService.Listing listBaselines( List<Stream> streams, List<Component> components, PromotionLevel plevel, boolean multisitePolling ) {
+		List<BaselineListingService.Query> queries = new ArrayList<BaselineListingService.Query>();
+		for( Stream stream : streams ) {
+			for( Component component : components ) {
+				queries.add( new BaselineListingService.Query( stream, component, plevel, multisitePolling ) );
+			}
+		}
+
+		return new BaselineListingService().list( queries );
+	}
     
     /**
      * For JENKINS-26484 
@@ -439,14 +534,21 @@ public class Stream extends UCMEntity implements Diffable, Serializable, StreamC
 	 * @return True if the Stream exists, false otherwise
 	 *             Is thrown if the fully qualified name is not a valid name
 	 */
-	public static boolean streamExists( String fqname ) {
-		String cmd = "describe " + fqname;
-		try {
-			Cleartool.run( cmd );
-			return true;
-		} catch( Exception e ) {
-			return false;
-		}
+	public static boolean streamExists( final String fqname ) {
+		return ExistenceCache.exists( ExistenceCache.Kind.STREAM, fqname, new ExistenceCache.Probe() {
+			@Override
+			public boolean exists() {
+				try {
+					Cleartool.run( "describe " + fqname );
+					return true;
+				} catch( AbnormalProcessTerminationException e ) {
+					if( pattern_stream_not_found.matcher( e.getMessage() ).find() ) {
+						return false;
+					}
+					throw e;
+				}
+			}
+		} );
 	}
 
 	public boolean exists() {
@@ -615,13 +717,7 @@ public class Stream extends UCMEntity implements Diffable, Serializable, StreamC
 	}
 
 	public Project getProject() {
-		if( !loaded ) {
-			try {
-				load();
-			} catch( ClearCaseException e ) {
-				throw new EntityNotLoadedException( fqname, fqname + " could not be auto loaded", e );
-			}
-		}
+		autoLoad();
 		
 		return this.project;
 	}
@@ -667,6 +763,8 @@ public class Stream extends UCMEntity implements Diffable, Serializable, StreamC
 			Cleartool.run( cmd );
 		} catch( Exception e ) {
 			throw new UnableToRemoveEntityException( this, e );
+		} finally {
+			ExistenceCache.changed( ExistenceCache.Kind.STREAM, fqname );
 		}
 	}
 
@@ -676,13 +774,7 @@ public class Stream extends UCMEntity implements Diffable, Serializable, StreamC
 	 * @return A Stream
 	 */
 	public Stream getDefaultTarget() {
-		if( !loaded ) {
-			try {
-				load();
-			} catch( ClearCaseException e ) {
-				throw new EntityNotLoadedException( fqname, fqname + " could not be auto loaded", e );
-			}
-		}
+		autoLoad();
 		
 		return this.defaultTarget;
 	}
@@ -693,13 +785,7 @@ public class Stream extends UCMEntity implements Diffable, Serializable, StreamC
 	}
 
 	public boolean isReadOnly() {
-		if( !loaded ) {
-			try {
-				load();
-			} catch( ClearCaseException e ) {
-				throw new EntityNotLoadedException( fqname, fqname + " could not be auto loaded", e );
-			}
-		}
+		autoLoad();
 		
 		return readOnly;
 	}
@@ -725,13 +811,7 @@ public class Stream extends UCMEntity implements Diffable, Serializable, StreamC
      * @return The foundation {@link Baseline}
 	 */
 	public Baseline getFoundationBaseline() {
-		if( !loaded ) {
-			try {
-				load();
-			} catch( ClearCaseException e ) {
-				throw new EntityNotLoadedException( fqname, fqname + " could not be auto loaded", e );
-			}
-		}
+		autoLoad();
 		
 		return this.foundations.get( 0 );
 	}
@@ -741,13 +821,7 @@ public class Stream extends UCMEntity implements Diffable, Serializable, StreamC
      * @return A list of {@link Baseline}s, never null
      */
 	public List<Baseline> getFoundationBaselines() {
-		if( !loaded ) {
-			try {
-				load();
-			} catch( ClearCaseException e ) {
-				throw new EntityNotLoadedException( fqname, fqname + " could not be auto loaded", e );
-			}
-		}
+		autoLoad();
 		
 		return this.foundations;
 	}
@@ -1,13 +1,33 @@
 package net.praqma.clearcase.ucm.entities;
 
 import java.io.File;
+import java.io.IOException;
 import java.io.Serializable;
 import java.text.DateFormat;
 import java.text.ParseException;
+import java.text.ParsePosition;
 import java.text.SimpleDateFormat;
+import java.time.DateTimeException;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -18,6 +38,9 @@ import net.praqma.clearcase.PVob;
 import net.praqma.clearcase.Vob;
 import net.praqma.clearcase.api.Describe;
 import net.praqma.clearcase.cleartool.Cleartool;
+import net.praqma.clearcase.cleartool.CleartoolAsync;
+import net.praqma.clearcase.cleartool.Span;
+import net.praqma.clearcase.cleartool.Tracer;
 import net.praqma.clearcase.exceptions.ClearCaseException;
 import net.praqma.clearcase.exceptions.CleartoolException;
 import net.praqma.clearcase.exceptions.EntityNotLoadedException;
@@ -34,6 +57,7 @@ import net.praqma.clearcase.exceptions.UnknownUserException;
 import net.praqma.clearcase.exceptions.UnknownVobException;
 import net.praqma.util.execute.AbnormalProcessTerminationException;
 import net.praqma.util.execute.CmdResult;
+import org.apache.commons.lang.SystemUtils;
 
 /**
  * 
@@ -63,17 +87,39 @@ public abstract class UCMEntity extends ClearCase implements Serializable {
 	}
 
 	public enum Kind {
-		UNKNOWN, DIRECTORY_ELEMENT, FILE_ELEMENT, BRANCH, VERSION, STREAM, DERIVED_OBJECT, BRANCH_TYPE, LABEL_TYPE
+		UNKNOWN, DIRECTORY_ELEMENT, FILE_ELEMENT, BRANCH, VERSION, STREAM, DERIVED_OBJECT, BRANCH_TYPE, LABEL_TYPE;
+
+		/**
+		 * @param objectKind The <code>%[object_kind]p</code> of an entity
+		 * @return The kind, {@link #UNKNOWN} for the kinds not told apart
+		 */
+		public static Kind fromObjectKind( String objectKind ) {
+			if( objectKind.equals( "file element" ) ) {
+				return FILE_ELEMENT;
+			} else if( objectKind.equals( "directory version" ) ) {
+				return DIRECTORY_ELEMENT;
+			}
+			return UNKNOWN;
+		}
 	}
 
 	protected Kind kind = Kind.UNKNOWN;
 
 	protected LabelStatus labelStatus = LabelStatus.UNKNOWN;
 
-	protected Date date;
+	protected volatile Date date;
 
+	/**
+	 * @deprecated Not thread safe, use {@link #dateTimeFormatter} or {@link #parseDate(String)}
+	 */
+	@Deprecated
 	public static final transient DateFormat dateFormatter = new SimpleDateFormat( "yyyyMMdd.HHmmss" ); // 20060810.225810
 
+	/**
+	 * The format of cleartool dates, <code>%Nd</code>, e.g. 20060810.225810. It is immutable and can be shared by threads.
+	 */
+	public static final DateTimeFormatter dateTimeFormatter = DateTimeFormatter.ofPattern( "yyyyMMdd.HHmmss" );
+
 	transient private String comment;
 
 	/* Fields that need not to be loaded */
@@ -87,9 +133,62 @@ public abstract class UCMEntity extends ClearCase implements Serializable {
 	/* Loadable standard fields */
 	protected String user = "";
 
-	protected boolean loaded = false;
+	protected volatile boolean loaded = false;
+
+	/**
+	 * The fields described on their own, one bit per {@link Field}
+	 */
+	private volatile int fetched = 0;
+
+	/**
+	 * True once the {@link FactStore} has been asked for the facts of the entity
+	 */
+	private transient volatile boolean factsRead = false;
+	private transient volatile boolean factsFound = false;
 	private String entitySelector;
 
+	/**
+	 * Canonical instances of the entities, enabled with the system property <code>cool.entities.identity=true</code>.
+	 * The max number of entities per PVob can be set with <code>cool.entities.identity.size</code>.
+	 */
+	private static volatile EntityIdentityMap identityMap = null;
+
+	/**
+	 * The store of immutable facts, set with the system property <code>cool.facts.file</code>, null if none.
+	 */
+	private static volatile FactStore factStore = null;
+
+	/**
+	 * Ends each entity in the output of {@link #loadAll(Collection)}
+	 */
+	private static final String recordDelim = "{@}";
+
+	/**
+	 * The default number of concurrent commands of {@link #loadAll(Collection, int)}, can be set with the system property <code>cool.entities.loadall.threads</code>
+	 */
+	public static final int defaultLoadThreads = Integer.getInteger( "cool.entities.loadall.threads", 4 );
+
+	/**
+	 * The max length of a command of {@link #loadAll(Collection)}, can be set with the system property <code>cool.entities.loadall.maxlength</code>.
+	 * Windows limits a command line to 8191 characters, Linux limits a single argument, as given to the shell, to 128k.
+	 */
+	private static final int maxLoadAllLength = Integer.getInteger( "cool.entities.loadall.maxlength", SystemUtils.IS_OS_WINDOWS ? 8000 : 100000 );
+
+	static {
+		if( Boolean.parseBoolean( System.getProperty( "cool.entities.identity", "false" ) ) ) {
+			setIdentityMap( new EntityIdentityMap( Integer.getInteger( "cool.entities.identity.size", EntityIdentityMap.defaultMaxSize ) ) );
+		}
+
+		String facts = System.getProperty( "cool.facts.file" );
+		if( facts != null && facts.length() > 0 ) {
+			try {
+				setFactStore( FactStore.open( new File( facts ) ) );
+			} catch( IOException e ) {
+				logger.log( Level.WARNING, "Unable to open the fact store " + facts + ", entities are loaded from ClearCase", e );
+			}
+		}
+	}
+
 	private UCMEntity() {
 
 	}
@@ -111,6 +210,26 @@ public abstract class UCMEntity extends ClearCase implements Serializable {
 		/* Is this needed? */
 		fqname = fqname.trim();
 
+		EntityIdentityMap map = identityMap;
+		if( map != null && EntityIdentityMap.isCanonical( clazz ) ) {
+			UCMEntity entity = map.get( clazz, fqname );
+			if( entity != null ) {
+				return entity;
+			}
+		} else {
+			map = null;
+		}
+
+		UCMEntity entity = newEntity( clazz, fqname );
+
+		/* Another thread may have made one first */
+		return map != null ? map.putIfAbsent( entity ) : entity;
+	}
+
+	/**
+	 * Create an entity, outside the {@link EntityIdentityMap}
+	 */
+	static UCMEntity newEntity( Class<? extends UCMEntity> clazz, String fqname ) throws UnableToInitializeEntityException {
 		UCMEntity entity = null;
 		String pvob = "";
 
@@ -129,6 +248,41 @@ public abstract class UCMEntity extends ClearCase implements Serializable {
 		return entity;
 	}
 
+	/**
+	 * @return The canonical instances of the entities, null if disabled
+	 */
+	public static EntityIdentityMap getIdentityMap() {
+		return identityMap;
+	}
+
+	/**
+	 * Use an identity map, null disables it so every get creates a new entity
+	 */
+	public static synchronized void setIdentityMap( EntityIdentityMap map ) {
+		if( identityMap != null ) {
+			Cleartool.removeChangeListener( identityMap );
+		}
+		if( map != null ) {
+			Cleartool.addChangeListener( map );
+		}
+		identityMap = map;
+	}
+
+	/**
+	 * @return The store of immutable facts, or null if none
+	 */
+	public static FactStore getFactStore() {
+		return factStore;
+	}
+
+	/**
+	 * Use a store of immutable facts, consulted before loading an entity from ClearCase. Null disables it.
+	 * The store given is not closed when replaced.
+	 */
+	public static void setFactStore( FactStore store ) {
+		factStore = store;
+	}
+
 	/**
 	 * initialise the UCM entity. This is a base implementation, storing the
 	 * short name and {@link PVob}.
@@ -159,6 +313,348 @@ public abstract class UCMEntity extends ClearCase implements Serializable {
 		this.loaded = true;
 		return this;
 	}
+
+	/**
+	 * The describe format of the fields set by {@link #load()}, used to load many entities at once.
+	 * 
+	 * @return The format, or null if the entity cannot be loaded together with others
+	 */
+	protected String getLoadFormat() {
+		return null;
+	}
+
+	/**
+	 * Set the fields from the output of describing the entity with {@link #getLoadFormat()}.<br>
+	 * This base implementation ignores the output and loads the entity with {@link #load()}.
+	 * 
+	 * @param output The output of the entity
+	 * @throws UnableToLoadEntityException Thrown when the output cannot be understood
+	 * @throws UCMEntityNotFoundException Thrown when ClearCase reports errors
+	 * @throws UnableToInitializeEntityException Thrown when an entity referred to cannot be created
+	 */
+	protected void loadFrom( String output ) throws UnableToLoadEntityException, UCMEntityNotFoundException, UnableToInitializeEntityException {
+		load();
+	}
+
+	/**
+	 * @return The facts of the loaded entity that never change, to keep in the {@link FactStore}, or null if it has none
+	 */
+	protected Map<String, String> getFacts() {
+		return null;
+	}
+
+	/**
+	 * Set the fields from facts stored by {@link #getFacts()}.
+	 * If the facts set every field of {@link #load()}, the entity is marked as loaded.
+	 *
+	 * @param facts The stored facts
+	 * @throws UnableToInitializeEntityException Thrown when an entity referred to cannot be created
+	 */
+	protected void setFacts( Map<String, String> facts ) throws UnableToInitializeEntityException {
+	}
+
+	/**
+	 * Set the fields from the {@link FactStore}, the first time it is asked.
+	 *
+	 * @return True if facts of the entity are stored
+	 */
+	protected boolean hasFacts() {
+		FactStore store = factStore;
+		if( store == null || factsRead ) {
+			return factsFound;
+		}
+
+		synchronized( this ) {
+			if( !factsRead ) {
+				Map<String, String> facts = store.get( fqname );
+				if( facts != null ) {
+					try {
+						setFacts( facts );
+						factsFound = true;
+					} catch( Exception e ) {
+						logger.warning( "Unable to use the stored facts of " + fqname + ": " + e.getMessage() );
+					}
+				}
+				factsRead = true;
+			}
+			return factsFound;
+		}
+	}
+
+	/**
+	 * @return True if {@link #writeCompact(EntityCodec.Output)} writes every field of {@link #load()}, so the entity read is loaded
+	 */
+	protected boolean isCompact() {
+		return false;
+	}
+
+	/**
+	 * Write the state of the entity for {@link EntityCodec}, the name is written by the codec.
+	 * The fields described on their own are written, the rest is loaded again when needed on the other side, unless {@link #isCompact()}.
+	 */
+	protected void writeCompact( EntityCodec.Output out ) throws IOException {
+		int fields = 0;
+		for( Field field : Field.values() ) {
+			if( hasField( field ) ) {
+				fields |= field.bit;
+			}
+		}
+
+		out.writeVarInt( fields );
+		out.writeString( user );
+		if( ( fields & Field.DATE.bit ) != 0 ) {
+			out.writeDate( date != null ? date.toInstant() : null );
+		}
+		if( ( fields & Field.MASTERSHIP.bit ) != 0 ) {
+			out.writeString( mastership );
+		}
+		out.writeEnum( kind );
+		out.writeEnum( labelStatus );
+	}
+
+	/**
+	 * Read the state written by {@link #writeCompact(EntityCodec.Output)}, holding the lock of the entity
+	 */
+	protected void readCompact( EntityCodec.Input in ) throws IOException {
+		int fields = in.readVarInt();
+		this.user = in.readString();
+		if( ( fields & Field.DATE.bit ) != 0 ) {
+			Instant d = in.readDate();
+			this.date = d != null ? Date.from( d ) : null;
+		}
+		if( ( fields & Field.MASTERSHIP.bit ) != 0 ) {
+			this.mastership = in.readString();
+		}
+		this.kind = in.readEnum( Kind.class );
+		this.labelStatus = in.readEnum( LabelStatus.class );
+		fetched( fields );
+	}
+
+	/**
+	 * Keep the facts of the entity, just loaded from ClearCase, in the {@link FactStore}
+	 */
+	protected void storeFacts() {
+		FactStore store = factStore;
+		if( store != null ) {
+			Map<String, String> facts = getFacts();
+			if( facts != null ) {
+				store.put( fqname, facts );
+			}
+		}
+	}
+
+	/**
+	 * @return The entity as given to describe
+	 */
+	protected String getLoadSelector() {
+		return toString();
+	}
+
+	/**
+	 * @return The directory to describe the entity in, or null
+	 */
+	protected File getLoadContext() {
+		return null;
+	}
+
+	/**
+	 * Load many entities with few cleartool commands, one command at a time.
+	 *
+	 * @param entities The entities to load
+	 * @throws UnableToLoadEntityException Thrown when ClearCase reports errors
+	 * @throws UCMEntityNotFoundException Thrown when ClearCase reports errors
+	 * @throws UnableToInitializeEntityException Thrown when ClearCase reports errors
+	 * @see #loadAll(Collection, int)
+	 */
+	public static void loadAll( Collection<? extends UCMEntity> entities ) throws UnableToLoadEntityException, UCMEntityNotFoundException, UnableToInitializeEntityException {
+		loadAll( entities, 1 );
+	}
+
+	/**
+	 * Load many entities with few cleartool commands.<br>
+	 * Entities of the same kind are described together, as many in each command as the command line allows,
+	 * see the system property <code>cool.entities.loadall.maxlength</code>.
+	 * Entities already loaded are skipped, and entities that cannot be described together are loaded one at a time.
+	 * If describing a chunk fails, its entities are loaded one at a time, so the failing entity is told.<br>
+	 * With more than one thread, the chunks are described concurrently by {@link CleartoolAsync}. The first failure stops the remaining chunks.
+	 *
+	 * @param entities The entities to load
+	 * @param threads The max number of concurrent commands, e.g. {@link #defaultLoadThreads}
+	 * @throws UnableToLoadEntityException Thrown when ClearCase reports errors
+	 * @throws UCMEntityNotFoundException Thrown when ClearCase reports errors
+	 * @throws UnableToInitializeEntityException Thrown when ClearCase reports errors
+	 */
+	public static void loadAll( Collection<? extends UCMEntity> entities, int threads ) throws UnableToLoadEntityException, UCMEntityNotFoundException, UnableToInitializeEntityException {
+		Span span = Tracer.start( "UCMEntity.loadAll", entities.size() + " entities" );
+		try {
+			/* Grouped by kind and context, in the order given */
+			Map<String, List<UCMEntity>> groups = new LinkedHashMap<String, List<UCMEntity>>();
+			Set<UCMEntity> seen = Collections.newSetFromMap( new IdentityHashMap<UCMEntity, Boolean>() );
+			for( UCMEntity entity : entities ) {
+				if( entity.loaded || !seen.add( entity ) ) {
+					continue;
+				}
+
+				/* The stored facts may be all there is to load */
+				entity.hasFacts();
+				if( entity.loaded ) {
+					continue;
+				}
+
+				String format = entity.getLoadFormat();
+				if( format == null ) {
+					entity.load();
+					continue;
+				}
+
+				File context = entity.getLoadContext();
+				String key = format + "\n" + ( context != null ? context.getAbsolutePath() : "" );
+				List<UCMEntity> group = groups.get( key );
+				if( group == null ) {
+					group = new ArrayList<UCMEntity>();
+					groups.put( key, group );
+				}
+				group.add( entity );
+			}
+
+			List<Chunk> chunks = new ArrayList<Chunk>();
+			for( List<UCMEntity> group : groups.values() ) {
+				chunk( group, chunks );
+			}
+
+			/* Run by a worker, the chunks are described by the worker itself */
+			if( threads > 1 && chunks.size() > 1 && !CleartoolAsync.isWorker() ) {
+				describeConcurrently( chunks, threads );
+			} else {
+				for( Chunk chunk : chunks ) {
+					chunk.describe();
+				}
+			}
+		} finally {
+			span.end();
+		}
+	}
+
+	/**
+	 * Split a group into commands no longer than the max length
+	 */
+	private static void chunk( List<UCMEntity> entities, List<Chunk> chunks ) {
+		String prefix = "describe -fmt " + entities.get( 0 ).getLoadFormat() + recordDelim;
+		File context = entities.get( 0 ).getLoadContext();
+
+		int from = 0;
+		while( from < entities.size() ) {
+			StringBuilder cmd = new StringBuilder( prefix );
+			int to = from;
+			while( to < entities.size() ) {
+				String selector = entities.get( to ).getLoadSelector();
+				if( to > from && cmd.length() + selector.length() + 1 > maxLoadAllLength ) {
+					break;
+				}
+				cmd.append( ' ' ).append( selector );
+				to++;
+			}
+
+			chunks.add( new Chunk( cmd.toString(), context, entities.subList( from, to ) ) );
+			from = to;
+		}
+	}
+
+	private static void describeConcurrently( List<Chunk> chunks, int threads ) throws UnableToLoadEntityException, UCMEntityNotFoundException, UnableToInitializeEntityException {
+		final Queue<Chunk> queue = new ConcurrentLinkedQueue<Chunk>( chunks );
+		List<CompletableFuture<Void>> workers = new ArrayList<CompletableFuture<Void>>();
+		for( int i = 0 ; i < Math.min( threads, chunks.size() ) ; i++ ) {
+			workers.add( CleartoolAsync.submit( new Callable<Void>() {
+				@Override
+				public Void call() throws ClearCaseException {
+					Chunk chunk;
+					while( ( chunk = queue.poll() ) != null ) {
+						chunk.describe();
+					}
+					return null;
+				}
+			}, 0, TimeUnit.MILLISECONDS ) );
+		}
+
+		Throwable failure = null;
+		for( CompletableFuture<Void> worker : workers ) {
+			try {
+				worker.get();
+			} catch( ExecutionException e ) {
+				if( failure == null ) {
+					failure = e.getCause();
+					/* Stop the others */
+					queue.clear();
+				}
+			} catch( InterruptedException e ) {
+				queue.clear();
+				for( CompletableFuture<Void> w : workers ) {
+					w.cancel( true );
+				}
+				Thread.currentThread().interrupt();
+				throw new UnableToLoadEntityException( e );
+			}
+		}
+
+		if( failure instanceof UnableToLoadEntityException ) {
+			throw (UnableToLoadEntityException) failure;
+		} else if( failure instanceof UCMEntityNotFoundException ) {
+			throw (UCMEntityNotFoundException) failure;
+		} else if( failure instanceof UnableToInitializeEntityException ) {
+			throw (UnableToInitializeEntityException) failure;
+		} else if( failure instanceof RuntimeException ) {
+			throw (RuntimeException) failure;
+		} else if( failure instanceof Error ) {
+			throw (Error) failure;
+		} else if( failure != null ) {
+			throw new UnableToLoadEntityException( (Exception) failure );
+		}
+	}
+
+	/**
+	 * Entities described by one command
+	 */
+	private static class Chunk {
+		private final String cmd;
+		private final File context;
+		private final List<UCMEntity> entities;
+
+		private Chunk( String cmd, File context, List<UCMEntity> entities ) {
+			this.cmd = cmd;
+			this.context = context;
+			this.entities = entities;
+		}
+
+		private void describe() throws UnableToLoadEntityException, UCMEntityNotFoundException, UnableToInitializeEntityException {
+			String[] records = null;
+			if( entities.size() > 1 ) {
+				try {
+					records = Cleartool.run( cmd, context ).stdoutBuffer.toString().split( Pattern.quote( recordDelim ) );
+				} catch( AbnormalProcessTerminationException e ) {
+					logger.fine( "Unable to describe " + entities.size() + " entities together, describing them one at a time: " + e.getMessage() );
+				}
+			}
+
+			if( records == null || records.length != entities.size() ) {
+				for( UCMEntity entity : entities ) {
+					entity.load();
+				}
+				return;
+			}
+
+			for( int i = 0 ; i < records.length ; i++ ) {
+				UCMEntity entity = entities.get( i );
+				/* Not while another thread auto loads it */
+				synchronized( entity ) {
+					try {
+						entity.loadFrom( records[i] );
+					} catch( RuntimeException e ) {
+						throw new UnableToLoadEntityException( entity, e );
+					}
+				}
+			}
+		}
+	}
     
     public void setLabelStatusFromString(String labelStatus) {
         this.labelStatus = getLabelStatusFromString(labelStatus);
@@ -240,12 +736,8 @@ public abstract class UCMEntity extends ClearCase implements Serializable {
 
 	/* Getters */
 	public String getUser() {
-		if( user == null && !loaded ) {
-			try {
-				load();
-			} catch( ClearCaseException e ) {
-				throw new EntityNotLoadedException( fqname, fqname + " could not be auto loaded", e );
-			}
+		if( user == null ) {
+			autoLoad();
 		}
 		
 		return this.user;
@@ -290,18 +782,13 @@ public abstract class UCMEntity extends ClearCase implements Serializable {
 			} catch( AbnormalProcessTerminationException e ) {
 				throw new CleartoolException( "Could not set mastership. ", e );
 			}
+			fetched( Field.MASTERSHIP );
 
 		}
 	}
 
 	public String getMastership() {
-		if( !loaded ) {
-			try {
-				load();
-			} catch( ClearCaseException e ) {
-				throw new EntityNotLoadedException( fqname, fqname + " could not be auto loaded", e );
-			}
-		}
+		ensureFields( Field.MASTERSHIP );
 		
 		return this.mastership;
 	}
@@ -343,51 +830,62 @@ public abstract class UCMEntity extends ClearCase implements Serializable {
 		return this.getFullyQualifiedName();
 	}
 
+	/**
+	 * @return A copy of the date of the entity, loaded if needed
+	 */
 	public Date getDate() {
-        /* First try to do auto load */
-        if( date == null ) {
-		    autoLoad();
-        }
+		ensureFields( Field.DATE );
 
-        /* If auto load doesn't include the date, load it separately */
-        if( date == null ) {
-            try {
-                loadDate();
-            } catch( CleartoolException e ) {
-                throw new EntityNotLoadedException( fqname, fqname + " could not be load date", e );
-            }
-        }
+		Date date = this.date;
+		return date != null ? new Date( date.getTime() ) : null;
+	}
 
-		return date;
+	/**
+	 * @return The date of the entity as an {@link Instant}, loaded if needed
+	 */
+	public Instant getInstant() {
+		Date date = getDate();
+		return date != null ? date.toInstant() : null;
 	}
 
+    /**
+     * Describe the date of the entity, even if it is present
+     */
     public void loadDate() throws CleartoolException {
-        String result = "";
-        String cmd = "desc -fmt %Nd " + "\""+this + "\"";
-        try {
-            result = Cleartool.run( cmd ).stdoutBuffer.toString();
-        } catch( Exception e ) {
-            throw new CleartoolException( "Unable to load date for " + this.getNormalizedName(), e );
-        }
-
-        try {
-            logger.fine( "Result:" + result );
-            synchronized( dateFormatter ) {
-                this.date = dateFormatter.parse( result );
-            }
-        } catch( ParseException e ) {
-            logger.fine( "Unable to parse date: " + e.getMessage() );
-            this.date = null;
+        synchronized( this ) {
+            fetch( Field.DATE.bit );
         }
     }
 
     public void setDate( Date date ) {
         this.date = date;
+        fetched( Field.DATE );
     }
 
     public void setDate( String date ) throws ParseException {
-        synchronized( dateFormatter ) {
-            this.date = dateFormatter.parse( date );
+        this.date = Date.from( parseDate( date ) );
+        fetched( Field.DATE );
+    }
+
+    /**
+     * Parse a cleartool date, <code>%Nd</code>, in the local time zone.
+     * Like {@link DateFormat#parse(String)}, leading white space and text after the date are ignored.
+     * 
+     * @param date The date, e.g. 20060810.225810
+     * @return The date
+     * @throws ParseException Thrown when the date cannot be parsed
+     */
+    public static Instant parseDate( String date ) throws ParseException {
+        int from = 0;
+        while( from < date.length() && Character.isWhitespace( date.charAt( from ) ) ) {
+            from++;
+        }
+
+        ParsePosition position = new ParsePosition( from );
+        try {
+            return LocalDateTime.from( dateTimeFormatter.parse( date, position ) ).atZone( ZoneId.systemDefault() ).toInstant();
+        } catch( DateTimeException e ) {
+            throw new ParseException( "Unparseable date: \"" + date + "\"", position.getErrorIndex() < 0 ? from : position.getErrorIndex() );
         }
     }
 
@@ -400,19 +898,14 @@ public abstract class UCMEntity extends ClearCase implements Serializable {
 	}
 
 	public Kind getKind() {
-		if( !loaded ) {
-			try {
-				load();
-			} catch( ClearCaseException e ) {
-				throw new EntityNotLoadedException( fqname, fqname + " could not be auto loaded", e );
-			}
-		}
+		ensureFields( Field.KIND );
 		
 		return kind;
 	}
 
 	public void setKind( Kind kind ) {
 		this.kind = kind;
+		fetched( Field.KIND );
 	}
 
 	@Override
@@ -462,13 +955,192 @@ public abstract class UCMEntity extends ClearCase implements Serializable {
 		return this.loaded;
 	}
 
+	/**
+	 * Mark the entity as not loaded, so it is loaded again when needed
+	 */
+	public void invalidate() {
+		this.loaded = false;
+		this.fetched = 0;
+		this.factsRead = false;
+		this.factsFound = false;
+	}
+
+	/**
+	 * Fields that can be described one by one, without a full {@link #load()}
+	 */
+	public enum Field {
+		DATE( "%Nd" ), USER( "%u" ), MASTERSHIP( "%[master]p" ), KIND( "%[object_kind]p" );
+
+		private final String format;
+		private final int bit;
+
+		Field( String format ) {
+			this.format = format;
+			this.bit = 1 << ordinal();
+		}
+
+		/**
+		 * @return The <code>-fmt</code> conversion of the field
+		 */
+		public String getFormat() {
+			return format;
+		}
+	}
+
+	/**
+	 * @return The fields set by {@link #load()}
+	 */
+	protected Set<Field> getLoadFields() {
+		return Collections.emptySet();
+	}
+
+	/**
+	 * @return True if the field is set by {@link #load()} and the entity is loaded, or the field has been described on its own
+	 */
+	public boolean hasField( Field field ) {
+		return ( fetched & field.bit ) != 0 || ( loaded && getLoadFields().contains( field ) );
+	}
+
+	/**
+	 * @return True if nothing is known of the entity yet, it is not loaded and no field has been described
+	 */
+	boolean isBlank() {
+		return !loaded && fetched == 0;
+	}
+
+	/**
+	 * Make sure the fields are present, with at most one describe.<br>
+	 * If the entity is not loaded and {@link #load()} sets all the missing fields, the entity is loaded.
+	 * Otherwise the missing fields are described together, without loading the entity.
+	 * A field present is not described again until the entity is invalidated.
+	 *
+	 * @param fields The fields needed
+	 * @throws EntityNotLoadedException Thrown when ClearCase reports errors
+	 */
+	public void ensureFields( Field ... fields ) throws EntityNotLoadedException {
+		if( missing( fields ) == 0 ) {
+			return;
+		}
+
+		synchronized( this ) {
+			hasFacts();
+			int missing = missing( fields );
+			if( missing == 0 ) {
+				return;
+			}
+
+			if( !loaded && loadedBy( getLoadFields(), missing ) ) {
+				autoLoad();
+			} else {
+				try {
+					fetch( missing );
+				} catch( CleartoolException e ) {
+					throw new EntityNotLoadedException( fqname, fqname + " could not be auto loaded", e );
+				}
+			}
+		}
+	}
+
+	private int missing( Field[] fields ) {
+		int missing = 0;
+		for( Field field : fields ) {
+			if( !hasField( field ) ) {
+				missing |= field.bit;
+			}
+		}
+		return missing;
+	}
+
+	private static boolean loadedBy( Set<Field> loadFields, int fields ) {
+		for( Field field : Field.values() ) {
+			if( ( fields & field.bit ) != 0 && !loadFields.contains( field ) ) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Describe the fields in one command, holding the lock of the entity
+	 */
+	private void fetch( int fields ) throws CleartoolException {
+		List<Field> described = new ArrayList<Field>();
+		StringBuilder format = new StringBuilder();
+		for( Field field : Field.values() ) {
+			if( ( fields & field.bit ) != 0 ) {
+				if( format.length() > 0 ) {
+					format.append( delim );
+				}
+				format.append( field.getFormat() );
+				described.add( field );
+			}
+		}
+
+		String result;
+		String cmd = "describe -fmt " + format + " " + getLoadSelector();
+		try {
+			result = Cleartool.run( cmd, getLoadContext() ).stdoutBuffer.toString();
+		} catch( Exception e ) {
+			throw new CleartoolException( "Unable to load " + described + " for " + this.getNormalizedName(), e );
+		}
+
+		logger.fine( "Result:" + result );
+		String[] values = result.split( delim, -1 );
+		for( int i = 0 ; i < described.size() ; i++ ) {
+			String value = i < values.length ? values[i].trim() : "";
+			switch( described.get( i ) ) {
+				case DATE:
+					try {
+						this.date = Date.from( parseDate( value ) );
+					} catch( ParseException e ) {
+						logger.fine( "Unable to parse date: " + e.getMessage() );
+						this.date = null;
+					}
+					break;
+				case USER:
+					this.user = value;
+					break;
+				case MASTERSHIP:
+					this.mastership = value;
+					break;
+				case KIND:
+					this.kind = Kind.fromObjectKind( value );
+					break;
+			}
+		}
+
+		fetched( fields );
+	}
+
+	private synchronized void fetched( int fields ) {
+		this.fetched |= fields;
+	}
+
+	/**
+	 * Mark a field as present, e.g. set from stored facts
+	 */
+	protected void fetched( Field field ) {
+		fetched( field.bit );
+	}
+
+    /**
+     * Load the entity if it is not loaded. Threads asking at the same time wait for one load.
+     */
     protected void autoLoad() throws EntityNotLoadedException {
         if( !loaded ) {
-            try {
-                load();
-                loaded = true; // TODO Should not be necessary
-            } catch( ClearCaseException e ) {
-                throw new EntityNotLoadedException( fqname, fqname + " could not be auto loaded", e );
+            synchronized( this ) {
+                if( !loaded ) {
+                    /* The stored facts may be all there is to load */
+                    hasFacts();
+                    if( !loaded ) {
+                        try {
+                            load();
+                            loaded = true; // TODO Should not be necessary
+                        } catch( ClearCaseException e ) {
+                            throw new EntityNotLoadedException( fqname, fqname + " could not be auto loaded", e );
+                        }
+                    }
+                }
             }
         }
     }
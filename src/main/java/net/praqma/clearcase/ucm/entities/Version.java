@@ -5,7 +5,11 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.regex.Matcher;
@@ -18,6 +22,8 @@ import net.praqma.clearcase.PVob;
 import net.praqma.clearcase.api.Describe;
 import net.praqma.clearcase.changeset.ChangeSet2;
 import net.praqma.clearcase.cleartool.Cleartool;
+import net.praqma.clearcase.cleartool.Span;
+import net.praqma.clearcase.cleartool.Tracer;
 import net.praqma.clearcase.exceptions.ClearCaseException;
 import net.praqma.clearcase.exceptions.CleartoolException;
 import net.praqma.clearcase.exceptions.UCMEntityNotFoundException;
@@ -27,6 +33,7 @@ import net.praqma.clearcase.exceptions.UnableToInitializeEntityException;
 import net.praqma.clearcase.exceptions.UnableToLoadEntityException;
 import net.praqma.clearcase.interfaces.Diffable;
 import net.praqma.clearcase.ucm.view.SnapshotView;
+import net.praqma.clearcase.util.Interner;
 import net.praqma.util.execute.AbnormalProcessTerminationException;
 import net.praqma.util.execute.CmdResult;
 import net.praqma.util.execute.CommandLineInterface.OperatingSystem;
@@ -40,6 +47,9 @@ public class Version extends UCMEntity implements Comparable<Version> {
 	
 	private transient static final Logger logger = Logger.getLogger( Version.class.getName() );
 
+	private static final String loadFormat = "%u}{%Vn}{%Xn}{%[object_kind]p";
+	private static final Set<Field> loadFields = Collections.unmodifiableSet( EnumSet.of( Field.USER, Field.KIND ) );
+
     /**
      * This is actually not the exact branch, but the string of branches separated by slashes.
      */
@@ -84,9 +94,6 @@ public class Version extends UCMEntity implements Comparable<Version> {
      * Represents the {@link Activity} of the given {@link Version}.
      */
     private Activity activity;
-
-	private static String rx_revision = "(\\d+)$";
-	private static Pattern p_revision = Pattern.compile( "@@(.*)$" );
 	
 	public enum Status {
 		UNCHANGED,
@@ -97,92 +104,261 @@ public class Version extends UCMEntity implements Comparable<Version> {
 	
 	private Status status = Status.UNCHANGED;
 
+	/**
+	 * The versions on a branch path share its list of branches
+	 */
+	private static final Interner<List<Branch>> branchLists = new Interner<List<Branch>>( new Interner.Factory<List<Branch>>() {
+		@Override
+		public List<Branch> create( String branchPath ) {
+			return Collections.unmodifiableList( getBranches( branchPath ) );
+		}
+	} );
+
 	Version() {
 		super( "version" );
 	}
 
-	private static final Pattern rx_findAddedElements = Pattern.compile( qfs + ".*?" + qfs + "(\\d+)" + qfs + "(.*?)" + qfs );
-	private static final Pattern rx_findRevision = Pattern.compile( "^(.*?)" + qfsor + "(\\d+)(.*?)$" );
-
 	@Override
 	protected void initialize() {
-		Matcher match = pattern_version_fqname.matcher( fqname );
-		if( match.find() ) {
-			/* Set the Entity variables */
-			shortname = match.group( 1 );
-			pvob = new PVob( match.group( 2 ) );
+		/* Set the Entity variables, split at the last @@ */
+		int at = fqname.lastIndexOf( "@@", fqname.length() - 3 );
+		if( at > 0 ) {
+			shortname = fqname.substring( 0, at );
+			pvob = new PVob( fqname.substring( at + 2 ) );
 		}
 		
-		String fqname = "";
-		if( Cool.getOS().equals( OperatingSystem.WINDOWS ) ) {
-			fqname = this.fqname.matches( "^\\S:\\\\.*" ) ? this.fqname : System.getProperty( "user.dir" ) + filesep + this.fqname;
-		} else {
-			fqname = this.fqname.startsWith( "/" ) ? this.fqname : System.getProperty( "user.dir" ) + filesep + this.fqname;
+		if( !isAbsolute( this.fqname ) ) {
+			this.fqname = System.getProperty( "user.dir" ) + filesep + this.fqname;
 		}
 
-		this.fqname = fqname;
+		ExtendedName name = ExtendedName.parse( this.fqname, filesepChar );
+		this.version = name.getVersion();
+		this.fullfile = name.getFile();
+		this.file = new File( this.fullfile );
+		this.qualifiedFilename = name.getQualifiedFilename();
 
-		/* Find the revision number, make it zero if it is not found */
-		Matcher m = p_revision.matcher( this.fqname );
-		if( m.find() ) {
-			// this.revision = Integer.parseInt( m.group( 1 ) );
-			this.version = m.group( 1 );
-		} else {
-			this.version = "0";
-		}
-		
-		String tmp = this.fqname;
-		tmp = tmp.replaceFirst( "(?m)@@.*$", "" );
-		tmp = tmp.replaceFirst( "(?m)^\\s+", "" );
-		this.fullfile = tmp.trim();
-
-        /**/
-        if( fullfile.matches( ".*" + qfsor + "\\.$" ) ) {
-            fullfile = fullfile.substring( 0, fullfile.length() - 1 );
-            logger.fine( "Filename ends with dot, and is now \"" + fullfile + "\"" );
-        }
-		
 		/* Check if this is a newly added element
 		 * Ie this is only shown as a parent folder change 
 		 *  view\MonKit006\MonKit006\src@@\main\monkit006_1_dev\2\test\main\monkit006_1_dev\1\java\main\monkit006_1_dev\1
 		 * */
 		this.status = Status.CHANGED;
-		Matcher ma = rx_findAddedElements.matcher( version );
-		while( ma.find() ) {
-			this.fullfile += filesep + ma.group( 2 );
+		if( name.getBranch() != null ) {
+			this.revision = name.getRevision();
+			if( this.revision == 1 ) {
+				this.status = Status.ADDED;
+			}
+
+			this.branch = name.getBranch();
+			this.branches = name.getBranches();
+		} else {
+			this.branches = Collections.EMPTY_LIST;
 		}
+	}
 
-        this.fullfile = this.fullfile.replace( "@@", "" );
+    private static boolean isAbsolute( String fqname ) {
+        if( Cool.getOS().equals( OperatingSystem.WINDOWS ) ) {
+            /* X:\ */
+            return fqname.length() > 2 && !ExtendedName.isSpace( fqname.charAt( 0 ) ) && fqname.charAt( 1 ) == ':' && fqname.charAt( 2 ) == '\\';
+        } else {
+            return fqname.startsWith( "/" );
+        }
+    }
 
-		this.file = new File( this.fullfile );
+    /**
+     * A version extended path name, <code>file@@branch path/revision</code>, taken apart in one scan without regular expressions.
+     * Only the parts kept are copied out of the name.<br>
+     * The name must be a single line, as cleartool prints it.
+     * Both / and \ separate the branch path from the revision, while the branches and the added elements are separated by the given file separator.
+     */
+    public static class ExtendedName {
 
-        this.qualifiedFilename = fqname.replaceAll( "^(.*@@)(.*?)$", "$1" );
-        /* Make sure @@ is appended to the version */
-        if( !qualifiedFilename.endsWith( "@@" ) ) {
-            this.qualifiedFilename += "@@";
+        private final String name;
+        private final char filesep;
+
+        private String file;
+        private String version;
+        private String branch = null;
+        private int branchFrom;
+        private int revision = 0;
+
+        private ExtendedName( String name, char filesep ) {
+            this.name = name;
+            this.filesep = filesep;
         }
 
-        if( version.contains( "@@" ) ) {
-            String[] s = version.split( "@@" );
-            handleSimpleVersion( s[1] );
-        } else {
-            handleSimpleVersion( version );
+        /**
+         * @param name An absolute version extended path name
+         * @param filesep The file separator of the name
+         * @return The parts of the name
+         */
+        public static ExtendedName parse( String name, char filesep ) {
+            ExtendedName n = new ExtendedName( name, filesep );
+            int length = name.length();
+            int at = name.indexOf( "@@" );
+
+            /* The file is trimmed */
+            int from = 0;
+            int to = at < 0 ? length : at;
+            while( from < to && name.charAt( from ) <= ' ' ) {
+                from++;
+            }
+            while( to > from && name.charAt( to - 1 ) <= ' ' ) {
+                to--;
+            }
+
+            if( to - from > 1 && name.charAt( to - 1 ) == '.' && isSeparator( name.charAt( to - 2 ) ) ) {
+                to--;
+                logger.fine( "Filename ends with dot, and is now \"" + name.substring( from, to ) + "\"" );
+            }
+
+            if( at < 0 ) {
+                n.file = name.substring( from, to );
+                n.version = "0";
+                return n;
+            }
+
+            n.version = name.substring( at + 2 );
+            n.file = n.addedElements( from, to, at + 2 );
+            n.revision( at + 2 );
+
+            return n;
         }
-	}
 
-    private void handleSimpleVersion( String version ) {
-        Matcher r = rx_findRevision.matcher( version );
+        /**
+         * Append the elements added below a directory version, <code>\branch\2\element\branch\1</code>, to the file
+         */
+        private String addedElements( int from, int to, int offset ) {
+            StringBuilder sb = null;
+            int length = name.length();
+            int s;
+            while( ( s = name.indexOf( filesep, offset ) ) >= 0 ) {
+                /* The first separator after s followed by digits and a separator */
+                int element = -1;
+                for( int j = name.indexOf( filesep, s + 1 ) ; j >= 0 ; j = name.indexOf( filesep, j + 1 ) ) {
+                    int k = j + 1;
+                    while( k < length && isDigit( name.charAt( k ) ) ) {
+                        k++;
+                    }
+                    if( k > j + 1 && k < length && name.charAt( k ) == filesep ) {
+                        element = k + 1;
+                        break;
+                    }
+                }
+
+                int end = element < 0 ? -1 : name.indexOf( filesep, element );
+                if( end < 0 ) {
+                    break;
+                }
+
+                if( sb == null ) {
+                    sb = new StringBuilder( to - from + 64 ).append( name, from, to );
+                }
+                sb.append( filesep );
+                for( int i = element ; i < end ; i++ ) {
+                    if( name.charAt( i ) == '@' && i + 1 < end && name.charAt( i + 1 ) == '@' ) {
+                        i++;
+                    } else {
+                        sb.append( name.charAt( i ) );
+                    }
+                }
+                offset = end + 1;
+            }
+
+            return sb == null ? name.substring( from, to ) : sb.toString();
+        }
 
-        if( r.find() ) {
-            this.revision = Integer.parseInt( r.group( 2 ) );
-            if( this.revision == 1 ) {
-                this.status = Status.ADDED;
+        /**
+         * The branch path and revision, <code>\main\int\3</code>, are taken from the version, or from its second part if it has more
+         */
+        private void revision( int offset ) {
+            int from = offset;
+            int to = name.length();
+            int at = name.indexOf( "@@", offset );
+            if( at >= 0 ) {
+                from = at + 2;
+                at = name.indexOf( "@@", from );
+                if( at >= 0 ) {
+                    to = at;
+                }
             }
 
-            this.branch = r.group( 1 );
-            this.branches = getBranches( this.branch );
-        } else {
-            this.branches = Collections.EMPTY_LIST;
+            for( int i = from ; i < to - 1 ; i++ ) {
+                if( isSeparator( name.charAt( i ) ) && isDigit( name.charAt( i + 1 ) ) ) {
+                    int end = i + 1;
+                    int r = 0;
+                    while( end < to && isDigit( name.charAt( end ) ) ) {
+                        r = r * 10 + ( name.charAt( end ) - '0' );
+                        end++;
+                    }
+                    /* Long numbers may not fit, parse and fail like Integer.parseInt */
+                    this.revision = end - i > 10 ? Integer.parseInt( name.substring( i + 1, end ) ) : r;
+                    this.branch = name.substring( from, i );
+                    this.branchFrom = from;
+                    return;
+                }
+            }
+        }
+
+        /**
+         * @return The file, without the extended name
+         */
+        public String getFile() {
+            return file;
+        }
+
+        /**
+         * @return Everything after the first @@, or 0 if there is none
+         */
+        public String getVersion() {
+            return version;
+        }
+
+        /**
+         * @return The name up to and including the last @@
+         */
+        public String getQualifiedFilename() {
+            int at = name.lastIndexOf( "@@" );
+            return at < 0 ? name + "@@" : name.substring( 0, at + 2 );
+        }
+
+        /**
+         * @return The branch path, or null if the version has no revision
+         */
+        public String getBranch() {
+            return branch;
+        }
+
+        public int getRevision() {
+            return revision;
+        }
+
+        /**
+         * @return The branches of the branch path, empty if the version has no revision.
+         * With the platform file separator the list is shared by the names on the branch path, and cannot be modified.
+         */
+        public List<Branch> getBranches() {
+            if( branch == null ) {
+                return new ArrayList<Branch>( 0 );
+            }
+            if( filesep == filesepChar ) {
+                return branchLists.intern( branch );
+            }
+            return Version.getBranches( name, branchFrom, branchFrom + branch.length(), filesep );
+        }
+
+        static boolean isSeparator( char c ) {
+            return c == '/' || c == '\\';
+        }
+
+        static boolean isDigit( char c ) {
+            return c >= '0' && c <= '9';
+        }
+
+        /**
+         * The white space of regular expressions
+         */
+        static boolean isSpace( char c ) {
+            return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
         }
     }
 
@@ -195,13 +371,22 @@ public class Version extends UCMEntity implements Comparable<Version> {
     }
 
     public static List<Branch> getBranches( String branchSpecifier ) {
-        String[] bs = branchSpecifier.split( Cool.qfs );
-
-        List<Branch> branches = new ArrayList<Branch>(bs.length);
+        return getBranches( branchSpecifier, 0, branchSpecifier.length(), filesepChar );
+    }
 
-        for( String b : bs ) {
-            if( !b.isEmpty() ) {
-                branches.add( new Branch( b ) );
+    /**
+     * The branches separated by the file separator in a part of a string
+     */
+    private static List<Branch> getBranches( String s, int from, int to, char filesep ) {
+        List<Branch> branches = new ArrayList<Branch>( 4 );
+
+        int begin = from;
+        for( int i = from ; i <= to ; i++ ) {
+            if( i == to || s.charAt( i ) == filesep ) {
+                if( i > begin ) {
+                    branches.add( Branch.intern( s.substring( begin, i ) ) );
+                }
+                begin = i + 1;
             }
         }
 
@@ -276,6 +461,15 @@ public class Version extends UCMEntity implements Comparable<Version> {
 	
     @Override
 	public Version load() throws UnableToLoadEntityException {
+		Span span = Tracer.start( "Version.load", this );
+		try {
+			return _load();
+		} finally {
+			span.end();
+		}
+	}
+
+	private Version _load() throws UnableToLoadEntityException {
         
 		try {
             int vlength = this.getFullyQualifiedName().length();            
@@ -285,26 +479,95 @@ public class Version extends UCMEntity implements Comparable<Version> {
                 logger.warning(String.format("The version path is getting long, recorded length of %s", vlength) );
             }
             
-            String cmd = "describe -fmt %u}{%Vn}{%Xn}{%[object_kind]p \"" + this + "\"";            
-			String[] list = Cleartool.run( cmd, view ).stdoutBuffer.toString().split( "\\}\\{" );
-
-			/* First line, user */
-			setUser( list[0] );
-            
-			if( list[3].equals( "file element" ) ) {
-				setKind( Kind.FILE_ELEMENT );
-			} else if( list[3].equals( "directory version" ) ) {
-				setKind( Kind.DIRECTORY_ELEMENT );
-			}
+            String cmd = "describe -fmt " + loadFormat + " " + getLoadSelector();            
+			loadFrom( Cleartool.run( cmd, view ).stdoutBuffer.toString() );
 		} catch( Exception e ) {
 			throw new UnableToLoadEntityException( this, e );
 		}
-
-        this.loaded = true;
 		
 		return this;
 	}
 
+	@Override
+	protected String getLoadFormat() {
+		return loadFormat;
+	}
+
+	@Override
+	protected Set<Field> getLoadFields() {
+		return loadFields;
+	}
+
+	@Override
+	protected String getLoadSelector() {
+		return "\"" + this + "\"";
+	}
+
+	@Override
+	protected File getLoadContext() {
+		return view;
+	}
+
+	@Override
+	protected void loadFrom( String output ) {
+		String[] list = output.split( "\\}\\{" );
+
+		/* First line, user */
+		setUser( list[0] );
+        
+		setKind( Kind.fromObjectKind( list[3] ) );
+
+        this.loaded = true;
+        storeFacts();
+	}
+
+	@Override
+	protected boolean isCompact() {
+		return true;
+	}
+
+	@Override
+	protected void writeCompact( EntityCodec.Output out ) throws IOException {
+		super.writeCompact( out );
+		out.writeFile( view );
+		out.writeEnum( status );
+		out.writeEntity( activity );
+		out.writeFile( oldFile );
+	}
+
+	@Override
+	protected void readCompact( EntityCodec.Input in ) throws IOException {
+		super.readCompact( in );
+		this.view = in.readFile();
+		this.status = in.readEnum( Status.class );
+		this.activity = in.readEntity( Activity.class );
+		this.oldFile = in.readFile();
+	}
+
+	/**
+	 * The user and kind of a version never change
+	 */
+	@Override
+	protected Map<String, String> getFacts() {
+		Map<String, String> facts = new LinkedHashMap<String, String>();
+		facts.put( "user", user );
+		facts.put( "kind", kind != null ? kind.name() : "" );
+		return facts;
+	}
+
+	@Override
+	protected void setFacts( Map<String, String> facts ) {
+		String u = facts.get( "user" );
+		String k = facts.get( "kind" );
+		if( u != null && k != null ) {
+			setUser( u );
+			if( k.length() > 0 ) {
+				setKind( Kind.valueOf( k ) );
+			}
+			this.loaded = true;
+		}
+	}
+
     /**
      * Get the {@link Activity} for a {@link Version}.
      * In base ClearCase the {@link Activity} object does not exist, it must therefore be allowed to return null. See FB case 9988.
@@ -892,6 +1155,17 @@ public class Version extends UCMEntity implements Comparable<Version> {
 	}
 
     public String getElementObjectId() throws CleartoolException {
-        return new Describe( qualifiedFilename ).getObjectId().executeGetFirstLine(true);
+        /* The element of a version never changes */
+        FactStore store = getFactStore();
+        Map<String, String> facts = store != null ? store.get( fqname ) : null;
+        if( facts != null && facts.containsKey( "oid" ) ) {
+            return facts.get( "oid" );
+        }
+
+        String oid = new Describe( qualifiedFilename ).getObjectId().executeGetFirstLine(true);
+        if( store != null && oid != null ) {
+            store.put( fqname, Collections.singletonMap( "oid", oid ) );
+        }
+        return oid;
     }
 }
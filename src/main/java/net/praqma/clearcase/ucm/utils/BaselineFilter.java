@@ -1,8 +1,10 @@
 package net.praqma.clearcase.ucm.utils;
 
 import edu.umd.cs.findbugs.annotations.*;
+import net.praqma.clearcase.ucm.entities.Baseline;
 
 import java.io.Serializable;
+import java.util.Comparator;
 
 @SuppressFBWarnings("")
 public abstract class BaselineFilter implements Serializable {
@@ -12,6 +14,30 @@ public abstract class BaselineFilter implements Serializable {
     public void preFilter( BaselineList list ) {
         /* Default implementation is no op */
     }
+
+    /**
+     * @return True if the filter can tell from a single baseline whether it is kept, with {@link #accept(Baseline)},
+     * so a streaming {@link BaselineList} can filter the baselines as they are listed
+     */
+    public boolean isPerBaseline() {
+        return false;
+    }
+
+    /**
+     * Only called if {@link #isPerBaseline()}, the baseline has the date and label status of the listing
+     *
+     * @return True if the baseline is kept
+     */
+    public boolean accept( Baseline baseline ) {
+        return true;
+    }
+
+    /**
+     * @return The order {@link #filter(BaselineList)} leaves the baselines in, null if it keeps their order
+     */
+    public Comparator<Baseline> getSorting() {
+        return null;
+    }
 	
 	public abstract String getName();
 
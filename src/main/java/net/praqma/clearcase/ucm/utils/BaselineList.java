@@ -1,5 +1,9 @@
 package net.praqma.clearcase.ucm.utils;
 
+import java.io.Externalizable;
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
 import java.io.Serializable;
 import java.text.ParseException;
 import java.util.*;
@@ -7,17 +11,22 @@ import java.util.logging.Logger;
 
 import edu.umd.cs.findbugs.annotations.*;
 import net.praqma.clearcase.cleartool.Cleartool;
+import net.praqma.clearcase.cleartool.LineHandler;
+import net.praqma.clearcase.cleartool.Span;
+import net.praqma.clearcase.cleartool.Tracer;
 import net.praqma.clearcase.exceptions.UnableToInitializeEntityException;
 import net.praqma.clearcase.exceptions.UnableToListBaselinesException;
 import net.praqma.clearcase.ucm.entities.Baseline;
 import net.praqma.clearcase.ucm.entities.Component;
+import net.praqma.clearcase.ucm.entities.EntityCodec;
 import net.praqma.clearcase.ucm.entities.Project.PromotionLevel;
 import net.praqma.clearcase.ucm.entities.Stream;
+import net.praqma.clearcase.ucm.entities.UCMEntity;
 import net.praqma.util.execute.AbnormalProcessTerminationException;
 import org.apache.commons.lang.SystemUtils;
 
 @SuppressFBWarnings("")
-public class BaselineList extends ArrayList<Baseline> {
+public class BaselineList extends ArrayList<Baseline> implements Externalizable {
 
     private static Logger logger = Logger.getLogger(BaselineList.class.getName());
     private List<BaselineFilter> filters = new ArrayList<BaselineFilter>();
@@ -28,6 +37,7 @@ public class BaselineList extends ArrayList<Baseline> {
     private PromotionLevel level;
     private boolean multisitePolling;
     private int limit = 0;
+    private boolean streaming = false;
     private List<Baseline> required = new LinkedList<Baseline>();
 
     public BaselineList() { }
@@ -60,6 +70,15 @@ public class BaselineList extends ArrayList<Baseline> {
      * @throws UnableToListBaselinesException Thrown when ClearCase reports errors 
      */
     public BaselineList apply() throws UnableToInitializeEntityException, UnableToListBaselinesException {
+        Span span = Tracer.start( "BaselineList.apply", stream );
+        try {
+            return _apply();
+        } finally {
+            span.end();
+        }
+    }
+
+    private BaselineList _apply() throws UnableToInitializeEntityException, UnableToListBaselinesException {
 
         /* Printing info for debug */
         logger.fine(" --- Get baselines information --- ");
@@ -70,6 +89,14 @@ public class BaselineList extends ArrayList<Baseline> {
         logger.fine(String.format("Filters  : %s", filters));
         logger.fine(String.format("Multisite: %s", multisitePolling));
         logger.fine(String.format("Requiring: %s", required));
+        logger.fine(String.format("Streaming: %s", streaming));
+
+        if (streaming) {
+            if (isStreamable()) {
+                return _applyStreaming();
+            }
+            logger.fine("Not all filters can filter single baselines, the baselines are filtered as a whole");
+        }
 
         //Asking for posted deliveries only makes sense when you have multisite enabled.
         if(multisitePolling) {
@@ -113,6 +140,13 @@ public class BaselineList extends ArrayList<Baseline> {
 
         /* Load em? */
         if (load) {
+            try {
+                UCMEntity.loadAll(this);
+            } catch (Exception e) {
+                logger.fine("Unable to load the baselines together: " + e.getMessage());
+            }
+
+            /* Those not loaded together are loaded one at a time, so a failing baseline is pruned */
             Iterator<Baseline> it = this.iterator();
             while (it.hasNext()) {
                 Baseline baseline = it.next();
@@ -135,7 +169,7 @@ public class BaselineList extends ArrayList<Baseline> {
         /* Limit? 0 = unlimited */
         if (limit > 0 && this.size() > 0) {
             BaselineList n = new BaselineList();
-            n.addAll(this.subList(0, limit));
+            n.addAll(this.subList(0, Math.min(limit, this.size())));
             logger.fine("Final list of baselines: " + n);
             return n;
         } else {
@@ -144,6 +178,182 @@ public class BaselineList extends ArrayList<Baseline> {
         }
     }
 
+    private boolean isStreamable() {
+        for (BaselineFilter filter : filters) {
+            if (!filter.isPerBaseline()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Filter, sort and limit the baselines as they are listed, and load only those returned
+     */
+    private BaselineList _applyStreaming() throws UnableToInitializeEntityException, UnableToListBaselinesException {
+        for (BaselineFilter filter : filters) {
+            filter.preFilter(this);
+        }
+
+        /* Filters sorting the list override the sort order, as they are applied after it */
+        Comparator<Baseline> order = sorter;
+        for (BaselineFilter filter : filters) {
+            if (filter.getSorting() != null) {
+                order = filter.getSorting();
+            }
+        }
+
+        BaselineCollector collector = new BaselineCollector(filters, order, limit, required);
+        if (multisitePolling && stream.hasPostedDelivery()) {
+            for (Baseline baseline : stream.getPostedBaselines(component, level)) {
+                if (!collector.offer(baseline)) {
+                    break;
+                }
+            }
+        } else {
+            _get(collector);
+        }
+        collector.offerRequired();
+
+        List<Baseline> baselines = collector.get();
+        logger.fine("Kept " + baselines.size() + " of " + collector.offered + " baselines, " + collector.pruned + " filtered");
+
+        if (load) {
+            try {
+                UCMEntity.loadAll(baselines);
+            } catch (Exception e) {
+                logger.fine("Unable to load the baselines together: " + e.getMessage());
+            }
+
+            Iterator<Baseline> it = baselines.iterator();
+            while (it.hasNext()) {
+                Baseline baseline = it.next();
+                try {
+                    baseline.load();
+                } catch (Exception e) {
+                    logger.warning("[ClearCase] Unable to load " + baseline.getNormalizedName() + ": " + e.getMessage());
+                    it.remove();
+                }
+            }
+        }
+
+        this.clear();
+        this.addAll(baselines);
+        logger.fine("Final list of baselines: " + this);
+        return this;
+    }
+
+    /**
+     * Keeps the baselines passing the filters, and with a limit only the first of them in the sort order.
+     * With a sort order, the best are kept in a heap of the size of the limit, without one, the listing stops when the limit is reached.
+     * Baselines comparing equal keep the order they are offered in, as with sorting the whole list.
+     */
+    private static class BaselineCollector {
+        private final List<BaselineFilter> filters;
+        private final Comparator<Baseline> sorter;
+        private final int limit;
+        private final Set<Baseline> required;
+
+        private final List<Baseline> list = new ArrayList<Baseline>();
+        private final PriorityQueue<Ranked> heap;
+
+        private int offered = 0;
+        private int pruned = 0;
+
+        private BaselineCollector(List<BaselineFilter> filters, Comparator<Baseline> sorter, int limit, List<Baseline> required) {
+            this.filters = filters;
+            this.sorter = sorter;
+            this.limit = limit;
+            this.required = new LinkedHashSet<Baseline>(required);
+
+            if (sorter != null && limit > 0) {
+                /* The worst is at the head, to be dropped */
+                heap = new PriorityQueue<Ranked>(limit + 1, Collections.reverseOrder(new RankedComparator(sorter)));
+            } else {
+                heap = null;
+            }
+        }
+
+        /**
+         * @return False if no more baselines are wanted
+         */
+        private boolean offer(Baseline baseline) {
+            if (isFull()) {
+                return false;
+            }
+
+            required.remove(baseline);
+            offered++;
+            for (BaselineFilter filter : filters) {
+                if (!filter.accept(baseline)) {
+                    pruned++;
+                    return true;
+                }
+            }
+
+            if (heap != null) {
+                heap.add(new Ranked(baseline, offered));
+                if (heap.size() > limit) {
+                    heap.poll();
+                }
+                return true;
+            }
+
+            list.add(baseline);
+            return !isFull();
+        }
+
+        /**
+         * The required baselines not listed are added after those listed, as {@link BaselineList#ensureBaseline(Baseline)} does
+         */
+        private void offerRequired() {
+            for (Baseline baseline : new ArrayList<Baseline>(required)) {
+                offer(baseline);
+            }
+        }
+
+        private boolean isFull() {
+            return heap == null && limit > 0 && list.size() >= limit;
+        }
+
+        private List<Baseline> get() {
+            if (heap != null) {
+                List<Ranked> ranked = new ArrayList<Ranked>(heap);
+                Collections.sort(ranked, new RankedComparator(sorter));
+                for (Ranked r : ranked) {
+                    list.add(r.baseline);
+                }
+            } else if (sorter != null) {
+                Collections.sort(list, sorter);
+            }
+            return list;
+        }
+    }
+
+    private static class Ranked {
+        private final Baseline baseline;
+        private final int order;
+
+        private Ranked(Baseline baseline, int order) {
+            this.baseline = baseline;
+            this.order = order;
+        }
+    }
+
+    private static class RankedComparator implements Comparator<Ranked> {
+        private final Comparator<Baseline> sorter;
+
+        private RankedComparator(Comparator<Baseline> sorter) {
+            this.sorter = sorter;
+        }
+
+        @Override
+        public int compare(Ranked r1, Ranked r2) {
+            int c = sorter.compare(r1.baseline, r2.baseline);
+            return c != 0 ? c : Integer.compare(r1.order, r2.order);
+        }
+    }
+
     /**
      * Ensure that the {@link Baseline} is in the list
      * @param baseline Adds the {@link Baseline} to the required baselines  
@@ -192,6 +402,22 @@ public class BaselineList extends ArrayList<Baseline> {
         return this;
     }
 
+    /**
+     * Evaluate the list as the baselines are listed. The filters and the limit are applied to each baseline as it is read,
+     * with a sort order only the first baselines within the limit are kept, and only the baselines returned are loaded.
+     * The baselines are returned as without streaming, also when a filter sorts them, e.g. {@link net.praqma.clearcase.ucm.utils.filters.AfterDate}.<br>
+     * If a filter cannot tell from a single baseline whether it is kept, e.g. {@link net.praqma.clearcase.ucm.utils.filters.AfterBaseline},
+     * the list is evaluated as a whole as without streaming.
+     * A baseline failing to load is removed, but unlike without streaming, it is not replaced by the next one, so fewer baselines than the limit may be returned.
+     *
+     * @return The {@link BaselineList}
+     */
+    public BaselineList streaming() {
+        this.streaming = true;
+
+        return this;
+    }
+
     /**
      * Set the sorting of the {@link BaselineList}
      *
@@ -217,7 +443,13 @@ public class BaselineList extends ArrayList<Baseline> {
     }
 
     private List<Baseline> _get() throws UnableToInitializeEntityException, UnableToListBaselinesException {
-        List<String> bls_str = null;
+        BaselineCollector collector = new BaselineCollector(Collections.<BaselineFilter>emptyList(), null, 0, Collections.<Baseline>emptyList());
+        _get(collector);
+        logger.fine("I got " + collector.offered + " baselines.");
+        return collector.get();
+    }
+
+    private void _get(final BaselineCollector collector) throws UnableToInitializeEntityException, UnableToListBaselinesException {
         String cmd;
 
         if (SystemUtils.IS_OS_WINDOWS) {
@@ -225,30 +457,95 @@ public class BaselineList extends ArrayList<Baseline> {
         } else {
             cmd = "lsbl -fmt %Xn::%Nd::%[label_status]p\\\\n -component " + component + " -stream " + stream + (level != null ? " -level " + level.toString() : "");
         }
+        final UnableToInitializeEntityException[] error = new UnableToInitializeEntityException[1];
+
+        /* The filters that can, judge the baselines from the listing, before they are created */
+        final List<BaselinePredicate> predicates = new ArrayList<BaselinePredicate>();
+        for (BaselineFilter filter : filters) {
+            if (filter instanceof BaselinePredicate) {
+                /* Never from the line handler, the listing holds its cleartool until it is read */
+                ((BaselinePredicate) filter).prepare();
+                predicates.add((BaselinePredicate) filter);
+            }
+        }
+        final int[] skipped = new int[1];
+
+        /* Baselines are created as the lines arrive, so the listing of a long lived stream is never held as a whole */
         try {
-            bls_str = Cleartool.run(cmd).stdoutList;
-            logger.finest("The output: " + bls_str);
+            Cleartool.stream(cmd, null, new LineHandler() {
+                @Override
+                public boolean handle(String line) {
+                    String[] split = line.split("::");
+                    if (split.length > 2) {
+                        for (BaselinePredicate predicate : predicates) {
+                            if (!predicate.test(split[0], split[1], split[2])) {
+                                skipped[0]++;
+                                return true;
+                            }
+                        }
+                    }
+                    try {
+                        Baseline baseline = Baseline.get(split[0]);
+                        try {
+                            baseline.setListed(split[1], split[2]);
+                        } catch (ParseException e) {
+                            throw new UnableToInitializeEntityException(baseline.getClass(), e);
+                        }
+                        return collector.offer(baseline);
+                    } catch (UnableToInitializeEntityException e) {
+                        error[0] = e;
+                        return false;
+                    }
+                }
+            });
         } catch (AbnormalProcessTerminationException e) {
             logger.warning(e.getMessage());
             throw new UnableToListBaselinesException(stream, component, level, e);
         }
 
-        logger.fine("I got " + bls_str.size() + " baselines.");
-        List<Baseline> bls = new ArrayList<Baseline>();
+        if (error[0] != null) {
+            throw error[0];
+        }
 
-        for (String bl : bls_str) {
-            String[] split = bl.split("::");
-            Baseline baseline = Baseline.get(split[0]);
-            try {
-                baseline.setDate(split[1]);
-                baseline.setLabelStatusFromString(split[2]);
-            } catch (ParseException e) {
-                throw new UnableToInitializeEntityException(baseline.getClass(), e);
-            }
-            bls.add(baseline);
+        if (skipped[0] > 0) {
+            logger.fine("Skipped " + skipped[0] + " baselines in the listing");
         }
+    }
+
+    /**
+     * Write the baselines in the format of {@link EntityCodec}, the filters and the sorter are serialized as before
+     */
+    @Override
+    public void writeExternal(ObjectOutput out) throws IOException {
+        EntityCodec.Output codec = new EntityCodec.Output(out);
+        codec.writeEntities(this);
+        codec.writeEntities(required);
+        codec.writeEntity(stream);
+        codec.writeEntity(component);
+        codec.writeEnum(level);
+        codec.writeBoolean(load);
+        codec.writeBoolean(multisitePolling);
+        codec.writeVarInt(limit);
+        codec.writeBoolean(streaming);
+        out.writeObject(filters);
+        out.writeObject(sorter);
+    }
 
-        return bls;
+    @Override
+    @SuppressWarnings("unchecked")
+    public void readExternal(ObjectInput in) throws IOException, ClassNotFoundException {
+        EntityCodec.Input codec = new EntityCodec.Input(in);
+        codec.readEntities(Baseline.class, this);
+        codec.readEntities(Baseline.class, required);
+        stream = codec.readEntity(Stream.class);
+        component = codec.readEntity(Component.class);
+        level = codec.readEnum(PromotionLevel.class);
+        load = codec.readBoolean();
+        multisitePolling = codec.readBoolean();
+        limit = codec.readVarInt();
+        streaming = codec.readBoolean();
+        filters = (List<BaselineFilter>) in.readObject();
+        sorter = (Comparator<Baseline>) in.readObject();
     }
 
     public static class AscendingDateSort implements Comparator<Baseline>, Serializable {
@@ -0,0 +1,404 @@
+package net.praqma.clearcase.ucm.utils;
+
+import java.text.ParseException;
+import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+import edu.umd.cs.findbugs.annotations.*;
+import net.praqma.clearcase.cleartool.Cleartool;
+import net.praqma.clearcase.cleartool.CleartoolAsync;
+import net.praqma.clearcase.cleartool.LineHandler;
+import net.praqma.clearcase.cleartool.Span;
+import net.praqma.clearcase.cleartool.Tracer;
+import net.praqma.clearcase.exceptions.ClearCaseException;
+import net.praqma.clearcase.exceptions.UnableToInitializeEntityException;
+import net.praqma.clearcase.exceptions.UnableToListBaselinesException;
+import net.praqma.clearcase.ucm.entities.Baseline;
+import net.praqma.clearcase.ucm.entities.Component;
+import net.praqma.clearcase.ucm.entities.Project.PromotionLevel;
+import net.praqma.clearcase.ucm.entities.Stream;
+import net.praqma.util.execute.AbnormalProcessTerminationException;
+import org.apache.commons.lang.SystemUtils;
+
+/**
+ * Lists the baselines of many streams and components at once, as a {@link BaselineList} without filters would list each of them.<br>
+ * The queries of a stream at the same promotion level share one <code>lsbl</code>, which lists the baselines of all its components when more than one is asked for,
+ * and identical queries are listed once. The listings run concurrently by {@link CleartoolAsync}, at most {@link #getThreads()} at a time,
+ * see the system property <code>cool.baselines.list.threads</code>, the default is 4.<br>
+ * A query failing does not fail the others, its {@link Result} holds the exception.
+ */
+@SuppressFBWarnings("")
+public class BaselineListingService {
+
+    private static Logger logger = Logger.getLogger(BaselineListingService.class.getName());
+
+    public static final int defaultThreads = Integer.getInteger("cool.baselines.list.threads", 4);
+
+    private final int threads;
+
+    public BaselineListingService() {
+        this(defaultThreads);
+    }
+
+    /**
+     * @param threads The max number of concurrent listings, 1 lists one stream at a time
+     */
+    public BaselineListingService(int threads) {
+        this.threads = Math.max(1, threads);
+    }
+
+    public int getThreads() {
+        return threads;
+    }
+
+    /**
+     * List the baselines of the queries
+     *
+     * @param queries The queries, duplicates are listed once
+     * @return The result of every query, in the order given
+     */
+    public Listing list(Collection<Query> queries) {
+        Span span = Tracer.start("BaselineListingService.list", queries.size() + " queries");
+        try {
+            return _list(queries);
+        } finally {
+            span.end();
+        }
+    }
+
+    private Listing _list(Collection<Query> queries) {
+        long start = System.nanoTime();
+
+        /* The queries sharing a listing, in the order given */
+        Map<String, Group> groups = new LinkedHashMap<String, Group>();
+        for (Query query : queries) {
+            String key = query.stream.getFullyQualifiedName() + "\n" + (query.level != null ? query.level.toString() : "") + "\n" + query.multisitePolling;
+            Group group = groups.get(key);
+            if (group == null) {
+                group = new Group(query.stream, query.level, query.multisitePolling);
+                groups.put(key, group);
+            }
+            if (!group.queries.contains(query)) {
+                group.queries.add(query);
+            }
+        }
+
+        /* Run by a worker, the listings are run by the worker itself */
+        if (threads > 1 && groups.size() > 1 && !CleartoolAsync.isWorker()) {
+            listConcurrently(groups.values());
+        } else {
+            for (Group group : groups.values()) {
+                group.list();
+            }
+        }
+
+        Map<Query, Result> results = new LinkedHashMap<Query, Result>();
+        for (Query query : queries) {
+            for (Group group : groups.values()) {
+                Result result = group.results.get(query);
+                if (result != null) {
+                    results.put(query, result);
+                    break;
+                }
+            }
+        }
+
+        Listing listing = new Listing(results, groups.size(), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        logger.fine("Listed " + results.size() + " queries with " + listing.getListings() + " listings in " + listing.getMillis() + "ms");
+        return listing;
+    }
+
+    private void listConcurrently(Collection<Group> groups) {
+        final Queue<Group> queue = new ConcurrentLinkedQueue<Group>(groups);
+        List<CompletableFuture<Void>> workers = new ArrayList<CompletableFuture<Void>>();
+        for (int i = 0; i < Math.min(threads, groups.size()); i++) {
+            workers.add(CleartoolAsync.submit(new Callable<Void>() {
+                @Override
+                public Void call() {
+                    Group group;
+                    while ((group = queue.poll()) != null) {
+                        group.list();
+                    }
+                    return null;
+                }
+            }, 0, TimeUnit.MILLISECONDS));
+        }
+
+        RuntimeException failure = null;
+        for (CompletableFuture<Void> worker : workers) {
+            try {
+                worker.get();
+            } catch (ExecutionException e) {
+                /* The ClearCase errors are in the results, anything else is a bug */
+                if (failure == null) {
+                    failure = e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : new IllegalStateException(e.getCause());
+                    queue.clear();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                queue.clear();
+                if (failure == null) {
+                    failure = new IllegalStateException("Interrupted while listing baselines", e);
+                }
+            }
+        }
+
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    /**
+     * The queries of a stream sharing a listing
+     */
+    private static class Group {
+        private final Stream stream;
+        private final PromotionLevel level;
+        private final boolean multisitePolling;
+        private final List<Query> queries = new ArrayList<Query>();
+        private final Map<Query, Result> results = new HashMap<Query, Result>();
+
+        private Group(Stream stream, PromotionLevel level, boolean multisitePolling) {
+            this.stream = stream;
+            this.level = level;
+            this.multisitePolling = multisitePolling;
+        }
+
+        private void list() {
+            long start = System.nanoTime();
+            Map<Query, BaselineList> lists = new HashMap<Query, BaselineList>();
+            ClearCaseException error = null;
+            try {
+                if (multisitePolling && stream.hasPostedDelivery()) {
+                    for (Query query : queries) {
+                        lists.put(query, new BaselineList(stream.getPostedBaselines(query.component, level)));
+                    }
+                } else {
+                    lists = get();
+                }
+            } catch (ClearCaseException e) {
+                error = e;
+            }
+
+            long millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            for (Query query : queries) {
+                results.put(query, new Result(query, error == null ? lists.get(query) : null, error, millis));
+            }
+        }
+
+        private Map<Query, BaselineList> get() throws UnableToInitializeEntityException, UnableToListBaselinesException {
+            /* Several components are listed together, and told apart by the listing */
+            final Map<String, BaselineList> byComponent = new HashMap<String, BaselineList>();
+            Map<Query, BaselineList> lists = new HashMap<Query, BaselineList>();
+            for (Query query : queries) {
+                BaselineList list = new BaselineList();
+                byComponent.put(query.component.getFullyQualifiedName(), list);
+                lists.put(query, list);
+            }
+
+            Component component = queries.size() == 1 ? queries.get(0).component : null;
+            String cmd;
+
+            if (SystemUtils.IS_OS_WINDOWS) {
+                cmd = "lsbl -fmt %Xn::%Nd::%[label_status]p::%[component]Xp\\n" + (component != null ? " -component " + component : "") + " -stream " + stream + (level != null ? " -level " + level.toString() : "");
+            } else {
+                cmd = "lsbl -fmt %Xn::%Nd::%[label_status]p::%[component]Xp\\\\n" + (component != null ? " -component " + component : "") + " -stream " + stream + (level != null ? " -level " + level.toString() : "");
+            }
+            final UnableToInitializeEntityException[] error = new UnableToInitializeEntityException[1];
+
+            try {
+                Cleartool.stream(cmd, null, new LineHandler() {
+                    @Override
+                    public boolean handle(String line) {
+                        String[] split = line.split("::");
+                        if (split.length < 4) {
+                            return true;
+                        }
+                        BaselineList list = byComponent.get(split[3]);
+                        if (list == null) {
+                            return true;
+                        }
+                        try {
+                            Baseline baseline = Baseline.get(split[0]);
+                            try {
+                                baseline.setListed(split[1], split[2]);
+                            } catch (ParseException e) {
+                                throw new UnableToInitializeEntityException(baseline.getClass(), e);
+                            }
+                            list.add(baseline);
+                            return true;
+                        } catch (UnableToInitializeEntityException e) {
+                            error[0] = e;
+                            return false;
+                        }
+                    }
+                });
+            } catch (AbnormalProcessTerminationException e) {
+                logger.warning(e.getMessage());
+                throw new UnableToListBaselinesException(stream, component, level, e);
+            }
+
+            if (error[0] != null) {
+                throw error[0];
+            }
+
+            return lists;
+        }
+    }
+
+    /**
+     * The baselines of a component in a stream
+     */
+    public static class Query {
+        private final Stream stream;
+        private final Component component;
+        private final PromotionLevel level;
+        private final boolean multisitePolling;
+
+        public Query(Stream stream, Component component, PromotionLevel level) {
+            this(stream, component, level, false);
+        }
+
+        /**
+         * @param stream The stream
+         * @param component The component
+         * @param level The promotion level, null for all
+         * @param multisitePolling If true, and the stream has a posted delivery, the posted baselines are returned, see {@link BaselineList}
+         */
+        public Query(Stream stream, Component component, PromotionLevel level, boolean multisitePolling) {
+            this.stream = stream;
+            this.component = component;
+            this.level = level;
+            this.multisitePolling = multisitePolling;
+        }
+
+        public Stream getStream() {
+            return stream;
+        }
+
+        public Component getComponent() {
+            return component;
+        }
+
+        public PromotionLevel getLevel() {
+            return level;
+        }
+
+        public boolean isMultisitePolling() {
+            return multisitePolling;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (other instanceof Query) {
+                Query q = (Query) other;
+                return q.stream.equals(stream) && q.component.equals(component) && q.level == level && q.multisitePolling == multisitePolling;
+            }
+            return false;
+        }
+
+        @Override
+        public int hashCode() {
+            return stream.getFullyQualifiedName().hashCode() * 31 + component.getFullyQualifiedName().hashCode();
+        }
+
+        @Override
+        public String toString() {
+            return stream.getNormalizedName() + ", " + component.getNormalizedName() + (level != null ? ", " + level : "");
+        }
+    }
+
+    /**
+     * The baselines of a {@link Query}, or the reason they could not be listed
+     */
+    public static class Result {
+        private final Query query;
+        private final BaselineList baselines;
+        private final ClearCaseException error;
+        private final long millis;
+
+        private Result(Query query, BaselineList baselines, ClearCaseException error, long millis) {
+            this.query = query;
+            this.baselines = baselines;
+            this.error = error;
+            this.millis = millis;
+        }
+
+        public Query getQuery() {
+            return query;
+        }
+
+        /**
+         * @return The baselines in the order listed, null if they could not be listed
+         */
+        public BaselineList getBaselines() {
+            return baselines;
+        }
+
+        /**
+         * @return The exception listing the baselines, null if they were listed
+         */
+        public ClearCaseException getError() {
+            return error;
+        }
+
+        public boolean isListed() {
+            return error == null;
+        }
+
+        /**
+         * @return The time spent listing the stream of the query, shared by the queries listed together
+         */
+        public long getMillis() {
+            return millis;
+        }
+    }
+
+    /**
+     * The results of {@link BaselineListingService#list(Collection)}
+     */
+    public static class Listing {
+        private final Map<Query, Result> results;
+        private final int listings;
+        private final long millis;
+
+        private Listing(Map<Query, Result> results, int listings, long millis) {
+            this.results = Collections.unmodifiableMap(results);
+            this.listings = listings;
+            this.millis = millis;
+        }
+
+        /**
+         * @return The result of every query, in the order given
+         */
+        public Map<Query, Result> getResults() {
+            return results;
+        }
+
+        /**
+         * @return The result of the query, null if it was not asked for
+         */
+        public Result get(Query query) {
+            return results.get(query);
+        }
+
+        /**
+         * @return The number of streams listed
+         */
+        public int getListings() {
+            return listings;
+        }
+
+        /**
+         * @return The time spent listing all the queries
+         */
+        public long getMillis() {
+            return millis;
+        }
+    }
+}
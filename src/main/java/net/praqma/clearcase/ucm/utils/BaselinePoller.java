@@ -0,0 +1,384 @@
+package net.praqma.clearcase.ucm.utils;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Serializable;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.text.ParseException;
+import java.util.*;
+import java.util.logging.Logger;
+
+import edu.umd.cs.findbugs.annotations.*;
+import net.praqma.clearcase.cleartool.Cleartool;
+import net.praqma.clearcase.cleartool.LineHandler;
+import net.praqma.clearcase.cleartool.Span;
+import net.praqma.clearcase.cleartool.Tracer;
+import net.praqma.clearcase.exceptions.UnableToInitializeEntityException;
+import net.praqma.clearcase.exceptions.UnableToListBaselinesException;
+import net.praqma.clearcase.ucm.entities.Baseline;
+import net.praqma.clearcase.ucm.entities.Component;
+import net.praqma.clearcase.ucm.entities.Project.PromotionLevel;
+import net.praqma.clearcase.ucm.entities.Stream;
+import net.praqma.util.execute.AbnormalProcessTerminationException;
+import org.apache.commons.lang.SystemUtils;
+
+/**
+ * Polls a stream for the baselines of a component created since the last poll, as the {@link BaselineList} of a stream filtered
+ * with an {@link net.praqma.clearcase.ucm.utils.filters.AfterDate} would, without creating and filtering a {@link Baseline} for every baseline the stream ever had.<br>
+ * A {@link Watermark} of the newest date seen, the baselines of that date and the number of baselines up to it is kept in a {@link WatermarkStore} between polls.
+ * cleartool cannot list the baselines since a date, so the stream is still listed as a whole, but an old baseline costs comparing its date, and only the new ones become entities.<br>
+ * If the baselines up to the watermark are not those seen last time, e.g. because one was removed, or an older one got the promotion level,
+ * the poll falls back to a full scan, returning all the baselines as the first poll does. {@link #isFullScan()} tells whether it did.<br>
+ * The watermark is moved by every poll, the caller is expected to handle the baselines returned.
+ */
+@SuppressFBWarnings("")
+public class BaselinePoller {
+
+    private static Logger logger = Logger.getLogger(BaselinePoller.class.getName());
+
+    private final Stream stream;
+    private final Component component;
+    private final PromotionLevel level;
+    private final WatermarkStore store;
+    private final String key;
+
+    private Watermark watermark;
+    private boolean fullScan;
+
+    /**
+     * @param stream The stream polled
+     * @param component The component of the baselines
+     * @param level The promotion level of the baselines, null for all
+     * @param store Keeps the watermark between polls, null to keep it in this poller only
+     */
+    public BaselinePoller(Stream stream, Component component, PromotionLevel level, WatermarkStore store) {
+        this.stream = stream;
+        this.component = component;
+        this.level = level;
+        this.store = store;
+        this.key = stream.getFullyQualifiedName() + "\n" + component.getFullyQualifiedName() + "\n" + (level != null ? level.toString() : "");
+    }
+
+    /**
+     * Get the baselines created since the last poll, in the order they were created
+     *
+     * @return The new {@link Baseline}s, all of them if there was no watermark or it was reset
+     * @throws UnableToInitializeEntityException Thrown when ClearCase reports errors
+     * @throws UnableToListBaselinesException Thrown when ClearCase reports errors
+     */
+    public BaselineList poll() throws UnableToInitializeEntityException, UnableToListBaselinesException {
+        Span span = Tracer.start("BaselinePoller.poll", stream);
+        try {
+            return _poll();
+        } finally {
+            span.end();
+        }
+    }
+
+    private BaselineList _poll() throws UnableToInitializeEntityException, UnableToListBaselinesException {
+        Watermark mark = getWatermark();
+
+        Scan scan = scan(mark);
+        if (mark != null && scan.isReset()) {
+            logger.info("[ClearCase] The baselines of " + stream.getNormalizedName() + " up to " + mark.getDate() + " have changed, listing them all");
+            scan = scan(null);
+        }
+
+        fullScan = scan.mark == null;
+        setWatermark(scan.next());
+
+        logger.fine("Polled " + scan.total + " baselines, " + scan.baselines.size() + " new");
+        return new BaselineList(scan.baselines);
+    }
+
+    /**
+     * @return True if the last poll returned all the baselines
+     */
+    public boolean isFullScan() {
+        return fullScan;
+    }
+
+    /**
+     * @return The watermark, null if the stream has not been polled
+     */
+    public Watermark getWatermark() {
+        if (watermark == null && store != null) {
+            watermark = store.get(key);
+        }
+        return watermark;
+    }
+
+    /**
+     * Set the watermark, null to poll all baselines next time
+     */
+    public void setWatermark(Watermark watermark) {
+        this.watermark = watermark;
+        if (store != null) {
+            try {
+                store.put(key, watermark);
+            } catch (IOException e) {
+                logger.warning("[ClearCase] Unable to store the watermark of " + stream.getNormalizedName() + ": " + e.getMessage());
+            }
+        }
+    }
+
+    private Scan scan(Watermark mark) throws UnableToInitializeEntityException, UnableToListBaselinesException {
+        String cmd;
+
+        if (SystemUtils.IS_OS_WINDOWS) {
+            cmd = "lsbl -fmt %Nd::%On::%Xn::%[label_status]p\\n -component " + component + " -stream " + stream + (level != null ? " -level " + level.toString() : "");
+        } else {
+            cmd = "lsbl -fmt %Nd::%On::%Xn::%[label_status]p\\\\n -component " + component + " -stream " + stream + (level != null ? " -level " + level.toString() : "");
+        }
+
+        final Scan scan = new Scan(mark);
+        try {
+            Cleartool.stream(cmd, null, scan);
+        } catch (AbnormalProcessTerminationException e) {
+            logger.warning(e.getMessage());
+            throw new UnableToListBaselinesException(stream, component, level, e);
+        }
+
+        if (scan.error != null) {
+            throw scan.error;
+        }
+
+        return scan;
+    }
+
+    /**
+     * The baselines of a listing newer than a watermark
+     */
+    private static class Scan implements LineHandler {
+        private final Watermark mark;
+        private final List<Baseline> baselines = new ArrayList<Baseline>();
+        private UnableToInitializeEntityException error;
+
+        private int total = 0;
+
+        /* Those up to the watermark, and those of its date */
+        private int count = 0;
+        private int seen = 0;
+
+        /* The next watermark */
+        private String date;
+        private Set<String> oids = new HashSet<String>();
+
+        private Scan(Watermark mark) {
+            this.mark = mark;
+            this.date = mark != null ? mark.date : "";
+        }
+
+        @Override
+        public boolean handle(String line) {
+            total++;
+
+            int i = line.indexOf("::");
+            if (i < 0) {
+                return true;
+            }
+            String d = line.substring(0, i);
+
+            /* Older than the watermark, this is the common case and must stay cheap */
+            int c = mark != null ? d.compareTo(mark.date) : 1;
+            if (c < 0) {
+                count++;
+                return true;
+            }
+
+            String[] split = line.substring(i + 2).split("::");
+            String oid = split[0];
+            if (c == 0 && mark.oids.contains(oid)) {
+                count++;
+                seen++;
+                return true;
+            }
+
+            try {
+                Baseline baseline = Baseline.get(split[1]);
+                try {
+                    baseline.setListed(d, split.length > 2 ? split[2] : "");
+                } catch (ParseException e) {
+                    throw new UnableToInitializeEntityException(baseline.getClass(), e);
+                }
+                baselines.add(baseline);
+            } catch (UnableToInitializeEntityException e) {
+                error = e;
+                return false;
+            }
+
+            int n = d.compareTo(date);
+            if (n > 0) {
+                date = d;
+                oids = new HashSet<String>();
+            }
+            if (n >= 0) {
+                oids.add(oid);
+            }
+
+            return true;
+        }
+
+        /**
+         * @return True if the baselines up to the watermark are not those seen when it was set
+         */
+        private boolean isReset() {
+            return count != mark.count || seen != mark.oids.size();
+        }
+
+        private Watermark next() {
+            if (total == 0) {
+                return null;
+            }
+            if (mark != null && date.equals(mark.date)) {
+                oids.addAll(mark.oids);
+            }
+            return new Watermark(date, total, oids);
+        }
+    }
+
+    /**
+     * The newest baselines seen by a poll
+     */
+    public static class Watermark implements Serializable {
+        private final String date;
+        private final int count;
+        private final Set<String> oids;
+
+        /**
+         * @param date The newest date, as cleartool's <code>%Nd</code>
+         * @param count The number of baselines up to and including the date
+         * @param oids The object ids of the baselines of the date
+         */
+        public Watermark(String date, int count, Collection<String> oids) {
+            this.date = date;
+            this.count = count;
+            this.oids = Collections.unmodifiableSet(new HashSet<String>(oids));
+        }
+
+        public String getDate() {
+            return date;
+        }
+
+        public int getCount() {
+            return count;
+        }
+
+        public Set<String> getOids() {
+            return oids;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (other instanceof Watermark) {
+                Watermark w = (Watermark) other;
+                return w.date.equals(date) && w.count == count && w.oids.equals(oids);
+            }
+            return false;
+        }
+
+        @Override
+        public int hashCode() {
+            return date.hashCode() * 31 + count;
+        }
+
+        @Override
+        public String toString() {
+            return date + "::" + count + "::" + String.join(" ", oids);
+        }
+
+        /**
+         * Parse the format of {@link #toString()}
+         *
+         * @return The watermark, or null if the string is not one
+         */
+        public static Watermark parse(String s) {
+            String[] split = s.split("::", 3);
+            if (split.length < 3) {
+                return null;
+            }
+            try {
+                String oids = split[2].trim();
+                return new Watermark(split[0], Integer.parseInt(split[1]), oids.isEmpty() ? Collections.<String>emptyList() : Arrays.asList(oids.split(" ")));
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+    }
+
+    /**
+     * Keeps the watermarks between polls, e.g. across restarts
+     */
+    public interface WatermarkStore {
+        /**
+         * @return The watermark, or null if there is none
+         */
+        Watermark get(String key);
+
+        /**
+         * @param watermark The watermark, null removes it
+         */
+        void put(String key, Watermark watermark) throws IOException;
+    }
+
+    /**
+     * Keeps the watermarks in a properties file, which is replaced as a whole on every change
+     */
+    public static class FileWatermarkStore implements WatermarkStore {
+        private final File file;
+        private final Properties properties = new Properties();
+
+        public FileWatermarkStore(File file) throws IOException {
+            this.file = file;
+            if (file.exists()) {
+                InputStream in = new FileInputStream(file);
+                try {
+                    properties.load(in);
+                } finally {
+                    in.close();
+                }
+            }
+        }
+
+        @Override
+        public synchronized Watermark get(String key) {
+            String value = properties.getProperty(key);
+            if (value == null) {
+                return null;
+            }
+
+            Watermark watermark = Watermark.parse(value);
+            if (watermark == null) {
+                logger.warning("[ClearCase] Ignoring the malformed watermark " + value + " in " + file);
+            }
+            return watermark;
+        }
+
+        @Override
+        public synchronized void put(String key, Watermark watermark) throws IOException {
+            if (watermark != null) {
+                properties.setProperty(key, watermark.toString());
+            } else {
+                properties.remove(key);
+            }
+
+            File tmp = new File(file.getPath() + ".tmp");
+            OutputStream out = new FileOutputStream(tmp);
+            try {
+                properties.store(out, "Baseline watermarks");
+            } finally {
+                out.close();
+            }
+            Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+
+        public File getFile() {
+            return file;
+        }
+    }
+}
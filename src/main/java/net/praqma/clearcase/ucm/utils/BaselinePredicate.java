@@ -0,0 +1,25 @@
+package net.praqma.clearcase.ucm.utils;
+
+/**
+ * Implemented by a {@link BaselineFilter} that can judge a baseline from the fields of the <code>lsbl</code> listing,
+ * so the {@link BaselineList} skips the baselines it rejects before a {@link net.praqma.clearcase.ucm.entities.Baseline} is created for them.<br>
+ * The predicate may keep baselines the filter removes, but never remove one the filter keeps,
+ * {@link BaselineFilter#filter(BaselineList)} is still applied to the baselines kept, and to those the list is asked to ensure.<br>
+ * The predicate is tested while the listing is read, holding its cleartool, so it must not run cleartool itself.
+ * What it needs from ClearCase is read in {@link #prepare()}, before the listing.
+ */
+public interface BaselinePredicate {
+
+    /**
+     * Read what {@link #test(String, String, String)} needs from ClearCase, called before the listing is started
+     */
+    public void prepare();
+
+    /**
+     * @param fqname The fully qualified name, <code>%Xn</code>, e.g. baseline:bl1@\pvob
+     * @param date The date, <code>%Nd</code>, e.g. 20060810.225810
+     * @param labelStatus The label status, <code>%[label_status]p</code>, e.g. not labeled
+     * @return False if the baseline is removed by the filter
+     */
+    public boolean test( String fqname, String date, String labelStatus );
+}
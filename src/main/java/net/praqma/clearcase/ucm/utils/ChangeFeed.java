@@ -0,0 +1,528 @@
+package net.praqma.clearcase.ucm.utils;
+
+import java.nio.charset.StandardCharsets;
+import java.text.ParseException;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.*;
+import java.util.logging.Logger;
+import java.util.regex.Pattern;
+
+import edu.umd.cs.findbugs.annotations.*;
+import net.praqma.clearcase.PVob;
+import net.praqma.clearcase.cleartool.Cleartool;
+import net.praqma.clearcase.cleartool.LineHandler;
+import net.praqma.clearcase.cleartool.Span;
+import net.praqma.clearcase.cleartool.Tracer;
+import net.praqma.clearcase.exceptions.ClearCaseException;
+import net.praqma.clearcase.exceptions.CleartoolException;
+import net.praqma.clearcase.ucm.entities.Baseline;
+import net.praqma.clearcase.ucm.entities.Component;
+import net.praqma.clearcase.ucm.entities.Project.PromotionLevel;
+import net.praqma.clearcase.ucm.entities.Stream;
+import net.praqma.clearcase.ucm.entities.UCMEntity;
+import net.praqma.clearcase.ucm.utils.BaselinePoller.Watermark;
+import net.praqma.clearcase.ucm.utils.BaselinePoller.WatermarkStore;
+import net.praqma.util.execute.AbnormalProcessTerminationException;
+import org.apache.commons.lang.SystemUtils;
+
+/**
+ * Follows the changes of a PVob with one <code>lshistory</code> since the last poll, instead of listing the baselines of every stream.
+ * The cost of a poll is in proportion to what happened in the PVob since the last one, not to the number of streams.<br>
+ * The events are told as {@link Event}s to the {@link Subscriber}s of their stream and component, see {@link #subscribe(Stream, Component, Subscriber)}.
+ * The baselines and streams of the events are described together, see {@link UCMEntity#loadAll(Collection, int)}.<br>
+ * cleartool tells the history since a date, so the events of the second of the last poll are listed again.
+ * Like the {@link BaselinePoller}, a {@link Watermark} of the newest date and the events of that date is kept between polls, so no event is told twice.<br>
+ * A <code>chbl</code> is a promotion if its comment tells of a promotion level, see {@link #rx_promoted}, or if the level of the baseline known before differs from the level loaded.
+ * A <code>chstream</code> is a recommendation if its comment tells so, see {@link #rx_recommended}. Both match the English comments cleartool writes.
+ */
+@SuppressFBWarnings("")
+public class ChangeFeed {
+
+    private static Logger logger = Logger.getLogger(ChangeFeed.class.getName());
+
+    /**
+     * The comment of a <code>chbl -level</code>, e.g. Changed promotion level to "BUILT"
+     */
+    public static final Pattern rx_promoted = Pattern.compile("promotion level", Pattern.CASE_INSENSITIVE);
+
+    /**
+     * The comment of a <code>chstream -recommended</code>, e.g. Set recommended baselines
+     */
+    public static final Pattern rx_recommended = Pattern.compile("recommend", Pattern.CASE_INSENSITIVE);
+
+    private static final DateTimeFormatter sinceFormatter = DateTimeFormatter.ofPattern("dd-MMM-yyyy.HH:mm:ss", Locale.ENGLISH);
+
+    public enum Type {
+        BASELINE_CREATED,
+        BASELINE_PROMOTED,
+        BASELINE_RECOMMENDED,
+        STREAM_CREATED
+    }
+
+    private final PVob pvob;
+    private final Date start;
+    private final WatermarkStore store;
+    private final String key;
+
+    private final Map<String, List<Subscriber>> subscribers = new LinkedHashMap<String, List<Subscriber>>();
+
+    private Watermark watermark;
+
+    /**
+     * @param pvob The PVob followed
+     * @param start The date to follow the PVob from, when there is no watermark
+     * @param store Keeps the watermark between polls, null to keep it in this feed only
+     */
+    public ChangeFeed(PVob pvob, Date start, WatermarkStore store) {
+        this.pvob = pvob;
+        this.start = start;
+        this.store = store;
+        this.key = "lshistory\n" + pvob.getName();
+    }
+
+    /**
+     * Subscribe to the events of a stream and component.
+     * The events of a stream, but no component, e.g. {@link Type#STREAM_CREATED}, are told to all the subscribers of the stream.
+     * A new stream is told to the subscribers of its default target too.
+     *
+     * @param stream The stream, null for all streams
+     * @param component The component, null for all components
+     * @param subscriber The subscriber
+     */
+    public void subscribe(Stream stream, Component component, Subscriber subscriber) {
+        String k = key(stream, component);
+        synchronized (subscribers) {
+            List<Subscriber> list = subscribers.get(k);
+            if (list == null) {
+                list = new ArrayList<Subscriber>();
+                subscribers.put(k, list);
+            }
+            list.add(subscriber);
+        }
+    }
+
+    public void unsubscribe(Subscriber subscriber) {
+        synchronized (subscribers) {
+            for (List<Subscriber> list : subscribers.values()) {
+                list.remove(subscriber);
+            }
+        }
+    }
+
+    /**
+     * Get the events since the last poll, and tell them to the subscribers
+     *
+     * @return The events in the order they happened
+     * @throws CleartoolException Thrown when ClearCase reports errors
+     */
+    public List<Event> poll() throws CleartoolException {
+        Span span = Tracer.start("ChangeFeed.poll", pvob);
+        try {
+            return _poll();
+        } finally {
+            span.end();
+        }
+    }
+
+    private List<Event> _poll() throws CleartoolException {
+        Watermark mark = getWatermark();
+        if (mark == null) {
+            mark = new Watermark(UCMEntity.dateTimeFormatter.format(start.toInstant().atZone(ZoneId.systemDefault())), 0, Collections.<String>emptyList());
+        }
+
+        History history = history(mark);
+
+        /* cleartool lists the newest first */
+        List<Record> records = new ArrayList<Record>(history.records);
+        Collections.reverse(records);
+        Collections.sort(records, new Comparator<Record>() {
+            @Override
+            public int compare(Record r1, Record r2) {
+                return r1.date.compareTo(r2.date);
+            }
+        });
+
+        List<Event> events = events(records);
+        for (Event event : events) {
+            dispatch(event);
+        }
+
+        setWatermark(history.next());
+
+        logger.fine("Polled " + history.total + " history records of " + pvob + ", " + history.records.size() + " new, " + events.size() + " events");
+        return events;
+    }
+
+    /**
+     * @return The watermark, null if the PVob has not been polled
+     */
+    public Watermark getWatermark() {
+        if (watermark == null && store != null) {
+            watermark = store.get(key);
+        }
+        return watermark;
+    }
+
+    /**
+     * Set the watermark, null to follow the PVob from the start date next time
+     */
+    public void setWatermark(Watermark watermark) {
+        this.watermark = watermark;
+        if (store != null) {
+            try {
+                store.put(key, watermark);
+            } catch (java.io.IOException e) {
+                logger.warning("[ClearCase] Unable to store the watermark of " + pvob + ": " + e.getMessage());
+            }
+        }
+    }
+
+    private History history(Watermark mark) throws CleartoolException {
+        String since;
+        try {
+            since = sinceFormatter.format(UCMEntity.parseDate(mark.getDate()).atZone(ZoneId.systemDefault()));
+        } catch (ParseException e) {
+            throw new CleartoolException("Unable to parse the watermark " + mark.getDate(), e);
+        }
+
+        String cmd;
+        if (SystemUtils.IS_OS_WINDOWS) {
+            cmd = "lshistory -all -minor -since " + since + " -fmt %Nd::%o::%Xn::%Nc\\n " + pvob;
+        } else {
+            cmd = "lshistory -all -minor -since " + since + " -fmt %Nd::%o::%Xn::%Nc\\\\n " + pvob;
+        }
+
+        History history = new History(mark);
+        try {
+            Cleartool.stream(cmd, null, history);
+        } catch (AbnormalProcessTerminationException e) {
+            throw new CleartoolException("Unable to list the history of " + pvob, e);
+        }
+
+        return history;
+    }
+
+    /**
+     * Make the events of the history records, the records not about baselines and streams are ignored
+     */
+    private List<Event> events(List<Record> records) {
+        List<Record> relevant = new ArrayList<Record>();
+        Set<UCMEntity> entities = new LinkedHashSet<UCMEntity>();
+        Set<UCMEntity> changed = new HashSet<UCMEntity>();
+        Map<Record, List<Baseline>> recommended = new HashMap<Record, List<Baseline>>();
+        Map<Record, PromotionLevel> levels = new HashMap<Record, PromotionLevel>();
+
+        for (Record record : records) {
+            try {
+                if (record.selector.startsWith("baseline:") && (record.operation.equals("mkbl") || record.operation.equals("chbl"))) {
+                    record.entity = Baseline.get(record.selector);
+                    entities.add(record.entity);
+                    if (record.operation.equals("chbl")) {
+                        changed.add(record.entity);
+                        /* The level before the change, if known */
+                        if (record.entity.isLoaded()) {
+                            levels.put(record, ((Baseline) record.entity).getPromotionLevel());
+                        }
+                    }
+                } else if (record.selector.startsWith("stream:") && record.operation.equals("mkstream")) {
+                    record.entity = Stream.get(record.selector);
+                    entities.add(record.entity);
+                } else if (record.selector.startsWith("stream:") && record.operation.equals("chstream") && rx_recommended.matcher(record.comment).find()) {
+                    record.entity = Stream.get(record.selector);
+                    List<Baseline> bls = ((Stream) record.entity).getRecommendedBaselines(true);
+                    recommended.put(record, bls);
+                    entities.addAll(bls);
+                    changed.addAll(bls);
+                } else {
+                    continue;
+                }
+                relevant.add(record);
+            } catch (ClearCaseException e) {
+                logger.warning("[ClearCase] Skipping " + record.operation + " of " + record.selector + ": " + e.getMessage());
+            }
+        }
+
+        /* The level of a baseline loaded before the change is stale, it is loaded again with the others */
+        for (UCMEntity entity : changed) {
+            if (entity.isLoaded()) {
+                entity.invalidate();
+            }
+        }
+
+        /* The stream, component and level of the baselines, and the default target of the streams */
+        Set<UCMEntity> unloaded = load(entities);
+
+        List<Event> events = new ArrayList<Event>();
+        for (Record record : relevant) {
+            if (unloaded.contains(record.entity)) {
+                continue;
+            }
+
+            if (record.entity instanceof Baseline) {
+                Baseline baseline = (Baseline) record.entity;
+                Type type = record.operation.equals("mkbl") ? Type.BASELINE_CREATED : Type.BASELINE_PROMOTED;
+                if (type == Type.BASELINE_PROMOTED && !promoted(record, levels.get(record), baseline.getPromotionLevel())) {
+                    continue;
+                }
+                events.add(new Event(type, record.date, baseline.getStream(), baseline.getComponent(), baseline, baseline.getPromotionLevel(), record.comment));
+            } else if (recommended.containsKey(record)) {
+                for (Baseline baseline : recommended.get(record)) {
+                    if (!unloaded.contains(baseline)) {
+                        events.add(new Event(Type.BASELINE_RECOMMENDED, record.date, (Stream) record.entity, baseline.getComponent(), baseline, baseline.getPromotionLevel(), record.comment));
+                    }
+                }
+            } else {
+                events.add(new Event(Type.STREAM_CREATED, record.date, (Stream) record.entity, null, null, null, record.comment));
+            }
+        }
+
+        return events;
+    }
+
+    /**
+     * @param before The level before the change, null if not known
+     * @return True if a <code>chbl</code> changed the promotion level, and not e.g. the comment or labels of the baseline
+     */
+    private static boolean promoted(Record record, PromotionLevel before, PromotionLevel after) {
+        return rx_promoted.matcher(record.comment).find() || (before != null && before != after);
+    }
+
+    /**
+     * Load the entities together, or one at a time if that fails, e.g. because one was removed since
+     *
+     * @return The entities that could not be loaded
+     */
+    private static Set<UCMEntity> load(Collection<UCMEntity> entities) {
+        Set<UCMEntity> unloaded = new HashSet<UCMEntity>();
+        try {
+            UCMEntity.loadAll(entities, UCMEntity.defaultLoadThreads);
+        } catch (ClearCaseException e) {
+            logger.fine("Unable to load the entities together: " + e.getMessage());
+            for (UCMEntity entity : entities) {
+                if (entity.isLoaded()) {
+                    continue;
+                }
+                try {
+                    entity.load();
+                } catch (ClearCaseException e1) {
+                    logger.warning("[ClearCase] Skipping " + entity.getNormalizedName() + ": " + e1.getMessage());
+                    unloaded.add(entity);
+                }
+            }
+        }
+        return unloaded;
+    }
+
+    private void dispatch(Event event) {
+        Set<Subscriber> targets = new LinkedHashSet<Subscriber>();
+        List<Stream> streams = new ArrayList<Stream>();
+        streams.add(event.stream);
+        if (event.type == Type.STREAM_CREATED && event.stream.getDefaultTarget() != null) {
+            streams.add(event.stream.getDefaultTarget());
+        }
+
+        synchronized (subscribers) {
+            for (Map.Entry<String, List<Subscriber>> entry : subscribers.entrySet()) {
+                if (matches(entry.getKey(), streams, event.component)) {
+                    targets.addAll(entry.getValue());
+                }
+            }
+        }
+
+        for (Subscriber subscriber : targets) {
+            try {
+                subscriber.onEvent(event);
+            } catch (RuntimeException e) {
+                logger.warning("[ClearCase] The subscriber " + subscriber + " failed on " + event + ": " + e.getMessage());
+            }
+        }
+    }
+
+    private static String key(Stream stream, Component component) {
+        return (stream != null ? stream.getFullyQualifiedName() : "") + "\n" + (component != null ? component.getFullyQualifiedName() : "");
+    }
+
+    private static boolean matches(String key, List<Stream> streams, Component component) {
+        int i = key.indexOf('\n');
+        String s = key.substring(0, i);
+        String c = key.substring(i + 1);
+
+        if (!c.isEmpty() && component != null && !c.equals(component.getFullyQualifiedName())) {
+            return false;
+        }
+        if (s.isEmpty()) {
+            return true;
+        }
+        for (Stream stream : streams) {
+            if (stream != null && s.equals(stream.getFullyQualifiedName())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * A line of the history
+     */
+    private static class Record {
+        private final String date;
+        private final String operation;
+        private final String selector;
+        private final String comment;
+
+        /* The baseline or stream of the record */
+        private UCMEntity entity;
+
+        private Record(String date, String operation, String selector, String comment) {
+            this.date = date;
+            this.operation = operation;
+            this.selector = selector;
+            this.comment = comment;
+        }
+    }
+
+    /**
+     * The history records newer than a watermark
+     */
+    private static class History implements LineHandler {
+        private final Watermark mark;
+        private final List<Record> records = new ArrayList<Record>();
+        private int total = 0;
+
+        /* The next watermark */
+        private String date;
+        private Set<String> ids = new HashSet<String>();
+
+        private History(Watermark mark) {
+            this.mark = mark;
+            this.date = mark.getDate();
+        }
+
+        @Override
+        public boolean handle(String line) {
+            /* The lines of a comment spanning several lines are not records */
+            String[] split = line.split("::", 4);
+            if (split.length < 3 || !split[0].matches("\\d{8}\\.\\d{6}")) {
+                return true;
+            }
+            total++;
+
+            String d = split[0];
+            int c = d.compareTo(mark.getDate());
+            if (c < 0) {
+                return true;
+            }
+
+            /* A record has no id of its own, the same second and text is the same record */
+            String id = UUID.nameUUIDFromBytes(line.getBytes(StandardCharsets.UTF_8)).toString();
+            if (c == 0 && mark.getOids().contains(id)) {
+                return true;
+            }
+
+            records.add(new Record(d, split[1], split[2], split.length > 3 ? split[3] : ""));
+
+            int n = d.compareTo(date);
+            if (n > 0) {
+                date = d;
+                ids = new HashSet<String>();
+            }
+            if (n >= 0) {
+                ids.add(id);
+            }
+
+            return true;
+        }
+
+        private Watermark next() {
+            if (records.isEmpty()) {
+                return mark;
+            }
+            if (date.equals(mark.getDate())) {
+                ids.addAll(mark.getOids());
+            }
+            return new Watermark(date, mark.getCount() + records.size(), ids);
+        }
+    }
+
+    /**
+     * Something that happened to a baseline or stream of the PVob
+     */
+    public static class Event {
+        private final Type type;
+        private final Date date;
+        private final Stream stream;
+        private final Component component;
+        private final Baseline baseline;
+        private final PromotionLevel level;
+        private final String comment;
+
+        private Event(Type type, String date, Stream stream, Component component, Baseline baseline, PromotionLevel level, String comment) {
+            this.type = type;
+            Date d = null;
+            try {
+                d = Date.from(UCMEntity.parseDate(date));
+            } catch (ParseException e) {
+                /* The records are only made of dates that parse */
+            }
+            this.date = d;
+            this.stream = stream;
+            this.component = component;
+            this.baseline = baseline;
+            this.level = level;
+            this.comment = comment;
+        }
+
+        public Type getType() {
+            return type;
+        }
+
+        public Date getDate() {
+            return date;
+        }
+
+        /**
+         * @return The stream of the baseline, the recommending stream or the new stream
+         */
+        public Stream getStream() {
+            return stream;
+        }
+
+        /**
+         * @return The component of the baseline, null for a new stream
+         */
+        public Component getComponent() {
+            return component;
+        }
+
+        /**
+         * @return The baseline, null for a new stream
+         */
+        public Baseline getBaseline() {
+            return baseline;
+        }
+
+        /**
+         * @return The promotion level of the baseline when polled, null for a new stream
+         */
+        public PromotionLevel getLevel() {
+            return level;
+        }
+
+        public String getComment() {
+            return comment;
+        }
+
+        @Override
+        public String toString() {
+            return type + " " + (baseline != null ? baseline.getNormalizedName() + " in " : "") + (stream != null ? stream.getNormalizedName() : "");
+        }
+    }
+
+    /**
+     * Told the events of the streams and components it is subscribed to, in the thread polling the feed
+     */
+    public interface Subscriber {
+        void onEvent(Event event);
+    }
+}
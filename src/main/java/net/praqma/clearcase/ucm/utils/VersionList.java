@@ -1,6 +1,10 @@
 package net.praqma.clearcase.ucm.utils;
 
+import java.io.Externalizable;
 import java.io.File;
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Iterator;
@@ -12,10 +16,11 @@ import java.util.logging.Logger;
 import edu.umd.cs.findbugs.annotations.*;
 import net.praqma.clearcase.exceptions.ClearCaseException;
 import net.praqma.clearcase.ucm.entities.Activity;
+import net.praqma.clearcase.ucm.entities.EntityCodec;
 import net.praqma.clearcase.ucm.entities.Version;
 
 @SuppressFBWarnings("")
-public class VersionList extends ArrayList<Version> {
+public class VersionList extends ArrayList<Version> implements Externalizable {
 
     private static final Logger logger = Logger.getLogger( VersionList.class.getName() );
     private List<VersionFilter> filters = new ArrayList<VersionFilter>();
@@ -181,4 +186,29 @@ public class VersionList extends ArrayList<Version> {
     public void setActivities(List<Activity> activities) {
         this.activities = activities;
     }
+
+    /**
+     * Write the versions and activities in the format of {@link EntityCodec}, the filters are serialized as before
+     */
+    @Override
+    public void writeExternal( ObjectOutput out ) throws IOException {
+        EntityCodec.Output codec = new EntityCodec.Output( out );
+        codec.writeEntities( this );
+        codec.writeEntities( activities );
+        codec.writeString( branchName );
+        codec.writeFile( path );
+        out.writeObject( filters );
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public void readExternal( ObjectInput in ) throws IOException, ClassNotFoundException {
+        EntityCodec.Input codec = new EntityCodec.Input( in );
+        codec.readEntities( Version.class, this );
+        activities = new ArrayList<Activity>();
+        codec.readEntities( Activity.class, activities );
+        branchName = codec.readString();
+        path = codec.readFile();
+        filters = (List<VersionFilter>) in.readObject();
+    }
 }
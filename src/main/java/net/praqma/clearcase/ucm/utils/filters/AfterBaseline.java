@@ -2,19 +2,26 @@ package net.praqma.clearcase.ucm.utils.filters;
 
 import edu.umd.cs.findbugs.annotations.*;
 import net.praqma.clearcase.ucm.entities.Baseline;
+import net.praqma.clearcase.ucm.entities.UCMEntity;
 import net.praqma.clearcase.ucm.utils.BaselineFilter;
 import net.praqma.clearcase.ucm.utils.BaselineList;
+import net.praqma.clearcase.ucm.utils.BaselinePredicate;
 
+import java.text.ParseException;
+import java.time.Instant;
 import java.util.Collections;
-import java.util.Iterator;
+import java.util.Date;
 import java.util.logging.Logger;
 
 @SuppressFBWarnings("")
-public class AfterBaseline extends BaselineFilter {
+public class AfterBaseline extends BaselineFilter implements BaselinePredicate {
 	
 	private static Logger logger = Logger.getLogger( AfterBaseline.class.getName() );
 
 	private Baseline after;
+
+	private transient Instant anchorDate;
+	private transient boolean anchorRead = false;
 	
 	public AfterBaseline( Baseline after ) {
 		this.after = after;
@@ -33,20 +40,52 @@ public class AfterBaseline extends BaselineFilter {
 		Collections.sort(baselines, new BaselineList.AscendingDateSort());
 
 		int pruned = 0;
-		Iterator<Baseline> itAfter = baselines.iterator();
-		while (itAfter.hasNext()) {
-			Baseline baseline = itAfter.next();
+		for (Baseline baseline : baselines) {
 			logger.fine("Removing " + baseline.getNormalizedName());
-			itAfter.remove();
 			pruned++;
 			if (baseline.equals(after)) {
 				/* Stop pruning once we've found our baseline */
 				break;
 			}
 		}
+
+		/* Removed together, the list is an ArrayList */
+		baselines.subList(0, pruned).clear();
 		return pruned;
 	}
 
+	/**
+	 * Keeps the baselines not older than the baseline, those of the same date are left to {@link #filter(BaselineList)}
+	 */
+	@Override
+	public boolean test( String fqname, String date, String labelStatus ) {
+		Instant anchor = anchorDate;
+		if( anchor == null ) {
+			return true;
+		}
+		try {
+			return !UCMEntity.parseDate( date ).isBefore( anchor );
+		} catch( ParseException e ) {
+			return true;
+		}
+	}
+
+	/**
+	 * Read the date of the baseline, it stays null if it cannot be told
+	 */
+	@Override
+	public void prepare() {
+		if( !anchorRead ) {
+			try {
+				Date d = after.getDate();
+				anchorDate = d != null ? d.toInstant() : null;
+			} catch( Exception e ) {
+				logger.fine( "Unable to get the date of " + after.getNormalizedName() + ": " + e.getMessage() );
+			}
+			anchorRead = true;
+		}
+	}
+
 	@Override
 	public String getName() {
 		return "Return baselines after " + after.getNormalizedName();
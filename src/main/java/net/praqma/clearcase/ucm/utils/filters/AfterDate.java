@@ -1,17 +1,20 @@
 package net.praqma.clearcase.ucm.utils.filters;
 
+import java.text.ParseException;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.Date;
-import java.util.Iterator;
 import java.util.logging.Logger;
 
 import edu.umd.cs.findbugs.annotations.*;
 import net.praqma.clearcase.ucm.entities.Baseline;
+import net.praqma.clearcase.ucm.entities.UCMEntity;
 import net.praqma.clearcase.ucm.utils.BaselineFilter;
 import net.praqma.clearcase.ucm.utils.BaselineList;
+import net.praqma.clearcase.ucm.utils.BaselinePredicate;
 
 @SuppressFBWarnings("")
-public class AfterDate extends BaselineFilter {
+public class AfterDate extends BaselineFilter implements BaselinePredicate {
 	
 	private static Logger logger = Logger.getLogger( AfterDate.class.getName() );
 
@@ -29,23 +32,52 @@ public class AfterDate extends BaselineFilter {
 		Collections.sort( baselines, new BaselineList.AscendingDateSort() );
 		
 		int pruned = 0;
-		Iterator<Baseline> itDate = baselines.iterator();
-		while( itDate.hasNext() ) {
-			Baseline baseline = itDate.next();
+		for( Baseline baseline : baselines ) {
             logger.finest( baseline.getDate() + "==" + date );
             if( date.after( baseline.getDate() ) || date.compareTo( baseline.getDate() ) == 0 ) {
                 logger.finest( "REMOVED" );
-				itDate.remove();
 				pruned++;
 			} else {
 				/* We must be after date, since the list is sorted, there are no more baselines before date */
 				break;
 			}
 		}
+
+		/* Removed together, the list is an ArrayList */
+		baselines.subList( 0, pruned ).clear();
 		
 		return pruned;
 	}
 	
+	@Override
+	public boolean isPerBaseline() {
+		return true;
+	}
+
+	@Override
+	public boolean accept( Baseline baseline ) {
+		return baseline.getDate() != null && baseline.getDate().after( date );
+	}
+
+	@Override
+	public void prepare() {
+	}
+
+	@Override
+	public boolean test( String fqname, String date, String labelStatus ) {
+		try {
+			return UCMEntity.parseDate( date ).isAfter( this.date.toInstant() );
+		} catch( ParseException e ) {
+			/* Fails when the baseline is created */
+			return true;
+		}
+	}
+
+	@Override
+	public Comparator<Baseline> getSorting() {
+		return new BaselineList.AscendingDateSort();
+	}
+
 	@Override
 	public String getName() {
 		return "Return baselines after " + date;
@@ -2,20 +2,27 @@ package net.praqma.clearcase.ucm.utils.filters;
 
 import edu.umd.cs.findbugs.annotations.*;
 import net.praqma.clearcase.ucm.entities.Baseline;
+import net.praqma.clearcase.ucm.entities.UCMEntity;
 import net.praqma.clearcase.ucm.utils.BaselineFilter;
 import net.praqma.clearcase.ucm.utils.BaselineList;
+import net.praqma.clearcase.ucm.utils.BaselinePredicate;
 
+import java.text.ParseException;
+import java.time.Instant;
 import java.util.Collections;
-import java.util.Iterator;
+import java.util.Date;
 import java.util.logging.Logger;
 
 @SuppressFBWarnings("")
-public class BeforeBaseline extends BaselineFilter {
+public class BeforeBaseline extends BaselineFilter implements BaselinePredicate {
 
 	private static Logger logger = Logger.getLogger( BeforeBaseline.class.getName() );
 
 	private Baseline before;
 
+	private transient Instant anchorDate;
+	private transient boolean anchorRead = false;
+
 	public BeforeBaseline( Baseline before ) {
 		this.before = before;
 	}
@@ -33,25 +40,54 @@ public class BeforeBaseline extends BaselineFilter {
 		Collections.sort( baselines, new BaselineList.DescendingDateSort() );
 		
 		int pruned = 0;
-		Iterator<Baseline> itBefore = baselines.iterator();
-		while( itBefore.hasNext() ) {
-			Baseline baseline = itBefore.next();
+		for( Baseline baseline : baselines ) {
 			logger.fine( "Removing " + baseline.getNormalizedName() );
+			pruned++;
 			if( baseline.equals( before ) ) {
 				/* We found the baseline we were looking for */
 				/* Let's remove this too */
-				itBefore.remove();
-				pruned++;
 				break;
-			} else {
-				itBefore.remove();
-				pruned++;
 			}
 		}
+
+		/* Removed together, the list is an ArrayList */
+		baselines.subList( 0, pruned ).clear();
 		
 		return pruned;
 	}
 
+	/**
+	 * Keeps the baselines not newer than the baseline, those of the same date are left to {@link #filter(BaselineList)}
+	 */
+	@Override
+	public boolean test( String fqname, String date, String labelStatus ) {
+		Instant anchor = anchorDate;
+		if( anchor == null ) {
+			return true;
+		}
+		try {
+			return !UCMEntity.parseDate( date ).isAfter( anchor );
+		} catch( ParseException e ) {
+			return true;
+		}
+	}
+
+	/**
+	 * Read the date of the baseline, it stays null if it cannot be told
+	 */
+	@Override
+	public void prepare() {
+		if( !anchorRead ) {
+			try {
+				Date d = before.getDate();
+				anchorDate = d != null ? d.toInstant() : null;
+			} catch( Exception e ) {
+				logger.fine( "Unable to get the date of " + before.getNormalizedName() + ": " + e.getMessage() );
+			}
+			anchorRead = true;
+		}
+	}
+
 	@Override
 	public String getName() {
 		return "Return baselines before " + before.getNormalizedName();
@@ -1,31 +1,48 @@
 package net.praqma.clearcase.ucm.utils.filters;
 
-import java.util.Iterator;
+import java.util.function.Predicate;
 
 import edu.umd.cs.findbugs.annotations.*;
 import net.praqma.clearcase.ucm.entities.Baseline;
 import net.praqma.clearcase.ucm.utils.BaselineFilter;
 import net.praqma.clearcase.ucm.utils.BaselineList;
+import net.praqma.clearcase.ucm.utils.BaselinePredicate;
 
 @SuppressFBWarnings("")
-public class NoDeliver extends BaselineFilter {
+public class NoDeliver extends BaselineFilter implements BaselinePredicate {
 	
 	@Override
 	public int filter( BaselineList baselines ) {
-		int pruned = 0;
-		Iterator<Baseline> it = baselines.iterator();
-		while( it.hasNext() ) {
-			Baseline baseline = it.next();
-			if( baseline.getShortname().startsWith( "deliverbl." ) ) {
-				it.remove();
-				pruned++;
-				continue;
+		int size = baselines.size();
+		baselines.removeIf( new Predicate<Baseline>() {
+			@Override
+			public boolean test( Baseline baseline ) {
+				return !accept( baseline );
 			}
-		}
+		} );
 		
-		return pruned;
+		return size - baselines.size();
+	}
+
+	@Override
+	public void prepare() {
+	}
+
+	@Override
+	public boolean test( String fqname, String date, String labelStatus ) {
+		return !fqname.startsWith( "baseline:deliverbl." ) && !fqname.startsWith( "deliverbl." );
 	}
 	
+	@Override
+	public boolean isPerBaseline() {
+		return true;
+	}
+
+	@Override
+	public boolean accept( Baseline baseline ) {
+		return !baseline.getShortname().startsWith( "deliverbl." );
+	}
+
 	@Override
 	public String getName() {
 		return "Skip deliver baselines";
@@ -1,31 +1,49 @@
 package net.praqma.clearcase.ucm.utils.filters;
 
-import java.util.Iterator;
+import java.util.function.Predicate;
 
 import edu.umd.cs.findbugs.annotations.*;
 import net.praqma.clearcase.ucm.entities.Baseline;
 import net.praqma.clearcase.ucm.entities.UCMEntity.LabelStatus;
 import net.praqma.clearcase.ucm.utils.BaselineFilter;
 import net.praqma.clearcase.ucm.utils.BaselineList;
+import net.praqma.clearcase.ucm.utils.BaselinePredicate;
 
 @SuppressFBWarnings("")
-public class NoLabels extends BaselineFilter {
+public class NoLabels extends BaselineFilter implements BaselinePredicate {
 	
 	@Override
 	public int filter( BaselineList baselines ) {
-		int pruned = 0;
-		Iterator<Baseline> it = baselines.iterator();
-		while( it.hasNext() ) {
-			Baseline baseline = it.next();
-			if( baseline.getLabelStatus().equals( LabelStatus.UNLABLED ) ) {
-				it.remove();
-				pruned++;
+		int size = baselines.size();
+		baselines.removeIf( new Predicate<Baseline>() {
+			@Override
+			public boolean test( Baseline baseline ) {
+				return !accept( baseline );
 			}
-		}
+		} );
 		
-		return pruned;
+		return size - baselines.size();
+	}
+
+	@Override
+	public void prepare() {
+	}
+
+	@Override
+	public boolean test( String fqname, String date, String labelStatus ) {
+		return !labelStatus.equalsIgnoreCase( "not labeled" );
 	}
 	
+	@Override
+	public boolean isPerBaseline() {
+		return true;
+	}
+
+	@Override
+	public boolean accept( Baseline baseline ) {
+		return !baseline.getLabelStatus().equals( LabelStatus.UNLABLED );
+	}
+
 	@Override
 	public String getName() {
 		return "Skip unlabled baselines";
@@ -19,6 +19,10 @@ import net.praqma.clearcase.PVob;
 import net.praqma.clearcase.Vob;
 import net.praqma.clearcase.api.ListVob;
 import net.praqma.clearcase.cleartool.Cleartool;
+import net.praqma.clearcase.cleartool.ExistenceCache;
+import net.praqma.clearcase.cleartool.LineHandler;
+import net.praqma.clearcase.cleartool.Span;
+import net.praqma.clearcase.cleartool.Tracer;
 import net.praqma.clearcase.exceptions.ClearCaseException;
 import net.praqma.clearcase.exceptions.CleartoolException;
 import net.praqma.clearcase.exceptions.UnableToInitializeEntityException;
@@ -250,6 +254,8 @@ public class SnapshotView extends UCMView {
 		} catch( AbnormalProcessTerminationException e ) {
 			logger.warning( "Could not create snapshot view \"" + viewtag + "\"" );
 			throw new ViewException( "Unable to create view " + viewtag + " at " + viewroot, viewroot.getAbsolutePath(), Type.CREATION_FAILED, e );
+		} finally {
+			ExistenceCache.changed( ExistenceCache.Kind.VIEW, viewtag );
 		}
 
 		SnapshotView view = new SnapshotView( viewroot );
@@ -484,6 +490,15 @@ public class SnapshotView extends UCMView {
      * @throws net.praqma.clearcase.exceptions.ViewException  Thrown on ClearTool error
      */
     public UpdateInfo update( boolean swipe, boolean generate, boolean overwrite, boolean excludeRoot, LoadRules2 loadRules ) throws CleartoolException, ViewException {
+        Span span = Tracer.start( "SnapshotView.update", viewroot );
+        try {
+            return _update( swipe, generate, overwrite, excludeRoot, loadRules );
+        } finally {
+            span.end();
+        }
+    }
+
+    private UpdateInfo _update( boolean swipe, boolean generate, boolean overwrite, boolean excludeRoot, LoadRules2 loadRules ) throws CleartoolException, ViewException {
 
 		UpdateInfo info = new UpdateInfo();
 
@@ -552,12 +567,22 @@ public class SnapshotView extends UCMView {
     }
 
 	public Map<String, Integer> swipe( File viewroot, boolean excludeRoot, String loadrules) throws CleartoolException {
+		Span span = Tracer.start( "SnapshotView.swipe", viewroot );
+		try {
+			return _swipe( viewroot, excludeRoot, loadrules );
+		} finally {
+			span.end();
+		}
+	}
+
+	private Map<String, Integer> _swipe( File viewroot, boolean excludeRoot, String loadrules) throws CleartoolException {
 		logger.fine( viewroot.toString() );
 
 		File[] files = viewroot.listFiles();
 		List<File> notVobs = new ArrayList<File>();
 		List<File> rootVPFiles = new ArrayList<File>();
         List<File> vobfolders = new LinkedList<File>(  );
+        List<File> rootFolders = new ArrayList<File>();
 
 		/*
 		 * Scanning root folder for directories that are not vobs and files, not
@@ -572,11 +597,7 @@ public class SnapshotView extends UCMView {
 			if( f.isDirectory() ) {
                 //TODO: The clearcase functionality should be removed once swipe 2.0 is ready. We should only use the one that checks with loadrules.
                 if(loadrules == null) {
-                    if( Vob.isVob( f ) ) {
-                        vobfolders.add( f );
-                    } else {
-                        notVobs.add( f );
-                    } 
+                    rootFolders.add( f );
                 } else {
                     logger.info( String.format( "The loadrule: %s%nContains %s", loadrules, f.getName() ) );
                     if(loadrules.contains(f.getName())) {
@@ -595,6 +616,17 @@ public class SnapshotView extends UCMView {
 			}
 		}
 
+		/* One lsvob for all the root directories */
+		if( !rootFolders.isEmpty() ) {
+			for( Map.Entry<File, Boolean> vob : Vob.isVob( rootFolders ).entrySet() ) {
+				if( vob.getValue() ) {
+					vobfolders.add( vob.getKey() );
+				} else {
+					notVobs.add( vob.getKey() );
+				}
+			}
+		}
+
 		/* Remove all other dirs */
 		for( File notVob : notVobs ) {
 			logger.fine( "Removing " + notVob );
@@ -695,18 +727,20 @@ public class SnapshotView extends UCMView {
      * @throws CleartoolException Thrown on ClearTool error
      */
     private List<File> findViewPrivateFilesFromVob( File vobFolder ) throws CleartoolException {
-        List<String> result = new ListVob().recurse().restrictToViewOnly().shortReportLength().addPathName( vobFolder.getAbsolutePath() ).execute();
-
-        logger.finest( "View private files for " + vobFolder + ": " + result );
-
-        List<File> vpFiles = new ArrayList<File>( result.size() );
-
-        for( String vpFile : result ) {
-            if( SnapshotView.isSpecialFile( vpFile ) ) {
-                continue;
+        final List<File> vpFiles = new ArrayList<File>();
+
+        /* A recursive listing of a large VOB can be huge, only the files to delete are kept */
+        new ListVob().recurse().restrictToViewOnly().shortReportLength().addPathName( vobFolder.getAbsolutePath() ).execute( new LineHandler() {
+            @Override
+            public boolean handle( String vpFile ) {
+                if( !SnapshotView.isSpecialFile( vpFile ) ) {
+                    vpFiles.add( new File( vpFile ) );
+                }
+                return true;
             }
-            vpFiles.add( new File( vpFile ) );
-        }
+        } );
+
+        logger.finest( "View private files for " + vobFolder + ": " + vpFiles );
 
         return vpFiles;
     }
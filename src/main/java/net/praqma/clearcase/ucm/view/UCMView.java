@@ -14,12 +14,14 @@ import java.util.regex.Pattern;
 import edu.umd.cs.findbugs.annotations.*;
 import net.praqma.clearcase.ClearCase;
 import net.praqma.clearcase.cleartool.Cleartool;
+import net.praqma.clearcase.cleartool.ExistenceCache;
 import net.praqma.clearcase.exceptions.CleartoolException;
 import net.praqma.clearcase.exceptions.UnableToInitializeEntityException;
 import net.praqma.clearcase.exceptions.ViewException;
 import net.praqma.clearcase.exceptions.ViewException.Type;
 import net.praqma.clearcase.ucm.entities.Activity;
 import net.praqma.clearcase.ucm.entities.Stream;
+import net.praqma.util.execute.AbnormalProcessTerminationException;
 import net.praqma.util.execute.CmdResult;
 
 @SuppressFBWarnings("")
@@ -27,6 +29,7 @@ public class UCMView extends ClearCase implements Serializable {
 
 	public static final Pattern rx_view_get_path = Pattern.compile( "^\\s*Global path:\\s*(.*?)\\s*$" );
     public static final Pattern RX_VIEW_ROOT = Pattern.compile( "^\\s*\\*{0,1}\\s*([\\w\\.-]+)\\s*(.+)$" );
+    private static final Pattern rx_view_not_found = Pattern.compile( "Error: No matching entries found for view tag" );
 
 	transient private static Logger logger = Logger.getLogger( UCMView.class.getName() );
 	
@@ -69,19 +72,25 @@ public class UCMView extends ClearCase implements Serializable {
         return viewExists( viewtag );
     }
 
-	public static boolean viewExists(String viewtag) {
+	public static boolean viewExists(final String viewtag) {
 		logger.fine( viewtag );
 
-		String cmd = "lsview " + viewtag;
-
-		try {
-			String s = Cleartool.run( cmd ).stdoutBuffer.toString();
-			logger.fine( viewtag + " exists" );
-			return true;
-		} catch( Exception e ) {
-			logger.fine( e.getMessage() );
-			return false;
-		}
+		return ExistenceCache.exists( ExistenceCache.Kind.VIEW, viewtag, new ExistenceCache.Probe() {
+			@Override
+			public boolean exists() {
+				try {
+					Cleartool.run( "lsview " + viewtag );
+					logger.fine( viewtag + " exists" );
+					return true;
+				} catch( AbnormalProcessTerminationException e ) {
+					logger.fine( e.getMessage() );
+					if( rx_view_not_found.matcher( e.getMessage() ).find() ) {
+						return false;
+					}
+					throw e;
+				}
+			}
+		} );
 	}
 
 	public void setPath(String path) {
@@ -108,6 +117,8 @@ public class UCMView extends ClearCase implements Serializable {
 			Cleartool.run( cmd );
 		} catch( Exception e ) {
 			throw new ViewException( "Unable to remove " + this, path, Type.REMOVE_FAILED, e );
+		} finally {
+			ExistenceCache.changed( ExistenceCache.Kind.VIEW, viewtag );
 		}
 	}
 	
@@ -230,6 +241,8 @@ public class UCMView extends ClearCase implements Serializable {
 			Cleartool.run( cmd );
 		} catch( Exception e ) {
 			throw new ViewException( "Unable to create view " + tag, stgloc, Type.CREATION_FAILED, e );
+		} finally {
+			ExistenceCache.changed( ExistenceCache.Kind.VIEW, tag );
 		}
 	}
 	
@@ -0,0 +1,115 @@
+package net.praqma.clearcase.util;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import edu.umd.cs.findbugs.annotations.*;
+
+/**
+ * A pool of canonical value objects by name, so the same value read from many cleartool lines is one instance,
+ * e.g. the {@link net.praqma.clearcase.Branch} of every version in a report.<br>
+ * Only values that cannot change are pooled, a change through one holder would be seen by all.<br>
+ * The values are weakly referenced, a value no longer used anywhere is collected and its name forgotten.<br>
+ * Interning is on by default, and is turned off with the system property <code>cool.intern=false</code> or {@link #setEnabled(boolean)},
+ * so every {@link #intern(String)} creates a new value.
+ *
+ * @param <T> The type of the values
+ */
+@SuppressFBWarnings("")
+public class Interner<T> {
+
+    private static volatile boolean enabled = Boolean.parseBoolean( System.getProperty( "cool.intern", "true" ) );
+
+    /**
+     * Creates a value from its name
+     */
+    public interface Factory<T> {
+        T create( String name );
+    }
+
+    private static class Ref<T> extends WeakReference<T> {
+        private final String name;
+
+        private Ref( String name, T value, ReferenceQueue<T> queue ) {
+            super( value, queue );
+            this.name = name;
+        }
+    }
+
+    private final Factory<T> factory;
+    private final ConcurrentMap<String, Ref<T>> pool = new ConcurrentHashMap<String, Ref<T>>();
+    private final ReferenceQueue<T> queue = new ReferenceQueue<T>();
+
+    public Interner( Factory<T> factory ) {
+        this.factory = factory;
+    }
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    public static void setEnabled( boolean enabled ) {
+        Interner.enabled = enabled;
+    }
+
+    /**
+     * @param name The name of the value
+     * @return The canonical value of the name, created if there is none
+     */
+    public T intern( String name ) {
+        if( !enabled ) {
+            return factory.create( name );
+        }
+
+        purge();
+
+        Ref<T> ref = pool.get( name );
+        T value = ref != null ? ref.get() : null;
+        if( value != null ) {
+            return value;
+        }
+
+        value = factory.create( name );
+        Ref<T> created = new Ref<T>( name, value, queue );
+        while( true ) {
+            ref = pool.putIfAbsent( name, created );
+            if( ref == null ) {
+                return value;
+            }
+
+            /* Another thread made one first, unless it has been collected */
+            T other = ref.get();
+            if( other != null ) {
+                return other;
+            }
+            if( pool.replace( name, ref, created ) ) {
+                return value;
+            }
+        }
+    }
+
+    /**
+     * @return The number of names in the pool, including values collected but not yet purged
+     */
+    public int size() {
+        purge();
+        return pool.size();
+    }
+
+    public void clear() {
+        pool.clear();
+    }
+
+    /**
+     * Forget the names of collected values
+     */
+    private void purge() {
+        Reference<? extends T> ref;
+        while( ( ref = queue.poll() ) != null ) {
+            pool.remove( ( (Ref<?>) ref ).name, ref );
+        }
+    }
+}
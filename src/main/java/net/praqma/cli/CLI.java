@@ -1,5 +1,15 @@
 package net.praqma.cli;
 
+import net.praqma.clearcase.cleartool.Cleartool;
+
 public abstract class CLI {
+
+	static {
+		/* Print the cleartool statistics on exit, enabled with the system property cool.cleartool.statistics */
+		if( Boolean.getBoolean( "cool.cleartool.statistics" ) ) {
+			Cleartool.getStatistics().dumpOnExit( System.err );
+		}
+	}
+
 	public abstract void perform( String[] arguments ) throws Exception;
 }
@@ -0,0 +1,56 @@
+package net.praqma.clearcase.test.benchmark;
+
+import java.io.File;
+
+import net.praqma.clearcase.cleartool.Cleartool;
+import net.praqma.util.execute.CmdResult;
+
+/**
+ * Compares forking cleartool for each command with the long lived session.<br>
+ * The commands are run against a scripted stand-in, so the numbers only show the per command overhead.<br>
+ * Run with: <code>java -cp ... net.praqma.clearcase.test.benchmark.CleartoolSessionBenchmark [count]</code>
+ */
+public class CleartoolSessionBenchmark {
+
+    private static final String cmd = "describe -fmt %n::%X[component]p::%X[bl_stream]p::%[plevel]p::%u::%Nd::%[label_status]p::%[master]p baseline:baseline_1@/PVOB";
+
+    public static void main( String[] args ) throws Exception {
+        int count = args.length > 0 ? Integer.parseInt( args[0] ) : 1000;
+
+        File script = new File( CleartoolSessionBenchmark.class.getResource( "fake-cleartool.sh" ).toURI() );
+        Cleartool.setExecutable( "sh " + script.getAbsolutePath() );
+
+        /* Warm up */
+        run( false, 20 );
+        run( true, 20 );
+
+        long fork = run( false, count );
+        long session = run( true, count );
+
+        System.out.println( String.format( "%d x describe -fmt", count ) );
+        System.out.println( String.format( "  fork:    %6d ms, %8.3f ms/command", fork, (double) fork / count ) );
+        System.out.println( String.format( "  session: %6d ms, %8.3f ms/command", session, (double) session / count ) );
+        System.out.println( String.format( "  speedup: %.1fx", (double) fork / Math.max( 1, session ) ) );
+        System.out.println( Cleartool.getMetrics() );
+
+        Cleartool.closeSession();
+    }
+
+    private static long run( boolean sessionMode, int count ) {
+        Cleartool.setSessionMode( sessionMode );
+        String expected = null;
+
+        long start = System.currentTimeMillis();
+        for( int i = 0 ; i < count ; i++ ) {
+            CmdResult result = Cleartool.run( cmd );
+            String output = result.stdoutBuffer.toString();
+            if( expected == null ) {
+                expected = output;
+            } else if( !expected.equals( output ) ) {
+                throw new IllegalStateException( "Unexpected output: " + output );
+            }
+        }
+
+        return System.currentTimeMillis() - start;
+    }
+}
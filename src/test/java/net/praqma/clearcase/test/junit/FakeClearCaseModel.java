@@ -0,0 +1,318 @@
+package net.praqma.clearcase.test.junit;
+
+import java.nio.charset.StandardCharsets;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * An in-memory model of ClearCase objects, used by {@link ScriptedCommandExecutor}.<br>
+ * Each object is identified by its selector, e.g. <code>baseline:bl_1@\pvob</code>, and holds the values of the
+ * <code>-fmt</code> conversions that can be asked for it. <code>%X[component]p</code> and <code>%[component]Xp</code> are the same conversion.
+ */
+public class FakeClearCaseModel {
+
+    private static final Pattern rx_kind = Pattern.compile( "^([a-z_]+):([^\\\\/@][^@]*)@" );
+
+    private final Map<String, FakeObject> objects = new LinkedHashMap<String, FakeObject>();
+    private final Map<String, List<String>> diffs = new HashMap<String, List<String>>();
+    private final Map<String, List<String>> configSpecs = new HashMap<String, List<String>>();
+    private final List<String> history = new ArrayList<String>();
+
+    private final SimpleDateFormat dateFormatter = new SimpleDateFormat( "yyyyMMdd.HHmmss" );
+
+    public static class FakeObject {
+        private final String selector;
+        private final Map<String, String> values = new HashMap<String, String>();
+        private String description = null;
+
+        private FakeObject( String selector ) {
+            this.selector = selector;
+        }
+
+        /**
+         * Set the value of a conversion
+         * @param conversion E.g. <code>%[plevel]p</code>
+         */
+        public FakeObject set( String conversion, String value ) {
+            values.put( canonical( conversion ), value );
+            return this;
+        }
+
+        public String get( String conversion ) {
+            return values.get( canonical( conversion ) );
+        }
+
+        /**
+         * The output of describe without -fmt
+         */
+        public FakeObject setDescription( String description ) {
+            this.description = description;
+            return this;
+        }
+
+        public String getDescription() {
+            return description != null ? description : selector;
+        }
+
+        public String getSelector() {
+            return selector;
+        }
+
+        public String getKind() {
+            Matcher m = rx_kind.matcher( selector );
+            return m.find() ? m.group( 1 ) : "";
+        }
+    }
+
+    /**
+     * Get or create an object
+     */
+    public synchronized FakeObject object( String selector ) {
+        FakeObject o = objects.get( selector );
+        if( o == null ) {
+            o = new FakeObject( selector );
+            objects.put( selector, o );
+
+            o.set( "%Xn", selector );
+            o.set( "%n", shortName( selector ) );
+            o.set( "%[name]p", shortName( selector ) );
+        }
+        return o;
+    }
+
+    public synchronized FakeObject find( String selector ) {
+        return objects.get( selector );
+    }
+
+    /**
+     * @return All objects of a kind in insertion order
+     */
+    public synchronized List<FakeObject> list( String kind ) {
+        List<FakeObject> list = new ArrayList<FakeObject>();
+        for( FakeObject o : objects.values() ) {
+            if( o.getKind().equals( kind ) ) {
+                list.add( o );
+            }
+        }
+        return list;
+    }
+
+    public FakeObject addBaseline( String baseline, String component, String stream, String plevel, Date date ) {
+        return addBaseline( baseline, component, stream, plevel, date, "snoopy", "not labeled" );
+    }
+
+    public FakeObject addBaseline( String baseline, String component, String stream, String plevel, Date date, String user, String labelStatus ) {
+        String d;
+        synchronized( dateFormatter ) {
+            d = dateFormatter.format( date );
+        }
+
+        return object( baseline )
+                .set( "%X[component]p", component )
+                .set( "%X[bl_stream]p", stream )
+                .set( "%[plevel]p", plevel )
+                .set( "%u", user )
+                .set( "%Nd", d )
+                .set( "%[label_status]p", labelStatus )
+                .set( "%[master]p", "site1" )
+                .set( "%On", UUID.nameUUIDFromBytes( baseline.getBytes( StandardCharsets.UTF_8 ) ).toString() );
+    }
+
+    public FakeObject addStream( String stream, String project, String defaultTarget, String ... foundationBaselines ) {
+        StringBuilder found = new StringBuilder();
+        for( String bl : foundationBaselines ) {
+            if( found.length() > 0 ) {
+                found.append( " " );
+            }
+            found.append( bl );
+        }
+
+        FakeObject o = object( stream )
+                .set( "%X[project]p", project )
+                .set( "%X[def_deliver_tgt]p", defaultTarget != null ? defaultTarget : "" )
+                .set( "%[read_only]p", "" )
+                .set( "%X[found_bls]p", found.toString() )
+                .set( "%[master]p", "site1" )
+                .set( "%CX[dstreams]p", "" );
+
+        /* Register as child stream of the default target */
+        if( defaultTarget != null ) {
+            FakeObject parent = object( defaultTarget );
+            String children = parent.get( "%CX[dstreams]p" );
+            parent.set( "%CX[dstreams]p", children == null || children.isEmpty() ? stream : children + ", " + stream );
+        }
+
+        return o;
+    }
+
+    public FakeObject addActivity( String activity, String user, String headline ) {
+        return object( activity ).set( "%u", user ).set( "%[headline]p", headline );
+    }
+
+    public FakeObject addVersion( String version, String user, String kind ) {
+        return object( version ).set( "%u", user ).set( "%Vn", version.substring( version.indexOf( "@@" ) + 2 ) ).set( "%[object_kind]p", kind );
+    }
+
+    /**
+     * Set the output of diffbl between two selectors. If the second selector is null, the output is used for <code>-predecessor</code>.
+     */
+    public synchronized FakeClearCaseModel setDiffBl( String selector1, String selector2, String ... lines ) {
+        diffs.put( diffKey( selector1, selector2 ), Arrays.asList( lines ) );
+        return this;
+    }
+
+    public synchronized List<String> getDiffBl( String selector1, String selector2 ) {
+        List<String> lines = diffs.get( diffKey( selector1, selector2 ) );
+        if( lines == null && selector2 != null ) {
+            lines = diffs.get( diffKey( selector2, selector1 ) );
+        }
+        return lines;
+    }
+
+    private static String diffKey( String s1, String s2 ) {
+        return s1 + "|" + ( s2 != null ? s2 : "-pre" );
+    }
+
+    /**
+     * Set the config spec of a view, identified by its tag or view root
+     */
+    public synchronized FakeClearCaseModel setConfigSpec( String view, String ... lines ) {
+        configSpecs.put( view, Arrays.asList( lines ) );
+        return this;
+    }
+
+    public synchronized List<String> getConfigSpec( String view ) {
+        List<String> cs = configSpecs.get( view );
+        return cs != null ? cs : Collections.<String>emptyList();
+    }
+
+    /**
+     * Add lines to the history of the PVob, as <code>lshistory</code> prints them, the newest first.
+     * A line starting with a date, <code>%Nd</code>, is a record, other lines belong to the record before them.
+     */
+    public synchronized FakeClearCaseModel addHistory( String ... lines ) {
+        history.addAll( 0, Arrays.asList( lines ) );
+        return this;
+    }
+
+    /**
+     * @param since The date, as <code>%Nd</code>
+     * @return The records of the history since the date, the newest first
+     */
+    public synchronized List<String> getHistory( String since ) {
+        List<String> lines = new ArrayList<String>();
+        boolean record = false;
+        for( String line : history ) {
+            if( line.matches( "^\\d{8}\\.\\d{6}.*" ) ) {
+                record = line.substring( 0, 15 ).compareTo( since ) >= 0;
+            }
+            if( record ) {
+                lines.add( line );
+            }
+        }
+        return lines;
+    }
+
+    /**
+     * Format an object
+     * @return The output, or null if the object does not exist
+     */
+    public synchronized String format( String selector, String fmt ) {
+        FakeObject o = objects.get( selector );
+        if( o == null ) {
+            return null;
+        }
+
+        StringBuilder sb = new StringBuilder();
+        int i = 0;
+        while( i < fmt.length() ) {
+            char c = fmt.charAt( i );
+            if( c == '\\' ) {
+                /* On unix, the escapes are escaped for the shell */
+                int j = i;
+                while( j < fmt.length() && fmt.charAt( j ) == '\\' ) {
+                    j++;
+                }
+                if( j < fmt.length() && ( fmt.charAt( j ) == 'n' || fmt.charAt( j ) == 't' ) ) {
+                    sb.append( fmt.charAt( j ) == 'n' ? '\n' : '\t' );
+                    i = j + 1;
+                } else {
+                    sb.append( fmt, i, j );
+                    i = j;
+                }
+            } else if( c == '%' && i + 1 < fmt.length() && fmt.charAt( i + 1 ) == '%' ) {
+                sb.append( '%' );
+                i += 2;
+            } else if( c == '%' ) {
+                int end = conversionEnd( fmt, i );
+                String value = o.get( fmt.substring( i, end ) );
+                sb.append( value != null ? value : "" );
+                i = end;
+            } else {
+                sb.append( c );
+                i++;
+            }
+        }
+
+        return sb.toString();
+    }
+
+    private static int conversionEnd( String fmt, int start ) {
+        int i = start + 1;
+        while( i < fmt.length() && Character.isUpperCase( fmt.charAt( i ) ) ) {
+            i++;
+        }
+        if( i < fmt.length() && fmt.charAt( i ) == '[' ) {
+            int close = fmt.indexOf( ']', i );
+            i = close < 0 ? fmt.length() : close + 1;
+            while( i < fmt.length() && Character.isUpperCase( fmt.charAt( i ) ) ) {
+                i++;
+            }
+        }
+        return Math.min( i + 1, fmt.length() );
+    }
+
+    /**
+     * Normalize a conversion, so the modifiers are sorted and placed before the property name
+     */
+    static String canonical( String conversion ) {
+        StringBuilder modifiers = new StringBuilder();
+        String property = null;
+        char type = 0;
+
+        int i = 1;
+        while( i < conversion.length() ) {
+            char c = conversion.charAt( i );
+            if( Character.isUpperCase( c ) ) {
+                modifiers.append( c );
+                i++;
+            } else if( c == '[' ) {
+                int close = conversion.indexOf( ']', i );
+                property = conversion.substring( i, close + 1 );
+                i = close + 1;
+            } else {
+                type = c;
+                i++;
+            }
+        }
+
+        char[] mods = modifiers.toString().toCharArray();
+        Arrays.sort( mods );
+        return "%" + new String( mods ) + ( property != null ? property : "" ) + type;
+    }
+
+    static String shortName( String selector ) {
+        Matcher m = rx_kind.matcher( selector );
+        return m.find() ? m.group( 2 ) : selector;
+    }
+}
@@ -0,0 +1,90 @@
+package net.praqma.clearcase.test.junit;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * The regular expressions <code>Version.initialize()</code> used to take a version extended path name apart,
+ * kept as the reference for {@link net.praqma.clearcase.ucm.entities.Version.ExtendedName}.<br>
+ * The file separator is given, so Windows and Unix names can be parsed on any platform.
+ */
+public class RegexVersionName {
+
+    private static final Pattern p_revision = Pattern.compile( "@@(.*)$" );
+    private static final String qfsor = "[\\\\/]";
+    private static final Pattern rx_findRevision = Pattern.compile( "^(.*?)" + qfsor + "(\\d+)(.*?)$" );
+    private static final Pattern rx_findAddedElementsUnix = Pattern.compile( "/.*?/(\\d+)/(.*?)/" );
+    private static final Pattern rx_findAddedElementsWindows = Pattern.compile( "\\\\.*?\\\\(\\d+)\\\\(.*?)\\\\" );
+
+    private final String qfs;
+    private final String filesep;
+    private final Pattern rx_findAddedElements;
+
+    public String file;
+    public String version;
+    public String qualifiedFilename;
+    public String branch = null;
+    public int revision = 0;
+    public List<String> branches = new ArrayList<String>();
+
+    public RegexVersionName( char filesep ) {
+        this.filesep = String.valueOf( filesep );
+        this.qfs = filesep == '\\' ? "\\\\" : this.filesep;
+        this.rx_findAddedElements = filesep == '\\' ? rx_findAddedElementsWindows : rx_findAddedElementsUnix;
+    }
+
+    public RegexVersionName parse( String fqname ) {
+        Matcher m = p_revision.matcher( fqname );
+        if( m.find() ) {
+            this.version = m.group( 1 );
+        } else {
+            this.version = "0";
+        }
+
+        String tmp = fqname;
+        tmp = tmp.replaceFirst( "(?m)@@.*$", "" );
+        tmp = tmp.replaceFirst( "(?m)^\\s+", "" );
+        this.file = tmp.trim();
+
+        if( file.matches( ".*" + qfsor + "\\.$" ) ) {
+            file = file.substring( 0, file.length() - 1 );
+        }
+
+        Matcher ma = rx_findAddedElements.matcher( version );
+        while( ma.find() ) {
+            this.file += filesep + ma.group( 2 );
+        }
+
+        this.file = this.file.replace( "@@", "" );
+
+        this.qualifiedFilename = fqname.replaceAll( "^(.*@@)(.*?)$", "$1" );
+        if( !qualifiedFilename.endsWith( "@@" ) ) {
+            this.qualifiedFilename += "@@";
+        }
+
+        if( version.contains( "@@" ) ) {
+            String[] s = version.split( "@@" );
+            handleSimpleVersion( s[1] );
+        } else {
+            handleSimpleVersion( version );
+        }
+
+        return this;
+    }
+
+    private void handleSimpleVersion( String version ) {
+        Matcher r = rx_findRevision.matcher( version );
+
+        if( r.find() ) {
+            this.revision = Integer.parseInt( r.group( 2 ) );
+            this.branch = r.group( 1 );
+            for( String b : this.branch.split( qfs ) ) {
+                if( !b.isEmpty() ) {
+                    branches.add( b );
+                }
+            }
+        }
+    }
+}
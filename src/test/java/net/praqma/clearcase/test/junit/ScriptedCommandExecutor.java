@@ -0,0 +1,394 @@
+package net.praqma.clearcase.test.junit;
+
+import java.io.File;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Pattern;
+
+import net.praqma.clearcase.Cool;
+import net.praqma.clearcase.cleartool.CommandExecutor;
+import net.praqma.clearcase.test.junit.FakeClearCaseModel.FakeObject;
+import net.praqma.util.execute.AbnormalProcessTerminationException;
+import net.praqma.util.execute.CmdResult;
+import net.praqma.util.execute.CommandLineException;
+
+/**
+ * A {@link CommandExecutor} answering from a {@link FakeClearCaseModel} instead of running cleartool.<br>
+ * It understands <code>describe</code>, <code>lsbl</code>, <code>lsstream</code>, <code>lshistory</code>, <code>diffbl</code> and <code>catcs</code>.
+ * Other commands can be scripted with {@link #script(String, String...)}, unknown commands fail.<br>
+ * Use it with {@link net.praqma.clearcase.cleartool.Cleartool#setExecutor(CommandExecutor)}, and remember to set it back to null.
+ */
+public class ScriptedCommandExecutor implements CommandExecutor {
+
+    private final FakeClearCaseModel model;
+
+    private final Map<Pattern, List<String>> scripts = Collections.synchronizedMap( new LinkedHashMap<Pattern, List<String>>() );
+    private final Map<Pattern, Failure> failures = Collections.synchronizedMap( new LinkedHashMap<Pattern, Failure>() );
+
+    private final ConcurrentHashMap<String, AtomicInteger> counts = new ConcurrentHashMap<String, AtomicInteger>();
+    private final List<String> commands = Collections.synchronizedList( new ArrayList<String>() );
+    private volatile long latency = 0;
+
+    public ScriptedCommandExecutor( FakeClearCaseModel model ) {
+        this.model = model;
+    }
+
+    public FakeClearCaseModel getModel() {
+        return model;
+    }
+
+    /**
+     * Simulate the cost of running cleartool
+     * @param latency Milliseconds spent in each command
+     */
+    public ScriptedCommandExecutor setLatency( long latency ) {
+        this.latency = latency;
+        return this;
+    }
+
+    /**
+     * Answer commands matching the regular expression with the given lines. Scripts take precedence over the model.
+     */
+    public ScriptedCommandExecutor script( String regex, String ... lines ) {
+        List<String> l = new ArrayList<String>();
+        Collections.addAll( l, lines );
+        scripts.put( Pattern.compile( regex ), l );
+        return this;
+    }
+
+    /**
+     * Fail commands matching the regular expression with the given error output
+     */
+    public ScriptedCommandExecutor fail( String regex, String error ) {
+        return fail( regex, error, -1 );
+    }
+
+    /**
+     * Fail the first commands matching the regular expression with the given error output
+     * @param times The number of commands to fail, a negative number fails them all
+     */
+    public ScriptedCommandExecutor fail( String regex, String error, int times ) {
+        failures.put( Pattern.compile( regex ), new Failure( error, times ) );
+        return this;
+    }
+
+    private static class Failure {
+        private final String error;
+        private int remaining;
+
+        Failure( String error, int remaining ) {
+            this.error = error;
+            this.remaining = remaining;
+        }
+    }
+
+    /**
+     * @return The number of commands run with the given sub command, e.g. "describe". "desc" is counted as "describe".
+     */
+    public int getCount( String subcommand ) {
+        AtomicInteger i = counts.get( subcommand );
+        return i != null ? i.get() : 0;
+    }
+
+    public int getCount() {
+        return commands.size();
+    }
+
+    public List<String> getCommands() {
+        synchronized( commands ) {
+            return new ArrayList<String>( commands );
+        }
+    }
+
+    public void reset() {
+        counts.clear();
+        commands.clear();
+    }
+
+    @Override
+    public CmdResult run( String cmd, File dir, boolean merge, boolean ignore ) throws CommandLineException, AbnormalProcessTerminationException {
+        List<String> args = tokenize( cmd );
+        String sub = args.isEmpty() ? "" : args.get( 0 );
+        if( sub.equals( "desc" ) ) {
+            sub = "describe";
+        }
+
+        commands.add( cmd );
+        counts.putIfAbsent( sub, new AtomicInteger() );
+        counts.get( sub ).incrementAndGet();
+
+        if( latency > 0 ) {
+            try {
+                Thread.sleep( latency );
+            } catch( InterruptedException e ) {
+                Thread.currentThread().interrupt();
+                throw new CommandLineException( "Interrupted" );
+            }
+        }
+
+        try {
+            return result( answer( sub, cmd, args, dir ) );
+        } catch( AbnormalProcessTerminationException e ) {
+            if( ignore ) {
+                List<String> lines = new ArrayList<String>();
+                if( merge ) {
+                    lines.add( e.getMessage() );
+                }
+                return result( lines );
+            }
+            throw e;
+        }
+    }
+
+    private List<String> answer( String sub, String cmd, List<String> args, File dir ) {
+        synchronized( failures ) {
+            for( Map.Entry<Pattern, Failure> f : failures.entrySet() ) {
+                Failure failure = f.getValue();
+                if( failure.remaining != 0 && f.getKey().matcher( cmd ).find() ) {
+                    if( failure.remaining > 0 ) {
+                        failure.remaining--;
+                    }
+                    throw new AbnormalProcessTerminationException( failure.error, cmd );
+                }
+            }
+        }
+
+        synchronized( scripts ) {
+            for( Map.Entry<Pattern, List<String>> s : scripts.entrySet() ) {
+                if( s.getKey().matcher( cmd ).find() ) {
+                    return s.getValue();
+                }
+            }
+        }
+
+        if( sub.equals( "describe" ) ) {
+            return describe( cmd, args );
+        } else if( sub.equals( "lsbl" ) ) {
+            return lsbl( args );
+        } else if( sub.equals( "lsstream" ) ) {
+            return lsstream( args );
+        } else if( sub.equals( "lshistory" ) ) {
+            return lshistory( cmd, args );
+        } else if( sub.equals( "diffbl" ) ) {
+            return diffbl( cmd, args );
+        } else if( sub.equals( "catcs" ) ) {
+            String tag = option( args, "-tag" );
+            return model.getConfigSpec( tag != null ? tag : ( dir != null ? dir.getAbsolutePath() : "" ) );
+        }
+
+        throw new AbnormalProcessTerminationException( "cleartool: Error: Unrecognized command: \"" + sub + "\"", cmd );
+    }
+
+    private List<String> describe( String cmd, List<String> args ) {
+        String fmt = option( args, "-fmt" );
+        if( fmt == null && args.contains( "-s" ) ) {
+            fmt = "%n\\n";
+        }
+
+        StringBuilder out = new StringBuilder();
+        for( String selector : operands( args, "-fmt", "-ahlink", "-aattr" ) ) {
+            String s;
+            if( fmt != null ) {
+                s = model.format( selector, fmt );
+            } else {
+                FakeObject o = model.find( selector );
+                s = o != null ? o.getDescription() + "\n" : null;
+            }
+
+            if( s == null ) {
+                throw new AbnormalProcessTerminationException( notFound( selector ), cmd );
+            }
+            out.append( s );
+        }
+
+        return lines( out.toString() );
+    }
+
+    private String notFound( String selector ) {
+        if( selector.startsWith( "stream:" ) ) {
+            return "cleartool: Error: stream not found: \"" + selector + "\".";
+        }
+        return "cleartool: Error: Unable to determine type of \"" + selector + "\".";
+    }
+
+    private List<String> lsbl( List<String> args ) {
+        String fmt = option( args, "-fmt" );
+        String component = option( args, "-component" );
+        String stream = option( args, "-stream" );
+        String level = option( args, "-level" );
+
+        StringBuilder out = new StringBuilder();
+        for( FakeObject o : model.list( "baseline" ) ) {
+            if( component != null && !component.equals( o.get( "%X[component]p" ) ) ) {
+                continue;
+            }
+            if( stream != null && !stream.equals( o.get( "%X[bl_stream]p" ) ) ) {
+                continue;
+            }
+            if( level != null && !level.equals( o.get( "%[plevel]p" ) ) ) {
+                continue;
+            }
+            out.append( model.format( o.getSelector(), fmt != null ? fmt : "%n\\n" ) );
+        }
+
+        return lines( out.toString() );
+    }
+
+    private List<String> lsstream( List<String> args ) {
+        String fmt = option( args, "-fmt" );
+        if( fmt == null ) {
+            fmt = "%n\\n";
+        }
+        String in = option( args, "-in" );
+        String invob = option( args, "-invob" );
+        String view = option( args, "-view" );
+
+        StringBuilder out = new StringBuilder();
+        for( FakeObject o : model.list( "stream" ) ) {
+            if( in != null && !in.equals( o.get( "%X[project]p" ) ) ) {
+                continue;
+            }
+            if( invob != null && !o.getSelector().endsWith( "@" + invob ) ) {
+                continue;
+            }
+            if( view != null && ( o.get( "%[views]p" ) == null || !o.get( "%[views]p" ).contains( view ) ) ) {
+                continue;
+            }
+            out.append( model.format( o.getSelector(), fmt ) );
+        }
+
+        return lines( out.toString() );
+    }
+
+    /**
+     * The history since <code>-since</code>, given as dd-MMM-yyyy.HH:mm:ss. The format asked for is not applied, the history is kept formatted.
+     */
+    private List<String> lshistory( String cmd, List<String> args ) {
+        String since = option( args, "-since" );
+        if( since == null ) {
+            return model.getHistory( "" );
+        }
+
+        try {
+            Date date = new SimpleDateFormat( "dd-MMM-yyyy.HH:mm:ss", Locale.ENGLISH ).parse( since );
+            return model.getHistory( new SimpleDateFormat( "yyyyMMdd.HHmmss" ).format( date ) );
+        } catch( ParseException e ) {
+            throw new AbnormalProcessTerminationException( "cleartool: Error: Bad date-time: \"" + since + "\"", cmd );
+        }
+    }
+
+    private List<String> diffbl( String cmd, List<String> args ) {
+        List<String> selectors = operands( args );
+        boolean pre = args.contains( "-pre" ) || args.contains( "-predecessor" );
+
+        List<String> lines = null;
+        if( pre && selectors.size() == 1 ) {
+            lines = model.getDiffBl( selectors.get( 0 ), null );
+        } else if( selectors.size() == 2 ) {
+            lines = model.getDiffBl( selectors.get( 0 ), selectors.get( 1 ) );
+        }
+
+        if( lines == null ) {
+            throw new AbnormalProcessTerminationException( "cleartool: Error: No diffbl for " + selectors, cmd );
+        }
+
+        return lines;
+    }
+
+    /**
+     * @return The value of an option taking an argument
+     */
+    private static String option( List<String> args, String name ) {
+        int i = args.indexOf( name );
+        return i >= 0 && i + 1 < args.size() ? args.get( i + 1 ) : null;
+    }
+
+    /**
+     * @return The non-option arguments after the sub command
+     */
+    private static List<String> operands( List<String> args, String ... valued ) {
+        List<String> list = new ArrayList<String>();
+        for( int i = 1 ; i < args.size() ; i++ ) {
+            String a = args.get( i );
+            if( a.startsWith( "-" ) ) {
+                for( String v : valued ) {
+                    if( a.equals( v ) ) {
+                        i++;
+                        break;
+                    }
+                }
+                continue;
+            }
+            list.add( a );
+        }
+        return list;
+    }
+
+    /**
+     * Split a command line on white space, honoring double quotes
+     */
+    static List<String> tokenize( String cmd ) {
+        List<String> tokens = new ArrayList<String>();
+        StringBuilder current = new StringBuilder();
+        boolean quoted = false;
+        boolean token = false;
+
+        for( int i = 0 ; i < cmd.length() ; i++ ) {
+            char c = cmd.charAt( i );
+            if( c == '"' ) {
+                quoted = !quoted;
+                token = true;
+            } else if( Character.isWhitespace( c ) && !quoted ) {
+                if( token ) {
+                    tokens.add( current.toString() );
+                    current.setLength( 0 );
+                    token = false;
+                }
+            } else {
+                current.append( c );
+                token = true;
+            }
+        }
+
+        if( token ) {
+            tokens.add( current.toString() );
+        }
+
+        return tokens;
+    }
+
+    private static List<String> lines( String output ) {
+        List<String> lines = new ArrayList<String>();
+        for( String line : output.split( "\\r?\\n" ) ) {
+            lines.add( line );
+        }
+
+        /* The trailing new line does not make a line */
+        if( !lines.isEmpty() && lines.get( lines.size() - 1 ).isEmpty() ) {
+            lines.remove( lines.size() - 1 );
+        }
+
+        return lines;
+    }
+
+    private static CmdResult result( List<String> lines ) {
+        CmdResult result = new CmdResult();
+        for( String line : lines ) {
+            if( result.stdoutList.size() > 0 ) {
+                result.stdoutBuffer.append( Cool.linesep );
+            }
+            result.stdoutBuffer.append( line );
+            result.stdoutList.add( line );
+        }
+        return result;
+    }
+}
@@ -0,0 +1,130 @@
+package net.praqma.clearcase.test.unit;
+
+import static org.junit.Assert.*;
+import static org.hamcrest.CoreMatchers.*;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import net.praqma.clearcase.api.DiffBl;
+import net.praqma.clearcase.cleartool.Cleartool;
+import net.praqma.clearcase.exceptions.UnableToLoadEntityException;
+import net.praqma.clearcase.test.junit.FakeClearCaseModel;
+import net.praqma.clearcase.test.junit.ScriptedCommandExecutor;
+import net.praqma.clearcase.ucm.entities.Activity;
+import net.praqma.clearcase.ucm.entities.Baseline;
+import net.praqma.clearcase.ucm.entities.UCMEntity;
+import net.praqma.clearcase.ucm.entities.Version;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ActivityParserTest {
+
+	private static final String pvob = "\\pvob";
+	private static final String bl1 = "baseline:bl1@" + pvob;
+	private static final String bl2 = "baseline:bl2@" + pvob;
+	private static final File view = new File( "/view/dev" );
+
+	private FakeClearCaseModel model;
+	private ScriptedCommandExecutor executor;
+
+	@Before
+	public void setup() {
+		model = new FakeClearCaseModel();
+		model.addBaseline( bl1, "component:_System@" + pvob, "stream:int@" + pvob, "INITIAL", new Date() );
+		model.addBaseline( bl2, "component:_System@" + pvob, "stream:int@" + pvob, "BUILT", new Date() );
+
+		executor = new ScriptedCommandExecutor( model );
+		Cleartool.setExecutor( executor );
+	}
+
+	@After
+	public void teardown() {
+		Cleartool.setExecutor( null );
+	}
+
+	/**
+	 * A diff of activities, each with versions
+	 */
+	private void diff( int activities, int versions ) {
+		List<String> lines = new ArrayList<String>();
+		for( int a = 0 ; a < activities ; a++ ) {
+			String activity = "activity:act" + a + "@" + pvob;
+			model.addActivity( activity, "user" + a, "Activity " + a );
+			lines.add( ( a % 2 == 0 ? ">>" : "<<" ) + " " + activity + " \"Activity " + a + "\"" );
+			for( int v = 0 ; v < versions ; v++ ) {
+				String version = view.getPath() + "/vob/dir" + a + "/file" + v + ".c@@/main/int/" + ( v + 1 );
+				model.addVersion( version, "author" + v, v % 5 == 0 ? "directory version" : "file element" );
+				lines.add( version );
+			}
+		}
+		model.setDiffBl( bl1, bl2, lines.toArray( new String[lines.size()] ) );
+	}
+
+	private Activity.Parser parser() throws Exception {
+		return new Activity.Parser( new DiffBl( Baseline.get( bl1 ), Baseline.get( bl2 ) ).setVersions( true ).setViewRoot( view ) )
+				.addDirection( Activity.Parser.Direction.LEFT ).addDirection( Activity.Parser.Direction.RIGHT );
+	}
+
+	@Test
+	public void batched() throws Exception {
+		diff( 10, 40 );
+
+		List<Activity> activities = parser().parse().getActivities();
+
+		assertThat( activities.size(), is( 10 ) );
+		for( int a = 0 ; a < activities.size() ; a++ ) {
+			List<Version> versions = activities.get( a ).changeset.versions;
+			assertThat( versions.size(), is( 40 ) );
+			for( int v = 0 ; v < versions.size() ; v++ ) {
+				Version version = versions.get( v );
+				assertTrue( version.isLoaded() );
+				assertThat( version.getUser(), is( "author" + v ) );
+				assertThat( version.getKind(), is( v % 5 == 0 ? UCMEntity.Kind.DIRECTORY_ELEMENT : UCMEntity.Kind.FILE_ELEMENT ) );
+				assertThat( version.getActivity(), is( activities.get( a ) ) );
+			}
+		}
+
+		/* The 400 versions fit in one command */
+		assertThat( executor.getCount( "describe" ), is( 1 ) );
+		assertThat( executor.getCount( "diffbl" ), is( 1 ) );
+	}
+
+	@Test
+	public void onlyOneDirection() throws Exception {
+		diff( 4, 3 );
+
+		List<Activity> activities = new Activity.Parser( new DiffBl( Baseline.get( bl1 ), Baseline.get( bl2 ) ).setVersions( true ).setViewRoot( view ) )
+				.addDirection( Activity.Parser.Direction.RIGHT ).parse().getActivities();
+
+		assertThat( activities.size(), is( 2 ) );
+		assertThat( activities.get( 1 ).getShortname(), is( "act2" ) );
+		assertThat( activities.get( 1 ).changeset.versions.size(), is( 3 ) );
+		assertThat( activities.get( 1 ).changeset.versions.get( 2 ).getUser(), is( "author2" ) );
+	}
+
+	@Test
+	public void activityUser() throws Exception {
+		diff( 3, 5 );
+
+		List<Activity> activities = parser().setActivityUserAsVersionUser( true ).parse().getActivities();
+
+		assertThat( activities.get( 2 ).changeset.versions.get( 4 ).getUser(), is( activities.get( 2 ).getUser() ) );
+		/* The versions are not described */
+		assertThat( executor.getCount( "describe" ), is( 0 ) );
+	}
+
+	@Test( expected = UnableToLoadEntityException.class )
+	public void missingVersion() throws Exception {
+		diff( 2, 5 );
+		List<String> lines = new ArrayList<String>( model.getDiffBl( bl1, bl2 ) );
+		lines.add( view.getPath() + "/vob/gone.c@@/main/1" );
+		model.setDiffBl( bl1, bl2, lines.toArray( new String[lines.size()] ) );
+
+		parser().parse();
+	}
+}
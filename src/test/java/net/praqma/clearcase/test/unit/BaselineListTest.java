@@ -0,0 +1,243 @@
+package net.praqma.clearcase.test.unit;
+
+import static org.junit.Assert.*;
+import static org.hamcrest.CoreMatchers.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+
+import net.praqma.clearcase.cleartool.Cleartool;
+import net.praqma.clearcase.test.junit.FakeClearCaseModel;
+import net.praqma.clearcase.test.junit.ScriptedCommandExecutor;
+import net.praqma.clearcase.ucm.entities.Baseline;
+import net.praqma.clearcase.ucm.entities.Component;
+import net.praqma.clearcase.ucm.entities.EntityIdentityMap;
+import net.praqma.clearcase.ucm.entities.Stream;
+import net.praqma.clearcase.ucm.entities.UCMEntity;
+import net.praqma.clearcase.ucm.utils.BaselineFilter;
+import net.praqma.clearcase.ucm.utils.BaselineList;
+import net.praqma.clearcase.ucm.utils.filters.AfterBaseline;
+import net.praqma.clearcase.ucm.utils.filters.AfterDate;
+import net.praqma.clearcase.ucm.utils.filters.BeforeBaseline;
+import net.praqma.clearcase.ucm.utils.filters.BeforeDate;
+import net.praqma.clearcase.ucm.utils.filters.NoDeliver;
+import net.praqma.clearcase.ucm.utils.filters.NoLabels;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class BaselineListTest {
+
+	private static final String pvob = "\\pvob";
+	private static final String stream = "stream:int@" + pvob;
+	private static final String component = "component:_System@" + pvob;
+
+	private FakeClearCaseModel model;
+	private ScriptedCommandExecutor executor;
+	private EntityIdentityMap previous;
+	private long now = System.currentTimeMillis() / 1000 * 1000;
+
+	@Before
+	public void setup() {
+		model = new FakeClearCaseModel();
+		model.addStream( stream, "project:proj@" + pvob, null );
+
+		/* Every third a deliver baseline, every other labeled, the dates not in the order of the listing */
+		for( int i = 0 ; i < 30 ; i++ ) {
+			String name = ( i % 3 == 0 ? "deliverbl.bl" : "bl" ) + i;
+			long minutes = ( i * 7 ) % 30;
+			model.addBaseline( "baseline:" + name + "@" + pvob, component, stream, "BUILT", new Date( now - minutes * 60000L ), "snoopy", i % 2 == 0 ? "fully labeled" : "not labeled" );
+		}
+
+		executor = new ScriptedCommandExecutor( model );
+		Cleartool.setExecutor( executor );
+
+		previous = UCMEntity.getIdentityMap();
+		UCMEntity.setIdentityMap( new EntityIdentityMap() );
+	}
+
+	@After
+	public void teardown() {
+		UCMEntity.setIdentityMap( previous );
+		Cleartool.setExecutor( null );
+	}
+
+	private BaselineList list() throws Exception {
+		return new BaselineList( Stream.get( stream ), Component.get( component ), null );
+	}
+
+	private static List<String> names( List<Baseline> list ) {
+		List<String> names = new ArrayList<String>();
+		for( Baseline bl : list ) {
+			names.add( bl.getShortname() );
+		}
+		return names;
+	}
+
+	/**
+	 * The same baselines in the same order with and without streaming
+	 */
+	private List<String> same( BaselineFilter[] filters, java.util.Comparator<Baseline> sorter, int limit ) throws Exception {
+		BaselineList whole = list().setLimit( limit );
+		BaselineList streamed = list().setLimit( limit ).streaming();
+		for( BaselineFilter filter : filters ) {
+			whole.addFilter( filter );
+			streamed.addFilter( filter );
+		}
+		if( sorter != null ) {
+			whole.setSorting( sorter );
+			streamed.setSorting( sorter );
+		}
+
+		List<String> expected = names( whole.apply() );
+		assertThat( names( streamed.apply() ), is( expected ) );
+		return expected;
+	}
+
+	@Test
+	public void sameAsWhole() throws Exception {
+		Date hourAgo = new Date( now - 20 * 60000L );
+
+		assertThat( same( new BaselineFilter[] { new NoDeliver(), new AfterDate( hourAgo ) }, new BaselineList.DescendingDateSort(), 3 ).size(), is( 3 ) );
+		assertThat( same( new BaselineFilter[] { new NoLabels() }, new BaselineList.AscendingDateSort(), 0 ).size(), is( 15 ) );
+		assertThat( same( new BaselineFilter[] { new NoLabels(), new BeforeDate( hourAgo ) }, null, 2 ).size(), is( 2 ) );
+		assertThat( same( new BaselineFilter[0], new BaselineList.DescendingDateSort(), 1 ), is( Arrays.asList( "deliverbl.bl0" ) ) );
+
+		/* A limit beyond the number of baselines */
+		assertThat( same( new BaselineFilter[] { new NoDeliver(), new NoLabels() }, new BaselineList.DescendingDateSort(), 100 ).size(), is( 10 ) );
+
+		/* A filter looking at the whole list */
+		assertThat( same( new BaselineFilter[] { new AfterBaseline( Baseline.get( "baseline:bl5@" + pvob ) ) }, new BaselineList.DescendingDateSort(), 4 ).size(), is( 4 ) );
+	}
+
+	@Test
+	public void sameDate() throws Exception {
+		model.addBaseline( "baseline:late1@" + pvob, component, stream, "BUILT", new Date( now + 60000L ) );
+		model.addBaseline( "baseline:late2@" + pvob, component, stream, "BUILT", new Date( now + 60000L ) );
+
+		assertThat( same( new BaselineFilter[0], new BaselineList.DescendingDateSort(), 2 ), is( Arrays.asList( "late1", "late2" ) ) );
+		assertThat( same( new BaselineFilter[0], new BaselineList.DescendingDateSort(), 1 ), is( Arrays.asList( "late1" ) ) );
+	}
+
+	@Test
+	public void loadOnlyReturned() throws Exception {
+		BaselineList list = list().setSorting( new BaselineList.DescendingDateSort() ).setLimit( 2 ).addFilter( new NoDeliver() ).load().streaming().apply();
+
+		assertThat( names( list ), is( Arrays.asList( "bl13", "bl26" ) ) );
+		for( Baseline bl : list ) {
+			assertTrue( bl.isLoaded() );
+		}
+		for( String cmd : executor.getCommands() ) {
+			if( cmd.startsWith( "desc" ) ) {
+				assertThat( cmd, cmd.split( "baseline:" ).length, is( 3 ) );
+			}
+		}
+		assertThat( executor.getCount( "describe" ), is( 1 ) );
+	}
+
+	/**
+	 * The filters pushed into the listing remove the same baselines as applied to the whole list
+	 */
+	private List<String> pushed( BaselineFilter ... filters ) throws Exception {
+		BaselineList whole = list().apply();
+		for( BaselineFilter filter : filters ) {
+			filter.preFilter( whole );
+			whole.applyFilter( filter );
+		}
+
+		BaselineList pushed = list();
+		for( BaselineFilter filter : filters ) {
+			pushed.addFilter( filter );
+		}
+		List<String> names = names( pushed.apply() );
+		assertThat( names, is( names( whole ) ) );
+		return names;
+	}
+
+	@Test
+	public void pushdown() throws Exception {
+		Date date = new Date( now - 20 * 60000L );
+
+		/* The same date as bl1, listed before and after it */
+		model.addBaseline( "baseline:same@" + pvob, component, stream, "BUILT", new Date( now - 7 * 60000L ), "snoopy", "fully labeled" );
+		Baseline anchor = Baseline.get( "baseline:bl1@" + pvob );
+
+		assertThat( pushed( new NoDeliver() ).size(), is( 21 ) );
+		assertThat( pushed( new NoLabels() ).size(), is( 16 ) );
+		assertThat( pushed( new AfterDate( date ) ).size(), is( 21 ) );
+		assertThat( pushed( new BeforeDate( date ) ).size(), is( 9 ) );
+		assertThat( pushed( new AfterBaseline( anchor ) ), is( pushed( new AfterDate( new Date( now - 7 * 60000L - 1 ) ) ).subList( 1, 9 ) ) );
+		assertThat( pushed( new BeforeBaseline( anchor ) ).size(), is( 23 ) );
+		assertThat( pushed( new NoDeliver(), new NoLabels(), new AfterDate( date ) ).size(), is( 7 ) );
+	}
+
+	@Test
+	public void anchorReadBeforeListing() throws Exception {
+		final Baseline anchor = Baseline.get( "baseline:bl1@" + pvob );
+		final List<Integer> sizes = new ArrayList<Integer>();
+
+		/* With one command at a time, a describe from the listing would wait for the listing */
+		Cleartool.setLicenseBudget( 1 );
+		try {
+			Thread t = new Thread() {
+				@Override
+				public void run() {
+					try {
+						sizes.add( list().addFilter( new AfterBaseline( anchor ) ).apply().size() );
+						sizes.add( list().addFilter( new BeforeBaseline( anchor ) ).apply().size() );
+					} catch( Exception e ) {
+						throw new IllegalStateException( e );
+					}
+				}
+			};
+			t.start();
+			t.join( 10000 );
+			assertFalse( "The listing is stuck", t.isAlive() );
+		} finally {
+			Cleartool.setLicenseBudget( 0 );
+		}
+
+		assertThat( sizes, is( Arrays.asList( 7, 22 ) ) );
+		assertThat( executor.getCommands().size(), is( 3 ) );
+		assertTrue( executor.getCommands().get( 0 ).startsWith( "desc " ) );
+	}
+
+	@Test
+	public void pushdownSkipsEntities() throws Exception {
+		EntityIdentityMap map = new EntityIdentityMap();
+		UCMEntity.setIdentityMap( map );
+
+		BaselineList list = list().addFilter( new NoDeliver() ).addFilter( new NoLabels() ).apply();
+
+		/* The stream, the component and the baselines kept */
+		assertThat( list.size(), is( 10 ) );
+		assertThat( map.size(), is( 12 ) );
+	}
+
+	@Test
+	public void required() throws Exception {
+		model.addBaseline( "baseline:other@" + pvob, component, "stream:other@" + pvob, "BUILT", new Date( now + 60000L ) );
+
+		BaselineList list = list().setSorting( new BaselineList.DescendingDateSort() ).setLimit( 2 ).streaming();
+		list.ensureBaseline( Baseline.get( "baseline:other@" + pvob ) );
+		list.ensureBaseline( Baseline.get( "baseline:bl1@" + pvob ) );
+
+		assertThat( names( list.apply() ), is( Arrays.asList( "other", "deliverbl.bl0" ) ) );
+	}
+
+	@Test
+	public void listingKeepsLoaded() throws Exception {
+		Baseline loaded = Baseline.get( "baseline:bl1@" + pvob ).load();
+		Date date = loaded.getDate();
+
+		/* Changed after the load, the listing must not overwrite the loaded instance */
+		model.object( "baseline:bl1@" + pvob ).set( "%[label_status]p", "fully labeled" ).set( "%Nd", "20000101.000000" );
+
+		assertTrue( names( list().apply() ).contains( "bl1" ) );
+		assertThat( loaded.getLabelStatus(), is( UCMEntity.LabelStatus.UNLABLED ) );
+		assertThat( loaded.getDate(), is( date ) );
+	}
+}
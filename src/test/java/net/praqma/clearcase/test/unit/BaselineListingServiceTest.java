@@ -0,0 +1,162 @@
+package net.praqma.clearcase.test.unit;
+
+import static org.junit.Assert.*;
+import static org.hamcrest.CoreMatchers.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+
+import net.praqma.clearcase.cleartool.Cleartool;
+import net.praqma.clearcase.exceptions.UnableToListBaselinesException;
+import net.praqma.clearcase.test.junit.FakeClearCaseModel;
+import net.praqma.clearcase.test.junit.ScriptedCommandExecutor;
+import net.praqma.clearcase.ucm.entities.Baseline;
+import net.praqma.clearcase.ucm.entities.Component;
+import net.praqma.clearcase.ucm.entities.EntityIdentityMap;
+import net.praqma.clearcase.ucm.entities.Project.PromotionLevel;
+import net.praqma.clearcase.ucm.entities.Stream;
+import net.praqma.clearcase.ucm.entities.UCMEntity;
+import net.praqma.clearcase.ucm.utils.BaselineList;
+import net.praqma.clearcase.ucm.utils.BaselineListingService;
+import net.praqma.clearcase.ucm.utils.BaselineListingService.Listing;
+import net.praqma.clearcase.ucm.utils.BaselineListingService.Query;
+import net.praqma.clearcase.ucm.utils.BaselineListingService.Result;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class BaselineListingServiceTest {
+
+	private static final String pvob = "\\pvob";
+	private static final String integration = "stream:int@" + pvob;
+	private static final String[] components = { "component:_System@" + pvob, "component:Model@" + pvob };
+	private static final int children = 4;
+
+	private FakeClearCaseModel model;
+	private ScriptedCommandExecutor executor;
+	private EntityIdentityMap previous;
+	private long now = System.currentTimeMillis() / 1000 * 1000;
+
+	@Before
+	public void setup() {
+		model = new FakeClearCaseModel();
+		model.addStream( integration, "project:proj@" + pvob, null );
+
+		/* Baselines of both components in every child, every other promoted */
+		for( int c = 0 ; c < children ; c++ ) {
+			String child = "stream:child" + c + "@" + pvob;
+			model.addStream( child, "project:proj@" + pvob, integration );
+			for( int i = 0 ; i < 6 ; i++ ) {
+				String component = components[i % 2];
+				model.addBaseline( "baseline:child" + c + "_bl" + i + "@" + pvob, component, child, i % 4 < 2 ? "BUILT" : "INITIAL", new Date( now + i * 60000L ) );
+			}
+		}
+
+		executor = new ScriptedCommandExecutor( model );
+		executor.script( "^deliver -status", "No deliver operation in progress on stream" );
+		Cleartool.setExecutor( executor );
+
+		previous = UCMEntity.getIdentityMap();
+		UCMEntity.setIdentityMap( new EntityIdentityMap() );
+	}
+
+	@After
+	public void teardown() {
+		UCMEntity.setIdentityMap( previous );
+		Cleartool.setExecutor( null );
+	}
+
+	private List<Query> queries( PromotionLevel level ) throws Exception {
+		List<Query> queries = new ArrayList<Query>();
+		for( int c = 0 ; c < children ; c++ ) {
+			for( String component : components ) {
+				queries.add( new Query( Stream.get( "stream:child" + c + "@" + pvob ), Component.get( component ), level ) );
+			}
+		}
+		return queries;
+	}
+
+	private static List<String> names( List<Baseline> list ) {
+		List<String> names = new ArrayList<String>();
+		for( Baseline bl : list ) {
+			names.add( bl.getShortname() );
+		}
+		return names;
+	}
+
+	@Test
+	public void sameAsBaselineList() throws Exception {
+		for( PromotionLevel level : Arrays.asList( null, PromotionLevel.BUILT ) ) {
+			List<Query> queries = queries( level );
+			Listing listing = new BaselineListingService( 4 ).list( queries );
+
+			assertThat( listing.getResults().size(), is( queries.size() ) );
+			for( Query query : queries ) {
+				Result result = listing.get( query );
+				assertTrue( result.isListed() );
+				BaselineList list = new BaselineList( query.getStream(), query.getComponent(), level ).apply();
+				assertThat( query.toString(), names( result.getBaselines() ), is( names( list ) ) );
+				assertThat( result.getBaselines().get( 0 ).getDate(), is( list.get( 0 ).getDate() ) );
+			}
+		}
+	}
+
+	@Test
+	public void sharedStreams() throws Exception {
+		List<Query> queries = queries( null );
+		/* Asked for twice */
+		queries.addAll( queries( null ).subList( 0, 2 ) );
+
+		Listing listing = new BaselineListingService( 4 ).list( queries );
+
+		/* One listing of each stream, for both components */
+		assertThat( listing.getListings(), is( children ) );
+		assertThat( executor.getCount( "lsbl" ), is( children ) );
+		assertThat( listing.getResults().size(), is( children * components.length ) );
+	}
+
+	@Test
+	public void concurrent() throws Exception {
+		executor.setLatency( 200 );
+
+		Listing listing = new BaselineListingService( children ).list( queries( null ) );
+
+		assertThat( executor.getCount( "lsbl" ), is( children ) );
+		assertTrue( "Took " + listing.getMillis() + "ms", listing.getMillis() < children * 200 );
+		for( Result result : listing.getResults().values() ) {
+			assertTrue( result.getMillis() >= 200 );
+		}
+	}
+
+	@Test
+	public void failingStream() throws Exception {
+		executor.fail( "-stream stream:child1@", "cleartool: Error: stream not found" );
+
+		Listing listing = new BaselineListingService( 2 ).list( queries( null ) );
+
+		for( Query query : listing.getResults().keySet() ) {
+			Result result = listing.get( query );
+			if( query.getStream().getShortname().equals( "child1" ) ) {
+				assertFalse( result.isListed() );
+				assertNull( result.getBaselines() );
+				assertTrue( result.getError() instanceof UnableToListBaselinesException );
+			} else {
+				assertThat( result.getBaselines().size(), is( 3 ) );
+			}
+		}
+	}
+
+	@Test
+	public void childStreamBaselines() throws Exception {
+		List<Component> comps = Arrays.asList( Component.get( components[0] ), Component.get( components[1] ) );
+		Listing listing = Stream.get( integration ).getChildStreamBaselines( comps, PromotionLevel.BUILT, false );
+
+		assertThat( listing.getResults().size(), is( children * components.length ) );
+		assertThat( executor.getCount( "lsbl" ), is( children ) );
+		Result result = listing.get( new Query( Stream.get( "stream:child2@" + pvob ), comps.get( 1 ), PromotionLevel.BUILT ) );
+		assertThat( names( result.getBaselines() ), is( Arrays.asList( "child2_bl1", "child2_bl5" ) ) );
+	}
+}
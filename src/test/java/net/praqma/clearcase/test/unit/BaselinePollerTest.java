@@ -0,0 +1,196 @@
+package net.praqma.clearcase.test.unit;
+
+import static org.junit.Assert.*;
+import static org.hamcrest.CoreMatchers.*;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+
+import net.praqma.clearcase.cleartool.Cleartool;
+import net.praqma.clearcase.test.junit.FakeClearCaseModel;
+import net.praqma.clearcase.test.junit.ScriptedCommandExecutor;
+import net.praqma.clearcase.ucm.entities.Baseline;
+import net.praqma.clearcase.ucm.entities.Component;
+import net.praqma.clearcase.ucm.entities.EntityIdentityMap;
+import net.praqma.clearcase.ucm.entities.Project.PromotionLevel;
+import net.praqma.clearcase.ucm.entities.Stream;
+import net.praqma.clearcase.ucm.entities.UCMEntity;
+import net.praqma.clearcase.ucm.utils.BaselineList;
+import net.praqma.clearcase.ucm.utils.BaselinePoller;
+import net.praqma.clearcase.ucm.utils.BaselinePoller.FileWatermarkStore;
+import net.praqma.clearcase.ucm.utils.BaselinePoller.Watermark;
+import net.praqma.clearcase.ucm.utils.filters.AfterDate;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class BaselinePollerTest {
+
+	private static final String pvob = "\\pvob";
+	private static final String stream = "stream:int@" + pvob;
+	private static final String component = "component:_System@" + pvob;
+
+	private FakeClearCaseModel model;
+	private ScriptedCommandExecutor executor;
+	private EntityIdentityMap previous;
+	private long now = System.currentTimeMillis() / 1000 * 1000;
+	private int baselines = 0;
+
+	@Before
+	public void setup() {
+		model = new FakeClearCaseModel();
+		model.addStream( stream, "project:proj@" + pvob, null );
+		for( int i = 0 ; i < 5 ; i++ ) {
+			add( "BUILT" );
+		}
+
+		executor = new ScriptedCommandExecutor( model );
+		Cleartool.setExecutor( executor );
+
+		previous = UCMEntity.getIdentityMap();
+		UCMEntity.setIdentityMap( new EntityIdentityMap() );
+	}
+
+	@After
+	public void teardown() {
+		UCMEntity.setIdentityMap( previous );
+		Cleartool.setExecutor( null );
+	}
+
+	/**
+	 * Add a baseline a minute after the one before
+	 */
+	private String add( String plevel ) {
+		return add( plevel, new Date( now + baselines * 60000L ) );
+	}
+
+	private String add( String plevel, Date date ) {
+		String bl = "baseline:bl" + baselines++ + "@" + pvob;
+		model.addBaseline( bl, component, stream, plevel, date );
+		return bl;
+	}
+
+	private BaselinePoller poller( PromotionLevel level, BaselinePoller.WatermarkStore store ) throws Exception {
+		return new BaselinePoller( Stream.get( stream ), Component.get( component ), level, store );
+	}
+
+	private static List<String> names( BaselineList list ) {
+		List<String> names = new ArrayList<String>();
+		for( Baseline bl : list ) {
+			names.add( bl.getShortname() );
+		}
+		return names;
+	}
+
+	@Test
+	public void onlyNewBaselines() throws Exception {
+		BaselinePoller poller = poller( null, null );
+
+		BaselineList first = poller.poll();
+		assertThat( first.size(), is( 5 ) );
+		assertTrue( poller.isFullScan() );
+		assertThat( poller.getWatermark().getCount(), is( 5 ) );
+
+		assertThat( poller.poll().size(), is( 0 ) );
+		assertFalse( poller.isFullScan() );
+
+		add( "BUILT" );
+		add( "BUILT" );
+		BaselineList next = poller.poll();
+		assertThat( names( next ), is( Arrays.asList( "bl5", "bl6" ) ) );
+		assertThat( next.get( 1 ).getDate().getTime(), is( now + 6 * 60000L ) );
+		assertFalse( poller.isFullScan() );
+
+		assertThat( executor.getCount( "lsbl" ), is( 3 ) );
+		assertThat( executor.getCount( "describe" ), is( 0 ) );
+	}
+
+	@Test
+	public void sameSecond() throws Exception {
+		BaselinePoller poller = poller( null, null );
+		poller.poll();
+
+		add( "BUILT", new Date( now + 4 * 60000L ) );
+		assertThat( names( poller.poll() ), is( Arrays.asList( "bl5" ) ) );
+		assertThat( poller.getWatermark().getOids().size(), is( 2 ) );
+		assertThat( poller.poll().size(), is( 0 ) );
+		assertFalse( poller.isFullScan() );
+	}
+
+	@Test
+	public void removedBaselineResets() throws Exception {
+		BaselinePoller poller = poller( null, null );
+		poller.poll();
+
+		model.object( "baseline:bl2@" + pvob ).set( "%X[bl_stream]p", "stream:other@" + pvob );
+		add( "BUILT" );
+
+		assertThat( names( poller.poll() ), is( Arrays.asList( "bl0", "bl1", "bl3", "bl4", "bl5" ) ) );
+		assertTrue( poller.isFullScan() );
+		assertThat( poller.poll().size(), is( 0 ) );
+	}
+
+	@Test
+	public void promotedBaselineResets() throws Exception {
+		model.object( "baseline:bl1@" + pvob ).set( "%[plevel]p", "REJECTED" );
+		BaselinePoller poller = poller( PromotionLevel.BUILT, null );
+		assertThat( poller.poll().size(), is( 4 ) );
+
+		model.object( "baseline:bl1@" + pvob ).set( "%[plevel]p", "BUILT" );
+		assertThat( poller.poll().size(), is( 5 ) );
+		assertTrue( poller.isFullScan() );
+	}
+
+	@Test
+	public void sameAsAfterDate() throws Exception {
+		BaselinePoller poller = poller( null, null );
+		poller.poll();
+		Date last = Baseline.get( "baseline:bl4@" + pvob ).getDate();
+
+		for( int i = 0 ; i < 3 ; i++ ) {
+			add( "BUILT" );
+		}
+
+		BaselineList list = new BaselineList( Stream.get( stream ), Component.get( component ), null ).addFilter( new AfterDate( last ) ).apply();
+		assertThat( names( poller.poll() ), is( names( list ) ) );
+	}
+
+	@Test
+	public void persisted() throws Exception {
+		File file = File.createTempFile( "watermarks", ".properties" );
+		file.delete();
+		try {
+			BaselinePoller poller = poller( null, new FileWatermarkStore( file ) );
+			poller.poll();
+			Watermark mark = poller.getWatermark();
+
+			/* After a restart */
+			add( "BUILT" );
+			FileWatermarkStore store = new FileWatermarkStore( file );
+			poller = poller( null, store );
+			assertThat( poller.getWatermark(), is( mark ) );
+			assertThat( names( poller.poll() ), is( Arrays.asList( "bl5" ) ) );
+
+			/* Other streams and levels have their own */
+			assertNull( poller( PromotionLevel.BUILT, store ).getWatermark() );
+
+			poller.setWatermark( null );
+			assertNull( poller( null, new FileWatermarkStore( file ) ).getWatermark() );
+			assertThat( poller( null, new FileWatermarkStore( file ) ).poll().size(), is( 6 ) );
+		} finally {
+			file.delete();
+		}
+	}
+
+	@Test
+	public void parse() {
+		Watermark mark = new Watermark( "20261018.120000", 7, Arrays.asList( "a", "b" ) );
+		assertThat( Watermark.parse( mark.toString() ), is( mark ) );
+		assertThat( Watermark.parse( new Watermark( "20261018.120000", 0, new ArrayList<String>() ).toString() ).getOids().size(), is( 0 ) );
+		assertNull( Watermark.parse( "garbage" ) );
+	}
+}
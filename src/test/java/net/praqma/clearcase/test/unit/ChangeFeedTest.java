@@ -0,0 +1,228 @@
+package net.praqma.clearcase.test.unit;
+
+import static org.junit.Assert.*;
+import static org.hamcrest.CoreMatchers.*;
+
+import java.io.File;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import net.praqma.clearcase.PVob;
+import net.praqma.clearcase.cleartool.Cleartool;
+import net.praqma.clearcase.test.junit.FakeClearCaseModel;
+import net.praqma.clearcase.test.junit.ScriptedCommandExecutor;
+import net.praqma.clearcase.ucm.entities.Component;
+import net.praqma.clearcase.ucm.entities.EntityIdentityMap;
+import net.praqma.clearcase.ucm.entities.Stream;
+import net.praqma.clearcase.ucm.entities.UCMEntity;
+import net.praqma.clearcase.ucm.utils.BaselinePoller.Watermark;
+import net.praqma.clearcase.ucm.utils.BaselinePoller.WatermarkStore;
+import net.praqma.clearcase.ucm.utils.ChangeFeed;
+import net.praqma.clearcase.ucm.utils.ChangeFeed.Event;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Replays the recorded history in lshistory.txt, as if it happened between polls
+ */
+public class ChangeFeedTest {
+
+	private static final String pvob = "\\pvob";
+	private static final String system = "component:_System@" + pvob;
+	private static final String model_ = "component:Model@" + pvob;
+
+	private FakeClearCaseModel model;
+	private ScriptedCommandExecutor executor;
+	private EntityIdentityMap previous;
+	private List<String> history;
+	private String replayed = "";
+
+	@Before
+	public void setup() throws Exception {
+		model = new FakeClearCaseModel();
+		model.addStream( "stream:int@" + pvob, "project:proj@" + pvob, null ).set( "%[rec_bls]p", "int_bl1 int_bl2" );
+		model.addStream( "stream:dev1@" + pvob, "project:proj@" + pvob, "stream:int@" + pvob );
+		model.addStream( "stream:dev2@" + pvob, "project:proj@" + pvob, "stream:int@" + pvob );
+		model.addStream( "stream:dev3@" + pvob, "project:proj@" + pvob, "stream:int@" + pvob );
+
+		SimpleDateFormat nd = new SimpleDateFormat( "yyyyMMdd.HHmmss" );
+		model.addBaseline( "baseline:int_bl1@" + pvob, system, "stream:int@" + pvob, "RELEASED", nd.parse( "20261018.080000" ) );
+		model.addBaseline( "baseline:int_bl2@" + pvob, model_, "stream:int@" + pvob, "RELEASED", nd.parse( "20261018.080000" ) );
+		model.addBaseline( "baseline:dev1_bl1@" + pvob, system, "stream:dev1@" + pvob, "BUILT", nd.parse( "20261018.100000" ) );
+		model.addBaseline( "baseline:dev1_bl2@" + pvob, model_, "stream:dev1@" + pvob, "INITIAL", nd.parse( "20261018.100000" ) );
+		model.addBaseline( "baseline:dev2_bl1@" + pvob, system, "stream:dev2@" + pvob, "INITIAL", nd.parse( "20261018.110000" ) );
+		model.addBaseline( "baseline:dev2_bl2@" + pvob, model_, "stream:dev2@" + pvob, "INITIAL", nd.parse( "20261018.120000" ) );
+
+		File file = new File( URLDecoder.decode( getClass().getResource( "lshistory.txt" ).getFile(), "UTF-8" ) );
+		history = Files.readAllLines( file.toPath(), StandardCharsets.UTF_8 );
+
+		executor = new ScriptedCommandExecutor( model );
+		Cleartool.setExecutor( executor );
+
+		previous = UCMEntity.getIdentityMap();
+		UCMEntity.setIdentityMap( new EntityIdentityMap() );
+	}
+
+	@After
+	public void teardown() {
+		UCMEntity.setIdentityMap( previous );
+		Cleartool.setExecutor( null );
+	}
+
+	/**
+	 * Add the recorded history after the last replayed, up to and including a date
+	 */
+	private void replay( String until ) {
+		List<String> lines = new ArrayList<String>();
+		String date = null;
+		for( String line : history ) {
+			if( line.matches( "^\\d{8}\\.\\d{6}.*" ) ) {
+				date = line.substring( 0, 15 );
+			}
+			if( date.compareTo( replayed ) > 0 && date.compareTo( until ) <= 0 ) {
+				lines.add( line );
+			}
+		}
+		model.addHistory( lines.toArray( new String[lines.size()] ) );
+		replayed = until;
+	}
+
+	private ChangeFeed feed( WatermarkStore store ) throws Exception {
+		return new ChangeFeed( new PVob( pvob ), new SimpleDateFormat( "yyyyMMdd.HHmmss" ).parse( "20261018.090000" ), store );
+	}
+
+	private static List<String> describe( List<Event> events ) {
+		List<String> list = new ArrayList<String>();
+		for( Event event : events ) {
+			list.add( event.getType() + " " + ( event.getBaseline() != null ? event.getBaseline().getShortname() : event.getStream().getShortname() ) );
+		}
+		return list;
+	}
+
+	private static class Recorder implements ChangeFeed.Subscriber {
+		private final List<Event> events = new ArrayList<Event>();
+
+		@Override
+		public void onEvent( Event event ) {
+			events.add( event );
+		}
+	}
+
+	@Test
+	public void replayed() throws Exception {
+		ChangeFeed feed = feed( null );
+		Recorder all = new Recorder();
+		Recorder dev1System = new Recorder();
+		Recorder integration = new Recorder();
+		Recorder integrationModel = new Recorder();
+		feed.subscribe( null, null, all );
+		feed.subscribe( Stream.get( "stream:dev1@" + pvob ), Component.get( system ), dev1System );
+		feed.subscribe( Stream.get( "stream:int@" + pvob ), null, integration );
+		feed.subscribe( Stream.get( "stream:int@" + pvob ), Component.get( model_ ), integrationModel );
+
+		replay( "20261018.110000" );
+		List<Event> events = feed.poll();
+		assertThat( describe( events ), is( Arrays.asList( "STREAM_CREATED dev3", "BASELINE_CREATED dev1_bl1", "BASELINE_CREATED dev1_bl2", "BASELINE_PROMOTED dev1_bl1", "BASELINE_CREATED dev2_bl1" ) ) );
+		assertThat( describe( all.events ), is( describe( events ) ) );
+		assertThat( describe( dev1System.events ), is( Arrays.asList( "BASELINE_CREATED dev1_bl1", "BASELINE_PROMOTED dev1_bl1" ) ) );
+
+		/* A new stream is told to the subscribers of its parent */
+		assertThat( describe( integration.events ), is( Arrays.asList( "STREAM_CREATED dev3" ) ) );
+		assertThat( events.get( 3 ).getLevel().toString(), is( "BUILT" ) );
+		assertThat( events.get( 4 ).getComment(), is( "Nightly build::with colons" ) );
+		assertThat( events.get( 4 ).getComponent().getShortname(), is( "_System" ) );
+		assertThat( feed.getWatermark().getDate(), is( "20261018.110000" ) );
+
+		/* The second of the watermark is listed again, but not told again */
+		assertThat( feed.poll().size(), is( 0 ) );
+
+		replay( "20261018.120000" );
+		events = feed.poll();
+		assertThat( describe( events ), is( Arrays.asList( "BASELINE_RECOMMENDED int_bl1", "BASELINE_RECOMMENDED int_bl2", "BASELINE_CREATED dev2_bl2" ) ) );
+		assertThat( describe( integrationModel.events ), is( Arrays.asList( "STREAM_CREATED dev3", "BASELINE_RECOMMENDED int_bl2" ) ) );
+		assertThat( integration.events.size(), is( 3 ) );
+		assertThat( all.events.size(), is( 8 ) );
+
+		/* One history per poll, no baselines listed per stream */
+		assertThat( executor.getCount( "lshistory" ), is( 3 ) );
+		assertThat( executor.getCount( "lsbl" ), is( 0 ) );
+
+		/* Promoted again, after it was loaded by the first poll */
+		model.object( "baseline:dev1_bl1@" + pvob ).set( "%[plevel]p", "TESTED" );
+		model.addHistory( "20261018.130000::chbl::baseline:dev1_bl1@" + pvob + "::Changed promotion level to \"TESTED\"" );
+		events = feed.poll();
+		assertThat( describe( events ), is( Arrays.asList( "BASELINE_PROMOTED dev1_bl1" ) ) );
+		assertThat( events.get( 0 ).getLevel().toString(), is( "TESTED" ) );
+		assertThat( dev1System.events.get( 2 ).getLevel().toString(), is( "TESTED" ) );
+
+		/* Changed, but at the same level */
+		model.addHistory( "20261018.140000::chbl::baseline:dev1_bl1@" + pvob + "::Changed the comment" );
+		assertThat( feed.poll().size(), is( 0 ) );
+
+		/* Promoted, with a comment not telling so */
+		model.object( "baseline:dev1_bl1@" + pvob ).set( "%[plevel]p", "RELEASED" );
+		model.addHistory( "20261018.150000::chbl::baseline:dev1_bl1@" + pvob + "::" );
+		assertThat( describe( feed.poll() ), is( Arrays.asList( "BASELINE_PROMOTED dev1_bl1" ) ) );
+	}
+
+	@Test
+	public void since() throws Exception {
+		ChangeFeed feed = feed( null );
+		replay( "20261018.120000" );
+		feed.poll();
+
+		assertTrue( executor.getCommands().get( 0 ).contains( "-since 18-Oct-2026.09:00:00 " ) );
+		executor.reset();
+		feed.poll();
+		assertTrue( executor.getCommands().get( 0 ).contains( "-since 18-Oct-2026.12:00:00 " ) );
+	}
+
+	@Test
+	public void restarted() throws Exception {
+		final Map<String, Watermark> marks = new HashMap<String, Watermark>();
+		WatermarkStore store = new WatermarkStore() {
+			@Override
+			public Watermark get( String key ) {
+				return marks.get( key );
+			}
+
+			@Override
+			public void put( String key, Watermark watermark ) {
+				marks.put( key, watermark );
+			}
+		};
+
+		replay( "20261018.100000" );
+		assertThat( feed( store ).poll().size(), is( 3 ) );
+
+		replay( "20261018.120000" );
+		assertThat( describe( feed( store ).poll() ), is( Arrays.asList( "BASELINE_PROMOTED dev1_bl1", "BASELINE_CREATED dev2_bl1", "BASELINE_RECOMMENDED int_bl1", "BASELINE_RECOMMENDED int_bl2", "BASELINE_CREATED dev2_bl2" ) ) );
+		assertThat( feed( store ).poll().size(), is( 0 ) );
+	}
+
+	@Test
+	public void failingSubscriber() throws Exception {
+		ChangeFeed feed = feed( null );
+		Recorder recorder = new Recorder();
+		feed.subscribe( null, null, new ChangeFeed.Subscriber() {
+			@Override
+			public void onEvent( Event event ) {
+				throw new IllegalStateException( "Failing" );
+			}
+		} );
+		feed.subscribe( null, null, recorder );
+
+		replay( "20261018.100000" );
+		feed.poll();
+		assertThat( recorder.events.size(), is( 3 ) );
+	}
+}
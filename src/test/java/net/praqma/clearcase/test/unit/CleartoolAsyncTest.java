@@ -0,0 +1,149 @@
+package net.praqma.clearcase.test.unit;
+
+import static org.junit.Assert.*;
+import static org.hamcrest.CoreMatchers.*;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import net.praqma.clearcase.Cool;
+import net.praqma.clearcase.api.Describe;
+import net.praqma.clearcase.cleartool.Cleartool;
+import net.praqma.clearcase.cleartool.CleartoolAsync;
+import net.praqma.clearcase.cleartool.CleartoolMetrics;
+import net.praqma.clearcase.cleartool.ForkingCommandExecutor;
+import net.praqma.clearcase.test.junit.FakeClearCaseModel;
+import net.praqma.clearcase.test.junit.ScriptedCommandExecutor;
+import net.praqma.util.execute.CmdResult;
+import net.praqma.util.execute.CommandLineInterface.OperatingSystem;
+
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+public class CleartoolAsyncTest {
+
+	private static final String baseline = "baseline:bl1@\\pvob";
+
+	private ScriptedCommandExecutor executor;
+
+	@Before
+	public void setup() {
+		FakeClearCaseModel model = new FakeClearCaseModel();
+		model.addBaseline( baseline, "component:_System@\\pvob", "stream:int@\\pvob", "INITIAL", new java.util.Date() );
+		executor = new ScriptedCommandExecutor( model );
+		Cleartool.setExecutor( executor );
+	}
+
+	@After
+	public void teardown() {
+		Cleartool.setExecutor( null );
+	}
+
+	@Test
+	public void fanOut() throws Exception {
+		executor.setLatency( 200 );
+
+		long start = System.currentTimeMillis();
+		List<CompletableFuture<List<String>>> futures = new ArrayList<CompletableFuture<List<String>>>();
+		for( int i = 0 ; i < 8 ; i++ ) {
+			futures.add( new Describe( baseline ).addModifier( new Describe.Property( "name" ) ).executeAsync( 5, TimeUnit.SECONDS ) );
+		}
+
+		for( CompletableFuture<List<String>> f : futures ) {
+			assertThat( f.get().get( 0 ), is( "bl1" ) );
+		}
+
+		/* Eight commands of 200ms run concurrently */
+		assertTrue( System.currentTimeMillis() - start < 1500 );
+		assertThat( executor.getCount( "describe" ), is( 8 ) );
+	}
+
+	@Test
+	public void timeout() throws Exception {
+		executor.setLatency( 10000 );
+		long timedOut = Cleartool.getMetrics().getTimedOut();
+
+		CompletableFuture<CmdResult> f = Cleartool.runAsync( "describe " + baseline, null, 200, TimeUnit.MILLISECONDS );
+		try {
+			f.get( 5, TimeUnit.SECONDS );
+			fail( "The command must time out" );
+		} catch( ExecutionException e ) {
+			assertThat( e.getCause(), instanceOf( TimeoutException.class ) );
+		}
+
+		assertThat( Cleartool.getMetrics().getTimedOut(), is( timedOut + 1 ) );
+	}
+
+	@Test
+	public void cancel() throws Exception {
+		executor.setLatency( 10000 );
+		final CountDownLatch done = new CountDownLatch( 1 );
+
+		CompletableFuture<Object> f = CleartoolAsync.submit( new Callable<Object>() {
+			@Override
+			public Object call() throws Exception {
+				try {
+					return Cleartool.run( "describe " + baseline );
+				} finally {
+					done.countDown();
+				}
+			}
+		}, 0, TimeUnit.MILLISECONDS );
+
+		Thread.sleep( 100 );
+		f.cancel( true );
+
+		try {
+			f.get();
+			fail( "The command must be cancelled" );
+		} catch( CancellationException e ) {
+			/* Expected */
+		}
+
+		/* The worker is interrupted */
+		assertTrue( done.await( 5, TimeUnit.SECONDS ) );
+	}
+
+	@Test
+	public void killForkedProcess() throws Exception {
+		/* The stand-in is a shell script */
+		Assume.assumeTrue( Cool.getOS().equals( OperatingSystem.UNIX ) );
+
+		File script = new File( getClass().getResource( "/net/praqma/clearcase/test/benchmark/fake-cleartool.sh" ).toURI() );
+		Cleartool.setExecutor( new ForkingCommandExecutor( "sh " + script.getAbsolutePath(), new CleartoolMetrics() ) );
+
+		final CountDownLatch done = new CountDownLatch( 1 );
+		CompletableFuture<Object> f = CleartoolAsync.submit( new Callable<Object>() {
+			@Override
+			public Object call() throws Exception {
+				try {
+					return Cleartool.run( "sleep 30" );
+				} finally {
+					done.countDown();
+				}
+			}
+		}, 300, TimeUnit.MILLISECONDS );
+
+		try {
+			f.get( 5, TimeUnit.SECONDS );
+			fail( "The command must time out" );
+		} catch( ExecutionException e ) {
+			assertThat( e.getCause(), instanceOf( TimeoutException.class ) );
+		}
+
+		/* The process is killed, so the worker does not wait for it */
+		assertTrue( done.await( 5, TimeUnit.SECONDS ) );
+
+		assertThat( Cleartool.runAsync( "describe " + baseline, null, 5, TimeUnit.SECONDS ).get().stdoutList.size(), is( 1 ) );
+	}
+}
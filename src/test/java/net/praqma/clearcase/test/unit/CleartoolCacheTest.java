@@ -0,0 +1,137 @@
+package net.praqma.clearcase.test.unit;
+
+import static org.junit.Assert.*;
+import static org.hamcrest.CoreMatchers.*;
+
+import net.praqma.clearcase.cleartool.Cleartool;
+import net.praqma.clearcase.cleartool.CleartoolCache;
+import net.praqma.clearcase.cleartool.CleartoolMetrics;
+import net.praqma.clearcase.test.junit.FakeClearCaseModel;
+import net.praqma.clearcase.test.junit.ScriptedCommandExecutor;
+import net.praqma.util.execute.CmdResult;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class CleartoolCacheTest {
+
+	private static final String stream = "stream:int@\\pvob";
+	private static final String recommended = "desc -fmt %[rec_bls]p " + stream;
+
+	private ScriptedCommandExecutor executor;
+	private CleartoolMetrics metrics;
+
+	@Before
+	public void setup() {
+		FakeClearCaseModel model = new FakeClearCaseModel();
+		model.addStream( stream, "project:proj@\\pvob", null );
+		model.addStream( "stream:dev@\\pvob", "project:proj@\\pvob", stream );
+		model.object( stream ).set( "%[rec_bls]p", "bl1" );
+
+		executor = new ScriptedCommandExecutor( model );
+		executor.script( "^(chstream|mkbl|rmhlink)", "" );
+		Cleartool.setExecutor( executor );
+
+		metrics = new CleartoolMetrics();
+		Cleartool.setCache( new CleartoolCache( 2, 60000, metrics ) );
+	}
+
+	@After
+	public void teardown() {
+		Cleartool.setCache( null );
+		Cleartool.setExecutor( null );
+	}
+
+	@Test
+	public void readThrough() {
+		assertThat( Cleartool.run( recommended ).stdoutBuffer.toString(), is( "bl1" ) );
+		assertThat( Cleartool.run( recommended ).stdoutBuffer.toString(), is( "bl1" ) );
+
+		assertThat( executor.getCount( "describe" ), is( 1 ) );
+		assertThat( metrics.getCacheHits(), is( 1L ) );
+		assertThat( metrics.getCacheMisses(), is( 1L ) );
+	}
+
+	@Test
+	public void resultsAreCopies() {
+		CmdResult first = Cleartool.run( recommended );
+		first.stdoutList.clear();
+
+		assertThat( Cleartool.run( recommended ).stdoutList.size(), is( 1 ) );
+	}
+
+	@Test
+	public void notWhitelisted() {
+		Cleartool.run( "describe -fmt %[name]p " + stream );
+		Cleartool.run( "describe -fmt %[name]p " + stream );
+
+		assertThat( executor.getCount( "describe" ), is( 2 ) );
+		assertThat( metrics.getCacheMisses(), is( 0L ) );
+	}
+
+	@Test
+	public void ignoredErrorsAreNotCached() {
+		Cleartool.run( recommended, null, true, true );
+		Cleartool.run( recommended, null, true, true );
+
+		assertThat( executor.getCount( "describe" ), is( 2 ) );
+	}
+
+	@Test
+	public void invalidatedByNamedEntity() {
+		String children = "desc -fmt %[dstreams]CXp " + stream;
+		Cleartool.run( recommended );
+		Cleartool.run( children );
+		Cleartool.run( "chstream -recommend baseline:bl2@\\pvob " + stream );
+
+		assertThat( Cleartool.getCache().size(), is( 0 ) );
+
+		Cleartool.run( recommended );
+		assertThat( executor.getCount( "describe" ), is( 3 ) );
+	}
+
+	@Test
+	public void otherEntitiesAreKept() {
+		Cleartool.run( recommended );
+		Cleartool.run( "chstream -generate stream:dev@\\pvob" );
+
+		assertThat( Cleartool.getCache().size(), is( 1 ) );
+	}
+
+	@Test
+	public void invalidatedByImplicitChange() {
+		Cleartool.run( recommended );
+		Cleartool.run( "mkbl -nc -identical mybaseline" );
+
+		assertThat( Cleartool.getCache().size(), is( 0 ) );
+	}
+
+	@Test
+	public void leastRecentlyUsedIsEvicted() {
+		String children = "desc -fmt %[dstreams]CXp " + stream;
+		String latest = "desc -fmt %[latest_bls]Xp " + stream;
+
+		Cleartool.run( recommended );
+		Cleartool.run( children );
+		Cleartool.run( recommended );
+		Cleartool.run( latest );
+
+		assertThat( Cleartool.getCache().size(), is( 2 ) );
+
+		executor.reset();
+		Cleartool.run( recommended );
+		Cleartool.run( children );
+		assertThat( executor.getCount( "describe" ), is( 1 ) );
+	}
+
+	@Test
+	public void expires() throws Exception {
+		Cleartool.setCache( new CleartoolCache( 10, 1, metrics ) );
+		Cleartool.run( recommended );
+		Thread.sleep( 10 );
+		Cleartool.run( recommended );
+
+		assertThat( executor.getCount( "describe" ), is( 2 ) );
+	}
+}
@@ -0,0 +1,128 @@
+package net.praqma.clearcase.test.unit;
+
+import static org.junit.Assert.*;
+import static org.hamcrest.CoreMatchers.*;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import net.praqma.clearcase.cleartool.Cleartool;
+import net.praqma.clearcase.test.junit.FakeClearCaseModel;
+import net.praqma.clearcase.test.junit.ScriptedCommandExecutor;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class CleartoolCoalescerTest {
+
+	private static final String stream = "stream:int@\\pvob";
+	private static final String cmd = "describe -fmt %[name]p}{%[project]Xp " + stream;
+
+	private ScriptedCommandExecutor executor;
+
+	@Before
+	public void setup() {
+		FakeClearCaseModel model = new FakeClearCaseModel();
+		model.addStream( stream, "project:proj@\\pvob", null );
+
+		executor = new ScriptedCommandExecutor( model ).setLatency( 300 );
+		executor.script( "^chstream", "" );
+		Cleartool.setExecutor( executor );
+		Cleartool.setCoalescing( true );
+		Cleartool.getMetrics().reset();
+	}
+
+	@After
+	public void teardown() {
+		Cleartool.setExecutor( null );
+	}
+
+	private int runConcurrently( final String cmd, final File ... dirs ) throws InterruptedException {
+		final CountDownLatch start = new CountDownLatch( 1 );
+		final AtomicInteger failures = new AtomicInteger();
+		List<Thread> threads = new ArrayList<Thread>();
+
+		for( final File dir : dirs ) {
+			Thread t = new Thread() {
+				@Override
+				public void run() {
+					try {
+						start.await();
+						if( !Cleartool.run( cmd, dir ).stdoutBuffer.toString().startsWith( "int}{" ) ) {
+							failures.incrementAndGet();
+						}
+					} catch( Exception e ) {
+						failures.incrementAndGet();
+					}
+				}
+			};
+			threads.add( t );
+			t.start();
+		}
+
+		start.countDown();
+		for( Thread t : threads ) {
+			t.join();
+		}
+
+		return failures.get();
+	}
+
+	@Test
+	public void identicalCommandsAreCoalesced() throws Exception {
+		File dir = new File( "." );
+		assertThat( runConcurrently( cmd, dir, dir, dir, dir, dir ), is( 0 ) );
+
+		assertThat( executor.getCount( "describe" ), is( 1 ) );
+		assertThat( Cleartool.getMetrics().getCoalesced(), is( 4L ) );
+	}
+
+	@Test
+	public void differentDirectoriesAreNot() throws Exception {
+		assertThat( runConcurrently( cmd, new File( "a" ), new File( "b" ) ), is( 0 ) );
+
+		assertThat( executor.getCount( "describe" ), is( 2 ) );
+		assertThat( Cleartool.getMetrics().getCoalesced(), is( 0L ) );
+	}
+
+	@Test
+	public void mutatingCommandsAreNot() throws Exception {
+		final String change = "chstream -generate " + stream;
+		final CountDownLatch start = new CountDownLatch( 1 );
+		List<Thread> threads = new ArrayList<Thread>();
+		for( int i = 0 ; i < 3 ; i++ ) {
+			Thread t = new Thread() {
+				@Override
+				public void run() {
+					try {
+						start.await();
+						Cleartool.run( change );
+					} catch( InterruptedException e ) {
+						/* Done */
+					}
+				}
+			};
+			threads.add( t );
+			t.start();
+		}
+
+		start.countDown();
+		for( Thread t : threads ) {
+			t.join();
+		}
+
+		assertThat( executor.getCount( "chstream" ), is( 3 ) );
+	}
+
+	@Test
+	public void sequentialCommandsAreNot() throws Exception {
+		Cleartool.run( cmd );
+		Cleartool.run( cmd );
+
+		assertThat( executor.getCount( "describe" ), is( 2 ) );
+	}
+}
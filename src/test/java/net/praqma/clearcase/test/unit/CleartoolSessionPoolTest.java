@@ -0,0 +1,130 @@
+package net.praqma.clearcase.test.unit;
+
+import static org.junit.Assert.*;
+import static org.hamcrest.CoreMatchers.*;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import net.praqma.clearcase.Cool;
+import net.praqma.clearcase.cleartool.CleartoolMetrics;
+import net.praqma.clearcase.cleartool.CleartoolSessionPool;
+import net.praqma.util.execute.AbnormalProcessTerminationException;
+import net.praqma.util.execute.CmdResult;
+import net.praqma.util.execute.CommandLineInterface.OperatingSystem;
+
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+public class CleartoolSessionPoolTest {
+
+	private static final String cmd = "describe -fmt %n baseline:baseline_1@/PVOB";
+
+	private CleartoolMetrics metrics;
+	private CleartoolSessionPool pool;
+
+	@Before
+	public void setup() throws Exception {
+		/* The stand-in is a shell script */
+		Assume.assumeTrue( Cool.getOS().equals( OperatingSystem.UNIX ) );
+
+		File script = new File( getClass().getResource( "/net/praqma/clearcase/test/benchmark/fake-cleartool.sh" ).toURI() );
+		metrics = new CleartoolMetrics();
+		pool = new CleartoolSessionPool( "sh " + script.getAbsolutePath(), 2, metrics );
+	}
+
+	@After
+	public void teardown() {
+		if( pool != null ) {
+			pool.close();
+		}
+	}
+
+	private CmdResult run( String cmd, File dir ) throws Exception {
+		pool.acquire();
+		try {
+			return pool.run( cmd, dir, false, false );
+		} finally {
+			pool.release();
+		}
+	}
+
+	@Test
+	public void boundedConcurrency() throws Exception {
+		final AtomicInteger failures = new AtomicInteger();
+		final File dir = new File( System.getProperty( "java.io.tmpdir" ) );
+		List<Thread> threads = new ArrayList<Thread>();
+		for( int i = 0 ; i < 6 ; i++ ) {
+			Thread t = new Thread() {
+				@Override
+				public void run() {
+					for( int j = 0 ; j < 25 ; j++ ) {
+						try {
+							CmdResult result = CleartoolSessionPoolTest.this.run( cmd, dir );
+							if( result.stdoutList.size() != 1 ) {
+								failures.incrementAndGet();
+							}
+						} catch( Exception e ) {
+							failures.incrementAndGet();
+						}
+					}
+				}
+			};
+			threads.add( t );
+			t.start();
+		}
+
+		for( Thread t : threads ) {
+			t.join();
+		}
+
+		assertThat( failures.get(), is( 0 ) );
+		assertThat( metrics.getQueued(), is( 150L ) );
+		assertThat( metrics.getSessionCommands(), is( 150L ) );
+		assertTrue( metrics.getSessionsOpened() <= 2 );
+		assertTrue( pool.getSize() <= 2 );
+	}
+
+	@Test
+	public void directoryAffinity() throws Exception {
+		File dir1 = new File( System.getProperty( "java.io.tmpdir" ) );
+		File dir2 = new File( System.getProperty( "user.dir" ) );
+
+		run( cmd, dir1 );
+		run( cmd, dir2 );
+		run( cmd, dir1 );
+		run( cmd, dir2 );
+
+		/* Sequential callers, so one session would do, but each directory keeps its own */
+		assertThat( metrics.getSessionsOpened(), is( 2L ) );
+		assertThat( metrics.getAffinityHits(), is( 2L ) );
+	}
+
+	@Test
+	public void failedCommandKeepsSession() throws Exception {
+		try {
+			run( "nosuchcommand", null );
+			fail( "Expected the command to fail" );
+		} catch( AbnormalProcessTerminationException e ) {
+			assertTrue( e.getMessage().contains( "Unrecognized command" ) );
+		}
+
+		run( cmd, null );
+		assertThat( metrics.getSessionsOpened(), is( 1L ) );
+	}
+
+	@Test
+	public void statusLineInOutput() throws Exception {
+		CmdResult result = run( "comment 2", null );
+		assertThat( result.stdoutList, is( Arrays.asList( "Command 2 returned status 0", "Command 2 returned status 1", "the end" ) ) );
+
+		/* Still in step */
+		assertThat( run( cmd, null ).stdoutList.size(), is( 1 ) );
+		assertThat( metrics.getSessionsOpened(), is( 1L ) );
+	}
+}
@@ -0,0 +1,111 @@
+package net.praqma.clearcase.test.unit;
+
+import static org.junit.Assert.*;
+import static org.hamcrest.CoreMatchers.*;
+
+import java.lang.management.ManagementFactory;
+import java.util.Date;
+import java.util.List;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import net.praqma.clearcase.cleartool.Cleartool;
+import net.praqma.clearcase.cleartool.CleartoolMetrics;
+import net.praqma.clearcase.cleartool.CleartoolStatistics;
+import net.praqma.clearcase.cleartool.CommandStatistics;
+import net.praqma.clearcase.cleartool.LatencyHistogram;
+import net.praqma.clearcase.test.junit.FakeClearCaseModel;
+import net.praqma.clearcase.test.junit.ScriptedCommandExecutor;
+import net.praqma.util.execute.AbnormalProcessTerminationException;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class CleartoolStatisticsTest {
+
+	private static final String baseline = "baseline:bl1@\\pvob";
+
+	private ScriptedCommandExecutor executor;
+
+	@Before
+	public void setup() {
+		FakeClearCaseModel model = new FakeClearCaseModel();
+		model.addBaseline( baseline, "component:_System@\\pvob", "stream:int@\\pvob", "INITIAL", new Date() );
+		executor = new ScriptedCommandExecutor( model );
+		Cleartool.setExecutor( executor );
+		Cleartool.getStatistics().reset();
+	}
+
+	@After
+	public void teardown() {
+		Cleartool.setExecutor( null );
+	}
+
+	@Test
+	public void percentiles() {
+		LatencyHistogram h = new LatencyHistogram();
+		for( int i = 1 ; i <= 1000 ; i++ ) {
+			h.record( i * 1000000L );
+		}
+
+		assertThat( h.getCount(), is( 1000L ) );
+		assertThat( h.getMaxMicros(), is( 1000000L ) );
+
+		/* A bucket is at most a quarter of a power of two wide */
+		long p50 = h.getPercentileMicros( 50 );
+		assertTrue( "p50 was " + p50, p50 >= 500000 && p50 <= 500000 * 1.25 );
+		long p99 = h.getPercentileMicros( 99 );
+		assertTrue( "p99 was " + p99, p99 >= 990000 && p99 <= 1000000 );
+		assertThat( h.getPercentileMicros( 100 ), is( 1000000L ) );
+	}
+
+	@Test
+	public void subcommands() {
+		CleartoolStatistics stats = new CleartoolStatistics( new CleartoolMetrics() );
+		stats.record( "desc -fmt %n " + baseline, 1000000, 3, false );
+		stats.record( "describe " + baseline, 3000000, 10, true );
+		stats.record( "  lsbl -stream stream:int@\\pvob", 2000000, 100, false );
+
+		assertThat( stats.get( "describe" ).getLatency().getCount(), is( 2L ) );
+		assertThat( stats.get( "describe" ).getErrors(), is( 1L ) );
+		assertThat( stats.get( "describe" ).getOutput(), is( 13L ) );
+		assertThat( stats.getTotalCount(), is( 3L ) );
+
+		List<CommandStatistics.Snapshot> snapshot = stats.snapshot();
+		assertThat( snapshot.get( 0 ).getSubcommand(), is( "describe" ) );
+		assertThat( snapshot.get( 1 ).getSubcommand(), is( "lsbl" ) );
+	}
+
+	@Test
+	public void recorded() throws Exception {
+		executor.fail( "nosuchbaseline", "cleartool: Error: Unable to determine type" );
+
+		Cleartool.run( "describe -fmt %n " + baseline );
+		Cleartool.run( "describe -fmt %n " + baseline );
+		try {
+			Cleartool.run( "describe baseline:nosuchbaseline@\\pvob" );
+			fail( "The command must fail" );
+		} catch( AbnormalProcessTerminationException e ) {
+			/* Expected */
+		}
+
+		CommandStatistics describe = Cleartool.getStatistics().get( "describe" );
+		assertThat( describe.getLatency().getCount(), is( 3L ) );
+		assertThat( describe.getErrors(), is( 1L ) );
+		assertThat( describe.getOutput(), is( 6L ) );
+	}
+
+	@Test
+	public void jmx() throws Exception {
+		Cleartool.run( "describe -fmt %n " + baseline );
+
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		ObjectName name = new ObjectName( CleartoolStatistics.objectName );
+		assertTrue( server.isRegistered( name ) );
+		assertThat( (Long) server.getAttribute( name, "TotalCount" ), is( 1L ) );
+		assertThat( server.getAttribute( name, "Commands" ), notNullValue() );
+		assertThat( ( (String) server.getAttribute( name, "Report" ) ).contains( "describe" ), is( true ) );
+	}
+}
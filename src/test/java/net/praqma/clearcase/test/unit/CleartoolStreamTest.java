@@ -0,0 +1,103 @@
+package net.praqma.clearcase.test.unit;
+
+import static org.junit.Assert.*;
+import static org.hamcrest.CoreMatchers.*;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import net.praqma.clearcase.Cool;
+import net.praqma.clearcase.api.ListVob;
+import net.praqma.clearcase.cleartool.Cleartool;
+import net.praqma.clearcase.cleartool.CleartoolMetrics;
+import net.praqma.clearcase.cleartool.ForkingCommandExecutor;
+import net.praqma.clearcase.cleartool.LineHandler;
+import net.praqma.clearcase.test.junit.FakeClearCaseModel;
+import net.praqma.clearcase.test.junit.ScriptedCommandExecutor;
+import net.praqma.util.execute.AbnormalProcessTerminationException;
+import net.praqma.util.execute.CommandLineInterface.OperatingSystem;
+
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Test;
+
+public class CleartoolStreamTest {
+
+	private static class Collector implements LineHandler {
+		private final List<String> lines = new ArrayList<String>();
+		private final int max;
+
+		private Collector( int max ) {
+			this.max = max;
+		}
+
+		@Override
+		public boolean handle( String line ) {
+			lines.add( line );
+			return lines.size() < max;
+		}
+	}
+
+	@After
+	public void teardown() {
+		Cleartool.setExecutor( null );
+	}
+
+	private ForkingCommandExecutor fakeCleartool() throws Exception {
+		/* The stand-in is a shell script */
+		Assume.assumeTrue( Cool.getOS().equals( OperatingSystem.UNIX ) );
+
+		File script = new File( getClass().getResource( "/net/praqma/clearcase/test/benchmark/fake-cleartool.sh" ).toURI() );
+		return new ForkingCommandExecutor( "sh " + script.getAbsolutePath(), new CleartoolMetrics() );
+	}
+
+	@Test
+	public void nonStreamingExecutor() throws Exception {
+		ScriptedCommandExecutor executor = new ScriptedCommandExecutor( new FakeClearCaseModel() );
+		executor.script( "^ls ", "/view/vob/a", "/view/vob/view.dat", "/view/vob/b" );
+		Cleartool.setExecutor( executor );
+
+		Collector collector = new Collector( 2 );
+		new ListVob().recurse().addPathName( "/view/vob" ).execute( collector );
+		assertThat( collector.lines.size(), is( 2 ) );
+
+		assertThat( new ListVob().recurse().addPathName( "/view/vob" ).execute().size(), is( 3 ) );
+		assertThat( executor.getCount( "ls" ), is( 2 ) );
+	}
+
+	@Test
+	public void allLinesInOrder() throws Exception {
+		Collector collector = new Collector( Integer.MAX_VALUE );
+		fakeCleartool().stream( "ls 5000", null, false, false, collector );
+
+		assertThat( collector.lines.size(), is( 5000 ) );
+		assertThat( collector.lines.get( 0 ), is( "/view/vob/file_1" ) );
+		assertThat( collector.lines.get( 4999 ), is( "/view/vob/file_5000" ) );
+	}
+
+	@Test
+	public void stopEarly() throws Exception {
+		Collector collector = new Collector( 10 );
+		long start = System.currentTimeMillis();
+		fakeCleartool().stream( "ls 1000000", null, false, false, collector );
+
+		assertThat( collector.lines.size(), is( 10 ) );
+		/* The process is killed instead of drained */
+		assertTrue( System.currentTimeMillis() - start < 10000 );
+	}
+
+	@Test
+	public void failure() throws Exception {
+		ForkingCommandExecutor executor = fakeCleartool();
+		try {
+			executor.stream( "nosuchcommand", null, false, false, new Collector( Integer.MAX_VALUE ) );
+			fail( "The command must fail" );
+		} catch( AbnormalProcessTerminationException e ) {
+			assertThat( e.getMessage().contains( "Unrecognized command" ), is( true ) );
+		}
+
+		/* Ignored */
+		executor.stream( "nosuchcommand", null, false, true, new Collector( Integer.MAX_VALUE ) );
+	}
+}
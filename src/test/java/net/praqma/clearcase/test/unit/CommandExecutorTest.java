@@ -0,0 +1,98 @@
+package net.praqma.clearcase.test.unit;
+
+import static org.junit.Assert.*;
+import static org.hamcrest.CoreMatchers.*;
+
+import java.util.Date;
+import java.util.List;
+
+import net.praqma.clearcase.cleartool.Cleartool;
+import net.praqma.clearcase.exceptions.UnableToLoadEntityException;
+import net.praqma.clearcase.test.junit.FakeClearCaseModel;
+import net.praqma.clearcase.test.junit.ScriptedCommandExecutor;
+import net.praqma.clearcase.ucm.entities.Baseline;
+import net.praqma.clearcase.ucm.entities.Component;
+import net.praqma.clearcase.ucm.entities.Project.PromotionLevel;
+import net.praqma.clearcase.ucm.entities.Stream;
+import net.praqma.clearcase.ucm.utils.BaselineList;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class CommandExecutorTest {
+
+	private static final String pvob = "\\pvob";
+	private static final String component = "component:_System@" + pvob;
+	private static final String integration = "stream:int@" + pvob;
+	private static final String development = "stream:dev@" + pvob;
+
+	private FakeClearCaseModel model;
+	private ScriptedCommandExecutor executor;
+
+	@Before
+	public void setup() {
+		model = new FakeClearCaseModel();
+		model.addStream( integration, "project:proj@" + pvob, null, "baseline:initial@" + pvob );
+		model.addStream( development, "project:proj@" + pvob, integration );
+
+		long now = System.currentTimeMillis();
+		model.addBaseline( "baseline:bl1@" + pvob, component, integration, "INITIAL", new Date( now - 3000000 ) );
+		model.addBaseline( "baseline:bl2@" + pvob, component, integration, "BUILT", new Date( now - 2000000 ) );
+		model.addBaseline( "baseline:bl3@" + pvob, component, integration, "BUILT", new Date( now - 1000000 ) );
+
+		executor = new ScriptedCommandExecutor( model );
+		Cleartool.setExecutor( executor );
+	}
+
+	@After
+	public void teardown() {
+		Cleartool.setExecutor( null );
+	}
+
+	@Test
+	public void loadBaseline() throws Exception {
+		Baseline bl = Baseline.get( "baseline:bl2@" + pvob ).load();
+
+		assertThat( bl.getComponent().getFullyQualifiedName(), is( component ) );
+		assertThat( bl.getStream().getFullyQualifiedName(), is( integration ) );
+		assertThat( bl.getPromotionLevel(), is( PromotionLevel.BUILT ) );
+		assertThat( executor.getCount( "describe" ), is( 1 ) );
+	}
+
+	@Test
+	public void loadStream() throws Exception {
+		Stream stream = Stream.get( development ).load();
+
+		assertThat( stream.getDefaultTarget().getFullyQualifiedName(), is( integration ) );
+		assertThat( Stream.get( integration ).load().getFoundationBaselines().size(), is( 1 ) );
+	}
+
+	@Test
+	public void listBaselines() throws Exception {
+		BaselineList list = new BaselineList( Stream.get( integration ), Component.get( component ), PromotionLevel.BUILT ).apply();
+
+		assertThat( list.size(), is( 2 ) );
+		assertThat( executor.getCount( "lsbl" ), is( 1 ) );
+	}
+
+	@Test( expected = UnableToLoadEntityException.class )
+	public void unknownBaseline() throws Exception {
+		Baseline.get( "baseline:nosuchbaseline@" + pvob ).load();
+	}
+
+	@Test
+	public void scriptedCommand() throws Exception {
+		executor.script( "^lsview", "view_1" );
+		assertThat( Cleartool.run( "lsview -s" ).stdoutList.get( 0 ), is( "view_1" ) );
+	}
+
+	@Test
+	public void configSpec() throws Exception {
+		model.setConfigSpec( "myview", "element * CHECKEDOUT", "element * /main/LATEST" );
+		List<String> cs = Cleartool.run( "catcs -tag myview" ).stdoutList;
+
+		assertThat( cs.size(), is( 2 ) );
+		assertThat( cs.get( 1 ), is( "element * /main/LATEST" ) );
+	}
+}
@@ -0,0 +1,158 @@
+package net.praqma.clearcase.test.unit;
+
+import static org.junit.Assert.*;
+import static org.hamcrest.CoreMatchers.*;
+
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import net.praqma.clearcase.cleartool.Cleartool;
+import net.praqma.clearcase.test.junit.FakeClearCaseModel;
+import net.praqma.clearcase.test.junit.ScriptedCommandExecutor;
+import net.praqma.clearcase.ucm.entities.Baseline;
+import net.praqma.clearcase.ucm.entities.EntityIdentityMap;
+import net.praqma.clearcase.ucm.entities.Project.PromotionLevel;
+import net.praqma.clearcase.ucm.entities.UCMEntity;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ConcurrentLoadTest {
+
+	private static final String pvob = "\\pvob";
+	private static final int baselines = 20;
+	private static final int threads = 16;
+
+	private FakeClearCaseModel model;
+	private ScriptedCommandExecutor executor;
+	private EntityIdentityMap previous;
+	private boolean coalescing;
+	private ExecutorService pool;
+	private long now = System.currentTimeMillis() / 1000 * 1000;
+
+	@Before
+	public void setup() {
+		model = new FakeClearCaseModel();
+		model.addStream( "stream:int@" + pvob, "project:proj@" + pvob, null );
+		for( int i = 0 ; i < baselines ; i++ ) {
+			model.addBaseline( "baseline:bl" + i + "@" + pvob, "component:_System@" + pvob, "stream:int@" + pvob, "BUILT", new Date( now - i * 60000 ) );
+		}
+
+		/* Slow commands, so the threads ask at the same time */
+		executor = new ScriptedCommandExecutor( model ).setLatency( 20 );
+		Cleartool.setExecutor( executor );
+
+		/* Identical commands at the same time are otherwise run once */
+		coalescing = Cleartool.isCoalescing();
+		Cleartool.setCoalescing( false );
+
+		previous = UCMEntity.getIdentityMap();
+		UCMEntity.setIdentityMap( new EntityIdentityMap() );
+
+		pool = Executors.newFixedThreadPool( threads );
+	}
+
+	@After
+	public void teardown() {
+		pool.shutdownNow();
+		UCMEntity.setIdentityMap( previous );
+		Cleartool.setCoalescing( coalescing );
+		Cleartool.setExecutor( null );
+	}
+
+	@Test
+	public void loadedOnce() throws Exception {
+		final CountDownLatch start = new CountDownLatch( 1 );
+		List<Future<Void>> futures = new ArrayList<Future<Void>>();
+		for( int t = 0 ; t < threads ; t++ ) {
+			final int thread = t;
+			futures.add( pool.submit( new Callable<Void>() {
+				@Override
+				public Void call() throws Exception {
+					start.await();
+					for( int i = 0 ; i < baselines ; i++ ) {
+						Baseline bl = Baseline.get( "baseline:bl" + ( ( i + thread ) % baselines ) + "@" + pvob );
+						switch( thread % 4 ) {
+							case 0:
+								assertThat( bl.getDate().getTime(), is( now - ( ( i + thread ) % baselines ) * 60000L ) );
+								break;
+							case 1:
+								assertThat( bl.getPromotionLevel(), is( PromotionLevel.BUILT ) );
+								break;
+							case 2:
+								assertThat( bl.getMastership(), is( "site1" ) );
+								break;
+							default:
+								assertThat( bl.getStream().getShortname(), is( "int" ) );
+						}
+					}
+					return null;
+				}
+			} ) );
+		}
+
+		start.countDown();
+		for( Future<Void> future : futures ) {
+			future.get();
+		}
+
+		/* One describe per baseline, however many threads asked */
+		assertThat( executor.getCount( "desc" ) + executor.getCount( "describe" ), is( baselines ) );
+	}
+
+	@Test
+	public void parseDates() throws Exception {
+		final SimpleDateFormat format = new SimpleDateFormat( "yyyyMMdd.HHmmss" );
+		final List<String> dates = new ArrayList<String>();
+		for( int i = 0 ; i < 1000 ; i++ ) {
+			dates.add( format.format( new Date( now - i * 3601000L ) ) );
+		}
+
+		List<Future<Void>> futures = new ArrayList<Future<Void>>();
+		for( int t = 0 ; t < threads ; t++ ) {
+			futures.add( pool.submit( new Callable<Void>() {
+				@Override
+				public Void call() throws Exception {
+					for( int i = 0 ; i < dates.size() ; i++ ) {
+						assertThat( UCMEntity.parseDate( dates.get( i ) ).toEpochMilli(), is( now - i * 3601000L ) );
+					}
+					return null;
+				}
+			} ) );
+		}
+		for( Future<Void> future : futures ) {
+			future.get();
+		}
+	}
+
+	@Test
+	public void parseLikeDateFormat() throws Exception {
+		SimpleDateFormat format = new SimpleDateFormat( "yyyyMMdd.HHmmss" );
+
+		assertThat( UCMEntity.parseDate( "20060810.225810" ).toEpochMilli(), is( format.parse( "20060810.225810" ).getTime() ) );
+		assertThat( UCMEntity.parseDate( "  20060810.225810\n" ).toEpochMilli(), is( format.parse( "20060810.225810" ).getTime() ) );
+	}
+
+	@Test( expected = ParseException.class )
+	public void unparseable() throws Exception {
+		UCMEntity.parseDate( "yesterday" );
+	}
+
+	@Test
+	public void dateCopied() throws Exception {
+		Baseline bl = Baseline.get( "baseline:bl0@" + pvob );
+		Date date = bl.getDate();
+		date.setTime( 0 );
+
+		assertThat( bl.getDate().getTime(), is( now ) );
+	}
+}
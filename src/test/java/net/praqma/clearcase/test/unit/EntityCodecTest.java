@@ -0,0 +1,252 @@
+package net.praqma.clearcase.test.unit;
+
+import static org.junit.Assert.*;
+import static org.hamcrest.CoreMatchers.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+
+import net.praqma.clearcase.changeset.ChangeSet2;
+import net.praqma.clearcase.changeset.ChangeSetElement2;
+import net.praqma.clearcase.cleartool.Cleartool;
+import net.praqma.clearcase.test.junit.FakeClearCaseModel;
+import net.praqma.clearcase.test.junit.ScriptedCommandExecutor;
+import net.praqma.clearcase.ucm.entities.Activity;
+import net.praqma.clearcase.ucm.entities.Baseline;
+import net.praqma.clearcase.ucm.entities.Changeset;
+import net.praqma.clearcase.ucm.entities.EntityCodec;
+import net.praqma.clearcase.ucm.entities.EntityIdentityMap;
+import net.praqma.clearcase.ucm.entities.Project.PromotionLevel;
+import net.praqma.clearcase.ucm.entities.UCMEntity;
+import net.praqma.clearcase.ucm.entities.Version;
+import net.praqma.clearcase.ucm.entities.Version.Status;
+import net.praqma.clearcase.ucm.utils.BaselineList;
+import net.praqma.clearcase.ucm.utils.VersionList;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class EntityCodecTest {
+
+	private static final String pvob = "\\pvob";
+	private static final String stream = "stream:int@" + pvob;
+	private static final String component = "component:_System@" + pvob;
+	private static final File view = new File( "/view/dev" );
+
+	private FakeClearCaseModel model;
+	private ScriptedCommandExecutor executor;
+	private EntityIdentityMap previous;
+	private long now = System.currentTimeMillis() / 1000 * 1000;
+
+	@Before
+	public void setup() {
+		model = new FakeClearCaseModel();
+		model.addStream( stream, "project:proj@" + pvob, null );
+		for( int i = 0 ; i < 5 ; i++ ) {
+			model.addBaseline( "baseline:bl" + i + "@" + pvob, component, stream, i % 2 == 0 ? "BUILT" : "REJECTED", new Date( now - i * 60000L ), "user" + i, "FULL" );
+		}
+
+		executor = new ScriptedCommandExecutor( model );
+		Cleartool.setExecutor( executor );
+
+		previous = UCMEntity.getIdentityMap();
+		UCMEntity.setIdentityMap( new EntityIdentityMap() );
+	}
+
+	@After
+	public void teardown() {
+		UCMEntity.setIdentityMap( previous );
+		Cleartool.setExecutor( null );
+	}
+
+	private static byte[] serialize( Object object ) throws Exception {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		ObjectOutputStream out = new ObjectOutputStream( bytes );
+		out.writeObject( object );
+		out.close();
+		return bytes.toByteArray();
+	}
+
+	/**
+	 * Read in a JVM of its own, as an agent does
+	 */
+	private Object deserialize( byte[] bytes ) throws Exception {
+		UCMEntity.setIdentityMap( new EntityIdentityMap() );
+		executor.reset();
+		return new ObjectInputStream( new ByteArrayInputStream( bytes ) ).readObject();
+	}
+
+	@Test
+	public void baselineList() throws Exception {
+		BaselineList list = new BaselineList();
+		for( int i = 0 ; i < 5 ; i++ ) {
+			Baseline bl = Baseline.get( "baseline:bl" + i + "@" + pvob );
+			if( i < 4 ) {
+				bl.load();
+			}
+			list.add( bl );
+		}
+		list.setSorting( new BaselineList.DescendingDateSort() ).setLimit( 3 );
+
+		byte[] bytes = serialize( list );
+		BaselineList read = (BaselineList) deserialize( bytes );
+
+		/* Everything written is read */
+		assertTrue( Arrays.equals( serialize( read ), bytes ) );
+
+		assertThat( read.size(), is( 5 ) );
+		for( int i = 0 ; i < 4 ; i++ ) {
+			Baseline bl = read.get( i );
+			assertTrue( bl.isLoaded() );
+			assertThat( bl.getShortname(), is( "bl" + i ) );
+			assertThat( bl.getDate().getTime(), is( now - i * 60000L ) );
+			assertThat( bl.getUser(), is( "user" + i ) );
+			assertThat( bl.getPromotionLevel(), is( i % 2 == 0 ? PromotionLevel.BUILT : PromotionLevel.REJECTED ) );
+			assertThat( bl.getMastership(), is( "site1" ) );
+			assertTrue( bl.getStream() == read.get( 0 ).getStream() );
+			assertTrue( bl.getComponent() == read.get( 0 ).getComponent() );
+		}
+		assertThat( executor.getCommands().size(), is( 0 ) );
+
+		/* The one not loaded is loaded when needed */
+		assertFalse( read.get( 4 ).isLoaded() );
+		assertThat( read.get( 4 ).getPromotionLevel(), is( PromotionLevel.BUILT ) );
+		assertThat( executor.getCommands().size(), is( 1 ) );
+
+		/* The canonical instance */
+		assertTrue( read.get( 0 ) == Baseline.get( "baseline:bl0@" + pvob ) );
+	}
+
+	@Test
+	public void localStateKept() throws Exception {
+		BaselineList list = new BaselineList();
+		for( int i = 0 ; i < 3 ; i++ ) {
+			Baseline bl = Baseline.get( "baseline:bl" + i + "@" + pvob );
+			bl.load();
+			list.add( bl );
+		}
+		byte[] bytes = serialize( list );
+
+		/* The receiving side has loaded the first baseline since it was promoted */
+		UCMEntity.setIdentityMap( new EntityIdentityMap() );
+		model.object( "baseline:bl0@" + pvob ).set( "%[plevel]p", "RELEASED" );
+		Baseline.get( "baseline:bl0@" + pvob ).load();
+		executor.reset();
+		BaselineList read = (BaselineList) new ObjectInputStream( new ByteArrayInputStream( bytes ) ).readObject();
+
+		assertThat( read.get( 0 ).getPromotionLevel(), is( PromotionLevel.RELEASED ) );
+		assertThat( read.get( 1 ).getPromotionLevel(), is( PromotionLevel.REJECTED ) );
+		assertThat( read.get( 2 ).getPromotionLevel(), is( PromotionLevel.BUILT ) );
+		assertThat( read.get( 2 ).getUser(), is( "user2" ) );
+		assertThat( executor.getCommands().size(), is( 0 ) );
+	}
+
+	@Test
+	public void versionList() throws Exception {
+		Activity activity = Activity.get( "activity:act1@" + pvob );
+		activity.setUser( "snoopy" );
+		List<Version> versions = new ArrayList<Version>();
+		for( int i = 0 ; i < 4 ; i++ ) {
+			Version v = Version.get( view.getPath() + "/vob/file" + i + ".c@@/main/int/" + ( i + 1 ) );
+			v.setView( view );
+			v.setActivity( activity );
+			v.setStatus( i == 0 ? Status.ADDED : Status.CHANGED );
+			versions.add( v );
+			activity.changeset.versions.add( v );
+		}
+
+		VersionList list = new VersionList( versions, Arrays.asList( activity ) ).setBranchName( "int" );
+		byte[] bytes = serialize( list );
+		VersionList read = (VersionList) deserialize( bytes );
+
+		assertThat( read.size(), is( 4 ) );
+		Activity a = read.getActivities().get( 0 );
+		assertThat( a.getUser(), is( "snoopy" ) );
+		assertThat( a.changeset.versions.size(), is( 4 ) );
+		for( int i = 0 ; i < 4 ; i++ ) {
+			Version v = read.get( i );
+			assertTrue( v == a.changeset.versions.get( i ) );
+			assertTrue( v.getActivity() == a );
+			assertThat( v.getView(), is( view ) );
+			assertThat( v.getStatus(), is( i == 0 ? Status.ADDED : Status.CHANGED ) );
+			assertThat( v.getRevision(), is( i + 1 ) );
+		}
+		assertThat( executor.getCommands().size(), is( 0 ) );
+		assertTrue( Arrays.equals( serialize( read ), bytes ) );
+	}
+
+	@Test
+	public void changeSets() throws Exception {
+		Changeset changeset = new Changeset();
+		ChangeSet2 changeset2 = new ChangeSet2( view );
+		for( int i = 0 ; i < 3 ; i++ ) {
+			Version v = Version.get( view.getPath() + "/vob/file" + i + ".c@@/main/" + ( i + 1 ) );
+			v.setStatus( Status.CHANGED );
+			changeset.versions.add( v );
+			changeset2.addVersion( v );
+		}
+		changeset2.getElements().values().iterator().next().setOldFile( new File( "/view/dev/vob/old.c" ) );
+
+		Changeset read = (Changeset) deserialize( serialize( changeset ) );
+		assertThat( read.versions.size(), is( 3 ) );
+		assertThat( read.versions.get( 2 ).getFullyQualifiedName(), is( changeset.versions.get( 2 ).getFullyQualifiedName() ) );
+
+		ChangeSet2 read2 = (ChangeSet2) deserialize( serialize( changeset2 ) );
+		assertThat( read2.getChangeset().keySet(), is( changeset2.getChangeset().keySet() ) );
+		assertThat( read2.getElements().keySet(), is( changeset2.getElements().keySet() ) );
+		for( ChangeSetElement2 element : changeset2.getElements().values() ) {
+			ChangeSetElement2 other = read2.getElements().get( element.getFile() );
+			assertThat( other.getStatus(), is( element.getStatus() ) );
+			assertThat( other.getOldFile(), is( element.getOldFile() ) );
+			assertThat( other.getOrigin().getFullyQualifiedName(), is( element.getOrigin().getFullyQualifiedName() ) );
+			assertTrue( other.getOrigin() == read2.getChangeset().get( element.getFile() ).get( 0 ) );
+		}
+	}
+
+	@Test
+	public void values() throws Exception {
+		Instant[] dates = { Instant.ofEpochMilli( now ), null, Instant.ofEpochMilli( now - 3600000L ), Instant.ofEpochMilli( now + 123 ), Instant.ofEpochMilli( 0 ), Instant.ofEpochMilli( -1000 ) };
+		String[] strings = { "baseline", null, "", "æøå €", "baseline" };
+		long[] longs = { 0, 1, 127, 128, Integer.MAX_VALUE, Long.MAX_VALUE, -1, Long.MIN_VALUE };
+
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		EntityCodec.Output out = new EntityCodec.Output( new DataOutputStream( bytes ) );
+		for( Instant date : dates ) {
+			out.writeDate( date );
+		}
+		for( String s : strings ) {
+			out.writeString( s );
+		}
+		for( long l : longs ) {
+			out.writeVarLong( l );
+			out.writeVarInt( (int) l );
+		}
+		out.writeEnum( null );
+		out.writeEnum( Status.DELETED );
+
+		EntityCodec.Input in = new EntityCodec.Input( new DataInputStream( new ByteArrayInputStream( bytes.toByteArray() ) ) );
+		for( Instant date : dates ) {
+			assertThat( in.readDate(), is( date ) );
+		}
+		for( String s : strings ) {
+			assertThat( in.readString(), is( s ) );
+		}
+		for( long l : longs ) {
+			assertThat( in.readVarLong(), is( l ) );
+			assertThat( in.readVarInt(), is( (int) l ) );
+		}
+		assertNull( in.readEnum( Status.class ) );
+		assertThat( in.readEnum( Status.class ), is( Status.DELETED ) );
+	}
+}
@@ -0,0 +1,128 @@
+package net.praqma.clearcase.test.unit;
+
+import static org.junit.Assert.*;
+import static org.hamcrest.CoreMatchers.*;
+
+import java.util.Date;
+
+import net.praqma.clearcase.PVob;
+import net.praqma.clearcase.cleartool.Cleartool;
+import net.praqma.clearcase.test.junit.FakeClearCaseModel;
+import net.praqma.clearcase.test.junit.ScriptedCommandExecutor;
+import net.praqma.clearcase.ucm.entities.Activity;
+import net.praqma.clearcase.ucm.entities.Baseline;
+import net.praqma.clearcase.ucm.entities.EntityIdentityMap;
+import net.praqma.clearcase.ucm.entities.Project.PromotionLevel;
+import net.praqma.clearcase.ucm.entities.Stream;
+import net.praqma.clearcase.ucm.entities.UCMEntity;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class EntityIdentityMapTest {
+
+	private static final String pvob = "\\pvob";
+	private static final String component = "component:_System@" + pvob;
+	private static final String integration = "stream:int@" + pvob;
+	private static final String baseline = "baseline:bl1@" + pvob;
+
+	private FakeClearCaseModel model;
+	private ScriptedCommandExecutor executor;
+	private EntityIdentityMap previous;
+
+	@Before
+	public void setup() {
+		model = new FakeClearCaseModel();
+		model.addStream( integration, "project:proj@" + pvob, null, baseline );
+		model.addBaseline( baseline, component, integration, "INITIAL", new Date() );
+
+		executor = new ScriptedCommandExecutor( model );
+		executor.script( "^chbl " );
+		Cleartool.setExecutor( executor );
+
+		previous = UCMEntity.getIdentityMap();
+		UCMEntity.setIdentityMap( new EntityIdentityMap() );
+	}
+
+	@After
+	public void teardown() {
+		UCMEntity.setIdentityMap( previous );
+		Cleartool.setExecutor( null );
+	}
+
+	@Test
+	public void canonical() throws Exception {
+		Baseline bl = Baseline.get( baseline ).load();
+
+		assertTrue( Baseline.get( baseline ) == bl );
+		assertTrue( Baseline.get( "bl1", new PVob( pvob ) ) == bl );
+		assertTrue( Baseline.get( baseline ).load() == bl );
+		assertThat( executor.getCount( "describe" ), is( 1 ) );
+
+		/* Reached through the stream */
+		Stream stream = Stream.get( integration ).load();
+		assertTrue( stream.getFoundationBaseline() == bl );
+		assertThat( bl.getPromotionLevel(), is( PromotionLevel.INITIAL ) );
+		assertThat( executor.getCount( "describe" ), is( 2 ) );
+	}
+
+	@Test
+	public void invalidatedByChange() throws Exception {
+		Baseline bl = Baseline.get( baseline ).load();
+
+		model.find( baseline ).set( "%[plevel]p", "BUILT" );
+		Cleartool.run( "chbl -level BUILT " + baseline );
+
+		assertThat( bl.isLoaded(), is( false ) );
+		assertThat( Baseline.get( baseline ).load().getPromotionLevel(), is( PromotionLevel.BUILT ) );
+		assertThat( executor.getCount( "describe" ), is( 2 ) );
+	}
+
+	@Test
+	public void explicitInvalidate() throws Exception {
+		Baseline bl = Baseline.get( baseline ).load();
+
+		UCMEntity.getIdentityMap().invalidate( baseline );
+		assertThat( bl.isLoaded(), is( false ) );
+
+		bl.load();
+		UCMEntity.getIdentityMap().invalidateAll();
+		assertThat( bl.isLoaded(), is( false ) );
+		/* The baseline, its component and its stream */
+		assertThat( UCMEntity.getIdentityMap().size(), is( 3 ) );
+	}
+
+	@Test
+	public void reloadStream() throws Exception {
+		Stream stream = Stream.get( integration ).load();
+		stream.load();
+
+		assertThat( stream.getFoundationBaselines().size(), is( 1 ) );
+	}
+
+	@Test
+	public void activitiesNotKept() throws Exception {
+		assertFalse( Activity.get( "activity:act@" + pvob ) == Activity.get( "activity:act@" + pvob ) );
+	}
+
+	@Test
+	public void disabled() throws Exception {
+		UCMEntity.setIdentityMap( null );
+
+		assertFalse( Baseline.get( baseline ) == Baseline.get( baseline ) );
+	}
+
+	@Test
+	public void bounded() throws Exception {
+		UCMEntity.setIdentityMap( new EntityIdentityMap( 10 ) );
+		Baseline first = Baseline.get( "baseline:first@" + pvob );
+		for( int i = 0 ; i < 20 ; i++ ) {
+			Baseline.get( "baseline:bl" + i + "@" + pvob );
+		}
+		Baseline.get( "baseline:other@\\othervob" );
+
+		assertThat( UCMEntity.getIdentityMap().size(), is( 11 ) );
+		assertFalse( Baseline.get( "baseline:first@" + pvob ) == first );
+	}
+}
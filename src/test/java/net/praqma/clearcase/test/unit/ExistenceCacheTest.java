@@ -0,0 +1,191 @@
+package net.praqma.clearcase.test.unit;
+
+import static org.junit.Assert.*;
+import static org.hamcrest.CoreMatchers.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+import net.praqma.clearcase.Cool;
+import net.praqma.clearcase.Vob;
+import net.praqma.clearcase.api.RemoveView;
+import net.praqma.clearcase.cleartool.Cleartool;
+import net.praqma.clearcase.cleartool.ExistenceCache;
+import net.praqma.clearcase.cleartool.ExistenceCache.Kind;
+import net.praqma.clearcase.test.junit.FakeClearCaseModel;
+import net.praqma.clearcase.test.junit.ScriptedCommandExecutor;
+import net.praqma.clearcase.ucm.entities.Stream;
+import net.praqma.clearcase.ucm.view.SnapshotView;
+import net.praqma.clearcase.ucm.view.UCMView;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ExistenceCacheTest {
+
+	private static final String pvob = "\\pvob";
+	private static final String stream = "stream:int@" + pvob;
+
+	private ScriptedCommandExecutor executor;
+	private ExistenceCache previous;
+	private ExistenceCache cache;
+	private File viewroot;
+
+	@Before
+	public void setup() throws IOException {
+		viewroot = Files.createTempDirectory( "view" ).toFile();
+
+		FakeClearCaseModel model = new FakeClearCaseModel();
+		model.addStream( stream, "project:proj@" + pvob, null );
+		model.addBaseline( "baseline:bl1@" + pvob, "component:_System@" + pvob, stream, "INITIAL", new Date() );
+
+		executor = new ScriptedCommandExecutor( model );
+		executor.script( "^lsview view1$", "* view1    /views/view1.vws" );
+		executor.fail( "^lsview view2$", "cleartool: Error: No matching entries found for view tag \"view2\"." );
+		Cleartool.setExecutor( executor );
+
+		previous = ExistenceCache.getInstance();
+		cache = new ExistenceCache( 100, 60000, 60000 );
+		ExistenceCache.setInstance( cache );
+	}
+
+	@After
+	public void teardown() {
+		ExistenceCache.setInstance( previous );
+		Cleartool.setExecutor( null );
+		net.praqma.util.io.IO.deleteDirectory( viewroot );
+	}
+
+	@Test
+	public void positiveAndNegative() {
+		for( int i = 0 ; i < 3 ; i++ ) {
+			assertTrue( UCMView.viewExists( "view1" ) );
+			assertFalse( UCMView.viewExists( "view2" ) );
+			assertTrue( Stream.streamExists( stream ) );
+			assertFalse( Stream.streamExists( "stream:nostream@" + pvob ) );
+		}
+
+		assertThat( executor.getCount( "lsview" ), is( 2 ) );
+		assertThat( executor.getCount( "describe" ), is( 2 ) );
+		assertThat( cache.size(), is( 4 ) );
+	}
+
+	@Test
+	public void negativesExpireFirst() throws InterruptedException {
+		cache = new ExistenceCache( 100, 60000, 50 );
+		ExistenceCache.setInstance( cache );
+
+		UCMView.viewExists( "view1" );
+		UCMView.viewExists( "view2" );
+		Thread.sleep( 100 );
+		assertTrue( UCMView.viewExists( "view1" ) );
+		assertFalse( UCMView.viewExists( "view2" ) );
+
+		assertThat( executor.getCommands(), is( Arrays.asList( "lsview view1", "lsview view2", "lsview view2" ) ) );
+	}
+
+	@Test
+	public void invalidatedByRemove() throws Exception {
+		assertTrue( UCMView.viewExists( "view1" ) );
+		executor.script( "^rmview " );
+		executor.script( "^rmstream " );
+		new RemoveView().setTag( "view1" ).execute();
+		assertTrue( UCMView.viewExists( "view1" ) );
+		assertThat( executor.getCount( "lsview" ), is( 2 ) );
+
+		assertTrue( Stream.streamExists( stream ) );
+		Stream.get( stream ).remove();
+		Stream.streamExists( stream );
+		assertThat( executor.getCount( "describe" ), is( 2 ) );
+	}
+
+	@Test
+	public void failuresAreNotCached() {
+		ExistenceCache.Probe probe = new ExistenceCache.Probe() {
+			@Override
+			public boolean exists() throws Exception {
+				throw new IOException( "Timed out" );
+			}
+		};
+
+		assertFalse( ExistenceCache.exists( Kind.STREAM, stream, probe ) );
+		assertThat( cache.size(), is( 0 ) );
+		assertTrue( Stream.streamExists( stream ) );
+	}
+
+	@Test
+	public void onlyNotFoundIsCached() {
+		executor.fail( "^lsview view3$", "cleartool: Error: Unable to contact albd_server on host 'ccserver'" );
+		executor.fail( "^describe stream:locked@", "cleartool: Error: Unable to get a license" );
+
+		assertFalse( UCMView.viewExists( "view3" ) );
+		assertFalse( Stream.streamExists( "stream:locked@" + pvob ) );
+		assertThat( cache.size(), is( 0 ) );
+
+		assertFalse( UCMView.viewExists( "view2" ) );
+		assertThat( cache.get( Kind.VIEW, "view2" ), is( false ) );
+	}
+
+	@Test
+	public void raceWithChange() {
+		long generation = cache.getGeneration();
+		ExistenceCache.changed( Kind.VIEW, "view1" );
+		cache.put( Kind.VIEW, "view1", false, generation );
+		assertNull( cache.get( Kind.VIEW, "view1" ) );
+	}
+
+	@Test
+	public void swipeListsVobsOnce() throws Exception {
+		new File( viewroot, "vob1" ).mkdir();
+		new File( viewroot, "vob2" ).mkdir();
+		new File( viewroot, "junk1" ).mkdir();
+		new File( viewroot, "junk2" ).mkdir();
+
+		executor.script( "^lsvob -s$", Cool.filesep + "vob1", Cool.filesep + "vob2", Cool.filesep + "other" );
+		executor.script( "^ls " );
+
+		new SnapshotView().swipe( viewroot, true );
+		new SnapshotView().swipe( viewroot, true );
+
+		/* Only the vobs are searched for view private files, and the second swipe is answered by the cache */
+		assertThat( executor.getCount( "lsvob" ), is( 1 ) );
+		assertThat( executor.getCount( "ls" ), is( 4 ) );
+		for( String cmd : executor.getCommands() ) {
+			assertFalse( cmd, cmd.contains( "junk" ) );
+		}
+		assertTrue( Vob.isVob( new File( viewroot, "vob2" ) ) );
+		assertFalse( Vob.isVob( new File( viewroot, "junk2" ) ) );
+		assertThat( executor.getCount( "lsvob" ), is( 1 ) );
+	}
+
+	@Test
+	public void listVobsOnce() {
+		executor.script( "^lsvob -s$", Cool.filesep + "vob1" );
+		executor.script( "^lsvob " + Pattern.quote( Cool.filesep ) + "vob2$", Cool.filesep + "vob2" );
+		List<File> dirs = Arrays.asList( new File( viewroot, "vob1" ), new File( viewroot, "vob2" ), new File( viewroot, "junk" ) );
+
+		/* A single one is asked for on its own */
+		assertTrue( Vob.isVob( Arrays.asList( dirs.get( 1 ) ) ).get( dirs.get( 1 ) ) );
+		Map<File, Boolean> vobs = Vob.isVob( dirs );
+
+		assertThat( new ArrayList<File>( vobs.keySet() ), is( dirs ) );
+		assertThat( new ArrayList<Boolean>( vobs.values() ), is( Arrays.asList( true, true, false ) ) );
+		assertThat( executor.getCommands(), is( Arrays.asList( "lsvob " + Cool.filesep + "vob2", "lsvob -s" ) ) );
+	}
+
+	@Test
+	public void withoutCache() {
+		ExistenceCache.setInstance( null );
+		UCMView.viewExists( "view1" );
+		assertTrue( UCMView.viewExists( "view1" ) );
+		assertThat( executor.getCount( "lsview" ), is( 2 ) );
+	}
+}
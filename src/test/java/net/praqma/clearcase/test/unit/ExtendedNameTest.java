@@ -0,0 +1,147 @@
+package net.praqma.clearcase.test.unit;
+
+import static org.junit.Assert.*;
+import static org.hamcrest.CoreMatchers.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import net.praqma.clearcase.Branch;
+import net.praqma.clearcase.Cool;
+import net.praqma.clearcase.test.junit.RegexVersionName;
+import net.praqma.clearcase.ucm.entities.Version;
+import net.praqma.clearcase.ucm.entities.Version.ExtendedName;
+
+import org.junit.Test;
+
+public class ExtendedNameTest {
+
+	private static final String[] tokens = {
+		"@@", "@@", "@", "/", "/", "\\", "\\", "main", "int", "dev_1", "1", "2", "0", "17", "2147483648", ".", " ", "\t", "C:", "view", "src", "file.c", "a@b", "x y"
+	};
+
+	@Test
+	public void unix() {
+		assertSame( "/view/vob/src/file.c@@/main/int/3", '/' );
+		assertSame( "/view/vob/src@@/main/dev/2/test/main/dev/1/java/main/dev/1", '/' );
+		assertSame( "/view/vob/src/.@@/main/int/1", '/' );
+		assertSame( "  /view/vob/file.c @@/main/int/1", '/' );
+		assertSame( "/view/vob/file.c", '/' );
+		assertSame( "/view/vob/file.c@@", '/' );
+		assertSame( "/view/vob/dir@@/main/5/file.c@@/main/int/12", '/' );
+	}
+
+	@Test
+	public void windows() {
+		assertSame( "c:\\code\\lib\\common.h@@\\main\\int\\1", '\\' );
+		assertSame( "C:\\view\\MonKit006\\MonKit006\\src@@\\main\\monkit006_1_dev\\2\\test\\main\\monkit006_1_dev\\1\\java\\main\\monkit006_1_dev\\1", '\\' );
+		assertSame( "C:\\view\\vob\\.@@\\main\\1", '\\' );
+		assertSame( "C:\\view\\vob\\file.c@@/main/int/3", '\\' );
+	}
+
+	@Test
+	public void addedElements() {
+		ExtendedName name = ExtendedName.parse( "C:\\view\\MonKit006\\src@@\\main\\dev\\2\\test\\main\\dev\\1\\java\\main\\dev\\1", '\\' );
+
+		assertThat( name.getFile(), is( "C:\\view\\MonKit006\\src\\test\\java" ) );
+		assertThat( name.getBranch(), is( "\\main\\dev" ) );
+		assertThat( name.getRevision(), is( 2 ) );
+		assertThat( name.getBranches().size(), is( 2 ) );
+		assertThat( name.getBranches().get( 1 ).getName(), is( "dev" ) );
+	}
+
+	@Test
+	public void randomUnix() {
+		random( '/', 1 );
+	}
+
+	@Test
+	public void randomWindows() {
+		random( '\\', 2 );
+	}
+
+	@Test
+	public void version() throws Exception {
+		String fqname = Cool.filesepChar == '\\' ? "C:\\view\\vob\\file.c@@\\main\\int\\4" : "/view/vob/file.c@@/main/int/4";
+		Version v = Version.get( fqname );
+
+		assertThat( v.getRevision(), is( 4 ) );
+		assertThat( v.getShortname(), is( fqname.substring( 0, fqname.indexOf( "@@" ) ) ) );
+		assertThat( v.getQualifiedFilename(), is( fqname.substring( 0, fqname.indexOf( "@@" ) + 2 ) ) );
+		assertThat( v.getStatus(), is( Version.Status.CHANGED ) );
+		assertThat( v.getUltimateBranch().getName(), is( "int" ) );
+	}
+
+	/**
+	 * Names made of random tokens, and names shaped like versions with random parts, parsed by both
+	 */
+	private void random( char filesep, long seed ) {
+		Random random = new Random( seed );
+		for( int i = 0 ; i < 20000 ; i++ ) {
+			StringBuilder sb = new StringBuilder();
+			if( i % 2 == 0 ) {
+				int count = random.nextInt( 16 );
+				for( int t = 0 ; t < count ; t++ ) {
+					sb.append( tokens[random.nextInt( tokens.length )] );
+				}
+			} else {
+				/* file@@/branch/2/element/branch/1 */
+				int count = 1 + random.nextInt( 4 );
+				for( int t = 0 ; t < count ; t++ ) {
+					sb.append( filesep ).append( segment( random ) );
+				}
+				sb.append( "@@" );
+				count = random.nextInt( 10 );
+				for( int t = 0 ; t < count ; t++ ) {
+					sb.append( random.nextInt( 8 ) == 0 ? ( filesep == '/' ? '\\' : '/' ) : filesep ).append( segment( random ) );
+				}
+			}
+			assertSame( sb.toString(), filesep );
+		}
+	}
+
+	private String segment( Random random ) {
+		switch( random.nextInt( 6 ) ) {
+			case 0:
+			case 1:
+				return Integer.toString( random.nextInt( 4 ) );
+			case 2:
+				return tokens[random.nextInt( tokens.length )];
+			default:
+				return tokens[7 + random.nextInt( 3 )];
+		}
+	}
+
+	private void assertSame( String fqname, char filesep ) {
+		RegexVersionName expected;
+		try {
+			expected = new RegexVersionName( filesep ).parse( fqname );
+		} catch( NumberFormatException e ) {
+			try {
+				ExtendedName.parse( fqname, filesep );
+				fail( "\"" + fqname + "\" must not have a revision" );
+			} catch( NumberFormatException e2 ) {
+				/* Both fail */
+			}
+			return;
+		} catch( ArrayIndexOutOfBoundsException e ) {
+			/* Only @@ after the second @@, the regular expressions failed */
+			return;
+		}
+
+		ExtendedName actual = ExtendedName.parse( fqname, filesep );
+		String message = "\"" + fqname + "\"";
+		assertEquals( message, expected.file, actual.getFile() );
+		assertEquals( message, expected.version, actual.getVersion() );
+		assertEquals( message, expected.qualifiedFilename, actual.getQualifiedFilename() );
+		assertEquals( message, expected.branch, actual.getBranch() );
+		assertEquals( message, expected.revision, actual.getRevision() );
+
+		List<String> branches = new ArrayList<String>();
+		for( Branch b : actual.getBranches() ) {
+			branches.add( b.getName() );
+		}
+		assertEquals( message, expected.branches, branches );
+	}
+}
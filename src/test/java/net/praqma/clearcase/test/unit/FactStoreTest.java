@@ -0,0 +1,226 @@
+package net.praqma.clearcase.test.unit;
+
+import static org.junit.Assert.*;
+import static org.hamcrest.CoreMatchers.*;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import net.praqma.clearcase.cleartool.Cleartool;
+import net.praqma.clearcase.test.junit.FakeClearCaseModel;
+import net.praqma.clearcase.test.junit.ScriptedCommandExecutor;
+import net.praqma.clearcase.ucm.entities.Baseline;
+import net.praqma.clearcase.ucm.entities.EntityIdentityMap;
+import net.praqma.clearcase.ucm.entities.FactStore;
+import net.praqma.clearcase.ucm.entities.Project.PromotionLevel;
+import net.praqma.clearcase.ucm.entities.UCMEntity;
+import net.praqma.clearcase.ucm.entities.Version;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class FactStoreTest {
+
+	private static final String pvob = "\\pvob";
+	private static final String baseline = "baseline:bl1@" + pvob;
+	private static final File view = new File( "/view/dev" );
+
+	private FakeClearCaseModel model;
+	private ScriptedCommandExecutor executor;
+	private EntityIdentityMap previous;
+	private File file;
+	private FactStore store;
+	private long now = System.currentTimeMillis() / 1000 * 1000;
+
+	@Before
+	public void setup() throws IOException {
+		model = new FakeClearCaseModel();
+		model.addStream( "stream:int@" + pvob, "project:proj@" + pvob, null );
+		model.addBaseline( baseline, "component:_System@" + pvob, "stream:int@" + pvob, "INITIAL", new Date( now ), "snoopy", "FULL" );
+
+		executor = new ScriptedCommandExecutor( model );
+		Cleartool.setExecutor( executor );
+
+		previous = UCMEntity.getIdentityMap();
+		UCMEntity.setIdentityMap( new EntityIdentityMap() );
+
+		file = File.createTempFile( "facts", ".log" );
+		file.delete();
+		store = FactStore.open( file );
+		UCMEntity.setFactStore( store );
+	}
+
+	@After
+	public void teardown() throws IOException {
+		UCMEntity.setFactStore( null );
+		store.close();
+		file.delete();
+		UCMEntity.setIdentityMap( previous );
+		Cleartool.setExecutor( null );
+	}
+
+	/**
+	 * As a new JVM, with the facts written by the previous one
+	 */
+	private void restart() throws IOException {
+		store.close();
+		store = FactStore.open( file );
+		UCMEntity.setFactStore( store );
+		UCMEntity.setIdentityMap( new EntityIdentityMap() );
+		executor.reset();
+	}
+
+	@Test
+	public void reopened() throws IOException {
+		Map<String, String> facts = new LinkedHashMap<String, String>();
+		facts.put( "a", "1" );
+		facts.put( "b", "" );
+		store.put( "x", facts );
+		store.put( "y", Collections.singletonMap( "a", "2" ) );
+		store.put( "x", Collections.singletonMap( "c", "3" ) );
+
+		restart();
+
+		assertThat( store.size(), is( 2 ) );
+		assertThat( store.get( "x" ).get( "a" ), is( "1" ) );
+		assertThat( store.get( "x" ).get( "b" ), is( "" ) );
+		assertThat( store.get( "x" ).get( "c" ), is( "3" ) );
+		assertThat( store.get( "y" ).get( "a" ), is( "2" ) );
+		assertNull( store.get( "z" ) );
+	}
+
+	@Test
+	public void longValue() throws IOException {
+		StringBuilder sb = new StringBuilder();
+		while( sb.length() < 100000 ) {
+			sb.append( "baseline:bl" ).append( sb.length() ).append( "@\\pvob \u00e6 " );
+		}
+		String value = sb.toString();
+		store.put( "x", Collections.singletonMap( "depends_on", value ) );
+		store.put( "y", Collections.singletonMap( "a", "2" ) );
+
+		restart();
+
+		assertThat( store.size(), is( 2 ) );
+		assertThat( store.get( "x" ).get( "depends_on" ), is( value ) );
+		assertThat( store.get( "y" ).get( "a" ), is( "2" ) );
+	}
+
+	@Test
+	public void unchangedNotWritten() throws IOException {
+		store.put( "x", Collections.singletonMap( "a", "1" ) );
+		long length = file.length();
+		store.put( "x", Collections.singletonMap( "a", "1" ) );
+
+		assertThat( file.length(), is( length ) );
+	}
+
+	@Test
+	public void tornRecordCutOff() throws IOException {
+		store.put( "x", Collections.singletonMap( "a", "1" ) );
+		store.close();
+		long length = file.length();
+
+		/* A record half written */
+		FileOutputStream out = new FileOutputStream( file, true );
+		out.write( new byte[] { 0, 0, 0, 40, 1, 2, 3, 4, 5 } );
+		out.close();
+
+		restart();
+		assertThat( file.length(), is( length ) );
+		assertThat( store.get( "x" ).get( "a" ), is( "1" ) );
+
+		store.put( "y", Collections.singletonMap( "a", "2" ) );
+		restart();
+		assertThat( store.get( "y" ).get( "a" ), is( "2" ) );
+	}
+
+	@Test( expected = IOException.class )
+	public void notAFactStore() throws IOException {
+		File other = File.createTempFile( "other", ".txt" );
+		try {
+			FileOutputStream out = new FileOutputStream( other );
+			out.write( "Some other file, not to be overwritten".getBytes( "UTF-8" ) );
+			out.close();
+			FactStore.open( other );
+		} finally {
+			other.delete();
+		}
+	}
+
+	@Test
+	public void baselineWarm() throws Exception {
+		Baseline bl = Baseline.get( baseline );
+		assertThat( bl.getComponent().getShortname(), is( "_System" ) );
+		assertThat( executor.getCommands().size(), is( 1 ) );
+
+		restart();
+		model.object( baseline ).set( "%[plevel]p", "BUILT" );
+
+		bl = Baseline.get( baseline );
+		assertThat( bl.getComponent().getShortname(), is( "_System" ) );
+		assertThat( bl.getStream().getShortname(), is( "int" ) );
+		assertThat( bl.getDate().getTime(), is( now ) );
+		assertThat( bl.getUser(), is( "snoopy" ) );
+		assertThat( executor.getCommands().size(), is( 0 ) );
+		assertFalse( bl.isLoaded() );
+
+		/* The promotion level changes, and is not stored */
+		assertThat( bl.getPromotionLevel(), is( PromotionLevel.BUILT ) );
+		assertThat( executor.getCommands().size(), is( 1 ) );
+	}
+
+	@Test
+	public void versionsWarm() throws Exception {
+		List<String> names = new ArrayList<String>();
+		for( int i = 0 ; i < 10 ; i++ ) {
+			String name = view.getPath() + "/vob/file" + i + ".c@@/main/int/" + ( i + 1 );
+			model.addVersion( name, "user" + i, i % 2 == 0 ? "file element" : "directory version" );
+			names.add( name );
+		}
+
+		UCMEntity.loadAll( versions( names ) );
+		assertThat( executor.getCount( "describe" ), is( 1 ) );
+
+		restart();
+		List<Version> versions = versions( names );
+		UCMEntity.loadAll( versions );
+		assertThat( executor.getCommands().size(), is( 0 ) );
+		for( int i = 0 ; i < versions.size() ; i++ ) {
+			assertTrue( versions.get( i ).isLoaded() );
+			assertThat( versions.get( i ).getUser(), is( "user" + i ) );
+			assertThat( versions.get( i ).isFile(), is( i % 2 == 0 ) );
+		}
+		assertThat( executor.getCommands().size(), is( 0 ) );
+	}
+
+	@Test
+	public void withoutStore() throws Exception {
+		UCMEntity.setFactStore( null );
+		Baseline.get( baseline ).getComponent();
+		restart();
+		UCMEntity.setFactStore( null );
+
+		Baseline.get( baseline ).getComponent();
+		assertThat( executor.getCommands().size(), is( 1 ) );
+		assertThat( store.size(), is( 0 ) );
+	}
+
+	private List<Version> versions( List<String> names ) throws Exception {
+		List<Version> versions = new ArrayList<Version>();
+		for( String name : names ) {
+			Version v = Version.get( name );
+			v.setView( view );
+			versions.add( v );
+		}
+		return versions;
+	}
+}
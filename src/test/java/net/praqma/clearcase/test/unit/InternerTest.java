@@ -0,0 +1,102 @@
+package net.praqma.clearcase.test.unit;
+
+import static org.junit.Assert.*;
+import static org.hamcrest.CoreMatchers.*;
+
+import java.util.List;
+
+import net.praqma.clearcase.Branch;
+import net.praqma.clearcase.Cool;
+import net.praqma.clearcase.Label;
+import net.praqma.clearcase.ucm.entities.Baseline;
+import net.praqma.clearcase.ucm.entities.EntityIdentityMap;
+import net.praqma.clearcase.ucm.entities.UCMEntity;
+import net.praqma.clearcase.ucm.entities.Version;
+import net.praqma.clearcase.util.Interner;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class InternerTest {
+
+	private EntityIdentityMap previous;
+
+	@Before
+	public void setup() {
+		previous = UCMEntity.getIdentityMap();
+		UCMEntity.setIdentityMap( null );
+	}
+
+	@After
+	public void teardown() {
+		Interner.setEnabled( true );
+		UCMEntity.setIdentityMap( previous );
+	}
+
+	@Test
+	public void sameInstance() {
+		assertTrue( Branch.intern( "main" ) == Branch.intern( new String( "main" ) ) );
+		assertTrue( Label.intern( "REL_1" ) == Label.intern( "REL_1" ) );
+		assertFalse( Label.intern( "REL_1" ) == Label.intern( "REL_2" ) );
+	}
+
+	@Test
+	public void entities() throws Exception {
+		Baseline bl1 = Baseline.get( "baseline:bl1@\\pvob" );
+		Baseline bl2 = Baseline.get( "baseline:bl2@\\pvob" );
+
+		assertFalse( bl1 == Baseline.get( "baseline:bl1@\\pvob" ) );
+		/* Not shared, a PVob can be changed */
+		assertFalse( bl1.getPVob() == bl2.getPVob() );
+		assertThat( bl1.getPVob(), is( bl2.getPVob() ) );
+	}
+
+	@Test
+	public void versions() throws Exception {
+		String root = Cool.filesepChar == '\\' ? "C:\\view\\vob\\" : "/view/vob/";
+		String branch = Cool.filesepChar == '\\' ? "@@\\main\\int\\" : "@@/main/int/";
+		Version v1 = Version.get( root + "a.c" + branch + "3" );
+		Version v2 = Version.get( root + "b.c" + branch + "1" );
+
+		assertTrue( v1.getBranches() == v2.getBranches() );
+		assertTrue( v1.getUltimateBranch() == Branch.intern( "int" ) );
+		assertThat( v1.getBranches().size(), is( 2 ) );
+
+		/* Still a list of its own */
+		List<Branch> branches = Version.getBranches( Cool.filesepChar + "main" + Cool.filesepChar + "int" );
+		branches.add( new Branch( "dev" ) );
+		assertThat( v1.getBranches().size(), is( 2 ) );
+	}
+
+	@Test
+	public void disabled() {
+		Interner.setEnabled( false );
+
+		assertFalse( Label.intern( "REL_1" ) == Label.intern( "REL_1" ) );
+		assertThat( Label.intern( "REL_1" ).getName(), is( "REL_1" ) );
+	}
+
+	@Test
+	public void collected() throws Exception {
+		Interner<Object> interner = new Interner<Object>( new Interner.Factory<Object>() {
+			@Override
+			public Object create( String name ) {
+				return new StringBuilder( name );
+			}
+		} );
+
+		Object kept = interner.intern( "kept" );
+		for( int i = 0 ; i < 1000 ; i++ ) {
+			interner.intern( "value" + i );
+		}
+
+		for( int i = 0 ; i < 50 && interner.size() > 1 ; i++ ) {
+			System.gc();
+			Thread.sleep( 10 );
+		}
+
+		assertThat( interner.size(), is( 1 ) );
+		assertTrue( interner.intern( "kept" ) == kept );
+	}
+}
@@ -0,0 +1,180 @@
+package net.praqma.clearcase.test.unit;
+
+import static org.junit.Assert.*;
+import static org.hamcrest.CoreMatchers.*;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import net.praqma.clearcase.cleartool.Cleartool;
+import net.praqma.clearcase.cleartool.CleartoolMetrics;
+import net.praqma.clearcase.cleartool.CommandExecutor;
+import net.praqma.clearcase.cleartool.LicenseGovernor;
+import net.praqma.clearcase.cleartool.LineHandler;
+import net.praqma.clearcase.exceptions.NoLicensesException;
+import net.praqma.clearcase.test.junit.FakeClearCaseModel;
+import net.praqma.clearcase.test.junit.ScriptedCommandExecutor;
+import net.praqma.util.execute.AbnormalProcessTerminationException;
+import net.praqma.util.execute.CmdResult;
+import net.praqma.util.execute.CommandLineException;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class LicenseGovernorTest {
+
+	private static final String baseline = "baseline:bl1@\\pvob";
+	private static final String noLicenses = "cleartool: Error: License checkout error from Rational Common Licensing:\nFLEXnet Licensing error:-18,147";
+
+	private ScriptedCommandExecutor executor;
+	private LicenseGovernor governor;
+	private CleartoolMetrics metrics;
+
+	@Before
+	public void setup() {
+		FakeClearCaseModel model = new FakeClearCaseModel();
+		model.addBaseline( baseline, "component:_System@\\pvob", "stream:int@\\pvob", "INITIAL", new Date() );
+		executor = new ScriptedCommandExecutor( model );
+		Cleartool.setExecutor( executor );
+
+		metrics = new CleartoolMetrics();
+		governor = new LicenseGovernor( 8, 3, 1, 10, metrics );
+		Cleartool.setLicenseGovernor( governor );
+	}
+
+	@After
+	public void teardown() {
+		Cleartool.setLicenseGovernor( null );
+		Cleartool.setExecutor( null );
+	}
+
+	@Test
+	public void retry() throws Exception {
+		executor.fail( "^describe", noLicenses, 2 );
+
+		CmdResult result = Cleartool.run( "describe " + baseline );
+
+		assertThat( result.stdoutList.size(), is( 1 ) );
+		assertThat( executor.getCount( "describe" ), is( 3 ) );
+		assertThat( metrics.getLicenseRetries(), is( 2L ) );
+		assertThat( metrics.getLicensed(), is( 3L ) );
+		assertTrue( governor.getPermits() < 8 );
+	}
+
+	@Test
+	public void nestedUnderPermit() throws Exception {
+		governor = new LicenseGovernor( 1, metrics );
+		Cleartool.setLicenseGovernor( governor );
+		final List<String> lines = new ArrayList<String>();
+
+		Thread t = new Thread() {
+			@Override
+			public void run() {
+				Cleartool.stream( "describe " + baseline, null, new LineHandler() {
+					@Override
+					public boolean handle( String line ) {
+						/* Would wait for the permit of the stream */
+						lines.addAll( Cleartool.run( "describe " + baseline ).stdoutList );
+						return true;
+					}
+				} );
+			}
+		};
+		t.start();
+		t.join( 10000 );
+
+		assertFalse( "The nested command is stuck", t.isAlive() );
+		assertThat( lines.size(), is( 1 ) );
+		assertThat( governor.getInUse(), is( 0 ) );
+	}
+
+	@Test
+	public void giveUp() throws Exception {
+		executor.fail( "^describe", noLicenses );
+
+		try {
+			Cleartool.run( "describe " + baseline );
+			fail( "The command must fail" );
+		} catch( NoLicensesException e ) {
+			/* Expected */
+		}
+
+		/* The first attempt and three retries */
+		assertThat( executor.getCount( "describe" ), is( 4 ) );
+		assertThat( governor.getInUse(), is( 0 ) );
+	}
+
+	@Test
+	public void otherErrorsAreNotRetried() throws Exception {
+		executor.fail( "^describe", "cleartool: Error: Unable to determine type" );
+
+		try {
+			Cleartool.run( "describe " + baseline );
+			fail( "The command must fail" );
+		} catch( AbnormalProcessTerminationException e ) {
+			assertThat( e, not( instanceOf( NoLicensesException.class ) ) );
+		}
+
+		assertThat( executor.getCount( "describe" ), is( 1 ) );
+		assertThat( governor.getPermits(), is( 8 ) );
+	}
+
+	@Test
+	public void recover() throws Exception {
+		executor.fail( "^describe", noLicenses, 1 );
+		Cleartool.run( "describe " + baseline );
+		assertThat( governor.getPermits(), is( 4 ) );
+
+		for( int i = 0 ; i < 100 ; i++ ) {
+			Cleartool.run( "describe " + baseline );
+		}
+		assertThat( governor.getPermits(), is( 8 ) );
+	}
+
+	@Test
+	public void budget() throws Exception {
+		final AtomicInteger running = new AtomicInteger();
+		final AtomicInteger max = new AtomicInteger();
+		Cleartool.setExecutor( new CommandExecutor() {
+			@Override
+			public CmdResult run( String cmd, File dir, boolean merge, boolean ignore ) throws CommandLineException, AbnormalProcessTerminationException {
+				int r = running.incrementAndGet();
+				synchronized( max ) {
+					max.set( Math.max( max.get(), r ) );
+				}
+				try {
+					Thread.sleep( 50 );
+				} catch( InterruptedException e ) {
+					throw new CommandLineException( "Interrupted" );
+				} finally {
+					running.decrementAndGet();
+				}
+				return new CmdResult();
+			}
+		} );
+		Cleartool.setLicenseGovernor( new LicenseGovernor( 2, new CleartoolMetrics() ) );
+
+		List<Thread> threads = new ArrayList<Thread>();
+		for( int i = 0 ; i < 6 ; i++ ) {
+			final String vob = "\\vob" + i;
+			Thread t = new Thread() {
+				@Override
+				public void run() {
+					/* Different commands, so they are not coalesced */
+					Cleartool.run( "lsvob -s " + vob );
+				}
+			};
+			t.start();
+			threads.add( t );
+		}
+		for( Thread t : threads ) {
+			t.join();
+		}
+
+		assertThat( max.get(), is( 2 ) );
+	}
+}
@@ -0,0 +1,195 @@
+package net.praqma.clearcase.test.unit;
+
+import static org.junit.Assert.*;
+import static org.hamcrest.CoreMatchers.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+
+import net.praqma.clearcase.cleartool.Cleartool;
+import net.praqma.clearcase.exceptions.UCMEntityNotFoundException;
+import net.praqma.clearcase.exceptions.UnableToInitializeEntityException;
+import net.praqma.clearcase.exceptions.UnableToLoadEntityException;
+import net.praqma.clearcase.test.junit.FakeClearCaseModel;
+import net.praqma.clearcase.test.junit.ScriptedCommandExecutor;
+import net.praqma.clearcase.ucm.entities.Activity;
+import net.praqma.clearcase.ucm.entities.Baseline;
+import net.praqma.clearcase.ucm.entities.Component;
+import net.praqma.clearcase.ucm.entities.EntityIdentityMap;
+import net.praqma.clearcase.ucm.entities.Project.PromotionLevel;
+import net.praqma.clearcase.ucm.entities.Stream;
+import net.praqma.clearcase.ucm.entities.UCMEntity;
+import net.praqma.clearcase.ucm.utils.BaselineList;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class LoadAllTest {
+
+	private static final String pvob = "\\pvob";
+	private static final String component = "component:_System@" + pvob;
+	private static final String integration = "stream:int@" + pvob;
+
+	private FakeClearCaseModel model;
+	private ScriptedCommandExecutor executor;
+	private EntityIdentityMap previous;
+
+	@Before
+	public void setup() {
+		model = new FakeClearCaseModel();
+		model.addStream( integration, "project:proj@" + pvob, null );
+		for( int i = 0 ; i < 3 ; i++ ) {
+			model.addStream( "stream:dev" + i + "@" + pvob, "project:proj@" + pvob, integration );
+		}
+
+		executor = new ScriptedCommandExecutor( model );
+		Cleartool.setExecutor( executor );
+
+		previous = UCMEntity.getIdentityMap();
+		UCMEntity.setIdentityMap( new EntityIdentityMap() );
+	}
+
+	@After
+	public void teardown() {
+		UCMEntity.setIdentityMap( previous );
+		Cleartool.setExecutor( null );
+	}
+
+	private List<Baseline> baselines( int count ) throws Exception {
+		long now = System.currentTimeMillis();
+		List<Baseline> bls = new ArrayList<Baseline>();
+		for( int i = 0 ; i < count ; i++ ) {
+			String bl = "baseline:bl" + i + "@" + pvob;
+			model.addBaseline( bl, component, integration, i % 2 == 0 ? "BUILT" : "INITIAL", new Date( now - i * 1000 ) );
+			bls.add( Baseline.get( bl ) );
+		}
+		return bls;
+	}
+
+	@Test
+	public void together() throws Exception {
+		List<Baseline> bls = baselines( 50 );
+
+		UCMEntity.loadAll( bls );
+
+		assertThat( executor.getCount( "describe" ), is( 1 ) );
+		for( int i = 0 ; i < bls.size() ; i++ ) {
+			assertTrue( bls.get( i ).isLoaded() );
+			assertThat( bls.get( i ).getPromotionLevel(), is( i % 2 == 0 ? PromotionLevel.BUILT : PromotionLevel.INITIAL ) );
+			assertThat( bls.get( i ).getStream().getFullyQualifiedName(), is( integration ) );
+		}
+		assertThat( executor.getCount( "describe" ), is( 1 ) );
+
+		/* Already loaded */
+		UCMEntity.loadAll( bls );
+		assertThat( executor.getCount( "describe" ), is( 1 ) );
+	}
+
+	@Test
+	public void chunked() throws Exception {
+		List<Baseline> bls = baselines( 6000 );
+
+		UCMEntity.loadAll( bls );
+
+		/* No command line is longer than the limit */
+		assertTrue( executor.getCount( "describe" ) > 1 );
+		for( String cmd : executor.getCommands() ) {
+			assertTrue( cmd.length() <= 100000 );
+		}
+		assertTrue( bls.get( bls.size() - 1 ).isLoaded() );
+	}
+
+	@Test
+	public void failingEntity() throws Exception {
+		List<Baseline> bls = baselines( 5 );
+		bls.add( 2, Baseline.get( "baseline:nosuchbaseline@" + pvob ) );
+
+		try {
+			UCMEntity.loadAll( bls );
+			fail( "The missing baseline must fail" );
+		} catch( UnableToLoadEntityException e ) {
+			assertThat( e.getEntity().getFullyQualifiedName(), is( "baseline:nosuchbaseline@" + pvob ) );
+		}
+
+		/* Those before the failing baseline were loaded one at a time */
+		assertTrue( bls.get( 1 ).isLoaded() );
+	}
+
+	@Test
+	public void baselineList() throws Exception {
+		baselines( 20 );
+
+		BaselineList list = new BaselineList( Stream.get( integration ), Component.get( component ), null ).load().apply();
+
+		assertThat( list.size(), is( 20 ) );
+		assertThat( executor.getCount( "lsbl" ), is( 1 ) );
+		assertThat( executor.getCount( "describe" ), is( 1 ) );
+	}
+
+	@Test
+	public void childStreams() throws Exception {
+		executor.script( "^deliver -status", "No deliver operation in progress on stream" );
+		List<Stream> children = Stream.get( integration ).getChildStreams( false );
+
+		assertThat( children.size(), is( 3 ) );
+		/* The parent, its children listed and described together */
+		assertThat( executor.getCount( "describe" ), is( 3 ) );
+	}
+
+	@Test
+	public void activities() throws Exception {
+		model.addActivity( "activity:act1@" + pvob, "snoopy", "The first" );
+		model.addActivity( "activity:act2@" + pvob, "woodstock", "" );
+
+		List<Activity> activities = Arrays.asList( Activity.get( "activity:act1@" + pvob ), Activity.get( "activity:act2@" + pvob ) );
+		UCMEntity.loadAll( activities );
+
+		assertThat( executor.getCount( "describe" ), is( 1 ) );
+		assertThat( activities.get( 0 ).getHeadline(), is( "The first" ) );
+		assertThat( activities.get( 1 ).getUser(), is( "woodstock" ) );
+		assertThat( activities.get( 1 ).getHeadline(), is( "" ) );
+	}
+
+	/**
+	 * An entity with a load format, loaded one at a time
+	 */
+	public static class Thing extends UCMEntity {
+		private int loads = 0;
+
+		public Thing() {
+			super( "thing" );
+		}
+
+		public static Thing get( String fqname ) throws Exception {
+			return (Thing) UCMEntity.getEntity( Thing.class, fqname );
+		}
+
+		@Override
+		protected String getLoadFormat() {
+			return "%n";
+		}
+
+		@Override
+		public UCMEntity load() throws UnableToLoadEntityException, UCMEntityNotFoundException, UnableToInitializeEntityException {
+			loads++;
+			return super.load();
+		}
+	}
+
+	@Test
+	public void notInBulk() throws Exception {
+		model.object( "thing:a@" + pvob );
+		model.object( "thing:b@" + pvob );
+
+		List<Thing> things = Arrays.asList( Thing.get( "thing:a@" + pvob ), Thing.get( "thing:b@" + pvob ) );
+		UCMEntity.loadAll( things );
+
+		for( Thing thing : things ) {
+			assertTrue( thing.isLoaded() );
+			assertThat( thing.loads, is( 1 ) );
+		}
+	}
+}
@@ -0,0 +1,142 @@
+package net.praqma.clearcase.test.unit;
+
+import static org.junit.Assert.*;
+import static org.hamcrest.CoreMatchers.*;
+
+import java.util.Date;
+
+import net.praqma.clearcase.cleartool.Cleartool;
+import net.praqma.clearcase.test.junit.FakeClearCaseModel;
+import net.praqma.clearcase.test.junit.ScriptedCommandExecutor;
+import net.praqma.clearcase.ucm.entities.Baseline;
+import net.praqma.clearcase.ucm.entities.Component;
+import net.praqma.clearcase.ucm.entities.EntityIdentityMap;
+import net.praqma.clearcase.ucm.entities.Stream;
+import net.praqma.clearcase.ucm.entities.UCMEntity;
+import net.praqma.clearcase.ucm.entities.UCMEntity.Field;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class LoadFieldsTest {
+
+	private static final String pvob = "\\pvob";
+	private static final String component = "component:_System@" + pvob;
+	private static final String integration = "stream:int@" + pvob;
+	private static final String baseline = "baseline:bl1@" + pvob;
+
+	private FakeClearCaseModel model;
+	private ScriptedCommandExecutor executor;
+	private EntityIdentityMap previous;
+	private long now = System.currentTimeMillis() / 1000 * 1000;
+
+	@Before
+	public void setup() {
+		model = new FakeClearCaseModel();
+		model.addStream( integration, "project:proj@" + pvob, null ).set( "%Nd", "20140102.030405" ).set( "%u", "snoopy" );
+		model.addBaseline( baseline, component, integration, "INITIAL", new Date( now ) );
+		model.object( component ).set( "%[master]p", "site2" );
+
+		executor = new ScriptedCommandExecutor( model );
+		Cleartool.setExecutor( executor );
+
+		previous = UCMEntity.getIdentityMap();
+		UCMEntity.setIdentityMap( new EntityIdentityMap() );
+	}
+
+	@After
+	public void teardown() {
+		UCMEntity.setIdentityMap( previous );
+		Cleartool.setExecutor( null );
+	}
+
+	@Test
+	public void dateOfStream() throws Exception {
+		Stream stream = Stream.get( integration );
+
+		assertNotNull( stream.getDate() );
+		assertThat( stream.getDate(), is( stream.getDate() ) );
+
+		/* Only the date, once */
+		assertThat( executor.getCommands().size(), is( 1 ) );
+		assertTrue( executor.getCommands().get( 0 ).startsWith( "describe -fmt %Nd " ) );
+		assertFalse( stream.isLoaded() );
+	}
+
+	@Test
+	public void dateOfBaseline() throws Exception {
+		Baseline bl = Baseline.get( baseline );
+
+		assertThat( bl.getDate().getTime(), is( now ) );
+		assertThat( bl.getMastership(), is( "site1" ) );
+
+		/* The load has the date */
+		assertThat( executor.getCommands().size(), is( 1 ) );
+		assertTrue( bl.isLoaded() );
+	}
+
+	@Test
+	public void together() throws Exception {
+		Stream stream = Stream.get( integration );
+		stream.ensureFields( Field.DATE, Field.USER, Field.MASTERSHIP );
+
+		assertThat( executor.getCommands().size(), is( 1 ) );
+		assertThat( stream.getMastership(), is( "site1" ) );
+		assertThat( stream.getUser(), is( "snoopy" ) );
+		assertNotNull( stream.getDate() );
+		assertThat( executor.getCommands().size(), is( 1 ) );
+
+		/* Loading the stream does not describe the fields again */
+		stream.load();
+		stream.ensureFields( Field.DATE, Field.MASTERSHIP );
+		assertThat( executor.getCommands().size(), is( 2 ) );
+	}
+
+	@Test
+	public void mastershipOfComponent() throws Exception {
+		Component c = Component.get( component );
+
+		assertThat( c.getMastership(), is( "site2" ) );
+		assertThat( c.getMastership(), is( "site2" ) );
+		assertThat( executor.getCommands().size(), is( 1 ) );
+		assertTrue( c.hasField( Field.MASTERSHIP ) );
+		assertFalse( c.hasField( Field.DATE ) );
+	}
+
+	@Test
+	public void invalidated() throws Exception {
+		Stream stream = Stream.get( integration );
+		stream.getDate();
+		stream.invalidate();
+
+		assertFalse( stream.hasField( Field.DATE ) );
+		stream.getMastership();
+		stream.getDate();
+		/* The date, the load with the mastership, and the date again */
+		assertThat( executor.getCommands().size(), is( 3 ) );
+	}
+
+	@Test
+	public void setDate() throws Exception {
+		Stream stream = Stream.get( integration );
+		stream.setDate( "20140102.030405" );
+
+		assertTrue( stream.hasField( Field.DATE ) );
+		stream.getDate();
+		assertThat( executor.getCommands().size(), is( 0 ) );
+	}
+
+	@Test
+	public void kindOfStream() throws Exception {
+		Stream stream = Stream.get( integration );
+
+		assertThat( stream.getKind(), is( UCMEntity.Kind.UNKNOWN ) );
+		assertThat( stream.getKind(), is( UCMEntity.Kind.UNKNOWN ) );
+
+		/* Only the kind, once */
+		assertThat( executor.getCommands().size(), is( 1 ) );
+		assertTrue( executor.getCommands().get( 0 ).startsWith( "describe -fmt %[object_kind]p " ) );
+		assertFalse( stream.isLoaded() );
+	}
+}
@@ -0,0 +1,122 @@
+package net.praqma.clearcase.test.unit;
+
+import static org.junit.Assert.*;
+import static org.hamcrest.CoreMatchers.*;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+import net.praqma.clearcase.Cool;
+import net.praqma.clearcase.cleartool.CleartoolMetrics;
+import net.praqma.clearcase.cleartool.LineHandler;
+import net.praqma.clearcase.cleartool.SessionCommandExecutor;
+import net.praqma.util.execute.CommandLineException;
+import net.praqma.util.execute.CommandLineInterface.OperatingSystem;
+
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+public class SessionCommandExecutorTest {
+
+	private CleartoolMetrics metrics;
+	private SessionCommandExecutor executor;
+	private File record;
+
+	@Before
+	public void setup() throws Exception {
+		/* The stand-in is a shell script */
+		Assume.assumeTrue( Cool.getOS().equals( OperatingSystem.UNIX ) );
+
+		File script = new File( getClass().getResource( "/net/praqma/clearcase/test/benchmark/fake-cleartool.sh" ).toURI() );
+		metrics = new CleartoolMetrics();
+		executor = new SessionCommandExecutor( "sh " + script.getAbsolutePath(), 1, metrics );
+		record = File.createTempFile( "record", ".txt" );
+	}
+
+	@After
+	public void teardown() {
+		if( executor != null ) {
+			executor.close();
+		}
+		if( record != null ) {
+			record.delete();
+		}
+	}
+
+	private List<String> recorded() throws Exception {
+		return Files.readAllLines( record.toPath(), StandardCharsets.UTF_8 );
+	}
+
+	@Test
+	public void changingCommandNotRepeated() throws Exception {
+		try {
+			executor.run( "mkrecord " + record.getAbsolutePath(), null, false, false );
+			fail( "The session died after the command was sent" );
+		} catch( CommandLineException e ) {
+			assertTrue( e.getMessage(), e.getMessage().contains( "not run again" ) );
+		}
+
+		/* Run once, in the session */
+		assertThat( recorded().size(), is( 1 ) );
+		assertThat( metrics.getForked(), is( 0L ) );
+	}
+
+	@Test
+	public void readingCommandForked() throws Exception {
+		executor.run( "lsrecord " + record.getAbsolutePath(), null, false, false );
+
+		/* In the session, then forked */
+		assertThat( recorded().size(), is( 2 ) );
+		assertThat( metrics.getForked(), is( 1L ) );
+	}
+
+	@Test
+	public void missingDirectoryIsNoFailure() throws Exception {
+		File missing = new File( record.getAbsolutePath() + ".missing" );
+		for( int i = 0 ; i < 4 ; i++ ) {
+			try {
+				executor.run( "describe -fmt %n baseline:baseline_1@/PVOB", missing, false, false );
+			} catch( CommandLineException e ) {
+				/* Forking in the missing directory fails too */
+			}
+		}
+
+		assertFalse( executor.isDisabled() );
+		assertThat( metrics.getSessionFailures(), is( 0L ) );
+
+		executor.run( "describe -fmt %n baseline:baseline_1@/PVOB", null, false, false );
+		assertThat( metrics.getSessionCommands(), is( 1L ) );
+		assertThat( metrics.getSessionsOpened(), is( 1L ) );
+	}
+
+	@Test
+	public void nestedCommandForked() throws Exception {
+		final List<String> lines = new ArrayList<String>();
+
+		/* One session, busy with the stream */
+		Thread t = new Thread() {
+			@Override
+			public void run() {
+				executor.stream( "describe -fmt %n baseline:baseline_1@/PVOB", null, false, false, new LineHandler() {
+					@Override
+					public boolean handle( String line ) {
+						lines.addAll( executor.run( "describe -fmt %n baseline:baseline_1@/PVOB", null, false, false ).stdoutList );
+						return true;
+					}
+				} );
+			}
+		};
+		t.start();
+		t.join( 10000 );
+
+		assertFalse( "The nested command is stuck", t.isAlive() );
+		assertThat( lines.size(), is( 1 ) );
+		assertThat( metrics.getForked(), is( 1L ) );
+		assertThat( metrics.getSessionsOpened(), is( 1L ) );
+	}
+}
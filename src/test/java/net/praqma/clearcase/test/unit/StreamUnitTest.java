@@ -5,6 +5,7 @@ import static org.junit.Assert.*;
 
 import net.praqma.clearcase.Deliver;
 import net.praqma.clearcase.cleartool.Cleartool;
+import net.praqma.clearcase.cleartool.ExistenceCache;
 import net.praqma.clearcase.exceptions.CleartoolException;
 import net.praqma.clearcase.exceptions.UnableToInitializeEntityException;
 import net.praqma.clearcase.exceptions.UnableToListBaselinesException;
@@ -19,6 +20,7 @@ import net.praqma.util.debug.appenders.Appender;
 import net.praqma.util.debug.appenders.ConsoleAppender;
 import net.praqma.util.execute.AbnormalProcessTerminationException;
 
+import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mockito.Mockito;
@@ -39,6 +41,12 @@ public class StreamUnitTest {
 		appender.setMinimumLevel( LogLevel.DEBUG );
 		Logger.addAppender( appender );
 	}
+
+	@Before
+	public void setup() {
+		/* The mocked cleartool answers are not to be remembered */
+		ExistenceCache.setInstance( null );
+	}
 	
 	@Test
 	public void blaStreamExists() throws UnableToInitializeEntityException {
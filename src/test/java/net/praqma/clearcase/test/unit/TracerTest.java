@@ -0,0 +1,132 @@
+package net.praqma.clearcase.test.unit;
+
+import static org.junit.Assert.*;
+import static org.hamcrest.CoreMatchers.*;
+
+import java.io.StringWriter;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import net.praqma.clearcase.cleartool.ChromeTraceWriter;
+import net.praqma.clearcase.cleartool.Cleartool;
+import net.praqma.clearcase.cleartool.CleartoolAsync;
+import net.praqma.clearcase.cleartool.Span;
+import net.praqma.clearcase.cleartool.Tracer;
+import net.praqma.clearcase.test.junit.FakeClearCaseModel;
+import net.praqma.clearcase.test.junit.ScriptedCommandExecutor;
+import net.praqma.clearcase.ucm.entities.Baseline;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TracerTest {
+
+	private static final String baseline = "baseline:traced@\\pvob";
+
+	private final List<Span> spans = new CopyOnWriteArrayList<Span>();
+	private final Tracer.Listener listener = new Tracer.Listener() {
+		@Override
+		public void spanEnded( Span span ) {
+			spans.add( span );
+		}
+	};
+
+	@Before
+	public void setup() {
+		FakeClearCaseModel model = new FakeClearCaseModel();
+		model.addBaseline( baseline, "component:_System@\\pvob", "stream:int@\\pvob", "INITIAL", new Date() );
+		Cleartool.setExecutor( new ScriptedCommandExecutor( model ) );
+		Tracer.addListener( listener );
+		Tracer.setEnabled( true );
+	}
+
+	@After
+	public void teardown() {
+		Tracer.setEnabled( false );
+		Tracer.removeListener( listener );
+		Cleartool.setExecutor( null );
+	}
+
+	@Test
+	public void nested() throws Exception {
+		Baseline.get( baseline ).load();
+
+		assertThat( spans.size(), is( 2 ) );
+		Span describe = spans.get( 0 );
+		Span load = spans.get( 1 );
+
+		assertThat( describe.getName(), is( "describe" ) );
+		assertThat( describe.getCategory(), is( Tracer.categoryCleartool ) );
+		assertThat( describe.getParent(), is( load ) );
+		assertThat( load.getName(), is( "Baseline.load" ) );
+		assertThat( load.getParent(), nullValue() );
+		assertTrue( load.getDuration() >= describe.getDuration() );
+		assertThat( Tracer.current(), nullValue() );
+	}
+
+	@Test
+	public void failed() throws Exception {
+		try {
+			Cleartool.run( "describe baseline:nosuchbaseline@\\pvob" );
+			fail( "The command must fail" );
+		} catch( Exception e ) {
+			/* Expected */
+		}
+
+		assertThat( spans.size(), is( 1 ) );
+		assertThat( spans.get( 0 ).getError(), notNullValue() );
+	}
+
+	@Test
+	public void async() throws Exception {
+		Span parent = Tracer.start( "parent", null );
+		try {
+			CleartoolAsync.submit( new Callable<String>() {
+				@Override
+				public String call() throws Exception {
+					return Cleartool.run( "describe -fmt %n " + baseline ).stdoutBuffer.toString();
+				}
+			}, 10, TimeUnit.SECONDS ).get();
+		} finally {
+			parent.end();
+		}
+
+		assertThat( spans.size(), is( 2 ) );
+		assertThat( spans.get( 0 ).getParent(), is( parent ) );
+		assertThat( spans.get( 0 ).getThreadId() == parent.getThreadId(), is( false ) );
+	}
+
+	@Test
+	public void disabled() throws Exception {
+		Tracer.setEnabled( false );
+		Baseline.get( baseline ).load();
+
+		assertThat( spans.size(), is( 0 ) );
+		assertThat( Tracer.current(), nullValue() );
+	}
+
+	@Test
+	public void chromeTrace() throws Exception {
+		StringWriter out = new StringWriter();
+		ChromeTraceWriter writer = new ChromeTraceWriter( out );
+		Tracer.addListener( writer );
+		try {
+			Baseline.get( baseline ).load();
+		} finally {
+			Tracer.removeListener( writer );
+			writer.close();
+		}
+
+		String json = out.toString();
+		assertTrue( json, json.startsWith( "[" ) );
+		assertTrue( json, json.trim().endsWith( "]" ) );
+		assertTrue( json, json.contains( "\"name\":\"Baseline.load\"" ) );
+		assertTrue( json, json.contains( "\"ph\":\"X\"" ) );
+		assertTrue( json, json.contains( "\"cat\":\"cleartool\"" ) );
+		assertTrue( json, json.contains( "\"detail\":\"desc -fmt" ) );
+	}
+}
@@ -0,0 +1,77 @@
+#!/bin/sh
+#
+# A scripted stand-in for cleartool, used by the benchmarks.
+# Forked:      fake-cleartool.sh describe -fmt ... baseline:bl@\pvob
+# Interactive: fake-cleartool.sh -status, commands are read from stdin
+#
+
+reply() {
+    case "$1" in
+        describe|desc)
+            echo "baseline_1::component:_System@\\PVOB::stream:Int@\\PVOB::INITIAL::user::20120101.120000::full::site1"
+            return 0
+            ;;
+        cd)
+            # The session quotes the directory
+            [ -d "$(echo "$2" | tr -d '"')" ]
+            return $?
+            ;;
+        pwd)
+            return 0
+            ;;
+        shell)
+            shift
+            "$@"
+            return $?
+            ;;
+        comment)
+            # comment <n>: print n status lines of other commands, as a comment may hold them
+            echo "Command $2 returned status 0"
+            echo "Command $2 returned status 1"
+            echo "the end"
+            return 0
+            ;;
+        mkrecord|lsrecord)
+            # mkrecord|lsrecord <file>: append a line to file, a session dies after it
+            echo "$1" >> "$2"
+            if [ -n "$session" ]; then
+                exit 3
+            fi
+            return 0
+            ;;
+        sleep)
+            # sleep <seconds>: a hung command
+            exec sleep "$2"
+            ;;
+        ls)
+            # ls <count>: print count view private files
+            i=1
+            while [ $i -le "$2" ]; do
+                echo "/view/vob/file_$i"
+                i=$((i + 1))
+            done
+            return 0
+            ;;
+        *)
+            echo "cleartool: Error: Unrecognized command: \"$1\"" >&2
+            return 1
+            ;;
+    esac
+}
+
+if [ "$1" = "-status" ]; then
+    session=1
+    n=0
+    while read -r line; do
+        set -- $line
+        if [ "$1" = "quit" ]; then
+            exit 0
+        fi
+        n=$((n + 1))
+        reply "$@"
+        echo "Command $n returned status $?"
+    done
+    exit 0
+fi
+
+reply "$@"